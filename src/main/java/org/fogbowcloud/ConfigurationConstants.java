@@ -23,5 +23,7 @@ public class ConfigurationConstants {
 	public static final String CAPACITY_EXECUTION_INTERVAL = "capacity_execution_interval";
 	
 	public static final String MONITORING_INTERVAL = "monitoring_interval";
+	
+	public static final String MONITORING_PARALLELISM = "monitoring_parallelism";
 
 }
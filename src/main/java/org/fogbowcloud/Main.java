@@ -5,6 +5,7 @@ import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.TimerTask;
@@ -15,14 +16,28 @@ import java.util.concurrent.TimeUnit;
 import org.apache.log4j.Logger;
 import org.fogbowcloud.capacityplanner.CapacityPlanner;
 import org.fogbowcloud.capacityplanner.CapacityPlannerException;
+import org.fogbowcloud.capacityplanner.PlannerTimeSeries;
 import org.fogbowcloud.capacityplanner.queue.EScienceCentralQueue;
 import org.fogbowcloud.capacityplanner.queue.FakeESCentralQueue;
 import org.fogbowcloud.capacityplanner.resource.AllocationPolicy;
+import org.fogbowcloud.capacityplanner.resource.AllocationPolicyAdapter;
 import org.fogbowcloud.capacityplanner.resource.LinearAllocationPolicy;
+import org.fogbowcloud.capacityplanner.resource.SnapshotAllocationPolicy;
+import org.fogbowcloud.capacityplanner.resource.StabilizedAllocationPolicy;
+import org.fogbowcloud.infrastructure.core.EngineBootstrapper;
 import org.fogbowcloud.infrastructure.core.InfrastructureException;
 import org.fogbowcloud.infrastructure.core.InfrastructureManager;
 import org.fogbowcloud.infrastructure.core.InfrastructureProvider;
+import org.fogbowcloud.infrastructure.core.MonitoringScheduler;
+import org.fogbowcloud.infrastructure.core.ReachabilityProber;
+import org.fogbowcloud.infrastructure.core.ResourceJournal;
 import org.fogbowcloud.infrastructure.core.ResourcePropertiesConstants;
+import org.fogbowcloud.infrastructure.core.ResourceRegistry;
+import org.fogbowcloud.infrastructure.core.ResourceState;
+import org.fogbowcloud.infrastructure.core.SSHConnectionPool;
+import org.fogbowcloud.infrastructure.core.SSHFanOutExecutor;
+import org.fogbowcloud.infrastructure.core.SSHUtils;
+import org.fogbowcloud.infrastructure.core.WarmPool;
 import org.fogbowcloud.infrastructure.fogbow.FogbowInfrastructureProvider;
 
 public class Main {
@@ -41,7 +56,7 @@ public class Main {
 			properties.load(input);
 	
 			// creating infrastructure provider
-			InfrastructureProvider infrastructureProvider;
+			final InfrastructureProvider infrastructureProvider;
 			String infraClass = properties.getProperty(ConfigurationConstants.INFRASTRUCTURE_CLASS);
 			if (infraClass != null) {
 				infrastructureProvider = (InfrastructureProvider) createInstance(
@@ -79,14 +94,22 @@ public class Main {
 			}
 			
 			// creating resource allocation policy 
-			AllocationPolicy allocationPolicy;
+			Object allocationPolicy;
 			String allocationPolicyClass = properties.getProperty(ConfigurationConstants.ALLOCATION_POLICY_CLASS);
 			if (allocationPolicyClass != null) {
-				allocationPolicy = (AllocationPolicy) createInstance(
-						ConfigurationConstants.ALLOCATION_POLICY_CLASS, properties);
+				allocationPolicy = createInstance(ConfigurationConstants.ALLOCATION_POLICY_CLASS,
+						properties);
 			} else {
 				allocationPolicy = new LinearAllocationPolicy(properties);
 			}
+			if (properties.getProperty(StabilizedAllocationPolicy.WINDOW_KEY) != null) {
+				if (allocationPolicy instanceof SnapshotAllocationPolicy) {
+					throw new IllegalArgumentException(
+							"The stabilization window only applies to an AllocationPolicy.");
+				}
+				allocationPolicy = new StabilizedAllocationPolicy(
+						(AllocationPolicy) allocationPolicy, properties);
+			}
 			
 			Map<String, String> resourceProperties = getPropertiesByPrefix(properties,
 					ConfigurationConstants.RESOURCE_PROPERTIES_PREFIX);
@@ -108,10 +131,33 @@ public class Main {
 				infraManager = new InfrastructureManager(resourceProperties, resourceCredentials);
 			}
 			
+			if (properties.getProperty(ConfigurationConstants.MONITORING_PARALLELISM) != null){
+				infraManager.setMonitoringParallelism(Integer.parseInt(properties
+						.getProperty(ConfigurationConstants.MONITORING_PARALLELISM)));
+			}
+			final SSHConnectionPool sshConnectionPool = new SSHConnectionPool(properties);
+			SSHUtils.setConnectionPool(sshConnectionPool);
+			final SSHFanOutExecutor fanOutExecutor = new SSHFanOutExecutor(properties);
+			infraManager.setFanOutExecutor(fanOutExecutor);
+			infraManager.setReachabilityProber(new ReachabilityProber(properties));
+			infraManager.setEngineBootstrapper(new EngineBootstrapper(properties));
+			infraManager.setMonitoringScheduler(new MonitoringScheduler(properties));
+			if (properties.getProperty(WarmPool.MIN_SIZE_KEY) != null
+					|| properties.getProperty(WarmPool.MAX_SIZE_KEY) != null) {
+				infraManager.setWarmPool(new WarmPool(properties));
+			}
 			infraManager.setInfraProvider(infrastructureProvider);
+
+			// restoring the resources of the last execution
+			final ResourceJournal journal = properties
+					.getProperty(ResourceJournal.JOURNAL_DIR_KEY) != null ? new ResourceJournal(
+					properties) : null;
+			if (journal != null) {
+				journal.open(infraManager.getResourceRegistry());
+			}
 			
 			// creating capacity planner
-			CapacityPlanner capacityPlanner;
+			final CapacityPlanner capacityPlanner;
 			if (properties.getProperty(ConfigurationConstants.CAPACITY_EXECUTION_INTERVAL) != null){
 				int capacityInterval = Integer.parseInt(properties.getProperty(ConfigurationConstants.CAPACITY_EXECUTION_INTERVAL));
 				capacityPlanner = new CapacityPlanner(capacityInterval);				
@@ -121,14 +167,37 @@ public class Main {
 			
 			capacityPlanner.setInfraManager(infraManager);
 			capacityPlanner.setQueue(queue);
-			capacityPlanner.setAllocationPolicy(allocationPolicy);
+			capacityPlanner.setSnapshotAllocationPolicy(AllocationPolicyAdapter
+					.adapt(allocationPolicy));
+			capacityPlanner.setTimeSeries(new PlannerTimeSeries(properties));
+
+			// releasing the threads and connections on exit
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+				@Override
+				public void run() {
+					capacityPlanner.stop();
+					// the planner does not change the resources anymore
+					if (journal != null) {
+						journal.close();
+					}
+					fanOutExecutor.shutdown();
+					sshConnectionPool.shutdown();
+					if (infrastructureProvider instanceof FogbowInfrastructureProvider) {
+						((FogbowInfrastructureProvider) infrastructureProvider).shutdown();
+					}
+				}
+			});
 			
 			capacityPlanner.initialize();		
 			
 			while (true) {
 				LOGGER.info("Capacity Planner is running...");
-				LOGGER.info("Current resourcesInUse=" + infraManager.getResourcesInUse());
-				LOGGER.info("Current resourcesNotAvailable=" + infraManager.getResourcesNotAvailable());
+				Map<ResourceState, List<String>> resources = infraManager.getResourceRegistry().snapshot();
+				LOGGER.info("Current resourcesInUse=" + resources.get(ResourceState.IN_USE));
+				LOGGER.info("Current resourcesNotAvailable="
+						+ ResourceRegistry.getResources(resources, ResourceState.NOT_AVAILABLE));
+				LOGGER.info("Current resourcesRemoving="
+						+ ResourceRegistry.getResources(resources, ResourceState.REMOVING));
 				waitExecutionInterval(properties);
 			}
 		} catch (IOException e1) {
@@ -0,0 +1,55 @@
+package org.fogbowcloud;
+
+import java.util.Properties;
+
+/**
+ * Reads the numeric properties of the configuration. A missing or blank
+ * property takes the default value and an invalid one is rejected with an
+ * {@link IllegalArgumentException} naming its key.
+ */
+public class PropertiesUtils {
+
+	public static int getIntProperty(Properties properties, String key, int defaultValue) {
+		return getIntProperty(properties, key, defaultValue, Integer.MIN_VALUE, "an integer");
+	}
+
+	public static int getPositiveIntProperty(Properties properties, String key, int defaultValue) {
+		return getIntProperty(properties, key, defaultValue, 1, "a positive integer");
+	}
+
+	public static int getNonNegativeIntProperty(Properties properties, String key,
+			int defaultValue) {
+		return getIntProperty(properties, key, defaultValue, 0, "a non negative integer");
+	}
+
+	private static int getIntProperty(Properties properties, String key, int defaultValue,
+			int minValue, String description) {
+		String value = properties.getProperty(key);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			int intValue = Integer.parseInt(value.trim());
+			if (intValue < minValue) {
+				throw new NumberFormatException();
+			}
+			return intValue;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("The property " + key + " must be " + description
+					+ ".");
+		}
+	}
+
+	public static double getDoubleProperty(Properties properties, String key,
+			double defaultValue) {
+		String value = properties.getProperty(key);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Double.parseDouble(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("The property " + key + " must be a number.");
+		}
+	}
+}
@@ -9,17 +9,23 @@ import java.util.concurrent.TimeUnit;
 import org.apache.log4j.Logger;
 import org.fogbowcloud.capacityplanner.queue.EScienceCentralQueue;
 import org.fogbowcloud.capacityplanner.resource.AllocationPolicy;
+import org.fogbowcloud.capacityplanner.resource.AllocationPolicyAdapter;
+import org.fogbowcloud.capacityplanner.resource.SnapshotAllocationPolicy;
+import org.fogbowcloud.infrastructure.core.Clock;
 import org.fogbowcloud.infrastructure.core.InfrastructureManager;
+import org.fogbowcloud.infrastructure.core.SystemClock;
 
 public class CapacityPlanner {
 
 	public final static int DEFAULT_EXECUTION_PERIOD = 1;
 
 	private InfrastructureManager infraManager;
-	private AllocationPolicy allocationPolicy;
+	private SnapshotAllocationPolicy allocationPolicy;
 	private EScienceCentralQueue queue;
 	private ScheduledFuture<?> plannerHandle;
 	private int executionInterval;
+	private final Clock clock;
+	private PlannerTimeSeries timeSeries = new PlannerTimeSeries(PlannerTimeSeries.DEFAULT_CAPACITY);
 
 	private static final Logger LOGGER = Logger.getLogger(CapacityPlanner.class);
 
@@ -28,13 +34,31 @@ public class CapacityPlanner {
 	}
 
 	public CapacityPlanner(int executionInterval) {
+		this(executionInterval, new SystemClock());
+	}
+
+	/**
+	 * @param clock
+	 *            Source of the time of the planner history, a virtual clock in
+	 *            simulations
+	 */
+	public CapacityPlanner(int executionInterval, Clock clock) {
 		if (executionInterval <= 0) {
 			throw new IllegalArgumentException("Execution interval must be a positive integer.");
 		}
 		this.executionInterval = executionInterval;
+		this.clock = clock;
 	}
 
+	/**
+	 * Sets a policy that only sees the engines in use and the queue length.
+	 */
 	public void setAllocationPolicy(AllocationPolicy allocationPolicy) {
+		this.allocationPolicy = allocationPolicy != null ? new AllocationPolicyAdapter(
+				allocationPolicy) : null;
+	}
+
+	public void setSnapshotAllocationPolicy(SnapshotAllocationPolicy allocationPolicy) {
 		this.allocationPolicy = allocationPolicy;
 	}
 
@@ -46,6 +70,20 @@ public class CapacityPlanner {
 		this.infraManager = infraManager;
 	}
 
+	public void setTimeSeries(PlannerTimeSeries timeSeries) {
+		if (timeSeries == null) {
+			throw new IllegalArgumentException("PlannerTimeSeries must not be null.");
+		}
+		this.timeSeries = timeSeries;
+	}
+
+	/**
+	 * @return The samples of the last executions, read-only
+	 */
+	public PlannerHistory getHistory() {
+		return timeSeries;
+	}
+
 	public void initialize() throws CapacityPlannerException {
 		LOGGER.info("Initializing Capacity Planner execution.");
 
@@ -64,15 +102,27 @@ public class CapacityPlanner {
 		}, 0, executionInterval, TimeUnit.MINUTES);
 	}
 
-	protected void runCapacityPanner() {
+	/**
+	 * Runs one execution of the planner, which is scheduled by
+	 * {@link #initialize()} or run by a simulation.
+	 */
+	public void runCapacityPanner() {
 		LOGGER.info("Running CapacityPlanner ...");
+		long now = clock.currentTimeMillis();
 		int numberOfEngines = infraManager.getNumberOfStartedEngines();
 		LOGGER.info("Current numberOfEngines=" + numberOfEngines);
+		int pendingEngines = infraManager.getNumberOfPendingEngines();
 		int currentQueueSize = queue.getLength();
-		int neededResources = allocationPolicy.calculateResourceNeeds(numberOfEngines,
-				currentQueueSize);
+		PlannerSnapshot snapshot = new PlannerSnapshot(now, currentQueueSize, numberOfEngines,
+				infraManager.getPendingAges(), infraManager.getRecentFulfillmentLatency(),
+				infraManager.getNumberOfLostResources(),
+				infraManager.getNumberOfFailedDeletions(), infraManager.getLastScaleTime(),
+				timeSeries);
+		int neededResources = allocationPolicy.calculateResourceNeeds(snapshot);
 		LOGGER.info("currentQueueSize=" + currentQueueSize);
 		LOGGER.info("neededResources=" + neededResources);
+		timeSeries.record(now, currentQueueSize, numberOfEngines, pendingEngines,
+				neededResources);
 		infraManager.updateCurrentNeeds(neededResources);
 	}
 
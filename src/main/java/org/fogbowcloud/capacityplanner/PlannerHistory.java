@@ -0,0 +1,63 @@
+package org.fogbowcloud.capacityplanner;
+
+/**
+ * Read-only view of the last samples taken by the capacity planner, one
+ * sample per execution. The samples are indexed from the oldest (0) to the
+ * newest (size - 1).
+ *
+ * The windowed aggregates consider the samples taken in the given window
+ * before the newest sample, which is always included.
+ */
+public interface PlannerHistory {
+
+	public enum Metric {
+		QUEUE_LENGTH, IN_USE, PENDING, DECISION
+	}
+
+	/**
+	 * @return The number of samples kept
+	 */
+	public int size();
+
+	/**
+	 * @return The maximum number of samples kept, the oldest ones are
+	 *         discarded first
+	 */
+	public int getCapacity();
+
+	public long getTimestamp(int index);
+
+	public int getValue(Metric metric, int index);
+
+	/**
+	 * @param window
+	 *            Time before the newest sample in milliseconds
+	 * @throws IllegalStateException
+	 *             If there is no sample
+	 */
+	public int getMin(Metric metric, long window);
+
+	/**
+	 * @param window
+	 *            Time before the newest sample in milliseconds
+	 * @throws IllegalStateException
+	 *             If there is no sample
+	 */
+	public int getMax(Metric metric, long window);
+
+	/**
+	 * @param window
+	 *            Time before the newest sample in milliseconds
+	 * @return The mean of the samples or 0 if there is no sample
+	 */
+	public double getMean(Metric metric, long window);
+
+	/**
+	 * @param window
+	 *            Time before the newest sample in milliseconds
+	 * @return The least squares slope of the samples per minute or 0 if there
+	 *         are less than two samples at different times
+	 */
+	public double getSlope(Metric metric, long window);
+
+}
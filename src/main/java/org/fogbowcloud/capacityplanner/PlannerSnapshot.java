@@ -0,0 +1,150 @@
+package org.fogbowcloud.capacityplanner;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * State of the planner on one execution, given to the allocation policy. It
+ * holds, besides the queue length and the engines in use, the resources
+ * requested but not available yet, so a policy does not request them again
+ * while they boot, and what the infrastructure did recently.
+ *
+ * The snapshot is immutable, except the history, which is the read-only view
+ * of the planner history and does not have the sample of this execution yet.
+ */
+public class PlannerSnapshot {
+
+	private final long time;
+	private final int queueLength;
+	private final int enginesInUse;
+	private final long[] pendingAges;
+	private final long fulfillmentLatency;
+	private final int lostResources;
+	private final int failedDeletions;
+	private final long lastScaleTime;
+	private final PlannerHistory history;
+
+	/**
+	 * Snapshot of the queue length and the engines in use only, as seen by an
+	 * {@link org.fogbowcloud.capacityplanner.resource.AllocationPolicy}.
+	 */
+	public PlannerSnapshot(long time, int queueLength, int enginesInUse) {
+		this(time, queueLength, enginesInUse, null, -1, 0, 0, -1, new PlannerTimeSeries(1));
+	}
+
+	/**
+	 * @param pendingAges
+	 *            The time since each resource not available yet was requested
+	 *            in milliseconds, it may be null if there is none
+	 * @param fulfillmentLatency
+	 *            Mean fulfillment time of the last resources in milliseconds or
+	 *            -1 if unknown
+	 * @param lostResources
+	 *            Number of resources lost since the planner started
+	 * @param failedDeletions
+	 *            Number of deletions failed since the planner started
+	 * @param lastScaleTime
+	 *            Last time resources were allocated or deallocated or -1 if
+	 *            they never were
+	 */
+	public PlannerSnapshot(long time, int queueLength, int enginesInUse, List<Long> pendingAges,
+			long fulfillmentLatency, int lostResources, int failedDeletions, long lastScaleTime,
+			PlannerHistory history) {
+		if (history == null) {
+			throw new IllegalArgumentException("PlannerHistory must not be null.");
+		}
+		this.time = time;
+		this.queueLength = queueLength;
+		this.enginesInUse = enginesInUse;
+		this.pendingAges = new long[pendingAges == null ? 0 : pendingAges.size()];
+		for (int i = 0; i < this.pendingAges.length; i++) {
+			this.pendingAges[i] = pendingAges.get(i);
+		}
+		Arrays.sort(this.pendingAges);
+		this.fulfillmentLatency = fulfillmentLatency;
+		this.lostResources = lostResources;
+		this.failedDeletions = failedDeletions;
+		this.lastScaleTime = lastScaleTime;
+		this.history = history;
+	}
+
+	public long getTime() {
+		return time;
+	}
+
+	public int getQueueLength() {
+		return queueLength;
+	}
+
+	public int getEnginesInUse() {
+		return enginesInUse;
+	}
+
+	/**
+	 * @return The number of resources requested whose engine did not start
+	 *         yet
+	 */
+	public int getPendingEngines() {
+		return pendingAges.length;
+	}
+
+	/**
+	 * @return The number of pending resources requested at least the age ago,
+	 *         in milliseconds
+	 */
+	public int getPendingEngines(long minAge) {
+		int index = Arrays.binarySearch(pendingAges, minAge);
+		if (index < 0) {
+			index = -index - 1;
+		} else {
+			// the first of the equal ages
+			while (index > 0 && pendingAges[index - 1] == minAge) {
+				index--;
+			}
+		}
+		return pendingAges.length - index;
+	}
+
+	/**
+	 * @return The time since each pending resource was requested in
+	 *         milliseconds, the youngest first
+	 */
+	public long[] getPendingAges() {
+		return pendingAges.clone();
+	}
+
+	/**
+	 * @return The mean fulfillment time of the last resources in
+	 *         milliseconds or -1 if unknown
+	 */
+	public long getFulfillmentLatency() {
+		return fulfillmentLatency;
+	}
+
+	public int getLostResources() {
+		return lostResources;
+	}
+
+	public int getFailedDeletions() {
+		return failedDeletions;
+	}
+
+	/**
+	 * @return The time since resources were last allocated or deallocated in
+	 *         milliseconds or -1 if they never were
+	 */
+	public long getTimeSinceLastScaleAction() {
+		return lastScaleTime < 0 ? -1 : Math.max(0, time - lastScaleTime);
+	}
+
+	public PlannerHistory getHistory() {
+		return history;
+	}
+
+	public String toString() {
+		return "queueLength=" + queueLength + " inUse=" + enginesInUse + " pending="
+				+ pendingAges.length + " fulfillmentLatency=" + fulfillmentLatency + "ms lost="
+				+ lostResources + " failedDeletions=" + failedDeletions
+				+ " timeSinceLastScaleAction=" + getTimeSinceLastScaleAction() + "ms";
+	}
+}
@@ -0,0 +1,317 @@
+package org.fogbowcloud.capacityplanner;
+
+import java.util.Properties;
+
+import org.fogbowcloud.PropertiesUtils;
+
+/**
+ * Time series of the samples taken by the capacity planner, kept in fixed
+ * size primitive ring buffers, so recording a sample does not allocate
+ * memory.
+ *
+ * The windowed aggregates do not scan the window: the mean and the slope come
+ * from cumulative sums kept with each sample, and the min and max come from
+ * monotonic queues of the samples that may still be the min or max of a
+ * window. The window start is found by a binary search, so all aggregates take
+ * O(log n) time. The times are kept relative to an origin moved each time the
+ * buffers are filled up, so the cumulative sums do not lose precision as the
+ * planner runs.
+ */
+public class PlannerTimeSeries implements PlannerHistory {
+
+	public static final String CAPACITY_KEY = "planner_history_size";
+
+	public static final int DEFAULT_CAPACITY = 1440; // a day of 1 minute executions
+
+	private static final Metric[] METRICS = Metric.values();
+	private static final double MILLIS_PER_MINUTE = 60 * 1000d;
+
+	private final int capacity;
+	private final long[] timestamps;
+	private final int[][] values;
+
+	// cumulative sums up to each sample, the times are in minutes since origin
+	private final double[] sumT;
+	private final double[] sumTT;
+	private final double[][] sumX;
+	private final double[][] sumTX;
+
+	// cumulative sums up to the sample before the oldest one
+	private double baseT;
+	private double baseTT;
+	private final double[] baseX;
+	private final double[] baseTX;
+
+	private final MonotonicQueue[] minQueues;
+	private final MonotonicQueue[] maxQueues;
+
+	private long origin;
+	private long count = 0;
+
+	public PlannerTimeSeries(Properties properties) {
+		this(PropertiesUtils.getIntProperty(properties, CAPACITY_KEY, DEFAULT_CAPACITY));
+	}
+
+	public PlannerTimeSeries(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Planner history size must be positive.");
+		}
+		this.capacity = capacity;
+		this.timestamps = new long[capacity];
+		this.values = new int[METRICS.length][capacity];
+		this.sumT = new double[capacity];
+		this.sumTT = new double[capacity];
+		this.sumX = new double[METRICS.length][capacity];
+		this.sumTX = new double[METRICS.length][capacity];
+		this.baseX = new double[METRICS.length];
+		this.baseTX = new double[METRICS.length];
+		this.minQueues = new MonotonicQueue[METRICS.length];
+		this.maxQueues = new MonotonicQueue[METRICS.length];
+		for (Metric metric : METRICS) {
+			minQueues[metric.ordinal()] = new MonotonicQueue(values[metric.ordinal()], true);
+			maxQueues[metric.ordinal()] = new MonotonicQueue(values[metric.ordinal()], false);
+		}
+	}
+
+	/**
+	 * Adds a sample, discarding the oldest one if the series is full. A
+	 * timestamp before the newest sample is recorded as the newest timestamp.
+	 */
+	public synchronized void record(long timestamp, int queueLength, int inUse, int pending,
+			int decision) {
+		if (count == 0) {
+			origin = timestamp;
+		} else {
+			timestamp = Math.max(timestamp, timestamps[slot(count - 1)]);
+		}
+		int slot = slot(count);
+		int previousSlot = slot(count - 1);
+		boolean hasPrevious = count > 0;
+		double t = (timestamp - origin) / MILLIS_PER_MINUTE;
+		double previousT = hasPrevious ? sumT[previousSlot] : 0;
+		double previousTT = hasPrevious ? sumTT[previousSlot] : 0;
+		if (count >= capacity) {
+			// the oldest sample is overwritten
+			baseT = sumT[slot];
+			baseTT = sumTT[slot];
+		}
+		timestamps[slot] = timestamp;
+		sumT[slot] = previousT + t;
+		sumTT[slot] = previousTT + t * t;
+
+		values[Metric.QUEUE_LENGTH.ordinal()][slot] = queueLength;
+		values[Metric.IN_USE.ordinal()][slot] = inUse;
+		values[Metric.PENDING.ordinal()][slot] = pending;
+		values[Metric.DECISION.ordinal()][slot] = decision;
+		for (int m = 0; m < METRICS.length; m++) {
+			double previousX = hasPrevious ? sumX[m][previousSlot] : 0;
+			double previousTX = hasPrevious ? sumTX[m][previousSlot] : 0;
+			if (count >= capacity) {
+				baseX[m] = sumX[m][slot];
+				baseTX[m] = sumTX[m][slot];
+			}
+			int x = values[m][slot];
+			sumX[m][slot] = previousX + x;
+			sumTX[m][slot] = previousTX + t * x;
+			minQueues[m].add(count);
+			maxQueues[m].add(count);
+		}
+
+		count++;
+		if (count % capacity == 0) {
+			rebase();
+		}
+	}
+
+	/**
+	 * Moves the origin to the oldest sample and recomputes the cumulative
+	 * sums, once every capacity samples.
+	 */
+	private void rebase() {
+		long oldest = getOldest();
+		origin = timestamps[slot(oldest)];
+		baseT = 0;
+		baseTT = 0;
+		for (int m = 0; m < METRICS.length; m++) {
+			baseX[m] = 0;
+			baseTX[m] = 0;
+		}
+		for (long seq = oldest; seq < count; seq++) {
+			int slot = slot(seq);
+			boolean hasPrevious = seq > oldest;
+			int previousSlot = slot(seq - 1);
+			double t = (timestamps[slot] - origin) / MILLIS_PER_MINUTE;
+			sumT[slot] = (hasPrevious ? sumT[previousSlot] : 0) + t;
+			sumTT[slot] = (hasPrevious ? sumTT[previousSlot] : 0) + t * t;
+			for (int m = 0; m < METRICS.length; m++) {
+				int x = values[m][slot];
+				sumX[m][slot] = (hasPrevious ? sumX[m][previousSlot] : 0) + x;
+				sumTX[m][slot] = (hasPrevious ? sumTX[m][previousSlot] : 0) + t * x;
+			}
+		}
+	}
+
+	private int slot(long seq) {
+		return (int) (((seq % capacity) + capacity) % capacity);
+	}
+
+	/**
+	 * @return The sequence number of the oldest sample kept
+	 */
+	private long getOldest() {
+		return Math.max(0, count - capacity);
+	}
+
+	/**
+	 * @return The sequence number of the oldest sample in the window
+	 */
+	private long getWindowStart(long window) {
+		if (count == 0) {
+			throw new IllegalStateException("There is no sample in the planner history.");
+		}
+		long startTime = timestamps[slot(count - 1)] - window;
+		long low = getOldest();
+		long high = count - 1;
+		while (low < high) {
+			long middle = (low + high) >>> 1;
+			if (timestamps[slot(middle)] < startTime) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	@Override
+	public synchronized int size() {
+		return (int) Math.min(count, capacity);
+	}
+
+	@Override
+	public int getCapacity() {
+		return capacity;
+	}
+
+	@Override
+	public synchronized long getTimestamp(int index) {
+		return timestamps[slot(toSeq(index))];
+	}
+
+	@Override
+	public synchronized int getValue(Metric metric, int index) {
+		return values[metric.ordinal()][slot(toSeq(index))];
+	}
+
+	private long toSeq(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index " + index + " of planner history with "
+					+ size() + " samples.");
+		}
+		return getOldest() + index;
+	}
+
+	@Override
+	public synchronized int getMin(Metric metric, long window) {
+		return minQueues[metric.ordinal()].get(getWindowStart(window));
+	}
+
+	@Override
+	public synchronized int getMax(Metric metric, long window) {
+		return maxQueues[metric.ordinal()].get(getWindowStart(window));
+	}
+
+	@Override
+	public synchronized double getMean(Metric metric, long window) {
+		if (count == 0) {
+			return 0;
+		}
+		long start = getWindowStart(window);
+		int m = metric.ordinal();
+		return sum(sumX[m], baseX[m], start) / (count - start);
+	}
+
+	@Override
+	public synchronized double getSlope(Metric metric, long window) {
+		if (count == 0) {
+			return 0;
+		}
+		long start = getWindowStart(window);
+		if (timestamps[slot(start)] == timestamps[slot(count - 1)]) {
+			return 0;
+		}
+		int m = metric.ordinal();
+		long n = count - start;
+		double t = sum(sumT, baseT, start);
+		double tt = sum(sumTT, baseTT, start);
+		double x = sum(sumX[m], baseX[m], start);
+		double tx = sum(sumTX[m], baseTX[m], start);
+		return (n * tx - t * x) / (n * tt - t * t);
+	}
+
+	/**
+	 * @return The sum from the start sample to the newest one
+	 */
+	private double sum(double[] sums, double base, long start) {
+		double before = start == getOldest() ? base : sums[slot(start - 1)];
+		return sums[slot(count - 1)] - before;
+	}
+
+	/**
+	 * Sequence numbers of the samples that are the min (or max) of some window,
+	 * in increasing order. A sample is dropped once a newer sample is smaller
+	 * (or larger) than it, or when it is discarded from the series.
+	 */
+	private class MonotonicQueue {
+
+		private final int[] metricValues;
+		private final boolean min;
+		private final long[] seqs = new long[capacity];
+		private int head = 0;
+		private int size = 0;
+
+		MonotonicQueue(int[] metricValues, boolean min) {
+			this.metricValues = metricValues;
+			this.min = min;
+		}
+
+		/**
+		 * Adds the sample, whose value was already recorded
+		 */
+		void add(long seq) {
+			long oldest = seq + 1 - capacity;
+			while (size > 0 && seqs[head] < oldest) {
+				head = (head + 1) % capacity;
+				size--;
+			}
+			int value = metricValues[slot(seq)];
+			while (size > 0) {
+				int last = metricValues[slot(seqs[(head + size - 1) % capacity])];
+				if (min ? last < value : last > value) {
+					break;
+				}
+				size--;
+			}
+			seqs[(head + size) % capacity] = seq;
+			size++;
+		}
+
+		/**
+		 * @return The min (or max) value from the start sample to the newest
+		 *         one
+		 */
+		int get(long start) {
+			int low = 0;
+			int high = size - 1;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (seqs[(head + middle) % capacity] < start) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return metricValues[slot(seqs[(head + low) % capacity])];
+		}
+	}
+}
@@ -0,0 +1,44 @@
+package org.fogbowcloud.capacityplanner.resource;
+
+import org.fogbowcloud.capacityplanner.PlannerSnapshot;
+
+/**
+ * Gives to an {@link AllocationPolicy} the engines in use and the queue length
+ * of the snapshot, so the policies written before the snapshot keep working.
+ */
+public class AllocationPolicyAdapter implements SnapshotAllocationPolicy {
+
+	private final AllocationPolicy allocationPolicy;
+
+	public AllocationPolicyAdapter(AllocationPolicy allocationPolicy) {
+		if (allocationPolicy == null) {
+			throw new IllegalArgumentException("AllocationPolicy must not be null.");
+		}
+		this.allocationPolicy = allocationPolicy;
+	}
+
+	/**
+	 * @return The policy itself if it takes snapshots or the adapted policy
+	 * @throws IllegalArgumentException
+	 *             If the object is not an allocation policy
+	 */
+	public static SnapshotAllocationPolicy adapt(Object allocationPolicy) {
+		if (allocationPolicy instanceof SnapshotAllocationPolicy) {
+			return (SnapshotAllocationPolicy) allocationPolicy;
+		}
+		if (allocationPolicy instanceof AllocationPolicy) {
+			return new AllocationPolicyAdapter((AllocationPolicy) allocationPolicy);
+		}
+		throw new IllegalArgumentException(allocationPolicy + " is not an allocation policy.");
+	}
+
+	public AllocationPolicy getAllocationPolicy() {
+		return allocationPolicy;
+	}
+
+	@Override
+	public int calculateResourceNeeds(PlannerSnapshot snapshot) {
+		return allocationPolicy.calculateResourceNeeds(snapshot.getEnginesInUse(),
+				snapshot.getQueueLength());
+	}
+}
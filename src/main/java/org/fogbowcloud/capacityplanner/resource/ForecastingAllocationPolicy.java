@@ -0,0 +1,134 @@
+package org.fogbowcloud.capacityplanner.resource;
+
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+import org.fogbowcloud.PropertiesUtils;
+import org.fogbowcloud.infrastructure.core.Clock;
+import org.fogbowcloud.infrastructure.core.SystemClock;
+
+/**
+ * This class sizes the resources for the queue length expected one boot time
+ * ahead, instead of the current one, so the resources requested during a spike
+ * are available when the queue gets there.
+ *
+ * The queue samples are smoothed with Holt's linear trend method (double
+ * exponential smoothing): the level follows the queue length with factor alpha
+ * and the trend follows the change of the level per minute with factor beta.
+ * The forecast is the level plus the trend times the horizon. The samples may
+ * come at any interval, the trend is scaled by the time between them.
+ *
+ * The resources are sized linearly, as {@link LinearAllocationPolicy}, for the
+ * largest of the current queue length and the forecast, so a falling trend
+ * never releases resources the current queue still needs.
+ */
+public class ForecastingAllocationPolicy implements AllocationPolicy {
+
+	public static final String HORIZON_KEY = "forecast_horizon";
+	public static final String LEVEL_SMOOTHING_KEY = "forecast_level_smoothing";
+	public static final String TREND_SMOOTHING_KEY = "forecast_trend_smoothing";
+
+	public static final int DEFAULT_HORIZON = 5; // in minutes
+	public static final double DEFAULT_LEVEL_SMOOTHING = 0.5;
+	public static final double DEFAULT_TREND_SMOOTHING = 0.3;
+
+	private final LinearAllocationPolicy linearPolicy;
+	private final Clock clock;
+	private final double horizon;
+	private final double alpha;
+	private final double beta;
+
+	private double level;
+	private double trend;
+	private long lastSampleTime;
+	private boolean initialized = false;
+
+	private static final Logger LOGGER = Logger.getLogger(ForecastingAllocationPolicy.class);
+
+	public ForecastingAllocationPolicy(Properties properties) {
+		this(properties, new SystemClock());
+	}
+
+	public ForecastingAllocationPolicy(Properties properties, Clock clock) {
+		this(clock, new LinearAllocationPolicy(properties), PropertiesUtils.getIntProperty(
+				properties, HORIZON_KEY, DEFAULT_HORIZON), PropertiesUtils.getDoubleProperty(
+				properties, LEVEL_SMOOTHING_KEY, DEFAULT_LEVEL_SMOOTHING), PropertiesUtils
+				.getDoubleProperty(properties, TREND_SMOOTHING_KEY, DEFAULT_TREND_SMOOTHING));
+	}
+
+	public ForecastingAllocationPolicy(int jobsPerResource, int horizon, double alpha,
+			double beta) {
+		this(new SystemClock(), new LinearAllocationPolicy(jobsPerResource), horizon, alpha, beta);
+	}
+
+	/**
+	 * @param horizon
+	 *            Time ahead of the forecast in minutes, usually the boot time
+	 *            of a resource
+	 * @param alpha
+	 *            Smoothing factor of the level, in (0, 1]
+	 * @param beta
+	 *            Smoothing factor of the trend, in [0, 1]
+	 */
+	public ForecastingAllocationPolicy(Clock clock, LinearAllocationPolicy linearPolicy,
+			int horizon, double alpha, double beta) {
+		if (horizon < 0) {
+			throw new IllegalArgumentException("Forecast horizon must not be negative.");
+		}
+		if (alpha <= 0 || alpha > 1 || beta < 0 || beta > 1) {
+			throw new IllegalArgumentException(
+					"Forecast smoothing factors must be between 0 and 1.");
+		}
+		LOGGER.debug("horizon=" + horizon + ", alpha=" + alpha + ", beta=" + beta);
+		this.clock = clock;
+		this.linearPolicy = linearPolicy;
+		this.horizon = horizon;
+		this.alpha = alpha;
+		this.beta = beta;
+	}
+
+	@Override
+	public synchronized int calculateResourceNeeds(int numberOfEngines, int currentQueueLength) {
+		addSample(currentQueueLength);
+		int forecastQueueLength = (int) Math.ceil(Math.max(0, getForecast()));
+		int queueLength = Math.max(currentQueueLength, forecastQueueLength);
+		LOGGER.debug("currentQueueLength=" + currentQueueLength + ", level=" + level
+				+ ", trend=" + trend + ", forecastQueueLength=" + forecastQueueLength);
+		return linearPolicy.calculateResourceNeeds(numberOfEngines, queueLength);
+	}
+
+	private void addSample(int queueLength) {
+		long now = clock.currentTimeMillis();
+		if (!initialized) {
+			level = queueLength;
+			trend = 0;
+			lastSampleTime = now;
+			initialized = true;
+			return;
+		}
+		double elapsedMinutes = (now - lastSampleTime) / 60000d;
+		if (elapsedMinutes <= 0) {
+			// a sample at the same time only corrects the level
+			level = alpha * queueLength + (1 - alpha) * level;
+			return;
+		}
+		double previousLevel = level;
+		level = alpha * queueLength + (1 - alpha) * (level + trend * elapsedMinutes);
+		trend = beta * (level - previousLevel) / elapsedMinutes + (1 - beta) * trend;
+		lastSampleTime = now;
+	}
+
+	/**
+	 * @return The queue length expected after the horizon
+	 */
+	public synchronized double getForecast() {
+		return level + trend * horizon;
+	}
+
+	/**
+	 * @return The smoothed change of the queue length per minute
+	 */
+	public synchronized double getTrend() {
+		return trend;
+	}
+}
@@ -0,0 +1,22 @@
+package org.fogbowcloud.capacityplanner.resource;
+
+import org.fogbowcloud.capacityplanner.PlannerSnapshot;
+
+/**
+ * Allocation policy that sees the whole {@link PlannerSnapshot}: the resources
+ * still booting and how long ago they were requested, the recent fulfillment
+ * latency and failures, the queue history and the time since the last scale
+ * action. An {@link AllocationPolicy} is given to the planner through an
+ * {@link AllocationPolicyAdapter}.
+ */
+public interface SnapshotAllocationPolicy {
+
+	/**
+	 * @param snapshot
+	 *            State of the planner on this execution
+	 * @return The number of resources needed, in use or pending, which the
+	 *         infrastructure manager allocates or deallocates to match
+	 */
+	public int calculateResourceNeeds(PlannerSnapshot snapshot);
+
+}
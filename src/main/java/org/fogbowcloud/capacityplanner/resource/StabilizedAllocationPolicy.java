@@ -0,0 +1,139 @@
+package org.fogbowcloud.capacityplanner.resource;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Properties;
+
+import org.apache.log4j.Logger;
+import org.fogbowcloud.PropertiesUtils;
+import org.fogbowcloud.infrastructure.core.Clock;
+import org.fogbowcloud.infrastructure.core.SystemClock;
+
+/**
+ * Stabilizes the resources needed by another allocation policy, so engines
+ * booted for a spike are not deleted right away only to be requested again
+ * on the next spike.
+ *
+ * The resources needed are the maximum recommended by the policy in the
+ * stabilization window, so they grow as soon as the policy recommends more
+ * resources and only shrink once the higher recommendations leave the
+ * window. Besides, the resources needed only grow after the up cooldown since
+ * the last growth and only shrink after the down cooldown since the last
+ * change of any direction.
+ */
+public class StabilizedAllocationPolicy implements AllocationPolicy {
+
+	public static final String WINDOW_KEY = "stabilization_window";
+	public static final String UP_COOLDOWN_KEY = "stabilization_up_cooldown";
+	public static final String DOWN_COOLDOWN_KEY = "stabilization_down_cooldown";
+
+	public static final int DEFAULT_WINDOW = 10; // in minutes
+	public static final int DEFAULT_UP_COOLDOWN = 0; // in minutes
+	public static final int DEFAULT_DOWN_COOLDOWN = 5; // in minutes
+
+	private final AllocationPolicy allocationPolicy;
+	private final Clock clock;
+	private final long window;
+	private final long upCooldown;
+	private final long downCooldown;
+
+	// recommendations that may still be the maximum of the window, in time
+	// order and with decreasing resources
+	private final Deque<Recommendation> recommendations = new ArrayDeque<Recommendation>();
+	private int lastNeededResources = -1;
+	private long lastScaleUp;
+	private long lastScale;
+
+	private static final Logger LOGGER = Logger.getLogger(StabilizedAllocationPolicy.class);
+
+	public StabilizedAllocationPolicy(AllocationPolicy allocationPolicy, Properties properties) {
+		this(allocationPolicy, properties, new SystemClock());
+	}
+
+	public StabilizedAllocationPolicy(AllocationPolicy allocationPolicy, Properties properties,
+			Clock clock) {
+		this(allocationPolicy, clock, PropertiesUtils.getIntProperty(properties, WINDOW_KEY,
+				DEFAULT_WINDOW) * 60 * 1000L, PropertiesUtils.getIntProperty(properties,
+				UP_COOLDOWN_KEY, DEFAULT_UP_COOLDOWN) * 60 * 1000L, PropertiesUtils.getIntProperty(
+				properties, DOWN_COOLDOWN_KEY, DEFAULT_DOWN_COOLDOWN) * 60 * 1000L);
+	}
+
+	/**
+	 * @param window
+	 *            Stabilization window in milliseconds
+	 * @param upCooldown
+	 *            Minimum time between two growths in milliseconds
+	 * @param downCooldown
+	 *            Minimum time from any change to a shrink in milliseconds
+	 */
+	public StabilizedAllocationPolicy(AllocationPolicy allocationPolicy, Clock clock,
+			long window, long upCooldown, long downCooldown) {
+		if (allocationPolicy == null) {
+			throw new IllegalArgumentException("AllocationPolicy must not be null.");
+		}
+		if (window < 0 || upCooldown < 0 || downCooldown < 0) {
+			throw new IllegalArgumentException(
+					"Stabilization window and cooldowns must not be negative.");
+		}
+		LOGGER.debug("window=" + window + "ms, upCooldown=" + upCooldown + "ms, downCooldown="
+				+ downCooldown + "ms");
+		this.allocationPolicy = allocationPolicy;
+		this.clock = clock;
+		this.window = window;
+		this.upCooldown = upCooldown;
+		this.downCooldown = downCooldown;
+	}
+
+	@Override
+	public synchronized int calculateResourceNeeds(int numberOfEngines, int currentQueueLength) {
+		int recommendedResources = allocationPolicy.calculateResourceNeeds(numberOfEngines,
+				currentQueueLength);
+		long now = clock.currentTimeMillis();
+		while (!recommendations.isEmpty()
+				&& recommendations.peekLast().resources <= recommendedResources) {
+			recommendations.pollLast();
+		}
+		recommendations.addLast(new Recommendation(now, recommendedResources));
+		while (recommendations.peekFirst().time < now - window) {
+			recommendations.pollFirst();
+		}
+		int stabilizedResources = recommendations.peekFirst().resources;
+
+		if (lastNeededResources < 0) {
+			lastScaleUp = now;
+			lastScale = now;
+		} else if (stabilizedResources > lastNeededResources) {
+			if (now - lastScaleUp < upCooldown) {
+				LOGGER.debug("Keeping " + lastNeededResources + " resources instead of "
+						+ stabilizedResources + " during the up cooldown.");
+				return lastNeededResources;
+			}
+			lastScaleUp = now;
+			lastScale = now;
+		} else if (stabilizedResources < lastNeededResources) {
+			if (now - lastScale < downCooldown) {
+				LOGGER.debug("Keeping " + lastNeededResources + " resources instead of "
+						+ stabilizedResources + " during the down cooldown.");
+				return lastNeededResources;
+			}
+			lastScale = now;
+		}
+		if (stabilizedResources != recommendedResources) {
+			LOGGER.debug("Stabilized " + recommendedResources + " recommended resources to "
+					+ stabilizedResources + ".");
+		}
+		lastNeededResources = stabilizedResources;
+		return stabilizedResources;
+	}
+
+	private static class Recommendation {
+
+		final long time;
+		final int resources;
+
+		Recommendation(long time, int resources) {
+			this.time = time;
+			this.resources = resources;
+		}
+	}
+}
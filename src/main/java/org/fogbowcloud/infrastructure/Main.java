@@ -37,7 +37,7 @@ public class Main {
 		JCommander jc = new JCommander();
 
 		// TODO Allow user to specify the infrastructure that will be used (not only fogbow)
-		InfrastructureProvider infrastructure;
+		InfrastructureProvider infrastructure = null;
 		Properties properties = new Properties();
 
 		CreateResourceCommand createResource = new CreateResourceCommand();
@@ -85,6 +85,8 @@ public class Main {
 				}
 			} catch (InfrastructureException | IOException e) {
 				System.out.println(e.getMessage());
+			} finally {
+				shutdown(infrastructure);
 			}
 		} else if (parsedCommand.equals("get-resource-info")) {
 			try {
@@ -94,6 +96,8 @@ public class Main {
 				System.out.println(infrastructure.getResourceInfo(getResourceInfo.resourceId));
 			} catch (InfrastructureException e) {			
 				System.out.println(e.getMessage());	
+			} finally {
+				shutdown(infrastructure);
 			}
 		} else if (parsedCommand.equals("delete")){
 			try {
@@ -104,10 +108,22 @@ public class Main {
 				System.out.println("OK");
 			} catch (InfrastructureException e) {
 				System.out.println(e.getMessage());	
+			} finally {
+				shutdown(infrastructure);
 			}
 		}
 	}
 	
+	/**
+	 * Releases the pooled connections and threads of the provider, which
+	 * would keep the command running otherwise.
+	 */
+	private static void shutdown(InfrastructureProvider infrastructure) {
+		if (infrastructure instanceof FogbowInfrastructureProvider) {
+			((FogbowInfrastructureProvider) infrastructure).shutdown();
+		}
+	}
+
 	private static String getFileContent(String path) throws IOException {		
 		FileReader reader = new FileReader(path);
 		BufferedReader leitor = new BufferedReader(reader);
@@ -0,0 +1,25 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * Asynchronous companion of {@link InfrastructureProvider}. Each operation
+ * returns immediately with a {@link Future}; when the future fails, the cause
+ * of the {@link java.util.concurrent.ExecutionException} is the
+ * {@link InfrastructureException} thrown by the operation. The callback may be
+ * null.
+ */
+public interface AsyncInfrastructureProvider {
+
+	public Future<List<String>> createResourceAsync(int numberOfInstances,
+			Map<String, String> properties, InfrastructureCallback<List<String>> callback);
+
+	public Future<Map<String, String>> getResourceInfoAsync(String resourceId,
+			InfrastructureCallback<Map<String, String>> callback);
+
+	public Future<Void> deleteResourceAsync(String resourceId,
+			InfrastructureCallback<Void> callback);
+
+}
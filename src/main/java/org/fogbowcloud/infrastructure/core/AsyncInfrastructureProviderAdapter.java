@@ -0,0 +1,113 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Exposes any {@link InfrastructureProvider} through the
+ * {@link AsyncInfrastructureProvider} interface by running its blocking
+ * operations on the given executor. It is not non-blocking I/O: each operation
+ * holds an executor thread until the provider returns, so at most as many
+ * operations as executor threads are in flight and the others wait in the
+ * executor queue.
+ */
+public class AsyncInfrastructureProviderAdapter implements AsyncInfrastructureProvider {
+
+	private final InfrastructureProvider infraProvider;
+	private final ExecutorService executor;
+
+	private static final Logger LOGGER = Logger.getLogger(AsyncInfrastructureProviderAdapter.class);
+
+	public AsyncInfrastructureProviderAdapter(InfrastructureProvider infraProvider,
+			ExecutorService executor) {
+		if (infraProvider == null) {
+			throw new IllegalArgumentException("InfrastructureProvider must not be null.");
+		}
+		if (executor == null) {
+			throw new IllegalArgumentException("Executor must not be null.");
+		}
+		this.infraProvider = infraProvider;
+		this.executor = executor;
+	}
+
+	@Override
+	public Future<List<String>> createResourceAsync(final int numberOfInstances,
+			final Map<String, String> properties, InfrastructureCallback<List<String>> callback) {
+		return submit(new InfrastructureOperation<List<String>>() {
+			@Override
+			public List<String> execute() throws InfrastructureException {
+				return infraProvider.createResource(numberOfInstances, properties);
+			}
+		}, callback);
+	}
+
+	@Override
+	public Future<Map<String, String>> getResourceInfoAsync(final String resourceId,
+			InfrastructureCallback<Map<String, String>> callback) {
+		return submit(new InfrastructureOperation<Map<String, String>>() {
+			@Override
+			public Map<String, String> execute() throws InfrastructureException {
+				return infraProvider.getResourceInfo(resourceId);
+			}
+		}, callback);
+	}
+
+	@Override
+	public Future<Void> deleteResourceAsync(final String resourceId,
+			InfrastructureCallback<Void> callback) {
+		return submit(new InfrastructureOperation<Void>() {
+			@Override
+			public Void execute() throws InfrastructureException {
+				infraProvider.deleteResource(resourceId);
+				return null;
+			}
+		}, callback);
+	}
+
+	private <T> Future<T> submit(final InfrastructureOperation<T> operation,
+			final InfrastructureCallback<T> callback) {
+		return executor.submit(new Callable<T>() {
+			@Override
+			public T call() throws InfrastructureException {
+				T result;
+				try {
+					result = operation.execute();
+				} catch (InfrastructureException e) {
+					notifyFailure(callback, e);
+					throw e;
+				} catch (RuntimeException e) {
+					notifyFailure(callback, new InfrastructureException(e.getMessage()));
+					throw e;
+				}
+				if (callback != null) {
+					try {
+						callback.completed(result);
+					} catch (Throwable e) {
+						LOGGER.error("Exception while notifying callback.", e);
+					}
+				}
+				return result;
+			}
+		});
+	}
+
+	private static <T> void notifyFailure(InfrastructureCallback<T> callback,
+			InfrastructureException exception) {
+		if (callback != null) {
+			try {
+				callback.failed(exception);
+			} catch (Throwable e) {
+				LOGGER.error("Exception while notifying callback.", e);
+			}
+		}
+	}
+
+	private interface InfrastructureOperation<T> {
+		public T execute() throws InfrastructureException;
+	}
+}
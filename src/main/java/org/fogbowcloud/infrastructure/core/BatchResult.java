@@ -0,0 +1,45 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of an operation on several resources at once, reporting which
+ * resources succeeded and why the other ones failed.
+ */
+public class BatchResult {
+
+	private final List<String> succeeded = new ArrayList<String>();
+	private final Map<String, InfrastructureException> failed = new LinkedHashMap<String, InfrastructureException>();
+
+	public synchronized void addSucceeded(String resourceId) {
+		succeeded.add(resourceId);
+	}
+
+	public synchronized void addFailed(String resourceId, InfrastructureException exception) {
+		failed.put(resourceId, exception);
+	}
+
+	public synchronized List<String> getSucceeded() {
+		return Collections.unmodifiableList(new ArrayList<String>(succeeded));
+	}
+
+	/**
+	 * @return Map from resource id to the exception that made it fail
+	 */
+	public synchronized Map<String, InfrastructureException> getFailed() {
+		return Collections.unmodifiableMap(new LinkedHashMap<String, InfrastructureException>(
+				failed));
+	}
+
+	public synchronized boolean isSuccessful() {
+		return failed.isEmpty();
+	}
+
+	public synchronized String toString() {
+		return "succeeded=" + succeeded + ", failed=" + failed.keySet();
+	}
+}
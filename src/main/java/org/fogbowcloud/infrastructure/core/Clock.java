@@ -0,0 +1,14 @@
+package org.fogbowcloud.infrastructure.core;
+
+/**
+ * Source of the current time, so the time can be controlled in tests and
+ * simulations.
+ */
+public interface Clock {
+
+	/**
+	 * @return The current time in milliseconds
+	 */
+	public long currentTimeMillis();
+
+}
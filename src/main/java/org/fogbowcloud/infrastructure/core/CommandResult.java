@@ -1,5 +1,7 @@
 package org.fogbowcloud.infrastructure.core;
 
+import java.nio.charset.Charset;
+
 /**
  * This class represents an command result executed inside some resource.
  * 
@@ -8,30 +10,81 @@ package org.fogbowcloud.infrastructure.core;
  */
 public class CommandResult {
 
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
 	private int exitStatus;
 	private String output;
 	private String errorMessage;
+	private long outputBytes;
+	private long errorBytes;
+	private boolean outputTruncated;
+	private boolean errorTruncated;
 
 	public CommandResult(int exitStatus, String output, String errorMessage) {
+		this(exitStatus, output, errorMessage, getByteCount(output), getByteCount(errorMessage),
+				false, false);
+	}
+
+	/**
+	 * @param outputBytes
+	 *            Number of bytes written by the command to stdout, including
+	 *            the ones not kept in the output
+	 * @param outputTruncated
+	 *            Whether the output keeps only the last bytes of stdout
+	 */
+	public CommandResult(int exitStatus, String output, String errorMessage, long outputBytes,
+			long errorBytes, boolean outputTruncated, boolean errorTruncated) {
 		this.exitStatus = exitStatus;
 		this.output = output;
 		this.errorMessage = errorMessage;
+		this.outputBytes = outputBytes;
+		this.errorBytes = errorBytes;
+		this.outputTruncated = outputTruncated;
+		this.errorTruncated = errorTruncated;
+	}
+
+	private static long getByteCount(String text) {
+		return text == null ? 0 : text.getBytes(UTF_8).length;
 	}
 
 	public int getExitStatus() {
 		return exitStatus;
 	}
 
+	/**
+	 * @return The output or null if it was streamed to a sink
+	 */
 	public String getOutput() {
 		return output;
 	}
 
+	/**
+	 * @return The error message or null if it was streamed to a sink
+	 */
 	public String getErrorMessage() {
 		return errorMessage;
 	}
 
+	public long getOutputBytes() {
+		return outputBytes;
+	}
+
+	public long getErrorBytes() {
+		return errorBytes;
+	}
+
+	public boolean isOutputTruncated() {
+		return outputTruncated;
+	}
+
+	public boolean isErrorTruncated() {
+		return errorTruncated;
+	}
+
 	public String toString() {
 		return "exitStatus=" + exitStatus + ";\noutput=" + output + ";\nerrorMessage="
-				+ errorMessage;
+				+ errorMessage + ";\noutputBytes=" + outputBytes
+				+ (outputTruncated ? " (truncated)" : "") + ";\nerrorBytes=" + errorBytes
+				+ (errorTruncated ? " (truncated)" : "");
 	}
 }
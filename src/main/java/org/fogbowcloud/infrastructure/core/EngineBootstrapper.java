@@ -0,0 +1,273 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import org.fogbowcloud.PropertiesUtils;
+
+/**
+ * Bootstraps the e-Science Central engine of a new resource in stages, the
+ * same steps done by the prepEngine.sh script of the engine image:
+ * <ol>
+ * <li>check-server: checks the server and JMS ports are reachable from the
+ * resource</li>
+ * <li>configure: stops the engine and sets the server address and JMS port in
+ * engine.xml</li>
+ * <li>start: enables and starts the eSC-engine service</li>
+ * <li>verify: checks the engine is running and connected to the JMS server, so
+ * it can take jobs</li>
+ * </ol>
+ * The first two stages are skipped if the server URL is not configured. Each
+ * stage runs with a timeout on the resource and is retried if it fails. The
+ * bootstrap of several resources may run at the same time.
+ */
+public class EngineBootstrapper {
+
+	public static final String SERVER_URL_KEY = "engine_server_url";
+	public static final String JMS_PORT_KEY = "engine_jms_port";
+	public static final String ENGINE_XML_KEY = "engine_xml_path";
+	public static final String STAGE_TIMEOUT_KEY = "engine_stage_timeout";
+	public static final String STAGE_RETRIES_KEY = "engine_stage_retries";
+	public static final String VERIFY_RETRIES_KEY = "engine_verify_retries";
+	public static final String RETRY_DELAY_KEY = "engine_retry_delay";
+	public static final String VERIFY_COMMAND_KEY = "engine_verify_command";
+
+	public static final int DEFAULT_JMS_PORT = 61616;
+	public static final String DEFAULT_ENGINE_XML = "/usr/local/eSC-engine/etc/engine.xml";
+	public static final int DEFAULT_STAGE_TIMEOUT = 60; // in seconds
+	public static final int DEFAULT_STAGE_RETRIES = 2;
+	public static final int DEFAULT_VERIFY_RETRIES = 6;
+	public static final int DEFAULT_RETRY_DELAY = 5; // in seconds
+
+	private static final String PORT_CHECK_TIMEOUT = "3"; // in seconds
+	private static final String ENGINE_SERVICE = "eSC-engine";
+	private static final String SYSTEM_PROPERTIES_XPATH = "/PipelineDocument/Data/Parameter[@Name=\"Properties\"]"
+			+ "/Parameter[@Name=\"SystemProperties\"]";
+
+	private final List<Stage> stages;
+	private final long retryDelay;
+	private final Clock clock;
+
+	private final Map<String, AtomicLong> stageExecutions = new ConcurrentHashMap<String, AtomicLong>();
+	private final Map<String, AtomicLong> stageTotalTimes = new ConcurrentHashMap<String, AtomicLong>();
+
+	private static final Logger LOGGER = Logger.getLogger(EngineBootstrapper.class);
+
+	public EngineBootstrapper(Properties properties) {
+		this(properties, new SystemClock());
+	}
+
+	public EngineBootstrapper(Properties properties, Clock clock) {
+		this.clock = clock;
+		this.retryDelay = PropertiesUtils.getNonNegativeIntProperty(properties, RETRY_DELAY_KEY,
+				DEFAULT_RETRY_DELAY) * 1000L;
+		int stageTimeout = PropertiesUtils.getNonNegativeIntProperty(properties,
+				STAGE_TIMEOUT_KEY, DEFAULT_STAGE_TIMEOUT);
+		int stageRetries = PropertiesUtils.getNonNegativeIntProperty(properties,
+				STAGE_RETRIES_KEY, DEFAULT_STAGE_RETRIES);
+		int jmsPort = PropertiesUtils.getNonNegativeIntProperty(properties, JMS_PORT_KEY,
+				DEFAULT_JMS_PORT);
+		String engineXml = properties.getProperty(ENGINE_XML_KEY, DEFAULT_ENGINE_XML);
+		String serverUrl = properties.getProperty(SERVER_URL_KEY);
+
+		List<Stage> stages = new ArrayList<Stage>();
+		if (serverUrl != null && !serverUrl.trim().isEmpty()) {
+			URI serverUri = parseServerUrl(serverUrl.trim());
+			stages.add(new Stage("check-server", createCheckServerCommand(serverUri, jmsPort),
+					stageTimeout, stageRetries));
+			stages.add(new Stage("configure", createConfigureCommand(serverUrl.trim(),
+					serverUri.getHost(), jmsPort, engineXml), stageTimeout, stageRetries));
+		}
+		stages.add(new Stage("start", "update-rc.d " + ENGINE_SERVICE + " enable && service "
+				+ ENGINE_SERVICE + " restart", stageTimeout, stageRetries));
+		String verifyCommand = properties.getProperty(VERIFY_COMMAND_KEY);
+		if (verifyCommand == null || verifyCommand.trim().isEmpty()) {
+			// the engine keeps a connection to the JMS server once registered
+			verifyCommand = "service " + ENGINE_SERVICE + " status && netstat -tn | grep ':"
+					+ jmsPort + " ' | grep -q ESTABLISHED";
+		}
+		stages.add(new Stage("verify", verifyCommand, stageTimeout, PropertiesUtils
+				.getNonNegativeIntProperty(properties, VERIFY_RETRIES_KEY, DEFAULT_VERIFY_RETRIES)));
+		this.stages = Collections.unmodifiableList(stages);
+	}
+
+	private static URI parseServerUrl(String serverUrl) {
+		try {
+			URI serverUri = new URI(serverUrl);
+			if (serverUri.getHost() == null) {
+				throw new URISyntaxException(serverUrl, "There is no server address");
+			}
+			if (serverUri.getPort() == -1 && !"http".equals(serverUri.getScheme())
+					&& !"https".equals(serverUri.getScheme())) {
+				throw new URISyntaxException(serverUrl, "Unsupported protocol");
+			}
+			return serverUri;
+		} catch (URISyntaxException e) {
+			throw new IllegalArgumentException("The property " + SERVER_URL_KEY
+					+ " is not a valid server URL: " + e.getMessage());
+		}
+	}
+
+	private static String createCheckServerCommand(URI serverUri, int jmsPort) {
+		int serverPort = serverUri.getPort();
+		if (serverPort == -1) {
+			serverPort = "https".equals(serverUri.getScheme()) ? 443 : 80;
+		}
+		String host = quote(serverUri.getHost());
+		return "nc -z -w " + PORT_CHECK_TIMEOUT + " " + host + " " + serverPort + " && nc -z -w "
+				+ PORT_CHECK_TIMEOUT + " " + host + " " + jmsPort;
+	}
+
+	private static String createConfigureCommand(String serverUrl, String serverAddress,
+			int jmsPort, String engineXml) {
+		StringBuilder command = new StringBuilder("service " + ENGINE_SERVICE
+				+ " stop; xmlstarlet ed -L");
+		appendUpdate(command, "Engine", "ServerBaseURL", serverUrl);
+		appendUpdate(command, "Performance", "JMSServerHost", serverAddress);
+		appendUpdate(command, "JMS", "JMSServer", serverAddress);
+		appendUpdate(command, "Provenance", "JMSServerHost", serverAddress);
+		appendUpdate(command, "Performance", "JMSServerPort", String.valueOf(jmsPort));
+		appendUpdate(command, "JMS", "JMSPort", String.valueOf(jmsPort));
+		appendUpdate(command, "Provenance", "JMSServerPort", String.valueOf(jmsPort));
+		return command.append(" ").append(quote(engineXml)).toString();
+	}
+
+	private static void appendUpdate(StringBuilder command, String section, String parameter,
+			String value) {
+		command.append(" -u ").append(
+				quote(SYSTEM_PROPERTIES_XPATH + "/Parameter[@Name=\"" + section
+						+ "\"]/Parameter[@Name=\"" + parameter + "\"]/@Value"));
+		command.append(" -v ").append(quote(value));
+	}
+
+	/**
+	 * @return The text quoted to be a single shell word
+	 */
+	static String quote(String text) {
+		return "'" + text.replace("'", "'\\''") + "'";
+	}
+
+	/**
+	 * Runs all stages on the resource, stopping at the first stage that fails
+	 * after its retries.
+	 *
+	 * @return The result of the last stage executed or null if the resource
+	 *         could not be reached
+	 */
+	public CommandResult bootstrap(InfrastructureProvider infraProvider, String resourceId,
+			Map<String, String> resourceInfo, Map<String, String> credentials)
+			throws InfrastructureException, InterruptedException {
+		CommandResult result = null;
+		StringBuilder timings = new StringBuilder();
+		for (Stage stage : stages) {
+			long startTime = clock.currentTimeMillis();
+			result = execute(infraProvider, resourceId, resourceInfo, credentials, stage);
+			long duration = clock.currentTimeMillis() - startTime;
+			record(stage, duration);
+			timings.append(" ").append(stage.name).append("=").append(duration).append("ms");
+			if (result == null || result.getExitStatus() != 0) {
+				LOGGER.warn("Bootstrap of resourceId=" + resourceId + " failed at stage "
+						+ stage.name + " (" + timings.toString().trim() + "): " + result);
+				return result;
+			}
+		}
+		LOGGER.info("Bootstrap of resourceId=" + resourceId + " completed ("
+				+ timings.toString().trim() + ").");
+		return result;
+	}
+
+	private CommandResult execute(InfrastructureProvider infraProvider, String resourceId,
+			Map<String, String> resourceInfo, Map<String, String> credentials, Stage stage)
+			throws InfrastructureException, InterruptedException {
+		// the timeout is enforced on the resource, so the command is killed
+		String command = "timeout " + stage.timeout + " sh -c " + quote(stage.command);
+		CommandResult result = null;
+		for (int attempt = 0; attempt <= stage.retries; attempt++) {
+			if (attempt > 0) {
+				LOGGER.debug("Retrying stage " + stage.name + " on resourceId=" + resourceId
+						+ " (attempt " + (attempt + 1) + "): " + result);
+				Thread.sleep(retryDelay);
+			}
+			result = infraProvider.executeCommand(resourceInfo, credentials, command);
+			if (result != null && result.getExitStatus() == 0) {
+				return result;
+			}
+		}
+		return result;
+	}
+
+	private void record(Stage stage, long duration) {
+		stageExecutions.get(stage.name).incrementAndGet();
+		stageTotalTimes.get(stage.name).addAndGet(duration);
+	}
+
+	/**
+	 * @return The names of the stages in the order they run
+	 */
+	public List<String> getStageNames() {
+		List<String> stageNames = new ArrayList<String>();
+		for (Stage stage : stages) {
+			stageNames.add(stage.name);
+		}
+		return stageNames;
+	}
+
+	/**
+	 * @return The command run by the stage or null if there is no such stage
+	 */
+	public String getStageCommand(String stageName) {
+		for (Stage stage : stages) {
+			if (stage.name.equals(stageName)) {
+				return stage.command;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return The mean time spent on the stage in milliseconds, including its
+	 *         retries
+	 */
+	public long getMeanStageTime(String stageName) {
+		AtomicLong executions = stageExecutions.get(stageName);
+		if (executions == null || executions.get() == 0) {
+			return 0;
+		}
+		return stageTotalTimes.get(stageName).get() / executions.get();
+	}
+
+	public String toString() {
+		StringBuilder statistics = new StringBuilder();
+		for (Stage stage : stages) {
+			statistics.append(stage.name).append("=").append(getMeanStageTime(stage.name))
+					.append("ms (").append(stageExecutions.get(stage.name)).append(" runs) ");
+		}
+		return statistics.toString().trim();
+	}
+
+	private class Stage {
+
+		final String name;
+		final String command;
+		final int timeout;
+		final int retries;
+
+		Stage(String name, String command, int timeout, int retries) {
+			this.name = name;
+			this.command = command;
+			this.timeout = timeout;
+			this.retries = retries;
+			stageExecutions.put(name, new AtomicLong());
+			stageTotalTimes.put(name, new AtomicLong());
+		}
+	}
+}
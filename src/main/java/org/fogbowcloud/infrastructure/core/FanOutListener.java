@@ -0,0 +1,17 @@
+package org.fogbowcloud.infrastructure.core;
+
+/**
+ * Receives the result of each host of a fan-out as soon as it completes. The
+ * listener is invoked by the thread that started the fan-out.
+ */
+public interface FanOutListener {
+
+	/**
+	 * @param completed
+	 *            Number of hosts completed so far, including this one
+	 * @param total
+	 *            Number of hosts of the fan-out
+	 */
+	public void resultAvailable(FanOutResult result, int completed, int total);
+
+}
@@ -0,0 +1,64 @@
+package org.fogbowcloud.infrastructure.core;
+
+/**
+ * Result of a command executed on one host of a fan-out.
+ */
+public class FanOutResult {
+
+	public enum Status {
+		// exit status 0
+		SUCCEEDED,
+		// exit status other than 0
+		FAILED,
+		// the command could not be executed on the host
+		UNREACHABLE,
+		// the command did not complete before the per-host timeout
+		TIMED_OUT
+	}
+
+	private final String resourceId;
+	private final Status status;
+	private final CommandResult commandResult;
+	private final long duration;
+
+	public FanOutResult(String resourceId, CommandResult commandResult, long duration) {
+		this(resourceId, commandResult == null ? Status.UNREACHABLE
+				: (commandResult.getExitStatus() == 0 ? Status.SUCCEEDED : Status.FAILED),
+				commandResult, duration);
+	}
+
+	public FanOutResult(String resourceId, Status status, CommandResult commandResult,
+			long duration) {
+		this.resourceId = resourceId;
+		this.status = status;
+		this.commandResult = commandResult;
+		this.duration = duration;
+	}
+
+	public String getResourceId() {
+		return resourceId;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return The command result or null if the command did not complete
+	 */
+	public CommandResult getCommandResult() {
+		return commandResult;
+	}
+
+	/**
+	 * @return Time spent on the host in milliseconds
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	public String toString() {
+		return "resourceId=" + resourceId + ", status=" + status + ", duration=" + duration
+				+ "ms";
+	}
+}
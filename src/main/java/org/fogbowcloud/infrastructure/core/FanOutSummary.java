@@ -0,0 +1,69 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fogbowcloud.infrastructure.core.FanOutResult.Status;
+
+/**
+ * Aggregate of the results of a fan-out, in the order the hosts completed.
+ */
+public class FanOutSummary {
+
+	private final List<FanOutResult> results = new ArrayList<FanOutResult>();
+	private final Map<Status, Integer> counts = new EnumMap<Status, Integer>(Status.class);
+	private long elapsedTime;
+
+	public FanOutSummary() {
+		for (Status status : Status.values()) {
+			counts.put(status, 0);
+		}
+	}
+
+	void add(FanOutResult result) {
+		results.add(result);
+		counts.put(result.getStatus(), counts.get(result.getStatus()) + 1);
+	}
+
+	void setElapsedTime(long elapsedTime) {
+		this.elapsedTime = elapsedTime;
+	}
+
+	public int getTotal() {
+		return results.size();
+	}
+
+	public int count(Status status) {
+		return counts.get(status);
+	}
+
+	public List<FanOutResult> getResults() {
+		return Collections.unmodifiableList(results);
+	}
+
+	public List<FanOutResult> getResults(Status status) {
+		List<FanOutResult> statusResults = new ArrayList<FanOutResult>();
+		for (FanOutResult result : results) {
+			if (result.getStatus() == status) {
+				statusResults.add(result);
+			}
+		}
+		return statusResults;
+	}
+
+	/**
+	 * @return Time spent on the whole fan-out in milliseconds
+	 */
+	public long getElapsedTime() {
+		return elapsedTime;
+	}
+
+	public String toString() {
+		return "total=" + getTotal() + ", succeeded=" + count(Status.SUCCEEDED) + ", failed="
+				+ count(Status.FAILED) + ", unreachable=" + count(Status.UNREACHABLE)
+				+ ", timedOut=" + count(Status.TIMED_OUT) + ", elapsedTime=" + elapsedTime + "ms";
+	}
+}
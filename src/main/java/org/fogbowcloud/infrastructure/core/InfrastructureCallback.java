@@ -0,0 +1,16 @@
+package org.fogbowcloud.infrastructure.core;
+
+/**
+ * Receives the outcome of an asynchronous infrastructure operation. The
+ * callback is invoked by the thread that executed the operation.
+ * 
+ * @param <T>
+ *            Type of the operation result
+ */
+public interface InfrastructureCallback<T> {
+
+	public void completed(T result);
+
+	public void failed(InfrastructureException exception);
+
+}
@@ -1,27 +1,57 @@
 package org.fogbowcloud.infrastructure.core;
 
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
 
 public class InfrastructureManager {
 
 	public static final int DEFAULT_MONITORING_INTERVAL = 1;
-	public static final String START_ENGINE_COMMAND = "ls -lh"; //TODO update the command here
+	public static final int DEFAULT_MONITORING_PARALLELISM = 10;
+	public static final int RECENT_LATENCIES = 10;
 	private InfrastructureProvider infraProvider;
-	private List<String> resourcesNotAvailable = new ArrayList<String>();
-	private List<String> resourcesInUse = new ArrayList<String>();
+	private final ResourceRegistry resourceRegistry;
+	private final Clock clock;
 	private ScheduledFuture<?> monitoringHandle;
+	private boolean autoMonitoring = true;
 	private Map<String, String> instanceProperties;
 	private Map<String, String> instanceCredentials;
 	private int monitoringInterval;
+	private int monitoringParallelism = DEFAULT_MONITORING_PARALLELISM;
+	private ExecutorService monitoringExecutor;
+	private Executor bootstrapExecutor;
+	private final Set<String> bootstrapsInFlight = Collections
+			.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private MonitoringScheduler monitoringScheduler;
+	private WarmPool warmPool;
+	private ReachabilityProber reachabilityProber;
+	private EngineBootstrapper engineBootstrapper = new EngineBootstrapper(new Properties());
+	private SSHFanOutExecutor fanOutExecutor = new SSHFanOutExecutor(
+			SSHFanOutExecutor.DEFAULT_PARALLELISM, SSHFanOutExecutor.DEFAULT_TIMEOUT * 1000L);
+	private final RecentLatencies fulfillmentLatencies = new RecentLatencies(RECENT_LATENCIES);
+	private final RecentLatencies reachableLatencies = new RecentLatencies(RECENT_LATENCIES);
+	private final AtomicInteger lostResources = new AtomicInteger();
+	private final AtomicInteger failedDeletions = new AtomicInteger();
+	private volatile long lastScaleTime = -1;
 
 	private static final Logger LOGGER = Logger.getLogger(InfrastructureManager.class);
 
@@ -31,26 +61,53 @@ public class InfrastructureManager {
 
 	public InfrastructureManager(Map<String, String> instanceProperties,
 			Map<String, String> instanceCredentials, int monitoringInterval) {
+		this(instanceProperties, instanceCredentials, monitoringInterval, new SystemClock());
+	}
+
+	/**
+	 * @param clock
+	 *            Source of the time of the resource states and the monitoring,
+	 *            a virtual clock in simulations
+	 */
+	public InfrastructureManager(Map<String, String> instanceProperties,
+			Map<String, String> instanceCredentials, int monitoringInterval, Clock clock) {
 		setInstanceProperties(instanceProperties);
 		setInstanceCredentials(instanceCredentials);
 		setMonitoringInterval(monitoringInterval);
+		this.clock = clock;
+		this.resourceRegistry = new ResourceRegistry(clock);
+		this.monitoringScheduler = new MonitoringScheduler(clock,
+				MonitoringScheduler.DEFAULT_TICK_INTERVAL * 1000L,
+				MonitoringScheduler.DEFAULT_PENDING_INTERVAL * 1000L,
+				MonitoringScheduler.DEFAULT_PENDING_MAX_INTERVAL * 1000L,
+				monitoringInterval * 60 * 1000L, MonitoringScheduler.DEFAULT_MAX_POLLS_PER_SECOND);
 	}
 	
 
 	protected void setResourcesNotAvailable(List<String> resourcesNotAvailable) {
-		this.resourcesNotAvailable = resourcesNotAvailable;
+		resourceRegistry.replace(ResourceState.NOT_AVAILABLE, resourcesNotAvailable);
 	}
 
 	protected void setResourcesInUse(List<String> resourcesInUse) {
-		this.resourcesInUse = resourcesInUse;
+		resourceRegistry.replace(Collections.singleton(ResourceState.IN_USE), resourcesInUse);
 	}
 
+	/**
+	 * @return Snapshot of the resources not available yet
+	 */
 	public List<String> getResourcesNotAvailable() {
-		return resourcesNotAvailable;
+		return resourceRegistry.getResources(ResourceState.NOT_AVAILABLE);
 	}
 
+	/**
+	 * @return Snapshot of the resources in use
+	 */
 	public List<String> getResourcesInUse() {
-		return resourcesInUse;
+		return resourceRegistry.getResources(ResourceState.IN_USE);
+	}
+
+	public ResourceRegistry getResourceRegistry() {
+		return resourceRegistry;
 	}
 
 	public void setInstanceCredentials(Map<String, String> instanceCredentials) {
@@ -74,6 +131,91 @@ public class InfrastructureManager {
 		this.monitoringInterval = monitoringInterval;
 	}
 
+	/**
+	 * Sets the maximum number of resources bootstrapped at the same time by a
+	 * monitoring sweep.
+	 */
+	public synchronized void setMonitoringParallelism(int monitoringParallelism) {
+		if (monitoringParallelism <= 0) {
+			throw new IllegalArgumentException("Monitoring parallelism must be a positive integer.");
+		}
+		this.monitoringParallelism = monitoringParallelism;
+		if (monitoringExecutor != null) {
+			monitoringExecutor.shutdown();
+			monitoringExecutor = null;
+		}
+	}
+
+	private synchronized Executor getBootstrapExecutor() {
+		if (bootstrapExecutor != null) {
+			return bootstrapExecutor;
+		}
+		if (monitoringExecutor == null) {
+			monitoringExecutor = Executors.newFixedThreadPool(monitoringParallelism,
+					new DaemonThreadFactory("resource-monitoring"));
+		}
+		return monitoringExecutor;
+	}
+
+	/**
+	 * Sets the executor running the bootstraps, for instance one running them
+	 * in the calling thread in a simulation on a virtual clock, or null to run
+	 * them on {@link #setMonitoringParallelism(int)} threads.
+	 */
+	public synchronized void setBootstrapExecutor(Executor bootstrapExecutor) {
+		this.bootstrapExecutor = bootstrapExecutor;
+	}
+
+	/**
+	 * Sets the scheduler deciding which resources are polled at each
+	 * monitoring tick. It must be set before the monitoring starts.
+	 */
+	public void setMonitoringScheduler(MonitoringScheduler monitoringScheduler) {
+		if (monitoringScheduler == null) {
+			throw new IllegalArgumentException("MonitoringScheduler must not be null.");
+		}
+		this.monitoringScheduler = monitoringScheduler;
+	}
+
+	/**
+	 * Sets the pool of idle engines kept above the needed resources or null to
+	 * keep only the needed resources.
+	 */
+	public void setWarmPool(WarmPool warmPool) {
+		this.warmPool = warmPool;
+	}
+
+	/**
+	 * Sets the prober checking the ssh port of fulfilled resources before
+	 * bootstrapping them or null to bootstrap them at once.
+	 */
+	public void setReachabilityProber(ReachabilityProber reachabilityProber) {
+		this.reachabilityProber = reachabilityProber;
+	}
+
+	/**
+	 * Sets whether the monitoring ticks are scheduled once there are resources
+	 * or the caller runs them through {@link #monitoringTick()}, as a
+	 * simulation on a virtual clock does.
+	 */
+	public void setAutoMonitoring(boolean autoMonitoring) {
+		this.autoMonitoring = autoMonitoring;
+	}
+
+	public void setEngineBootstrapper(EngineBootstrapper engineBootstrapper) {
+		if (engineBootstrapper == null) {
+			throw new IllegalArgumentException("EngineBootstrapper must not be null.");
+		}
+		this.engineBootstrapper = engineBootstrapper;
+	}
+
+	public void setFanOutExecutor(SSHFanOutExecutor fanOutExecutor) {
+		if (fanOutExecutor == null) {
+			throw new IllegalArgumentException("SSHFanOutExecutor must not be null.");
+		}
+		this.fanOutExecutor = fanOutExecutor;
+	}
+
 	public void setInfraProvider(InfrastructureProvider infraProvider) {
 		if (infraProvider == null) {
 			throw new IllegalArgumentException("InfrastructureProvider must not be null.");
@@ -81,113 +223,459 @@ public class InfrastructureManager {
 		this.infraProvider = infraProvider;
 	}
 
+	/**
+	 * @return The number of engines in use, except the idle engines of the
+	 *         warm pool, which are not seen by the allocation policy
+	 */
 	public int getNumberOfStartedEngines() {
-		return resourcesInUse.size();
+		if (warmPool == null) {
+			return resourceRegistry.count(ResourceState.IN_USE);
+		}
+		List<String> resourcesInUse = resourceRegistry.getResources(ResourceState.IN_USE);
+		int idleEngines = Math.min(warmPool.getSize(), warmPool.getIdleEngines(resourcesInUse));
+		return Math.max(0, resourcesInUse.size() - idleEngines);
+	}
+
+	/**
+	 * @return The number of resources requested whose engine did not start yet
+	 */
+	public int getNumberOfPendingEngines() {
+		return resourceRegistry.count(ResourceState.NOT_AVAILABLE);
+	}
+
+	/**
+	 * @return The time since each resource not available yet was requested,
+	 *         or lost, in milliseconds, the oldest first
+	 */
+	public List<Long> getPendingAges() {
+		long now = clock.currentTimeMillis();
+		List<Long> pendingAges = new ArrayList<Long>();
+		for (ResourceRecord record : resourceRegistry.getRecords()) {
+			if (ResourceState.NOT_AVAILABLE.contains(record.getState())) {
+				Long requestTime = record.getEntryTime(ResourceState.REQUESTED);
+				if (requestTime == null) {
+					requestTime = record.getEntryTime(record.getState());
+				}
+				pendingAges.add(Math.max(0, now - requestTime));
+			}
+		}
+		Collections.sort(pendingAges, Collections.reverseOrder());
+		return pendingAges;
+	}
+
+	/**
+	 * @return The mean time from the request to the fulfillment of the last
+	 *         {@value #RECENT_LATENCIES} resources fulfilled in milliseconds
+	 *         or -1 if no resource was fulfilled yet
+	 */
+	public long getRecentFulfillmentLatency() {
+		return fulfillmentLatencies.getMean();
+	}
+
+	/**
+	 * @return The mean time from the fulfillment until the ssh port answered
+	 *         of the last {@value #RECENT_LATENCIES} resources probed in
+	 *         milliseconds or -1 if no resource was reachable yet
+	 */
+	public long getRecentReachableLatency() {
+		return reachableLatencies.getMean();
+	}
+
+	/**
+	 * @return The number of resources lost after being fulfilled since the
+	 *         manager was created
+	 */
+	public int getNumberOfLostResources() {
+		return lostResources.get();
+	}
+
+	/**
+	 * @return The number of deletions failed since the manager was created
+	 */
+	public int getNumberOfFailedDeletions() {
+		return failedDeletions.get();
+	}
+
+	/**
+	 * @return The last time resources were allocated or deallocated or -1 if
+	 *         they never were
+	 */
+	public long getLastScaleTime() {
+		return lastScaleTime;
 	}
 
 	public void updateCurrentNeeds(int neededResources) {
 		LOGGER.info("Updating current needs...");
 		
-		int currentResources = resourcesInUse.size() + resourcesNotAvailable.size();
+		// resources being removed do not count as current resources
+		Map<ResourceState, List<String>> resources = resourceRegistry.snapshot();
+		List<String> allocatedResources = ResourceRegistry.getResources(resources,
+				ResourceState.NOT_AVAILABLE);
+		int notAvailable = allocatedResources.size();
+		allocatedResources.addAll(resources.get(ResourceState.IN_USE));
+		int inUse = allocatedResources.size() - notAvailable;
+
+		if (warmPool != null) {
+			warmPool.retainResources(allocatedResources);
+			int targetResources = warmPool.getTargetResources(neededResources);
+			LOGGER.info("Keeping " + (targetResources - neededResources)
+					+ " engines in the warm pool.");
+			neededResources = targetResources;
+		}
+		int currentResources = inUse + notAvailable;
 		LOGGER.info("neededResources=" + neededResources + " and currentResources="
-				+ currentResources + " (inUse=" + resourcesInUse.size() + " notAvailable="
-				+ resourcesNotAvailable.size() + ")");
+				+ currentResources + " (inUse=" + inUse + " notAvailable=" + notAvailable
+				+ " removing="
+				+ ResourceRegistry.getResources(resources, ResourceState.REMOVING).size() + ")");
 		
 		if (currentResources > neededResources) {
-			deallocateResources(currentResources - neededResources);
+			deallocateResources(resources, currentResources - neededResources);
 		} else if (currentResources < neededResources) {
 			allocateResources(neededResources - currentResources);
 		}
 		
-		if (currentResources != 0 || neededResources != 0) {	
+		if (autoMonitoring && (currentResources != 0 || neededResources != 0)) {
 			if (monitoringHandle == null || monitoringHandle.isCancelled()) {
 				ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
-				monitoringHandle = executor.scheduleAtFixedRate(new TimerTask() {
+				monitoringHandle = executor.scheduleWithFixedDelay(new TimerTask() {
 					@Override
 					public void run() {
-						monitoringResources();
+						monitoringTick();
 					}
 					
-				}, 0, monitoringInterval, TimeUnit.MINUTES);
+				}, 0, monitoringScheduler.getTickInterval(), TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	/**
+	 * Monitors the resources due to be polled according to the
+	 * {@link MonitoringScheduler}.
+	 */
+	public void monitoringTick() {
+		try {
+			Map<ResourceState, List<String>> resources = resourceRegistry.snapshot();
+			List<String> dueResources = monitoringScheduler.getDueResources(resources,
+					infraProvider.isBulkQuerySupported());
+			if (dueResources.isEmpty()) {
+				return;
 			}
+			LOGGER.info("Monitoring " + dueResources.size() + " resources (total polls="
+					+ monitoringScheduler.getTotalPolls() + ") ...");
+			monitoringResources(resources, new HashSet<String>(dueResources));
+			monitoringScheduler.polled(dueResources);
+		} catch (Throwable e) {
+			// an exception would cancel the next ticks
+			LOGGER.error("Exception while monitoring resources.", e);
 		}
 	}
 
+	/**
+	 * Monitors all resources at once.
+	 */
 	protected void monitoringResources() {
 		LOGGER.info("Monitoring resources ...");
+		Map<ResourceState, List<String>> resources = resourceRegistry.snapshot();
+		monitoringResources(resources, null);
+	}
+
+	/**
+	 * @param resourceIds
+	 *            The resources to be monitored or null to monitor all
+	 */
+	private void monitoringResources(Map<ResourceState, List<String>> resources,
+			Set<String> resourceIds) {
+		List<String> inUseClone = filter(resources.get(ResourceState.IN_USE), resourceIds);
+		List<String> notAvailableClone = filter(
+				ResourceRegistry.getResources(resources, ResourceState.NOT_AVAILABLE), resourceIds);
+
+		// getting the info of all resources at once
+		List<String> allResources = new ArrayList<String>();
+		allResources.addAll(inUseClone);
+		allResources.addAll(notAvailableClone);
+		Map<String, Map<String, String>> resourcesInfo;
+		try {
+			resourcesInfo = infraProvider.getResourcesInfo(allResources);
+		} catch (InfrastructureException e) {
+			LOGGER.error("Exception while getting resources info. Skipping monitoring.", e);
+			return;
+		}
+
 		// monitoring in use resources
-		List<String> inUseClone = new ArrayList<String>();
-		inUseClone.addAll(resourcesInUse);
 		for (String resourceId : inUseClone) {
-			if (!infraProvider.isResourceAvailable(resourceId)) {
-				LOGGER.debug("Changing resourceId=" + resourceId
-						+ " from resourcesInUse to resourceNotAvailable.");
-				resourcesNotAvailable.add(resourceId);
-				resourcesInUse.remove(resourceId);
+			if (isUnknown(resourcesInfo, resourceId)) {
+				continue;
+			}
+			if (!infraProvider.isAvailable(resourcesInfo.get(resourceId))) {
+				fire(resourceId, ResourceEvent.LOST);
 			}
 		}
 
-		// monitoring not available resources
-		List<String> notAvailableClone = new ArrayList<String>();
-		notAvailableClone.addAll(resourcesNotAvailable);
+		// monitoring not available resources, bootstrapping the available ones
+		// in parallel because each of them takes a ssh session
+		List<String> fulfilledResources = new ArrayList<String>();
 		for (String resourceId : notAvailableClone) {
-			if (infraProvider.isResourceAvailable(resourceId)) {
+			if (isUnknown(resourcesInfo, resourceId)) {
+				continue;
+			}
+			if (infraProvider.isAvailable(resourcesInfo.get(resourceId))) {
+				fire(resourceId, ResourceEvent.FULFILLED);
+				if (!bootstrapsInFlight.contains(resourceId)) {
+					fulfilledResources.add(resourceId);
+				}
+			} else {
+				// LOST is not allowed from REQUESTED, so only the fulfilled ones
+				// are requested again and the pending ones keep their age
+				fire(resourceId, ResourceEvent.LOST);
+			}
+		}
+
+		// the tick does not wait for the bootstraps, each of them moves its
+		// resource when it finishes
+		Executor executor = getBootstrapExecutor();
+		for (String resourceId : getReachableResources(fulfilledResources, resourcesInfo)) {
+			if (!bootstrapsInFlight.add(resourceId)) {
+				continue;
+			}
+			try {
+				executor.execute(createBootstrap(resourceId, resourcesInfo.get(resourceId)));
+			} catch (RejectedExecutionException e) {
+				bootstrapsInFlight.remove(resourceId);
+				LOGGER.warn("Bootstrap of resourceId=" + resourceId
+						+ " was rejected, it is retried on the next poll.", e);
+			}
+		}
+	}
+
+	/**
+	 * @return The resources whose bootstrap was started and did not finish yet
+	 */
+	public Set<String> getBootstrapsInFlight() {
+		return Collections.unmodifiableSet(new HashSet<String>(bootstrapsInFlight));
+	}
+
+	/**
+	 * @return Whether the info of the resource could not be obtained, so its
+	 *         state is kept until the next poll
+	 */
+	private static boolean isUnknown(Map<String, Map<String, String>> resourcesInfo,
+			String resourceId) {
+		return resourcesInfo.containsKey(resourceId) && resourcesInfo.get(resourceId) == null;
+	}
+
+	/**
+	 * Probes the ssh port of the fulfilled resources, so the ones still
+	 * booting are not bootstrapped. They are probed again on the next poll.
+	 * 
+	 * @return The resources to be bootstrapped
+	 */
+	private List<String> getReachableResources(List<String> fulfilledResources,
+			Map<String, Map<String, String>> resourcesInfo) {
+		if (reachabilityProber == null || fulfilledResources.isEmpty()) {
+			return fulfilledResources;
+		}
+		List<String> reachableResources = new ArrayList<String>();
+		Map<String, InetSocketAddress> addresses = new HashMap<String, InetSocketAddress>();
+		for (String resourceId : fulfilledResources) {
+			InetSocketAddress address = infraProvider.getSSHAddress(resourcesInfo.get(resourceId));
+			if (address == null) {
+				// it can not be probed, the bootstrap finds out
+				reachableResources.add(resourceId);
+			} else {
+				addresses.put(resourceId, address);
+			}
+		}
+
+		Map<String, Long> latencies = reachabilityProber.probe(addresses);
+		for (String resourceId : addresses.keySet()) {
+			if (!latencies.containsKey(resourceId)) {
+				continue;
+			}
+			reachableResources.add(resourceId);
+			ResourceRecord record = resourceRegistry.getRecord(resourceId);
+			Long fulfilledTime = record == null ? null : record
+					.getEntryTime(ResourceState.FULFILLED);
+			if (fulfilledTime != null) {
+				long reachableLatency = Math.max(0, clock.currentTimeMillis() - fulfilledTime);
+				reachableLatencies.add(reachableLatency);
+				LOGGER.info("ssh port of resourceId=" + resourceId + " answered in "
+						+ latencies.get(resourceId) + "ms, " + reachableLatency
+						+ "ms after it was fulfilled.");
+			}
+		}
+		LOGGER.debug(reachableResources.size() + " of " + fulfilledResources.size()
+				+ " fulfilled resources are reachable. Reachability prober: " + reachabilityProber);
+		return reachableResources;
+	}
+
+	/**
+	 * Bootstraps the engine and fires the events of its result. The resource
+	 * may have been lost or deallocated meanwhile, so the events are ignored.
+	 */
+	private Runnable createBootstrap(final String resourceId,
+			final Map<String, String> resourceInfo) {
+		return new Runnable() {
+			@Override
+			public void run() {
 				try {
-					CommandResult result = infraProvider.executeCommand(
-							infraProvider.getResourceInfo(resourceId), instanceCredentials,
-							START_ENGINE_COMMAND);
+					CommandResult result = engineBootstrapper.bootstrap(infraProvider, resourceId,
+							resourceInfo, instanceCredentials);
 					LOGGER.debug("commandResult=" + result);
-					if (result.getExitStatus() == 0){ //success
-						LOGGER.debug("Changing resourceId=" + resourceId
-								+ " from resourcesNotAvailable to resourceInUse.");
-						resourcesInUse.add(resourceId);
-						resourcesNotAvailable.remove(resourceId);
+					if (result == null) {
+						return;
+					}
+					fire(resourceId, ResourceEvent.REACHED);
+					if (result.getExitStatus() == 0 // success
+							&& fire(resourceId, ResourceEvent.ENGINE_STARTED) != null) {
+						logStartupLatency(resourceId);
 					}
 				} catch (InfrastructureException e) {
-					LOGGER.error("There was an exception while trying to execute command= "
-							+ START_ENGINE_COMMAND + " in resourceId=" + resourceId + ".", e);
+					LOGGER.error("There was an exception while trying to bootstrap the engine"
+							+ " in resourceId=" + resourceId + ".", e);
+				} catch (InterruptedException e) {
+					LOGGER.warn("Interrupted while bootstrapping resourceId=" + resourceId + ".");
+					Thread.currentThread().interrupt();
+				} catch (RuntimeException e) {
+					LOGGER.error("Exception while bootstrapping resourceId=" + resourceId + ".", e);
+				} finally {
+					bootstrapsInFlight.remove(resourceId);
 				}
 			}
+		};
+	}
+
+	private static List<String> filter(List<String> resources, Set<String> resourceIds) {
+		if (resourceIds == null) {
+			return resources;
+		}
+		List<String> filteredResources = new ArrayList<String>();
+		for (String resourceId : resources) {
+			if (resourceIds.contains(resourceId)) {
+				filteredResources.add(resourceId);
+			}
+		}
+		return filteredResources;
+	}
+
+	private ResourceState fire(String resourceId, ResourceEvent event) {
+		ResourceState newState = resourceRegistry.fire(resourceId, event);
+		if (newState == null) {
+			return null;
+		}
+		LOGGER.debug("resourceId=" + resourceId + " moved to " + newState + " on " + event);
+		if (event == ResourceEvent.FULFILLED) {
+			ResourceRecord record = resourceRegistry.getRecord(resourceId);
+			long latency = record != null ? record.getDuration(ResourceState.REQUESTED,
+					ResourceState.FULFILLED) : -1;
+			if (latency >= 0) {
+				fulfillmentLatencies.add(latency);
+			}
+		} else if (event == ResourceEvent.LOST) {
+			lostResources.incrementAndGet();
+		} else if (event == ResourceEvent.DELETE_FAILED) {
+			failedDeletions.incrementAndGet();
+		}
+		return newState;
+	}
+
+	/**
+	 * Executes the command on all engines in use, for instance to collect
+	 * their load or to restart them. An engine whose info could not be
+	 * obtained is reported as unreachable.
+	 * 
+	 * @param listener
+	 *            Receives the result of each engine as it completes, it may be
+	 *            null
+	 */
+	public FanOutSummary executeOnEnginesInUse(String command, FanOutListener listener)
+			throws InfrastructureException, InterruptedException {
+		List<String> resourcesInUse = getResourcesInUse();
+		Map<String, Map<String, String>> resourcesInfo = infraProvider
+				.getResourcesInfo(resourcesInUse);
+		Map<String, Map<String, String>> enginesInfo = new LinkedHashMap<String, Map<String, String>>();
+		for (String resourceId : resourcesInUse) {
+			enginesInfo.put(resourceId, resourcesInfo.get(resourceId));
+		}
+		return fanOutExecutor.execute(infraProvider, enginesInfo, instanceCredentials, command,
+				listener);
+	}
+
+	private void logStartupLatency(String resourceId) {
+		ResourceRecord record = resourceRegistry.getRecord(resourceId);
+		if (record == null) {
+			return;
 		}
+		LOGGER.info("Engine started on resourceId=" + resourceId + " (requested->fulfilled="
+				+ record.getDuration(ResourceState.REQUESTED, ResourceState.FULFILLED)
+				+ "ms, fulfilled->reachable="
+				+ record.getDuration(ResourceState.FULFILLED, ResourceState.REACHABLE)
+				+ "ms, reachable->inUse="
+				+ record.getDuration(ResourceState.REACHABLE, ResourceState.IN_USE) + "ms)");
 	}
 
-	private void deallocateResources(int numberOfResources) {
+	private void deallocateResources(Map<ResourceState, List<String>> resources,
+			int numberOfResources) {
 		LOGGER.debug("Deallocating " + numberOfResources + " resources.");
+		lastScaleTime = clock.currentTimeMillis();
 
-		for (int i = 0; i < numberOfResources; i++) {
-			// Firstly it deallocates resources not available yet
-			if (resourcesNotAvailable.size() > 0) {
-				deallocateResource(resourcesNotAvailable.get(0), false);
-			} else if (resourcesInUse.size() > 0) {
-				deallocateResource(resourcesInUse.get(0), true);
-			} else {
-				LOGGER.warn("Trying to deallocate resource, but there is not any resource allocated.");
+		// Firstly it deallocates resources not available yet
+		List<String> candidates = ResourceRegistry.getResources(resources,
+				ResourceState.NOT_AVAILABLE);
+		candidates.addAll(resources.get(ResourceState.IN_USE));
+		if (candidates.size() < numberOfResources) {
+			LOGGER.warn("Trying to deallocate " + numberOfResources + " resources, but there are "
+					+ candidates.size() + " resources allocated.");
+		}
+
+		// the engines do not take new jobs before the resources are deleted
+		List<String> resourceIds = new ArrayList<String>();
+		for (String resourceId : candidates.subList(0,
+				Math.min(numberOfResources, candidates.size()))) {
+			fire(resourceId, ResourceEvent.DRAIN);
+			if (fire(resourceId, ResourceEvent.DELETE) == null) {
+				LOGGER.debug("resourceId=" + resourceId + " is already being deleted.");
+				continue;
 			}
+			resourceIds.add(resourceId);
+		}
+		if (resourceIds.isEmpty()) {
+			return;
 		}
-	}
 
-	private void deallocateResource(String resourceId, boolean inUse) {
-		LOGGER.debug("Deallocating resource " + resourceId);
+		BatchResult result;
 		try {
-			infraProvider.deleteResource(resourceId);
-			if (inUse) {
-				resourcesInUse.remove(resourceId);
-			} else {
-				resourcesNotAvailable.remove(resourceId);
-			}
+			result = infraProvider.deleteResources(resourceIds);
 		} catch (Exception e) {
-			LOGGER.error("Error while deallocating resource.", e);
+			LOGGER.error("Error while deallocating resources.", e);
+			result = new BatchResult();
+		}
+		for (String resourceId : result.getSucceeded()) {
+			resourceRegistry.remove(resourceId);
+		}
+
+		// the resources not deleted are restored, so they are deallocated
+		// again on the next tick if they are still not needed
+		for (String resourceId : resourceIds) {
+			if (resourceRegistry.getState(resourceId) == ResourceState.DELETING) {
+				LOGGER.error("Error while deallocating resource " + resourceId + ".", result
+						.getFailed().get(resourceId));
+				fire(resourceId, ResourceEvent.DELETE_FAILED);
+			}
 		}
 	}
 
 	private void allocateResources(int numberOfResources) {
 		LOGGER.debug("Allocating more " + numberOfResources + " resources.");
+		lastScaleTime = clock.currentTimeMillis();
 		LOGGER.debug("InfraProvider=" + infraProvider);
 		try {
 			List<String> resourceIds = infraProvider.createResource(numberOfResources,
 					instanceProperties);
 			LOGGER.debug("New resource IDs=" + resourceIds);
-			resourcesNotAvailable.addAll(resourceIds);
+			resourceRegistry.addAll(resourceIds, ResourceState.REQUESTED);
+			if (warmPool != null) {
+				warmPool.addResources(resourceIds);
+			}
 		} catch (Exception e) {
 			LOGGER.error("Error while creating more resources.", e);
 		}
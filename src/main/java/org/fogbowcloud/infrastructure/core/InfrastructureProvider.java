@@ -1,5 +1,8 @@
 package org.fogbowcloud.infrastructure.core;
 
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -17,10 +20,77 @@ public interface InfrastructureProvider {
 
 	public Map<String, String> getResourceInfo(String resourceId) throws InfrastructureException;
 
+	/**
+	 * Gets the info of several resources at once. Resources the
+	 * infrastructure does not have are not present in the returned map, and
+	 * resources whose info could not be obtained this time are mapped to null,
+	 * so their state is unknown.
+	 * 
+	 * @param resourceIds
+	 * @return Map from resource id to resource info
+	 * @throws InfrastructureException
+	 *             If the infrastructure could not be queried at all
+	 */
+	public Map<String, Map<String, String>> getResourcesInfo(Collection<String> resourceIds)
+			throws InfrastructureException;
+
+	/**
+	 * @return Whether {@link #getResourcesInfo(Collection)} queries the
+	 *         infrastructure once for all the resources, so the info of more
+	 *         resources does not cost more queries
+	 */
+	public boolean isBulkQuerySupported();
+
 	public void deleteResource(String resourceId) throws InfrastructureException;
 
+	/**
+	 * Deletes several resources at once. A resource that could not be deleted
+	 * does not prevent the deletion of the other ones, it is reported as
+	 * failed in the returned result.
+	 * 
+	 * @param resourceIds
+	 * @return The resources deleted and the ones that failed
+	 */
+	public BatchResult deleteResources(Collection<String> resourceIds);
+
 	public CommandResult executeCommand(Map<String, String> resourceInfo,
 			Map<String, String> resourceCredentials, String command) throws InfrastructureException;
 
+	/**
+	 * Executes the command, closing its session if it does not complete within
+	 * the timeout.
+	 * 
+	 * @param timeout
+	 *            Time for the command to complete in milliseconds
+	 * @return The command result or null if the command could not be executed
+	 *         or timed out
+	 */
+	public CommandResult executeCommand(Map<String, String> resourceInfo,
+			Map<String, String> resourceCredentials, String command, long timeout)
+			throws InfrastructureException;
+
+	/**
+	 * Executes the command streaming its stdout and stderr to the sinks while
+	 * it runs. The returned result has the byte counts of the output instead
+	 * of the output itself.
+	 * 
+	 * @return The command result or null if the command could not be executed
+	 */
+	public CommandResult executeCommand(Map<String, String> resourceInfo,
+			Map<String, String> resourceCredentials, String command, OutputStream outputSink,
+			OutputStream errorSink) throws InfrastructureException;
+
+	/**
+	 * @return The address to access the resource by ssh or null if it is not
+	 *         known yet
+	 */
+	public InetSocketAddress getSSHAddress(Map<String, String> resourceInfo);
+
 	public boolean isResourceAvailable(String resourceId);
+
+	/**
+	 * Checks if a resource is available based on the info previously returned
+	 * by {@link #getResourceInfo(String)} or {@link #getResourcesInfo(Collection)}.
+	 */
+	public boolean isAvailable(Map<String, String> resourceInfo);
 }
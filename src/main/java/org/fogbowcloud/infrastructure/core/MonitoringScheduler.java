@@ -0,0 +1,233 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.fogbowcloud.ConfigurationConstants;
+import org.fogbowcloud.PropertiesUtils;
+
+/**
+ * Decides which resources are polled at each monitoring tick. Each resource
+ * has its own cadence: the ones not available yet are polled fast, backing off
+ * exponentially while their state does not change, and the ones in use are
+ * polled slowly. A resource whose state changed is polled at the next tick
+ * with the fast cadence again.
+ * 
+ * The number of polls is limited by a global budget of polls per second, so a
+ * burst of new resources is spread over the next ticks, the resources waiting
+ * the longest first. When the info of all resources is got by a single query,
+ * as a verbose listing, the query is charged as a single poll and all the due
+ * resources are polled by it.
+ */
+public class MonitoringScheduler {
+
+	public static final String TICK_INTERVAL_KEY = "monitoring_tick_interval";
+	public static final String PENDING_INTERVAL_KEY = "monitoring_pending_interval";
+	public static final String PENDING_MAX_INTERVAL_KEY = "monitoring_pending_max_interval";
+	public static final String MAX_POLLS_PER_SECOND_KEY = "monitoring_max_polls_per_second";
+
+	public static final int DEFAULT_TICK_INTERVAL = 5; // in seconds
+	public static final int DEFAULT_PENDING_INTERVAL = 5; // in seconds
+	public static final int DEFAULT_PENDING_MAX_INTERVAL = 60; // in seconds
+	public static final int DEFAULT_IN_USE_INTERVAL = 1; // in minutes
+	public static final int DEFAULT_MAX_POLLS_PER_SECOND = 20;
+
+	private final Clock clock;
+	private final long tickInterval;
+	private final long pendingInterval;
+	private final long pendingMaxInterval;
+	private final long inUseInterval;
+	private final double maxPollsPerMilli;
+	private final double maxTokens;
+
+	private final Map<String, PollingState> pollingStates = new HashMap<String, PollingState>();
+	private double tokens;
+	private long lastRefill;
+	private long totalPolls;
+
+	private static final Comparator<PollingState> DUE_ORDER = new Comparator<PollingState>() {
+		@Override
+		public int compare(PollingState state, PollingState other) {
+			return Long.compare(state.nextPoll, other.nextPoll);
+		}
+	};
+
+	public MonitoringScheduler(Properties properties) {
+		this(new SystemClock(),
+				PropertiesUtils.getIntProperty(properties, TICK_INTERVAL_KEY,
+						DEFAULT_TICK_INTERVAL) * 1000L,
+				PropertiesUtils.getIntProperty(properties, PENDING_INTERVAL_KEY,
+						DEFAULT_PENDING_INTERVAL) * 1000L,
+				PropertiesUtils.getIntProperty(properties, PENDING_MAX_INTERVAL_KEY,
+						DEFAULT_PENDING_MAX_INTERVAL) * 1000L,
+				PropertiesUtils.getIntProperty(properties,
+						ConfigurationConstants.MONITORING_INTERVAL, DEFAULT_IN_USE_INTERVAL)
+						* 60 * 1000L,
+				PropertiesUtils.getIntProperty(properties, MAX_POLLS_PER_SECOND_KEY,
+						DEFAULT_MAX_POLLS_PER_SECOND));
+	}
+
+	/**
+	 * @param tickInterval
+	 *            Interval between the monitoring ticks in milliseconds
+	 * @param pendingInterval
+	 *            Initial polling interval of the resources not available in
+	 *            milliseconds
+	 * @param pendingMaxInterval
+	 *            Maximum polling interval of the resources not available in
+	 *            milliseconds
+	 * @param inUseInterval
+	 *            Polling interval of the resources in use in milliseconds
+	 * @param maxPollsPerSecond
+	 *            Global budget of polls
+	 */
+	public MonitoringScheduler(Clock clock, long tickInterval, long pendingInterval,
+			long pendingMaxInterval, long inUseInterval, double maxPollsPerSecond) {
+		if (tickInterval <= 0 || pendingInterval <= 0 || pendingMaxInterval < pendingInterval
+				|| inUseInterval <= 0 || maxPollsPerSecond <= 0) {
+			throw new IllegalArgumentException("The monitoring intervals and polls per second "
+					+ "must be positive and the pending max interval must not be lower "
+					+ "than the pending interval.");
+		}
+		this.clock = clock;
+		this.tickInterval = tickInterval;
+		this.pendingInterval = pendingInterval;
+		this.pendingMaxInterval = pendingMaxInterval;
+		this.inUseInterval = inUseInterval;
+		this.maxPollsPerMilli = maxPollsPerSecond / 1000;
+		// a full tick of polls can be spent at once
+		this.maxTokens = Math.max(1, maxPollsPerMilli * tickInterval);
+		this.tokens = maxTokens;
+		this.lastRefill = clock.currentTimeMillis();
+	}
+
+	/**
+	 * @return Interval between the monitoring ticks in milliseconds
+	 */
+	public long getTickInterval() {
+		return tickInterval;
+	}
+
+	/**
+	 * Gets the resources due to be polled, within the budget of polls. The
+	 * resources not in the given ones are forgotten.
+	 * 
+	 * @param resources
+	 *            The resources by state, as in a {@link ResourceRegistry}
+	 *            snapshot
+	 */
+	public synchronized List<String> getDueResources(Map<ResourceState, List<String>> resources) {
+		return getDueResources(resources, false);
+	}
+
+	/**
+	 * Gets the resources due to be polled, within the budget of polls. The
+	 * resources not in the given ones are forgotten.
+	 * 
+	 * @param resources
+	 *            The resources by state, as in a {@link ResourceRegistry}
+	 *            snapshot
+	 * @param bulkQuery
+	 *            Whether the info of the resources is got by a single query,
+	 *            which is charged as a single poll
+	 */
+	public synchronized List<String> getDueResources(Map<ResourceState, List<String>> resources,
+			boolean bulkQuery) {
+		long now = clock.currentTimeMillis();
+		Set<String> currentResources = new HashSet<String>();
+		List<PollingState> dueResources = new ArrayList<PollingState>();
+		for (ResourceState state : resources.keySet()) {
+			if (ResourceState.REMOVING.contains(state)) {
+				continue;
+			}
+			for (String resourceId : resources.get(state)) {
+				currentResources.add(resourceId);
+				PollingState pollingState = pollingStates.get(resourceId);
+				if (pollingState == null || pollingState.state != state) {
+					// new resource or state changed since the last poll
+					pollingState = new PollingState(resourceId, state, now, getInitialInterval(state));
+					pollingStates.put(resourceId, pollingState);
+				}
+				if (pollingState.nextPoll <= now) {
+					dueResources.add(pollingState);
+				}
+			}
+		}
+		pollingStates.keySet().retainAll(currentResources);
+
+		refillTokens(now);
+		Collections.sort(dueResources, DUE_ORDER);
+		int budget = Math.min(dueResources.size(), (int) tokens);
+		if (bulkQuery && budget > 0) {
+			// the same query gets all of them
+			budget = dueResources.size();
+			tokens -= 1;
+		} else {
+			tokens -= budget;
+		}
+
+		List<String> resourceIds = new ArrayList<String>(budget);
+		for (PollingState pollingState : dueResources.subList(0, budget)) {
+			resourceIds.add(pollingState.resourceId);
+		}
+		return resourceIds;
+	}
+
+	/**
+	 * Schedules the next poll of the resources, backing off the ones not
+	 * available.
+	 */
+	public synchronized void polled(Collection<String> resourceIds) {
+		long now = clock.currentTimeMillis();
+		for (String resourceId : resourceIds) {
+			PollingState pollingState = pollingStates.get(resourceId);
+			if (pollingState == null) {
+				continue;
+			}
+			totalPolls++;
+			pollingState.nextPoll = now + pollingState.interval;
+			if (ResourceState.NOT_AVAILABLE.contains(pollingState.state)) {
+				pollingState.interval = Math.min(pollingState.interval * 2, pendingMaxInterval);
+			}
+		}
+	}
+
+	/**
+	 * @return The total number of polls done
+	 */
+	public synchronized long getTotalPolls() {
+		return totalPolls;
+	}
+
+	private long getInitialInterval(ResourceState state) {
+		return state == ResourceState.IN_USE ? inUseInterval : pendingInterval;
+	}
+
+	private void refillTokens(long now) {
+		tokens = Math.min(maxTokens, tokens + (now - lastRefill) * maxPollsPerMilli);
+		lastRefill = now;
+	}
+
+	private static class PollingState {
+
+		final String resourceId;
+		final ResourceState state;
+		long nextPoll;
+		long interval;
+
+		PollingState(String resourceId, ResourceState state, long nextPoll, long interval) {
+			this.resourceId = resourceId;
+			this.state = state;
+			this.nextPoll = nextPoll;
+			this.interval = interval;
+		}
+	}
+}
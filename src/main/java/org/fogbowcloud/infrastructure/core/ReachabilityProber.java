@@ -0,0 +1,211 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import org.fogbowcloud.PropertiesUtils;
+
+/**
+ * Checks whether the ssh port of many hosts answers with non-blocking
+ * connects watched by a single selector, so a booting VM is not bootstrapped
+ * before it can accept a ssh login. The connections are closed as soon as
+ * they are established, nothing is sent to the hosts.
+ */
+public class ReachabilityProber {
+
+	public static final String CONNECT_TIMEOUT_KEY = "probe_connect_timeout";
+
+	public static final int DEFAULT_CONNECT_TIMEOUT = 3000; // in milliseconds
+
+	private final long connectTimeout;
+	private final Clock clock;
+
+	private final AtomicLong probes = new AtomicLong();
+	private final AtomicLong reachableProbes = new AtomicLong();
+	private final AtomicLong totalLatency = new AtomicLong();
+
+	private static final Logger LOGGER = Logger.getLogger(ReachabilityProber.class);
+
+	public ReachabilityProber(Properties properties) {
+		this(PropertiesUtils.getIntProperty(properties, CONNECT_TIMEOUT_KEY,
+				DEFAULT_CONNECT_TIMEOUT));
+	}
+
+	/**
+	 * @param connectTimeout
+	 *            Time for the hosts to answer in milliseconds
+	 */
+	public ReachabilityProber(long connectTimeout) {
+		if (connectTimeout <= 0) {
+			throw new IllegalArgumentException("Probe connect timeout must be positive.");
+		}
+		this.connectTimeout = connectTimeout;
+		this.clock = new SystemClock();
+	}
+
+	/**
+	 * Probes all addresses at once and waits up to the connect timeout for
+	 * them to answer.
+	 *
+	 * @param addresses
+	 *            Map from resource id to the address to be probed
+	 * @return Map from the id of each reachable resource to its connect
+	 *         latency in milliseconds
+	 */
+	public Map<String, Long> probe(Map<String, InetSocketAddress> addresses) {
+		Map<String, Long> latencies = new HashMap<String, Long>();
+		if (addresses.isEmpty()) {
+			return latencies;
+		}
+		Selector selector;
+		try {
+			selector = Selector.open();
+		} catch (IOException e) {
+			LOGGER.error("Exception while opening selector to probe resources.", e);
+			return latencies;
+		}
+
+		long startTime = clock.currentTimeMillis();
+		try {
+			int pending = 0;
+			for (String resourceId : addresses.keySet()) {
+				if (connect(selector, resourceId, addresses.get(resourceId), latencies,
+						startTime)) {
+					pending++;
+				}
+			}
+
+			long deadline = startTime + connectTimeout;
+			while (pending > 0) {
+				long waitTime = deadline - clock.currentTimeMillis();
+				if (waitTime <= 0) {
+					break;
+				}
+				selector.select(waitTime);
+				Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+				while (selectedKeys.hasNext()) {
+					SelectionKey key = selectedKeys.next();
+					selectedKeys.remove();
+					if (finishConnect(key, latencies, startTime)) {
+						pending--;
+					}
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.error("Exception while probing resources.", e);
+		} finally {
+			// closing the connections still pending
+			for (SelectionKey key : selector.keys()) {
+				close(key.channel());
+			}
+			close(selector);
+		}
+
+		probes.addAndGet(addresses.size());
+		reachableProbes.addAndGet(latencies.size());
+		for (Long latency : latencies.values()) {
+			totalLatency.addAndGet(latency);
+		}
+		LOGGER.debug("Probed " + addresses.size() + " resources, " + latencies.size()
+				+ " reachable.");
+		return latencies;
+	}
+
+	/**
+	 * @return Whether the connection is pending
+	 */
+	private boolean connect(Selector selector, String resourceId, InetSocketAddress address,
+			Map<String, Long> latencies, long startTime) {
+		if (address != null && address.isUnresolved()) {
+			// an ip address is resolved without a lookup
+			address = new InetSocketAddress(address.getHostString(), address.getPort());
+		}
+		if (address == null || address.isUnresolved()) {
+			LOGGER.debug("Address " + address + " of resourceId=" + resourceId
+					+ " can not be probed.");
+			return false;
+		}
+		SocketChannel channel = null;
+		try {
+			channel = SocketChannel.open();
+			channel.configureBlocking(false);
+			if (channel.connect(address)) {
+				// connected at once, usually to a local address
+				latencies.put(resourceId, clock.currentTimeMillis() - startTime);
+				close(channel);
+				return false;
+			}
+			channel.register(selector, SelectionKey.OP_CONNECT, resourceId);
+			return true;
+		} catch (IOException e) {
+			LOGGER.debug("resourceId=" + resourceId + " is not reachable at " + address + ".", e);
+			close(channel);
+			return false;
+		}
+	}
+
+	/**
+	 * @return Whether the connection is not pending anymore
+	 */
+	private boolean finishConnect(SelectionKey key, Map<String, Long> latencies, long startTime) {
+		SocketChannel channel = (SocketChannel) key.channel();
+		String resourceId = (String) key.attachment();
+		try {
+			if (channel.finishConnect()) {
+				latencies.put(resourceId, clock.currentTimeMillis() - startTime);
+			} else {
+				return false;
+			}
+		} catch (IOException e) {
+			// usually the connection was refused because the host is booting
+			LOGGER.debug("resourceId=" + resourceId + " is not reachable yet: " + e.getMessage());
+		}
+		key.cancel();
+		close(channel);
+		return true;
+	}
+
+	private static void close(Closeable closeable) {
+		if (closeable == null) {
+			return;
+		}
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			LOGGER.debug("Exception while closing probe connection.", e);
+		}
+	}
+
+	public long getProbes() {
+		return probes.get();
+	}
+
+	public long getReachableProbes() {
+		return reachableProbes.get();
+	}
+
+	/**
+	 * @return The mean connect latency of the reachable probes in
+	 *         milliseconds
+	 */
+	public long getMeanLatency() {
+		long reachable = reachableProbes.get();
+		return reachable == 0 ? 0 : totalLatency.get() / reachable;
+	}
+
+	public String toString() {
+		return "probes=" + probes + ", reachable=" + reachableProbes + ", meanLatency="
+				+ getMeanLatency() + "ms";
+	}
+}
@@ -0,0 +1,34 @@
+package org.fogbowcloud.infrastructure.core;
+
+/**
+ * Mean of the last latencies added, kept in a ring.
+ */
+class RecentLatencies {
+
+	private final long[] latencies;
+	private int count = 0;
+
+	RecentLatencies(int size) {
+		this.latencies = new long[size];
+	}
+
+	synchronized void add(long latency) {
+		latencies[count % latencies.length] = latency;
+		count++;
+	}
+
+	/**
+	 * @return The mean of the last latencies or -1 if none was added
+	 */
+	synchronized long getMean() {
+		int samples = Math.min(count, latencies.length);
+		if (samples == 0) {
+			return -1;
+		}
+		long sum = 0;
+		for (int i = 0; i < samples; i++) {
+			sum += latencies[i];
+		}
+		return sum / samples;
+	}
+}
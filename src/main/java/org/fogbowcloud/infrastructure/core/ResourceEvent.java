@@ -0,0 +1,62 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Events that move a resource through its lifecycle (see
+ * {@link ResourceState}). An event is ignored if the resource is not in one of
+ * its source states.
+ */
+public enum ResourceEvent {
+
+	FULFILLED(ResourceState.FULFILLED, ResourceState.REQUESTED),
+
+	REACHED(ResourceState.REACHABLE, ResourceState.FULFILLED),
+
+	ENGINE_STARTED(ResourceState.IN_USE, ResourceState.REACHABLE),
+
+	/**
+	 * The infrastructure does not provide the resource anymore. It is not
+	 * allowed from REQUESTED, so polling a request not fulfilled yet keeps its
+	 * age.
+	 */
+	LOST(ResourceState.REQUESTED, ResourceState.FULFILLED, ResourceState.REACHABLE,
+			ResourceState.IN_USE),
+
+	DRAIN(ResourceState.DRAINING, ResourceState.IN_USE),
+
+	DELETE(ResourceState.DELETING, ResourceState.REQUESTED, ResourceState.FULFILLED,
+			ResourceState.REACHABLE, ResourceState.IN_USE, ResourceState.DRAINING),
+
+	/**
+	 * Moves the resource back to the state it was before draining or deleting
+	 * it
+	 */
+	DELETE_FAILED(null, ResourceState.DELETING);
+
+	private final ResourceState target;
+	private final Set<ResourceState> sources;
+
+	/**
+	 * @param target
+	 *            The state reached, the other states are the sources
+	 */
+	private ResourceEvent(ResourceState target, ResourceState source, ResourceState... sources) {
+		this.target = target;
+		this.sources = Collections.unmodifiableSet(EnumSet.of(source, sources));
+	}
+
+	/**
+	 * @return The state reached by the event or null if it restores the
+	 *         previous state
+	 */
+	public ResourceState getTarget() {
+		return target;
+	}
+
+	public boolean isAllowedFrom(ResourceState state) {
+		return sources.contains(state);
+	}
+}
@@ -0,0 +1,523 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+
+import org.fogbowcloud.PropertiesUtils;
+
+/**
+ * Durable journal of a {@link ResourceRegistry}, so the resources are not
+ * forgotten when the capacity planner restarts.
+ *
+ * Every change of the registry is appended to a log file as a record prefixed
+ * by its length and CRC32 checksum. The records are flushed and synced to the
+ * disk in batches, every sync interval, so a crash loses at most the changes
+ * of the last interval. A record cut by a crash is detected by its checksum and
+ * ignored with the records after it.
+ *
+ * When a log gets too long, the journal switches to a new log generation and
+ * writes a snapshot of the registry. The records are absolute (a resource is
+ * put in a state or removed), so replaying the whole new log over the snapshot
+ * gives the current state, even if the snapshot already includes some of its
+ * records. The older logs are deleted after the snapshot is synced.
+ */
+public class ResourceJournal implements ResourceRegistryListener {
+
+	public static final String JOURNAL_DIR_KEY = "journal_dir";
+	public static final String SYNC_INTERVAL_KEY = "journal_sync_interval";
+	public static final String COMPACTION_THRESHOLD_KEY = "journal_compaction_threshold";
+
+	public static final int DEFAULT_SYNC_INTERVAL = 200; // in milliseconds
+	public static final int DEFAULT_COMPACTION_THRESHOLD = 10000; // in records
+
+	protected static final String SNAPSHOT_FILE = "snapshot";
+	protected static final String LOG_FILE_PREFIX = "journal-";
+	protected static final String LOG_FILE_SUFFIX = ".log";
+
+	private static final byte PUT_RECORD = 1;
+	private static final byte REMOVE_RECORD = 2;
+	private static final byte SNAPSHOT_HEADER_RECORD = 3;
+	// records larger than this are considered corrupted
+	private static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+	private static final Logger LOGGER = Logger.getLogger(ResourceJournal.class);
+
+	private final File directory;
+	private final long syncInterval;
+	private final int compactionThreshold;
+	private final Object lock = new Object();
+
+	private ResourceRegistry registry;
+	private ScheduledExecutorService executor;
+	private long generation;
+	private FileOutputStream logFile;
+	private DataOutputStream logOutput;
+	private int logRecords;
+	private boolean compactionScheduled;
+	private boolean closed;
+	// the last journaled state of each resource
+	private final Map<String, JournalEntry> journaledEntries = new HashMap<String, JournalEntry>();
+
+	public ResourceJournal(Properties properties) {
+		this(new File(properties.getProperty(JOURNAL_DIR_KEY)), PropertiesUtils.getIntProperty(
+				properties, SYNC_INTERVAL_KEY, DEFAULT_SYNC_INTERVAL), PropertiesUtils
+				.getIntProperty(properties, COMPACTION_THRESHOLD_KEY, DEFAULT_COMPACTION_THRESHOLD));
+	}
+
+	/**
+	 * @param syncInterval
+	 *            Interval between the syncs of the log in milliseconds
+	 * @param compactionThreshold
+	 *            Number of records in the log that triggers a snapshot
+	 */
+	public ResourceJournal(File directory, long syncInterval, int compactionThreshold) {
+		if (syncInterval <= 0 || compactionThreshold <= 0) {
+			throw new IllegalArgumentException(
+					"Journal sync interval and compaction threshold must be positive integers.");
+		}
+		this.directory = directory;
+		this.syncInterval = syncInterval;
+		this.compactionThreshold = compactionThreshold;
+	}
+
+	/**
+	 * Restores the resources of the journal into the registry, which must be
+	 * empty, and starts journaling its changes.
+	 *
+	 * @return The number of restored resources
+	 */
+	public int open(ResourceRegistry registry) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create the journal directory " + directory + ".");
+		}
+		long startTime = System.currentTimeMillis();
+		Map<String, JournalEntry> entries = new LinkedHashMap<String, JournalEntry>();
+		long snapshotGeneration = readSnapshot(entries);
+		long lastGeneration = snapshotGeneration;
+		for (long logGeneration : listLogGenerations()) {
+			if (logGeneration > snapshotGeneration) {
+				readLog(getLogFile(logGeneration), entries);
+			}
+			lastGeneration = Math.max(lastGeneration, logGeneration);
+		}
+
+		for (JournalEntry entry : entries.values()) {
+			// the deletion was interrupted, the resource is monitored again
+			// and the planner decides whether it is still needed
+			ResourceState state = ResourceState.REMOVING.contains(entry.state) ? ResourceState.REQUESTED
+					: entry.state;
+			registry.restore(entry.resourceId, state, entry.time);
+			journaledEntries.put(entry.resourceId,
+					new JournalEntry(entry.resourceId, state, entry.time));
+		}
+		LOGGER.info("Restored " + entries.size() + " resources from journal " + directory + " in "
+				+ (System.currentTimeMillis() - startTime) + "ms.");
+
+		this.registry = registry;
+		this.executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(
+				"resource-journal"));
+		synchronized (lock) {
+			generation = lastGeneration;
+			openNextLog();
+		}
+		registry.setListener(this);
+		// the restored state becomes the new snapshot
+		compact();
+		executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				sync();
+			}
+		}, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+		return entries.size();
+	}
+
+	/**
+	 * Stops journaling, syncing the pending records.
+	 */
+	public void close() {
+		if (registry != null) {
+			registry.setListener(null);
+		}
+		if (executor != null) {
+			executor.shutdown();
+			try {
+				executor.awaitTermination(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				closeLog();
+			} catch (IOException e) {
+				LOGGER.error("Exception while closing the resource journal.", e);
+			}
+		}
+	}
+
+	@Override
+	public void resourceStateChanged(String resourceId, ResourceState state, long time) {
+		synchronized (lock) {
+			JournalEntry journaledEntry = journaledEntries.get(resourceId);
+			if (journaledEntry != null && journaledEntry.state == state
+					&& journaledEntry.time == time) {
+				// the record would change nothing and only bring the
+				// compaction forward
+				return;
+			}
+			journaledEntries.put(resourceId, new JournalEntry(resourceId, state, time));
+			append(encodePut(resourceId, state, time));
+		}
+	}
+
+	@Override
+	public void resourceRemoved(String resourceId) {
+		synchronized (lock) {
+			journaledEntries.remove(resourceId);
+			append(encodeRemove(resourceId));
+		}
+	}
+
+	private void append(byte[] payload) {
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+			try {
+				writeRecord(logOutput, payload);
+			} catch (IOException e) {
+				LOGGER.error("Exception while appending to the resource journal.", e);
+				return;
+			}
+			if (++logRecords >= compactionThreshold && !compactionScheduled) {
+				// the compaction reads the registry, so it can not run while
+				// the registry is notifying a change
+				compactionScheduled = true;
+				try {
+					executor.execute(new Runnable() {
+						@Override
+						public void run() {
+							compact();
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					LOGGER.debug("The resource journal is closing, skipping compaction.");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Flushes the appended records and syncs them to the disk.
+	 */
+	protected void sync() {
+		FileChannel channel;
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+			try {
+				logOutput.flush();
+			} catch (IOException e) {
+				LOGGER.error("Exception while flushing the resource journal.", e);
+				return;
+			}
+			channel = logFile.getChannel();
+		}
+		// appending is not blocked while the disk syncs
+		try {
+			channel.force(false);
+		} catch (ClosedChannelException e) {
+			// the log was rotated and synced while closing
+		} catch (IOException e) {
+			LOGGER.error("Exception while syncing the resource journal.", e);
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the registry and deletes the logs it includes.
+	 */
+	protected void compact() {
+		long snapshotGeneration;
+		synchronized (lock) {
+			compactionScheduled = false;
+			if (closed) {
+				return;
+			}
+			try {
+				// the changes from now on go to the next log
+				snapshotGeneration = generation;
+				closeLog();
+				openNextLog();
+			} catch (IOException e) {
+				LOGGER.error("Exception while rotating the resource journal.", e);
+				return;
+			}
+		}
+
+		try {
+			long startTime = System.currentTimeMillis();
+			List<ResourceRecord> records = registry.getRecords();
+			File tempFile = new File(directory, SNAPSHOT_FILE + ".tmp");
+			FileOutputStream snapshotFile = new FileOutputStream(tempFile);
+			try {
+				DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+						snapshotFile));
+				writeRecord(output, encodeSnapshotHeader(snapshotGeneration, records.size()));
+				for (ResourceRecord record : records) {
+					writeRecord(output, encodePut(record.getResourceId(), record.getState(),
+							record.getEntryTime(record.getState())));
+				}
+				output.flush();
+				snapshotFile.getChannel().force(true);
+			} finally {
+				snapshotFile.close();
+			}
+			File snapshot = new File(directory, SNAPSHOT_FILE);
+			if (snapshot.exists() && !snapshot.delete() || !tempFile.renameTo(snapshot)) {
+				throw new IOException("Could not replace the snapshot " + snapshot + ".");
+			}
+
+			for (long logGeneration : listLogGenerations()) {
+				if (logGeneration <= snapshotGeneration) {
+					getLogFile(logGeneration).delete();
+				}
+			}
+			LOGGER.debug("Resource journal compacted with " + records.size() + " resources in "
+					+ (System.currentTimeMillis() - startTime) + "ms.");
+		} catch (IOException e) {
+			LOGGER.error("Exception while writing the resource journal snapshot.", e);
+		}
+	}
+
+	private void openNextLog() throws IOException {
+		generation++;
+		logFile = new FileOutputStream(getLogFile(generation), true);
+		logOutput = new DataOutputStream(new BufferedOutputStream(logFile));
+		logRecords = 0;
+	}
+
+	private void closeLog() throws IOException {
+		logOutput.flush();
+		logFile.getChannel().force(false);
+		logOutput.close();
+	}
+
+	private File getLogFile(long logGeneration) {
+		return new File(directory, LOG_FILE_PREFIX + logGeneration + LOG_FILE_SUFFIX);
+	}
+
+	private List<Long> listLogGenerations() {
+		List<Long> generations = new ArrayList<Long>();
+		String[] fileNames = directory.list();
+		if (fileNames == null) {
+			return generations;
+		}
+		for (String fileName : fileNames) {
+			if (fileName.startsWith(LOG_FILE_PREFIX) && fileName.endsWith(LOG_FILE_SUFFIX)) {
+				try {
+					generations.add(Long.parseLong(fileName.substring(LOG_FILE_PREFIX.length(),
+							fileName.length() - LOG_FILE_SUFFIX.length())));
+				} catch (NumberFormatException e) {
+					LOGGER.warn("Ignoring unknown file " + fileName + " in journal directory.");
+				}
+			}
+		}
+		Collections.sort(generations);
+		return generations;
+	}
+
+	/**
+	 * @return The last log generation included in the snapshot or 0 if there
+	 *         is not a snapshot
+	 */
+	private long readSnapshot(Map<String, JournalEntry> entries) throws IOException {
+		File snapshot = new File(directory, SNAPSHOT_FILE);
+		if (!snapshot.exists()) {
+			return 0;
+		}
+		DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(
+				snapshot)));
+		try {
+			byte[] header = readRecord(input);
+			if (header == null || header[0] != SNAPSHOT_HEADER_RECORD) {
+				throw new IOException("The journal snapshot " + snapshot + " is corrupted.");
+			}
+			DataInputStream headerInput = new DataInputStream(new ByteArrayInputStream(header));
+			headerInput.readByte();
+			long snapshotGeneration = headerInput.readLong();
+			int size = headerInput.readInt();
+			for (int i = 0; i < size; i++) {
+				byte[] payload = readRecord(input);
+				if (payload == null) {
+					// the snapshot is synced before being renamed
+					throw new IOException("The journal snapshot " + snapshot + " is corrupted.");
+				}
+				apply(payload, entries);
+			}
+			return snapshotGeneration;
+		} finally {
+			input.close();
+		}
+	}
+
+	private void readLog(File log, Map<String, JournalEntry> entries) throws IOException {
+		DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(
+				log)));
+		try {
+			byte[] payload;
+			while ((payload = readRecord(input)) != null) {
+				apply(payload, entries);
+			}
+			if (input.read() != -1) {
+				LOGGER.warn("Ignoring the corrupted end of journal log " + log + ".");
+			}
+		} finally {
+			input.close();
+		}
+	}
+
+	private static void apply(byte[] payload, Map<String, JournalEntry> entries)
+			throws IOException {
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+		byte type = input.readByte();
+		String resourceId = input.readUTF();
+		if (type == PUT_RECORD) {
+			ResourceState state;
+			try {
+				state = ResourceState.valueOf(input.readUTF());
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Unknown resource state in journal record.");
+			}
+			JournalEntry entry = entries.get(resourceId);
+			if (entry == null) {
+				entries.put(resourceId, new JournalEntry(resourceId, state, input.readLong()));
+			} else {
+				entry.state = state;
+				entry.time = input.readLong();
+			}
+		} else if (type == REMOVE_RECORD) {
+			entries.remove(resourceId);
+		} else {
+			throw new IOException("Unknown journal record type " + type + ".");
+		}
+	}
+
+	/**
+	 * @return The payload of the next record or null if the input ended or the
+	 *         record is incomplete or corrupted
+	 */
+	private static byte[] readRecord(DataInputStream input) throws IOException {
+		int length;
+		long checksum;
+		try {
+			length = input.readInt();
+			checksum = input.readInt() & 0xFFFFFFFFL;
+		} catch (EOFException e) {
+			return null;
+		}
+		if (length <= 0 || length > MAX_RECORD_LENGTH) {
+			return null;
+		}
+		byte[] payload = new byte[length];
+		try {
+			input.readFully(payload);
+		} catch (EOFException e) {
+			return null;
+		}
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		return crc.getValue() == checksum ? payload : null;
+	}
+
+	private static void writeRecord(DataOutputStream output, byte[] payload) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		output.writeInt(payload.length);
+		output.writeInt((int) crc.getValue());
+		output.write(payload);
+	}
+
+	private static byte[] encodePut(String resourceId, ResourceState state, long time) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+			DataOutputStream output = new DataOutputStream(bytes);
+			output.writeByte(PUT_RECORD);
+			output.writeUTF(resourceId);
+			output.writeUTF(state.name());
+			output.writeLong(time);
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			// writing to memory does not fail
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static byte[] encodeRemove(String resourceId) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+			DataOutputStream output = new DataOutputStream(bytes);
+			output.writeByte(REMOVE_RECORD);
+			output.writeUTF(resourceId);
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static byte[] encodeSnapshotHeader(long snapshotGeneration, int size) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(16);
+			DataOutputStream output = new DataOutputStream(bytes);
+			output.writeByte(SNAPSHOT_HEADER_RECORD);
+			output.writeLong(snapshotGeneration);
+			output.writeInt(size);
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static class JournalEntry {
+
+		final String resourceId;
+		ResourceState state;
+		long time;
+
+		JournalEntry(String resourceId, ResourceState state, long time) {
+			this.resourceId = resourceId;
+			this.state = state;
+			this.time = time;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Resource tracked by the {@link ResourceRegistry}, with the time it last
+ * entered each state of its lifecycle. It is only changed by the registry,
+ * which gives copies to the readers.
+ */
+public class ResourceRecord {
+
+	private final String resourceId;
+	private final long sequence;
+	private volatile ResourceState state;
+	// state restored if the deletion fails
+	private ResourceState restoreState;
+	private final Map<ResourceState, Long> entryTimes;
+
+	ResourceRecord(String resourceId, long sequence, ResourceState state, long now) {
+		this.resourceId = resourceId;
+		this.sequence = sequence;
+		this.entryTimes = new EnumMap<ResourceState, Long>(ResourceState.class);
+		enter(state, now);
+	}
+
+	ResourceRecord(ResourceRecord record) {
+		this.resourceId = record.resourceId;
+		this.sequence = record.sequence;
+		this.state = record.state;
+		this.restoreState = record.restoreState;
+		this.entryTimes = new EnumMap<ResourceState, Long>(record.entryTimes);
+	}
+
+	void enter(ResourceState newState, long now) {
+		if (ResourceState.REMOVING.contains(newState) && !ResourceState.REMOVING.contains(state)) {
+			restoreState = state;
+		}
+		state = newState;
+		entryTimes.put(newState, now);
+	}
+
+	ResourceState getRestoreState() {
+		return restoreState;
+	}
+
+	public String getResourceId() {
+		return resourceId;
+	}
+
+	/**
+	 * @return The order in which the resource was added to the registry
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	public ResourceState getState() {
+		return state;
+	}
+
+	/**
+	 * @return The last time the resource entered the state or null if it never
+	 *         did
+	 */
+	public Long getEntryTime(ResourceState state) {
+		return entryTimes.get(state);
+	}
+
+	/**
+	 * @return The time from the last entry in a state until the last entry in
+	 *         the other or -1 if the resource did not enter both
+	 */
+	public long getDuration(ResourceState from, ResourceState to) {
+		Long fromTime = entryTimes.get(from);
+		Long toTime = entryTimes.get(to);
+		if (fromTime == null || toTime == null) {
+			return -1;
+		}
+		return toTime - fromTime;
+	}
+
+	public String toString() {
+		return resourceId + "=" + state;
+	}
+}
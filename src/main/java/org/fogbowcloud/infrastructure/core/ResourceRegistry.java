@@ -0,0 +1,333 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe store of the resources managed by the
+ * {@link InfrastructureManager}. Besides the records by id, it keeps an index
+ * and a counter by state, so counting the resources of a state does not scan
+ * the records. The resources are moved through their lifecycle by
+ * {@link ResourceEvent}s.
+ * 
+ * Changes of different resources run concurrently. Snapshots of several
+ * states wait the running changes, so a resource is never seen in two states
+ * or missing from a snapshot.
+ */
+public class ResourceRegistry {
+
+	private final ConcurrentMap<String, ResourceRecord> records = new ConcurrentHashMap<String, ResourceRecord>();
+	private final Map<ResourceState, Set<String>> indexes = new EnumMap<ResourceState, Set<String>>(
+			ResourceState.class);
+	private final Map<ResourceState, AtomicInteger> counts = new EnumMap<ResourceState, AtomicInteger>(
+			ResourceState.class);
+	private final AtomicLong sequence = new AtomicLong();
+	// changes share the read lock, snapshots take the write lock
+	private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+	private final Clock clock;
+	private volatile ResourceRegistryListener listener;
+
+	private static final Comparator<ResourceRecord> SEQUENCE_ORDER = new Comparator<ResourceRecord>() {
+		@Override
+		public int compare(ResourceRecord record, ResourceRecord other) {
+			return Long.compare(record.getSequence(), other.getSequence());
+		}
+	};
+
+	public ResourceRegistry() {
+		this(new SystemClock());
+	}
+
+	public ResourceRegistry(Clock clock) {
+		this.clock = clock;
+		for (ResourceState state : ResourceState.values()) {
+			indexes.put(state,
+					Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()));
+			counts.put(state, new AtomicInteger());
+		}
+	}
+
+	public void setListener(ResourceRegistryListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * @return false if the resource was already registered
+	 */
+	public boolean add(String resourceId, ResourceState state) {
+		return restore(resourceId, state, clock.currentTimeMillis());
+	}
+
+	/**
+	 * Adds the resource as it entered the state at the given time, e.g. when
+	 * it is restored from a {@link ResourceJournal}.
+	 * 
+	 * @return false if the resource was already registered
+	 */
+	public boolean restore(String resourceId, ResourceState state, long entryTime) {
+		ResourceRecord record = new ResourceRecord(resourceId, sequence.incrementAndGet(), state,
+				entryTime);
+		snapshotLock.readLock().lock();
+		try {
+			synchronized (record) {
+				if (records.putIfAbsent(resourceId, record) != null) {
+					return false;
+				}
+				index(resourceId, state);
+				notifyStateChanged(resourceId, state, entryTime);
+				return true;
+			}
+		} finally {
+			snapshotLock.readLock().unlock();
+		}
+	}
+
+	public void addAll(Collection<String> resourceIds, ResourceState state) {
+		for (String resourceId : resourceIds) {
+			add(resourceId, state);
+		}
+	}
+
+	/**
+	 * Moves the resource according to the event, if the event is allowed from
+	 * its current state.
+	 * 
+	 * @return The new state of the resource or null if it is not registered,
+	 *         the event is not allowed from its state or the resource is
+	 *         already in the new state
+	 */
+	public ResourceState fire(String resourceId, ResourceEvent event) {
+		ResourceRecord record = records.get(resourceId);
+		if (record == null) {
+			return null;
+		}
+		snapshotLock.readLock().lock();
+		try {
+			synchronized (record) {
+				ResourceState currentState = record.getState();
+				if (records.get(resourceId) != record || !event.isAllowedFrom(currentState)) {
+					return null;
+				}
+				ResourceState newState = event.getTarget() != null ? event.getTarget() : record
+						.getRestoreState();
+				if (newState == currentState) {
+					// it would restart the time in the state
+					return null;
+				}
+				long now = clock.currentTimeMillis();
+				unindex(resourceId, currentState);
+				record.enter(newState, now);
+				index(resourceId, newState);
+				notifyStateChanged(resourceId, newState, now);
+				return newState;
+			}
+		} finally {
+			snapshotLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return false if the resource was not registered
+	 */
+	public boolean remove(String resourceId) {
+		ResourceRecord record = records.get(resourceId);
+		if (record == null) {
+			return false;
+		}
+		snapshotLock.readLock().lock();
+		try {
+			synchronized (record) {
+				if (!records.remove(resourceId, record)) {
+					return false;
+				}
+				unindex(resourceId, record.getState());
+				ResourceRegistryListener currentListener = listener;
+				if (currentListener != null) {
+					currentListener.resourceRemoved(resourceId);
+				}
+				return true;
+			}
+		} finally {
+			snapshotLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Replaces all resources in the states by the given ones, which are added
+	 * in the first state.
+	 */
+	public void replace(Set<ResourceState> states, Collection<String> resourceIds) {
+		for (String resourceId : getResources(states)) {
+			remove(resourceId);
+		}
+		addAll(resourceIds, states.iterator().next());
+	}
+
+	/**
+	 * @return The state of the resource or null if it is not registered
+	 */
+	public ResourceState getState(String resourceId) {
+		ResourceRecord record = records.get(resourceId);
+		return record == null ? null : record.getState();
+	}
+
+	/**
+	 * @return Copy of the resource record or null if it is not registered
+	 */
+	public ResourceRecord getRecord(String resourceId) {
+		ResourceRecord record = records.get(resourceId);
+		if (record == null) {
+			return null;
+		}
+		synchronized (record) {
+			return new ResourceRecord(record);
+		}
+	}
+
+	public boolean contains(String resourceId) {
+		return records.containsKey(resourceId);
+	}
+
+	public int count(ResourceState state) {
+		return counts.get(state).get();
+	}
+
+	public int count(Set<ResourceState> states) {
+		int count = 0;
+		for (ResourceState state : states) {
+			count += count(state);
+		}
+		return count;
+	}
+
+	public int size() {
+		return records.size();
+	}
+
+	/**
+	 * @return Snapshot of the resources in the state, in the order they were
+	 *         added
+	 */
+	public List<String> getResources(ResourceState state) {
+		return getResources(Collections.singleton(state));
+	}
+
+	/**
+	 * @return Snapshot of the resources in the states, in the order they were
+	 *         added
+	 */
+	public List<String> getResources(Set<ResourceState> states) {
+		List<ResourceRecord> stateRecords = new ArrayList<ResourceRecord>();
+		for (ResourceState state : states) {
+			for (String resourceId : indexes.get(state)) {
+				ResourceRecord record = records.get(resourceId);
+				// the resource may have been moved after reading the index
+				if (record != null && record.getState() == state) {
+					stateRecords.add(record);
+				}
+			}
+		}
+		return toIds(stateRecords);
+	}
+
+	/**
+	 * @return Consistent snapshot of the resources of every state, in the
+	 *         order they were added
+	 */
+	public Map<ResourceState, List<String>> snapshot() {
+		Map<ResourceState, List<ResourceRecord>> stateRecords = new EnumMap<ResourceState, List<ResourceRecord>>(
+				ResourceState.class);
+		for (ResourceState state : ResourceState.values()) {
+			stateRecords.put(state, new ArrayList<ResourceRecord>());
+		}
+		snapshotLock.writeLock().lock();
+		try {
+			for (ResourceRecord record : records.values()) {
+				stateRecords.get(record.getState()).add(record);
+			}
+		} finally {
+			snapshotLock.writeLock().unlock();
+		}
+
+		Map<ResourceState, List<String>> snapshot = new EnumMap<ResourceState, List<String>>(
+				ResourceState.class);
+		for (ResourceState state : stateRecords.keySet()) {
+			snapshot.put(state, toIds(stateRecords.get(state)));
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @return The resources of the states in the snapshot, grouped by state in
+	 *         the iteration order of the states
+	 */
+	public static List<String> getResources(Map<ResourceState, List<String>> snapshot,
+			Set<ResourceState> states) {
+		List<String> resourceIds = new ArrayList<String>();
+		for (ResourceState state : states) {
+			resourceIds.addAll(snapshot.get(state));
+		}
+		return resourceIds;
+	}
+
+	/**
+	 * @return Consistent copy of all records, in the order they were added
+	 */
+	public List<ResourceRecord> getRecords() {
+		List<ResourceRecord> copies = new ArrayList<ResourceRecord>();
+		snapshotLock.writeLock().lock();
+		try {
+			for (ResourceRecord record : records.values()) {
+				synchronized (record) {
+					copies.add(new ResourceRecord(record));
+				}
+			}
+		} finally {
+			snapshotLock.writeLock().unlock();
+		}
+		Collections.sort(copies, SEQUENCE_ORDER);
+		return copies;
+	}
+
+	private void notifyStateChanged(String resourceId, ResourceState state, long time) {
+		ResourceRegistryListener currentListener = listener;
+		if (currentListener != null) {
+			currentListener.resourceStateChanged(resourceId, state, time);
+		}
+	}
+
+	private static List<String> toIds(List<ResourceRecord> records) {
+		Collections.sort(records, SEQUENCE_ORDER);
+		List<String> resourceIds = new ArrayList<String>(records.size());
+		for (ResourceRecord record : records) {
+			resourceIds.add(record.getResourceId());
+		}
+		return resourceIds;
+	}
+
+	private void index(String resourceId, ResourceState state) {
+		indexes.get(state).add(resourceId);
+		counts.get(state).incrementAndGet();
+	}
+
+	private void unindex(String resourceId, ResourceState state) {
+		indexes.get(state).remove(resourceId);
+		counts.get(state).decrementAndGet();
+	}
+
+	public String toString() {
+		return snapshot().toString();
+	}
+}
@@ -0,0 +1,17 @@
+package org.fogbowcloud.infrastructure.core;
+
+/**
+ * Listens the changes of a {@link ResourceRegistry}. The changes of a resource
+ * are notified in the order they happen, while the resource is locked, so the
+ * listener must be fast and must not call the registry back.
+ */
+public interface ResourceRegistryListener {
+
+	/**
+	 * The resource was added or moved to the state at the given time
+	 */
+	public void resourceStateChanged(String resourceId, ResourceState state, long time);
+
+	public void resourceRemoved(String resourceId);
+
+}
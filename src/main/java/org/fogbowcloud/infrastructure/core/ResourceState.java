@@ -0,0 +1,55 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * States of the lifecycle of a resource. The transitions between them are
+ * defined by the {@link ResourceEvent}s.
+ */
+public enum ResourceState {
+
+	/**
+	 * The resource was requested to the infrastructure, which did not provide
+	 * it yet
+	 */
+	REQUESTED,
+
+	/**
+	 * The infrastructure provided the resource, which may be still booting
+	 */
+	FULFILLED,
+
+	/**
+	 * The resource is reachable, but the engine is not running on it yet
+	 */
+	REACHABLE,
+
+	/**
+	 * The engine is running on the resource
+	 */
+	IN_USE,
+
+	/**
+	 * The resource will be deleted and must not receive new work
+	 */
+	DRAINING,
+
+	/**
+	 * The resource is being deleted
+	 */
+	DELETING;
+
+	/**
+	 * States of the resources requested, but not available to run jobs yet
+	 */
+	public static final Set<ResourceState> NOT_AVAILABLE = Collections.unmodifiableSet(EnumSet.of(
+			REQUESTED, FULFILLED, REACHABLE));
+
+	/**
+	 * States of the resources being removed
+	 */
+	public static final Set<ResourceState> REMOVING = Collections.unmodifiableSet(EnumSet.of(
+			DRAINING, DELETING));
+}
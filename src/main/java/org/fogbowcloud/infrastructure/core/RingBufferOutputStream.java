@@ -0,0 +1,87 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Output stream that keeps only the last bytes written to it, so the output
+ * of a chatty command takes a bounded amount of memory. It counts all bytes
+ * written, including the discarded ones.
+ */
+public class RingBufferOutputStream extends OutputStream {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final byte[] buffer;
+	private int position = 0;
+	private long totalBytes = 0;
+
+	/**
+	 * @param capacity
+	 *            Maximum number of bytes kept
+	 */
+	public RingBufferOutputStream(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Ring buffer capacity must be a positive integer.");
+		}
+		this.buffer = new byte[capacity];
+	}
+
+	@Override
+	public synchronized void write(int b) {
+		buffer[position] = (byte) b;
+		position = (position + 1) % buffer.length;
+		totalBytes++;
+	}
+
+	@Override
+	public synchronized void write(byte[] b, int off, int len) {
+		totalBytes += len;
+		if (len >= buffer.length) {
+			// only the tail of the chunk is kept
+			System.arraycopy(b, off + len - buffer.length, buffer, 0, buffer.length);
+			position = 0;
+			return;
+		}
+		int firstPart = Math.min(len, buffer.length - position);
+		System.arraycopy(b, off, buffer, position, firstPart);
+		System.arraycopy(b, off + firstPart, buffer, 0, len - firstPart);
+		position = (position + len) % buffer.length;
+	}
+
+	/**
+	 * @return Number of bytes written, including the discarded ones
+	 */
+	public synchronized long getTotalBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * @return Whether bytes were discarded because the capacity was exceeded
+	 */
+	public synchronized boolean isTruncated() {
+		return totalBytes > buffer.length;
+	}
+
+	/**
+	 * @return The kept bytes in the order they were written
+	 */
+	public synchronized byte[] toByteArray() {
+		if (!isTruncated()) {
+			byte[] bytes = new byte[(int) totalBytes];
+			System.arraycopy(buffer, 0, bytes, 0, bytes.length);
+			return bytes;
+		}
+		byte[] bytes = new byte[buffer.length];
+		System.arraycopy(buffer, position, bytes, 0, buffer.length - position);
+		System.arraycopy(buffer, 0, bytes, buffer.length - position, position);
+		return bytes;
+	}
+
+	/**
+	 * @return The kept bytes decoded as UTF-8
+	 */
+	public String toString() {
+		return new String(toByteArray(), UTF_8);
+	}
+}
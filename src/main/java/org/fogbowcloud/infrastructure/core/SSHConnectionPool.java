@@ -0,0 +1,455 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.PublicKey;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.schmizz.sshj.SSHClient;
+import net.schmizz.sshj.connection.channel.direct.Session;
+import net.schmizz.sshj.connection.channel.direct.Session.Command;
+import net.schmizz.sshj.transport.verification.HostKeyVerifier;
+
+import org.apache.log4j.Logger;
+
+import org.fogbowcloud.PropertiesUtils;
+
+/**
+ * Keeps one authenticated ssh transport by host, port and user, so the
+ * commands executed on the same engine share it instead of doing the key
+ * exchange and authentication again. Each command runs in its own session of
+ * the shared transport and the number of concurrent sessions by host is
+ * limited, because ssh servers refuse sessions above their own limit.
+ *
+ * Idle transports are kept alive by heartbeats and closed by a background
+ * evictor after an idle timeout. A transport found closed, either evicted or
+ * dropped by the server, is reconnected on the next command.
+ *
+ * A command that does not complete within its timeout has its session closed,
+ * which frees its slot of the host. If the session can not be closed, the
+ * transport is closed too and reconnected on the next command.
+ */
+public class SSHConnectionPool {
+
+	public static final String HEARTBEAT_INTERVAL_KEY = "ssh_heartbeat_interval";
+	public static final String IDLE_TIMEOUT_KEY = "ssh_idle_timeout";
+	public static final String MAX_SESSIONS_PER_HOST_KEY = "ssh_max_sessions_per_host";
+	public static final String CONNECT_TIMEOUT_KEY = "ssh_connect_timeout";
+	public static final String OUTPUT_BUFFER_SIZE_KEY = "ssh_output_buffer_size";
+	public static final String COMMAND_TIMEOUT_KEY = "ssh_command_timeout";
+
+	public static final int DEFAULT_HEARTBEAT_INTERVAL = 30; // in seconds
+	public static final int DEFAULT_IDLE_TIMEOUT = 300; // in seconds
+	public static final int DEFAULT_MAX_SESSIONS_PER_HOST = 5;
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10000; // in milliseconds
+	public static final int DEFAULT_OUTPUT_BUFFER_SIZE = 64; // in kilobytes
+	public static final int DEFAULT_COMMAND_TIMEOUT = 300; // in seconds
+
+	private static final int PUMP_BUFFER_SIZE = 8192;
+
+	private final int heartbeatInterval;
+	private final long idleTimeout;
+	private final int maxSessionsPerHost;
+	private final int connectTimeout;
+	private final int outputBufferSize;
+	private final long commandTimeout;
+	private final Clock clock;
+
+	private final ConcurrentMap<String, PooledConnection> connections = new ConcurrentHashMap<String, PooledConnection>();
+	private final ScheduledExecutorService idleConnectionEvictor;
+	private final ExecutorService streamPumpExecutor;
+
+	private static final Logger LOGGER = Logger.getLogger(SSHConnectionPool.class);
+
+	public SSHConnectionPool(Properties properties) {
+		this.heartbeatInterval = PropertiesUtils.getPositiveIntProperty(properties,
+				HEARTBEAT_INTERVAL_KEY, DEFAULT_HEARTBEAT_INTERVAL);
+		this.idleTimeout = PropertiesUtils.getPositiveIntProperty(properties, IDLE_TIMEOUT_KEY,
+				DEFAULT_IDLE_TIMEOUT) * 1000L;
+		this.maxSessionsPerHost = PropertiesUtils.getPositiveIntProperty(properties,
+				MAX_SESSIONS_PER_HOST_KEY, DEFAULT_MAX_SESSIONS_PER_HOST);
+		this.connectTimeout = PropertiesUtils.getPositiveIntProperty(properties,
+				CONNECT_TIMEOUT_KEY, DEFAULT_CONNECT_TIMEOUT);
+		this.outputBufferSize = PropertiesUtils.getPositiveIntProperty(properties,
+				OUTPUT_BUFFER_SIZE_KEY, DEFAULT_OUTPUT_BUFFER_SIZE) * 1024;
+		this.commandTimeout = PropertiesUtils.getPositiveIntProperty(properties,
+				COMMAND_TIMEOUT_KEY, DEFAULT_COMMAND_TIMEOUT) * 1000L;
+		this.clock = new SystemClock();
+		this.streamPumpExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory(
+				"ssh-stream-pump"));
+
+		idleConnectionEvictor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(
+				"ssh-idle-connection-evictor"));
+		idleConnectionEvictor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				evictIdleConnections();
+			}
+		}, idleTimeout, idleTimeout / 2, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Executes the command keeping only the last bytes of its stdout and
+	 * stderr, up to the output buffer size, with the command timeout of the
+	 * pool.
+	 * 
+	 * @see #execute(String, int, String, String, boolean, String, OutputStream,
+	 *      OutputStream, long)
+	 */
+	public CommandResult execute(String address, int port, String username,
+			String authentication, boolean usingPassword, String command) throws IOException,
+			InterruptedException {
+		return execute(address, port, username, authentication, usingPassword, command,
+				commandTimeout);
+	}
+
+	/**
+	 * Executes the command keeping only the last bytes of its stdout and
+	 * stderr, up to the output buffer size.
+	 * 
+	 * @see #execute(String, int, String, String, boolean, String, OutputStream,
+	 *      OutputStream, long)
+	 */
+	public CommandResult execute(String address, int port, String username,
+			String authentication, boolean usingPassword, String command, long timeout)
+			throws IOException, InterruptedException {
+		RingBufferOutputStream output = new RingBufferOutputStream(outputBufferSize);
+		RingBufferOutputStream error = new RingBufferOutputStream(outputBufferSize);
+		CommandResult result = execute(address, port, username, authentication, usingPassword,
+				command, output, error, timeout);
+		return new CommandResult(result.getExitStatus(), output.toString(), error.toString(),
+				result.getOutputBytes(), result.getErrorBytes(), result.isOutputTruncated(),
+				result.isErrorTruncated());
+	}
+
+	/**
+	 * Executes the command with the command timeout of the pool.
+	 * 
+	 * @see #execute(String, int, String, String, boolean, String, OutputStream,
+	 *      OutputStream, long)
+	 */
+	public CommandResult execute(String address, int port, String username,
+			String authentication, boolean usingPassword, String command,
+			OutputStream outputSink, OutputStream errorSink) throws IOException,
+			InterruptedException {
+		return execute(address, port, username, authentication, usingPassword, command,
+				outputSink, errorSink, commandTimeout);
+	}
+
+	/**
+	 * Executes the command in a new session of the pooled transport to the
+	 * host. The command is not executed again if it fails, only the opening of
+	 * the session is retried once with a new transport.
+	 * 
+	 * The stdout and stderr of the command are drained concurrently while it
+	 * runs, so it never blocks on a full channel window. The sinks are not
+	 * closed and the returned result has no output, only its byte counts.
+	 * 
+	 * The session is closed when the command times out or the calling thread
+	 * is interrupted, so the slot of the host is released at once.
+	 *
+	 * @param authentication
+	 *            The password or the private key file path
+	 * @param outputSink
+	 *            Receives the stdout of the command
+	 * @param errorSink
+	 *            Receives the stderr of the command
+	 * @param timeout
+	 *            Time for the command to complete in milliseconds
+	 * @throws IOException
+	 *             If the command could not be executed or timed out
+	 */
+	public CommandResult execute(String address, int port, String username,
+			String authentication, boolean usingPassword, String command,
+			OutputStream outputSink, OutputStream errorSink, long timeout) throws IOException,
+			InterruptedException {
+		if (timeout <= 0) {
+			throw new IllegalArgumentException("Command timeout must be positive.");
+		}
+		String key = address + ":" + port + ":" + username;
+		while (true) {
+			PooledConnection connection = getConnection(key);
+			connection.sessions.acquire();
+			try {
+				if (connection.retired) {
+					// evicted meanwhile, a new one is taken from the pool
+					continue;
+				}
+				Session session = openSession(connection, address, port, username,
+						authentication, usingPassword);
+				boolean completed = false;
+				try {
+					long deadline = clock.currentTimeMillis() + timeout;
+					Command cmd = session.exec(command);
+					Future<Long> errorBytes = pumpAsync(cmd.getErrorStream(), errorSink);
+					Future<Long> outputBytes = pumpAsync(cmd.getInputStream(), outputSink);
+					long outputBytesValue = getPumpedBytes(outputBytes, deadline);
+					long errorBytesValue = getPumpedBytes(errorBytes, deadline);
+					cmd.join((int) Math.min(Integer.MAX_VALUE, getRemainingTime(deadline)),
+							TimeUnit.MILLISECONDS);
+					completed = true;
+					return new CommandResult(cmd.getExitStatus(), null, null, outputBytesValue,
+							errorBytesValue, isTruncated(outputSink), isTruncated(errorSink));
+				} catch (TimeoutException e) {
+					throw new IOException("Command did not complete in " + timeout + "ms on "
+							+ key + ".", e);
+				} finally {
+					closeSession(connection, session, completed);
+				}
+			} finally {
+				connection.lastUsed = clock.currentTimeMillis();
+				connection.sessions.release();
+			}
+		}
+	}
+
+	/**
+	 * Closes the session of the command. If the command did not complete, its
+	 * session may be stuck, so the transport is closed if the session can not
+	 * be.
+	 */
+	private static void closeSession(PooledConnection connection, Session session,
+			boolean completed) {
+		try {
+			session.close();
+		} catch (IOException e) {
+			if (completed) {
+				LOGGER.debug("Exception while closing ssh session to " + connection.key + ".", e);
+				return;
+			}
+			LOGGER.warn("Could not close the ssh session of an unfinished command on "
+					+ connection.key + ". Closing its connection.", e);
+			connection.close(null);
+		}
+	}
+
+	private Future<Long> pumpAsync(final InputStream inputStream, final OutputStream sink) {
+		return streamPumpExecutor.submit(new Callable<Long>() {
+			@Override
+			public Long call() throws IOException {
+				return pump(inputStream, sink);
+			}
+		});
+	}
+
+	private long getRemainingTime(long deadline) throws TimeoutException {
+		long remainingTime = deadline - clock.currentTimeMillis();
+		if (remainingTime <= 0) {
+			throw new TimeoutException();
+		}
+		return remainingTime;
+	}
+
+	/**
+	 * @return The bytes pumped by the stream until its end, which comes when
+	 *         the command completes
+	 */
+	private long getPumpedBytes(Future<Long> pumpedBytes, long deadline) throws IOException,
+			InterruptedException, TimeoutException {
+		try {
+			return pumpedBytes.get(getRemainingTime(deadline), TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Copies the stream to the sink until its end.
+	 * 
+	 * @return The number of bytes copied
+	 */
+	private static long pump(InputStream inputStream, OutputStream sink) throws IOException {
+		byte[] buffer = new byte[PUMP_BUFFER_SIZE];
+		long totalBytes = 0;
+		int read;
+		while ((read = inputStream.read(buffer)) != -1) {
+			sink.write(buffer, 0, read);
+			totalBytes += read;
+		}
+		sink.flush();
+		return totalBytes;
+	}
+
+	private static boolean isTruncated(OutputStream sink) {
+		return sink instanceof RingBufferOutputStream
+				&& ((RingBufferOutputStream) sink).isTruncated();
+	}
+
+	private PooledConnection getConnection(String key) {
+		PooledConnection connection = connections.get(key);
+		if (connection == null) {
+			PooledConnection newConnection = new PooledConnection(key, maxSessionsPerHost);
+			connection = connections.putIfAbsent(key, newConnection);
+			if (connection == null) {
+				connection = newConnection;
+			}
+		}
+		return connection;
+	}
+
+	private Session openSession(PooledConnection connection, String address, int port,
+			String username, String authentication, boolean usingPassword) throws IOException {
+		SSHClient client = connection.getClient(address, port, username, authentication,
+				usingPassword);
+		try {
+			return client.startSession();
+		} catch (IOException e) {
+			LOGGER.warn("Exception while opening ssh session to " + connection.key
+					+ ". Reconnecting.", e);
+			connection.close(client);
+			return connection.getClient(address, port, username, authentication, usingPassword)
+					.startSession();
+		}
+	}
+
+	/**
+	 * Closes the transports without sessions for longer than the idle timeout.
+	 */
+	protected void evictIdleConnections() {
+		long now = clock.currentTimeMillis();
+		Iterator<PooledConnection> iterator = connections.values().iterator();
+		while (iterator.hasNext()) {
+			PooledConnection connection = iterator.next();
+			if (now - connection.lastUsed < idleTimeout
+					|| !connection.sessions.tryAcquire(maxSessionsPerHost)) {
+				continue;
+			}
+			// no session can be opened while all permits are held
+			try {
+				if (now - connection.lastUsed >= idleTimeout) {
+					LOGGER.debug("Closing idle ssh connection to " + connection.key + ".");
+					connection.retired = true;
+					connections.remove(connection.key, connection);
+					connection.close(null);
+				}
+			} finally {
+				connection.sessions.release(maxSessionsPerHost);
+			}
+		}
+	}
+
+	/**
+	 * @return The time for a command to complete in milliseconds, unless
+	 *         another one is given
+	 */
+	public long getCommandTimeout() {
+		return commandTimeout;
+	}
+
+	/**
+	 * @return The number of hosts with a pooled transport
+	 */
+	public int size() {
+		return connections.size();
+	}
+
+	/**
+	 * Closes all pooled transports. The pool must not be used after this call.
+	 */
+	public void shutdown() {
+		idleConnectionEvictor.shutdownNow();
+		streamPumpExecutor.shutdownNow();
+		for (PooledConnection connection : connections.values()) {
+			connection.retired = true;
+			connection.close(null);
+		}
+		connections.clear();
+	}
+
+	private class PooledConnection {
+
+		final String key;
+		final Semaphore sessions;
+		volatile long lastUsed = clock.currentTimeMillis();
+		volatile boolean retired = false;
+
+		private SSHClient client;
+		private String authentication;
+
+		PooledConnection(String key, int maxSessions) {
+			this.key = key;
+			this.sessions = new Semaphore(maxSessions, true);
+		}
+
+		/**
+		 * @return The connected and authenticated client, connecting it if it
+		 *         is closed or if the authentication changed
+		 */
+		synchronized SSHClient getClient(String address, int port, String username,
+				String authentication, boolean usingPassword) throws IOException {
+			if (client != null && client.isConnected() && client.isAuthenticated()
+					&& authentication.equals(this.authentication)) {
+				return client;
+			}
+			close(client);
+
+			SSHClient newClient = new SSHClient();
+			addBlankHostKeyVerifier(newClient);
+			newClient.setConnectTimeout(connectTimeout);
+			try {
+				newClient.connect(address, port);
+				if (usingPassword) {
+					newClient.authPassword(username, authentication);
+				} else {
+					// if it doesn't using password, the authentication is key
+					// file path
+					newClient.authPublickey(username, authentication);
+				}
+				newClient.getTransport().setHeartbeatInterval(heartbeatInterval);
+			} catch (IOException e) {
+				disconnect(newClient);
+				throw e;
+			}
+			LOGGER.debug("Opened ssh connection to " + key + ".");
+			this.client = newClient;
+			this.authentication = authentication;
+			return newClient;
+		}
+
+		/**
+		 * Closes the given client if it is still the pooled one or the pooled
+		 * client if null is given.
+		 */
+		synchronized void close(SSHClient staleClient) {
+			if (client == null || (staleClient != null && staleClient != client)) {
+				return;
+			}
+			disconnect(client);
+			client = null;
+		}
+
+		private void disconnect(SSHClient sshClient) {
+			try {
+				sshClient.disconnect();
+				sshClient.close();
+			} catch (Throwable e) {
+				LOGGER.debug("Exception while closing ssh connection to " + key + ".", e);
+			}
+		}
+	}
+
+	private static void addBlankHostKeyVerifier(SSHClient ssh) {
+		ssh.addHostKeyVerifier(new HostKeyVerifier() {
+			@Override
+			public boolean verify(String arg0, int arg1, PublicKey arg2) {
+				return true;
+			}
+		});
+	}
+}
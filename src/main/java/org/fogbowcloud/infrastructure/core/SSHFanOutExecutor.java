@@ -0,0 +1,241 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.fogbowcloud.PropertiesUtils;
+import org.fogbowcloud.infrastructure.core.FanOutResult.Status;
+
+/**
+ * Runs the same command on several resources, through
+ * {@link InfrastructureProvider#executeCommand(Map, Map, String, long)}, with a
+ * bounded number of hosts at the same time. Each result is delivered to the
+ * listener as soon as its host completes.
+ *
+ * The timeout of a host counts from the moment its command starts, so hosts
+ * waiting for a free slot do not time out. A host that times out is reported
+ * at once and its command is interrupted. The ssh command is given the same
+ * timeout, so its session is closed and its thread and its slot of the ssh
+ * connection pool are freed for the next host.
+ */
+public class SSHFanOutExecutor {
+
+	public static final String PARALLELISM_KEY = "ssh_fanout_parallelism";
+	public static final String TIMEOUT_KEY = "ssh_fanout_timeout";
+
+	public static final int DEFAULT_PARALLELISM = 20;
+	public static final int DEFAULT_TIMEOUT = 60; // in seconds
+
+	// progress is logged at each tenth of the hosts
+	private static final int PROGRESS_STEPS = 10;
+
+	private final int parallelism;
+	private final long timeout;
+	private final Clock clock;
+	private ExecutorService executor;
+
+	private static final Logger LOGGER = Logger.getLogger(SSHFanOutExecutor.class);
+
+	public SSHFanOutExecutor(Properties properties) {
+		this(PropertiesUtils.getIntProperty(properties, PARALLELISM_KEY, DEFAULT_PARALLELISM),
+				PropertiesUtils.getIntProperty(properties, TIMEOUT_KEY, DEFAULT_TIMEOUT) * 1000L);
+	}
+
+	/**
+	 * @param timeout
+	 *            Per-host timeout in milliseconds
+	 */
+	public SSHFanOutExecutor(int parallelism, long timeout) {
+		if (parallelism <= 0 || timeout <= 0) {
+			throw new IllegalArgumentException(
+					"Fan-out parallelism and timeout must be positive.");
+		}
+		this.parallelism = parallelism;
+		this.timeout = timeout;
+		this.clock = new SystemClock();
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(parallelism, new DaemonThreadFactory(
+					"ssh-fanout"));
+		}
+		return executor;
+	}
+
+	/**
+	 * Executes the command on all resources and waits for them to complete or
+	 * time out.
+	 *
+	 * @param resourcesInfo
+	 *            Map from resource id to resource info. A resource without info
+	 *            is reported as unreachable
+	 * @param listener
+	 *            Receives each result as it completes, it may be null
+	 * @throws InterruptedException
+	 *             If interrupted while waiting, the pending commands are
+	 *             interrupted too
+	 */
+	public FanOutSummary execute(InfrastructureProvider infraProvider,
+			Map<String, Map<String, String>> resourcesInfo,
+			final Map<String, String> credentials, final String command,
+			FanOutListener listener) throws InterruptedException {
+		int total = resourcesInfo.size();
+		LOGGER.info("Executing command=" + command + " on " + total + " resources.");
+		long startTime = clock.currentTimeMillis();
+		FanOutSummary summary = new FanOutSummary();
+		Progress progress = new Progress(summary, listener, total);
+
+		CompletionService<CommandResult> completionService = new ExecutorCompletionService<CommandResult>(
+				getExecutor());
+		Map<Future<CommandResult>, String> resourceIds = new HashMap<Future<CommandResult>, String>();
+		Map<String, Future<CommandResult>> futures = new HashMap<String, Future<CommandResult>>();
+		Map<String, Long> startTimes = new ConcurrentHashMap<String, Long>();
+		Set<String> pending = new LinkedHashSet<String>();
+		for (String resourceId : resourcesInfo.keySet()) {
+			Map<String, String> resourceInfo = resourcesInfo.get(resourceId);
+			if (resourceInfo == null) {
+				progress.add(new FanOutResult(resourceId, null, 0));
+				continue;
+			}
+			Future<CommandResult> future = completionService.submit(createCommand(
+					infraProvider, resourceId, resourceInfo, credentials, command, startTimes));
+			resourceIds.put(future, resourceId);
+			futures.put(resourceId, future);
+			pending.add(resourceId);
+		}
+
+		try {
+			while (!pending.isEmpty()) {
+				Future<CommandResult> future = completionService.poll(
+						getWaitTime(pending, startTimes), TimeUnit.MILLISECONDS);
+				long now = clock.currentTimeMillis();
+				if (future != null) {
+					String resourceId = resourceIds.get(future);
+					// the timed out hosts were reported already
+					if (pending.remove(resourceId)) {
+						progress.add(new FanOutResult(resourceId, getResult(resourceId, future),
+								now - startTimes.get(resourceId)));
+					}
+				}
+
+				for (String resourceId : pending.toArray(new String[pending.size()])) {
+					Long hostStartTime = startTimes.get(resourceId);
+					if (hostStartTime != null && now - hostStartTime >= timeout) {
+						futures.get(resourceId).cancel(true);
+						pending.remove(resourceId);
+						progress.add(new FanOutResult(resourceId, Status.TIMED_OUT, null, now
+								- hostStartTime));
+					}
+				}
+			}
+		} finally {
+			// only left when interrupted
+			for (String resourceId : pending) {
+				futures.get(resourceId).cancel(true);
+			}
+		}
+
+		summary.setElapsedTime(clock.currentTimeMillis() - startTime);
+		LOGGER.info("Command=" + command + " executed: " + summary);
+		return summary;
+	}
+
+	private Callable<CommandResult> createCommand(final InfrastructureProvider infraProvider,
+			final String resourceId, final Map<String, String> resourceInfo,
+			final Map<String, String> credentials, final String command,
+			final Map<String, Long> startTimes) {
+		return new Callable<CommandResult>() {
+			@Override
+			public CommandResult call() throws InfrastructureException {
+				startTimes.put(resourceId, clock.currentTimeMillis());
+				return infraProvider.executeCommand(resourceInfo, credentials, command, timeout);
+			}
+		};
+	}
+
+	/**
+	 * @return The time until the first started host times out or the whole
+	 *         timeout if no host started yet
+	 */
+	private long getWaitTime(Set<String> pending, Map<String, Long> startTimes) {
+		long now = clock.currentTimeMillis();
+		long waitTime = timeout;
+		for (String resourceId : pending) {
+			Long hostStartTime = startTimes.get(resourceId);
+			if (hostStartTime != null) {
+				waitTime = Math.min(waitTime, hostStartTime + timeout - now);
+			}
+		}
+		return Math.max(1, waitTime);
+	}
+
+	/**
+	 * @return The command result or null if it could not be executed
+	 */
+	private static CommandResult getResult(String resourceId, Future<CommandResult> future)
+			throws InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			LOGGER.error("Exception while executing command on resourceId=" + resourceId + ".",
+					e.getCause());
+			return null;
+		}
+	}
+
+	/**
+	 * Shuts down the threads of the fan-out. The executor must not be used
+	 * after this call.
+	 */
+	public synchronized void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	private static class Progress {
+
+		private final FanOutSummary summary;
+		private final FanOutListener listener;
+		private final int total;
+		private int lastStep = 0;
+
+		Progress(FanOutSummary summary, FanOutListener listener, int total) {
+			this.summary = summary;
+			this.listener = listener;
+			this.total = total;
+		}
+
+		void add(FanOutResult result) {
+			summary.add(result);
+			int completed = summary.getTotal();
+			LOGGER.debug("Fan-out result of " + result);
+			if (listener != null) {
+				try {
+					listener.resultAvailable(result, completed, total);
+				} catch (Throwable e) {
+					LOGGER.error("Exception while notifying fan-out listener.", e);
+				}
+			}
+			int step = completed * PROGRESS_STEPS / total;
+			if (step > lastStep) {
+				lastStep = step;
+				LOGGER.info("Fan-out progress: " + completed + "/" + total + " (" + summary + ")");
+			}
+		}
+	}
+}
@@ -1,15 +1,7 @@
 package org.fogbowcloud.infrastructure.core;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.security.PublicKey;
-
-import net.schmizz.sshj.SSHClient;
-import net.schmizz.sshj.connection.channel.direct.Session;
-import net.schmizz.sshj.connection.channel.direct.Session.Command;
-import net.schmizz.sshj.transport.verification.HostKeyVerifier;
+import java.io.OutputStream;
+import java.util.Properties;
 
 import org.apache.log4j.Logger;
 
@@ -17,82 +9,107 @@ public class SSHUtils {
 
 	private static final Logger LOGGER = Logger.getLogger(SSHUtils.class);
 
+	private static volatile SSHConnectionPool connectionPool = new SSHConnectionPool(
+			new Properties());
+
+	/**
+	 * Replaces the pool of ssh connections used by all commands, shutting down
+	 * the previous one. A command not completed within the command timeout of
+	 * the pool returns null.
+	 */
+	public static void setConnectionPool(SSHConnectionPool connectionPool) {
+		if (connectionPool == null) {
+			throw new IllegalArgumentException("SSHConnectionPool must not be null.");
+		}
+		SSHConnectionPool previousPool = SSHUtils.connectionPool;
+		SSHUtils.connectionPool = connectionPool;
+		previousPool.shutdown();
+	}
+
 	public static CommandResult doSshWithPassword(String address, int port, String command,
 			String username, String password) {
+		return doSshWithPassword(address, port, command, username, password, null, null);
+	}
+
+	/**
+	 * Streams the stdout and stderr of the command to the sinks, or keeps
+	 * their last bytes in the command result if the sinks are null.
+	 */
+	public static CommandResult doSshWithPassword(String address, int port, String command,
+			String username, String password, OutputStream outputSink, OutputStream errorSink) {
+		return doSshWithPassword(address, port, command, username, password, outputSink,
+				errorSink, getCommandTimeout());
+	}
+
+	/**
+	 * @param timeout
+	 *            Time for the command to complete in milliseconds
+	 */
+	public static CommandResult doSshWithPassword(String address, int port, String command,
+			String username, String password, OutputStream outputSink, OutputStream errorSink,
+			long timeout) {
 		LOGGER.info("Doing ssh to address=" + address + ", port=" + port + " to run command="
 				+ command + " authenticating by username=" + username + ", password=" + password);
-		return doSSH(address, port, command, username, password, true);
+		return doSSH(address, port, command, username, password, true, outputSink, errorSink,
+				timeout);
+	}
+
+	/**
+	 * @return The time for a command to complete in milliseconds, unless
+	 *         another one is given
+	 */
+	public static long getCommandTimeout() {
+		return connectionPool.getCommandTimeout();
 	}
 
 	private static CommandResult doSSH(String address, int port, String command, String username,
-			String authentication, boolean usingPassword) {
-		System.out.println("1");
-		SSHClient ssh = new SSHClient();
-		Session session = null;
-		addBlankHostKeyVerifier(ssh);
-		System.out.println("2");
+			String authentication, boolean usingPassword, OutputStream outputSink,
+			OutputStream errorSink, long timeout) {
 		try {
-			ssh.connect(address, port);
-			if (usingPassword) {
-				System.out.println("3");
-				ssh.authPassword(username, authentication);
-			} else {
-				System.out.println("4");
-				// if it doesn't using password, the authentication is key file
-				// path
-				ssh.authPublickey(username, authentication);
+			if (outputSink == null || errorSink == null) {
+				return connectionPool.execute(address, port, username, authentication,
+						usingPassword, command, timeout);
 			}
-			session = ssh.startSession();
-			System.out.println("5");
-			Command cmd = session.exec(command);
-			System.out.println("6");
-			cmd.join();
-			System.out.println("7");
-			int cmdExitStatus = cmd.getExitStatus();
-			String cmdOutput = readInputStream(cmd.getInputStream());
-			String cmdErrorMessage = readInputStream(cmd.getErrorStream());
-			System.out.println("8");
-			return new CommandResult(cmdExitStatus, cmdOutput, cmdErrorMessage);
+			return connectionPool.execute(address, port, username, authentication,
+					usingPassword, command, outputSink, errorSink, timeout);
+		} catch (InterruptedException e) {
+			LOGGER.error("Interrupted while doing ssh.", e);
+			Thread.currentThread().interrupt();
+			return null;
 		} catch (Exception e) {
 			LOGGER.error("Exception while doing ssh.", e);
 			return null;
-		} finally {
-			try {
-				if (session != null) {
-					session.close();
-				}
-				ssh.disconnect();
-				ssh.close();
-			} catch (Throwable e) {
-			}
 		}
 	}
 
 	public static CommandResult doSshWithPrivateKey(String address, int port, String command,
 			String username, String privateKeyFilePath) {
-		LOGGER.info("Doing ssh to address=" + address + ", port=" + port + " to run command="
-				+ command + " authenticating by username=" + username + ", privateKeyFilePath="
-				+ privateKeyFilePath);
-		return doSSH(address, port, command, username, privateKeyFilePath, false);
+		return doSshWithPrivateKey(address, port, command, username, privateKeyFilePath, null,
+				null);
 	}
 
-	private static String readInputStream(InputStream inputStream) throws IOException {
-		BufferedReader br = new BufferedReader(new InputStreamReader(inputStream));
-		StringBuffer sb = new StringBuffer();
-		String line;
-		while ((line = br.readLine()) != null) {
-			sb.append(line).append("\n");
-		}
-		String answer = sb.toString();
-		return answer;
+	/**
+	 * Streams the stdout and stderr of the command to the sinks, or keeps
+	 * their last bytes in the command result if the sinks are null.
+	 */
+	public static CommandResult doSshWithPrivateKey(String address, int port, String command,
+			String username, String privateKeyFilePath, OutputStream outputSink,
+			OutputStream errorSink) {
+		return doSshWithPrivateKey(address, port, command, username, privateKeyFilePath,
+				outputSink, errorSink, getCommandTimeout());
 	}
 
-	private static void addBlankHostKeyVerifier(SSHClient ssh) {
-		ssh.addHostKeyVerifier(new HostKeyVerifier() {
-			@Override
-			public boolean verify(String arg0, int arg1, PublicKey arg2) {
-				return true;
-			}
-		});
+	/**
+	 * @param timeout
+	 *            Time for the command to complete in milliseconds
+	 */
+	public static CommandResult doSshWithPrivateKey(String address, int port, String command,
+			String username, String privateKeyFilePath, OutputStream outputSink,
+			OutputStream errorSink, long timeout) {
+		LOGGER.info("Doing ssh to address=" + address + ", port=" + port + " to run command="
+				+ command + " authenticating by username=" + username + ", privateKeyFilePath="
+				+ privateKeyFilePath);
+		return doSSH(address, port, command, username, privateKeyFilePath, false, outputSink,
+				errorSink, timeout);
 	}
 }
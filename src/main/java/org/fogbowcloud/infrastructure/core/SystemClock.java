@@ -0,0 +1,10 @@
+package org.fogbowcloud.infrastructure.core;
+
+public class SystemClock implements Clock {
+
+	@Override
+	public long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+}
@@ -0,0 +1,138 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.fogbowcloud.PropertiesUtils;
+
+/**
+ * Pool of idle engines kept above the resources needed by the allocation
+ * policy, so a queue spike is absorbed by engines already bootstrapped while
+ * the pool is refilled in background.
+ * 
+ * The pool starts with its minimum size. When the needed resources increase,
+ * the engines of the pool are taken and the pool grows by the same amount, up
+ * to its maximum size, to absorb the next spike. After an idle timeout without
+ * spikes, the pool shrinks by one engine each timeout, down to its minimum
+ * size.
+ * 
+ * The pool tracks the resources allocated to fill it, so only the engines of
+ * the pool actually in use are hidden from the allocation policy, not the ones
+ * still booting or lost. The engines taken by a spike leave the pool.
+ */
+public class WarmPool {
+
+	public static final String MIN_SIZE_KEY = "warm_pool_min";
+	public static final String MAX_SIZE_KEY = "warm_pool_max";
+	public static final String IDLE_TIMEOUT_KEY = "warm_pool_idle_timeout";
+
+	public static final int DEFAULT_IDLE_TIMEOUT = 30; // in minutes
+
+	private final Clock clock;
+	private final int minSize;
+	private final int maxSize;
+	private final long idleTimeout;
+
+	private int size;
+	// resources allocated to fill the pool, in allocation order
+	private final Set<String> resources = new LinkedHashSet<String>();
+	private int lastNeededResources = -1;
+	private long lastSpike;
+
+	public WarmPool(Properties properties) {
+		this(new SystemClock(), PropertiesUtils.getIntProperty(properties, MIN_SIZE_KEY, 0),
+				PropertiesUtils.getIntProperty(properties, MAX_SIZE_KEY,
+						PropertiesUtils.getIntProperty(properties, MIN_SIZE_KEY, 0)),
+				PropertiesUtils.getIntProperty(properties, IDLE_TIMEOUT_KEY, DEFAULT_IDLE_TIMEOUT)
+						* 60 * 1000L);
+	}
+
+	/**
+	 * @param idleTimeout
+	 *            Time without spikes to shrink the pool in milliseconds
+	 */
+	public WarmPool(Clock clock, int minSize, int maxSize, long idleTimeout) {
+		if (minSize < 0 || maxSize < minSize || idleTimeout <= 0) {
+			throw new IllegalArgumentException("Warm pool min size must not be negative, max size "
+					+ "must not be lower than min size and idle timeout must be positive.");
+		}
+		this.clock = clock;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.idleTimeout = idleTimeout;
+		this.size = minSize;
+		this.lastSpike = clock.currentTimeMillis();
+	}
+
+	/**
+	 * Updates the pool size according to the needed resources.
+	 * 
+	 * @return The needed resources plus the engines of the pool
+	 */
+	public synchronized int getTargetResources(int neededResources) {
+		long now = clock.currentTimeMillis();
+		if (lastNeededResources >= 0 && neededResources > lastNeededResources) {
+			// the spike takes the engines of the pool
+			releaseResources(neededResources - lastNeededResources);
+			size = Math.min(maxSize, size + neededResources - lastNeededResources);
+			lastSpike = now;
+		} else if (size > minSize && now - lastSpike >= idleTimeout) {
+			size--;
+			lastSpike = now;
+		}
+		releaseResources(resources.size() - size);
+		lastNeededResources = neededResources;
+		return neededResources + size;
+	}
+
+	private void releaseResources(int count) {
+		Iterator<String> iterator = resources.iterator();
+		for (int i = 0; i < count && iterator.hasNext(); i++) {
+			iterator.next();
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Assigns the last new resources to the pool, as many as it misses.
+	 */
+	public synchronized void addResources(List<String> newResources) {
+		int missing = size - resources.size();
+		for (int i = Math.max(0, newResources.size() - missing); i < newResources.size(); i++) {
+			resources.add(newResources.get(i));
+		}
+	}
+
+	/**
+	 * Removes from the pool the resources no longer allocated, which were lost
+	 * or deleted, so they are allocated again.
+	 */
+	public synchronized void retainResources(Collection<String> allocatedResources) {
+		resources.retainAll(new HashSet<String>(allocatedResources));
+	}
+
+	/**
+	 * @return The number of engines of the pool among the resources in use
+	 */
+	public synchronized int getIdleEngines(Collection<String> resourcesInUse) {
+		int idleEngines = 0;
+		for (String resourceId : resourcesInUse) {
+			if (resources.contains(resourceId)) {
+				idleEngines++;
+			}
+		}
+		return idleEngines;
+	}
+
+	/**
+	 * @return The number of idle engines kept by the pool
+	 */
+	public synchronized int getSize() {
+		return size;
+	}
+}
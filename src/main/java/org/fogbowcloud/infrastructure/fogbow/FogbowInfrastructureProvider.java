@@ -1,17 +1,32 @@
 package org.fogbowcloud.infrastructure.fogbow;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpException;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
@@ -21,40 +36,86 @@ import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.CoreProtocolPNames;
+import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
 import org.fogbowcloud.ConfigurationConstants;
+import org.fogbowcloud.PropertiesUtils;
+import org.fogbowcloud.infrastructure.core.AsyncInfrastructureProvider;
+import org.fogbowcloud.infrastructure.core.AsyncInfrastructureProviderAdapter;
+import org.fogbowcloud.infrastructure.core.BatchResult;
 import org.fogbowcloud.infrastructure.core.CommandResult;
+import org.fogbowcloud.infrastructure.core.DaemonThreadFactory;
+import org.fogbowcloud.infrastructure.core.InfrastructureCallback;
 import org.fogbowcloud.infrastructure.core.InfrastructureException;
 import org.fogbowcloud.infrastructure.core.InfrastructureProvider;
+import org.fogbowcloud.infrastructure.core.MonitoringScheduler;
 import org.fogbowcloud.infrastructure.core.ResourcePropertiesConstants;
 import org.fogbowcloud.infrastructure.core.SSHUtils;
 import org.fogbowcloud.manager.core.plugins.IdentityPlugin;
 import org.fogbowcloud.manager.core.plugins.util.Credential;
-import org.fogbowcloud.manager.occi.core.Category;
 import org.fogbowcloud.manager.occi.core.HeaderUtils;
-import org.fogbowcloud.manager.occi.core.Token;
 import org.fogbowcloud.manager.occi.instance.Instance;
 import org.fogbowcloud.manager.occi.request.RequestAttribute;
 import org.fogbowcloud.manager.occi.request.RequestConstants;
 import org.fogbowcloud.manager.occi.request.RequestState;
-import org.reflections.Reflections;
-import org.reflections.scanners.SubTypesScanner;
-import org.reflections.util.ClasspathHelper;
 
-public class FogbowInfrastructureProvider implements InfrastructureProvider {
+public class FogbowInfrastructureProvider implements InfrastructureProvider,
+		AsyncInfrastructureProvider {
 
-	private static final String CATEGORY_PREFIX = "Category:";
-	private static final String X_OCCI_ATTRIBUTE_PREFIX = "X-OCCI-Attribute: ";
-	protected static final String PLUGIN_PACKAGE = "org.fogbowcloud.manager.core.plugins";
-	private String authToken = null;
+	private static final String VERBOSE_LISTING_QUERY = "?verbose=true";
+
+	// http connection pool configuration
+	public static final String HTTP_MAX_CONNECTIONS_KEY = "fogbow_http_max_connections";
+	public static final String HTTP_MAX_CONNECTIONS_PER_ROUTE_KEY = "fogbow_http_max_connections_per_route";
+	public static final String HTTP_CONNECTION_TIMEOUT_KEY = "fogbow_http_connection_timeout";
+	public static final String HTTP_SOCKET_TIMEOUT_KEY = "fogbow_http_socket_timeout";
+	public static final String HTTP_KEEP_ALIVE_KEY = "fogbow_http_keep_alive";
+	public static final String HTTP_IDLE_TIMEOUT_KEY = "fogbow_http_idle_timeout";
+	public static final String ASYNC_THREADS_KEY = "fogbow_async_threads";
+	public static final String TOKEN_REFRESH_MARGIN_KEY = "fogbow_token_refresh_margin";
+	public static final String CACHE_SIZE_KEY = "fogbow_cache_size";
+	public static final String CACHE_TTL_KEY = "fogbow_cache_ttl";
+
+	public static final int DEFAULT_HTTP_MAX_CONNECTIONS = 100;
+	public static final int DEFAULT_HTTP_MAX_CONNECTIONS_PER_ROUTE = 20;
+	public static final int DEFAULT_HTTP_CONNECTION_TIMEOUT = 10000; // in milliseconds
+	public static final int DEFAULT_HTTP_SOCKET_TIMEOUT = 30000; // in milliseconds
+	public static final int DEFAULT_HTTP_KEEP_ALIVE = 30000; // in milliseconds
+	public static final int DEFAULT_HTTP_IDLE_TIMEOUT = 60000; // in milliseconds
+	public static final int DEFAULT_ASYNC_THREADS = DEFAULT_HTTP_MAX_CONNECTIONS_PER_ROUTE;
+	public static final int DEFAULT_TOKEN_REFRESH_MARGIN = 300; // in seconds
+	public static final int DEFAULT_CACHE_SIZE = 1000;
+	public static final int DEFAULT_CACHE_TTL = 2; // in seconds
+
+	private FogbowTokenManager tokenManager;
+	// credentials of the last successful configuration, including plugin type
+	private Map<String, String> configuredCredentials;
 	private String fogbowEndpoint = null;
+	private ThreadSafeClientConnManager connectionManager;
+	private HttpClient httpClient;
+	private ScheduledExecutorService idleConnectionEvictor;
+	private ExecutorService asyncExecutor;
+	private AsyncInfrastructureProvider asyncProvider;
+	private ResourceInfoCache resourceInfoCache;
+	private RequestCoalescer requestCoalescer = new RequestCoalescer();
+	// null while it is unknown whether the server supports verbose listing
+	private volatile Boolean verboseListingSupported = null;
 
 	private static final Logger LOGGER = Logger.getLogger(FogbowInfrastructureProvider.class);
 
@@ -64,6 +125,95 @@ public class FogbowInfrastructureProvider implements InfrastructureProvider {
 			throw new IllegalArgumentException("The fogbowEndpoint must not be null or empty.");
 		}
 		this.fogbowEndpoint = endpoint;
+		createHttpClient(properties);
+		this.tokenManager = new FogbowTokenManager(PropertiesUtils.getPositiveIntProperty(
+				properties, TOKEN_REFRESH_MARGIN_KEY, DEFAULT_TOKEN_REFRESH_MARGIN) * 1000L);
+
+		// async operations share the http pool, so they are bounded by it
+		this.asyncExecutor = Executors.newFixedThreadPool(
+				PropertiesUtils.getPositiveIntProperty(properties, ASYNC_THREADS_KEY,
+						DEFAULT_ASYNC_THREADS),
+				new DaemonThreadFactory("fogbow-async"));
+		this.asyncProvider = new AsyncInfrastructureProviderAdapter(this, asyncExecutor);
+
+		// a monitoring poll must not be answered by the info of the last one
+		long cacheTimeToLive = PropertiesUtils.getPositiveIntProperty(properties, CACHE_TTL_KEY,
+				DEFAULT_CACHE_TTL) * 1000L;
+		long tickInterval = PropertiesUtils.getPositiveIntProperty(properties,
+				MonitoringScheduler.TICK_INTERVAL_KEY, MonitoringScheduler.DEFAULT_TICK_INTERVAL)
+				* 1000L;
+		if (cacheTimeToLive >= tickInterval) {
+			LOGGER.warn("The " + CACHE_TTL_KEY + " must be lower than the monitoring tick "
+					+ "interval. Using " + tickInterval / 2 + " ms.");
+			cacheTimeToLive = tickInterval / 2;
+		}
+		this.resourceInfoCache = new ResourceInfoCache(PropertiesUtils.getPositiveIntProperty(
+				properties, CACHE_SIZE_KEY, DEFAULT_CACHE_SIZE), cacheTimeToLive);
+	}
+
+	/**
+	 * Creates the http client shared by all requests of this provider. The
+	 * connections are kept in a pool limited by route, reused while the server
+	 * allows keep-alive and closed by a background evictor when idle.
+	 */
+	private void createHttpClient(Properties properties) {
+		HttpParams params = new BasicHttpParams();
+		params.setParameter(CoreProtocolPNames.PROTOCOL_VERSION, HttpVersion.HTTP_1_1);
+		ConnManagerParams.setMaxTotalConnections(params,
+				PropertiesUtils.getPositiveIntProperty(properties, HTTP_MAX_CONNECTIONS_KEY,
+						DEFAULT_HTTP_MAX_CONNECTIONS));
+		ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(
+				PropertiesUtils.getPositiveIntProperty(properties,
+						HTTP_MAX_CONNECTIONS_PER_ROUTE_KEY,
+						DEFAULT_HTTP_MAX_CONNECTIONS_PER_ROUTE)));
+		HttpConnectionParams.setConnectionTimeout(params, PropertiesUtils.getPositiveIntProperty(
+				properties, HTTP_CONNECTION_TIMEOUT_KEY, DEFAULT_HTTP_CONNECTION_TIMEOUT));
+		HttpConnectionParams.setSoTimeout(params, PropertiesUtils.getPositiveIntProperty(
+				properties, HTTP_SOCKET_TIMEOUT_KEY, DEFAULT_HTTP_SOCKET_TIMEOUT));
+
+		SchemeRegistry schemeRegistry = new SchemeRegistry();
+		schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+		schemeRegistry.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
+
+		this.connectionManager = new ThreadSafeClientConnManager(params, schemeRegistry);
+		DefaultHttpClient client = new DefaultHttpClient(connectionManager, params);
+
+		final long keepAlive = PropertiesUtils.getPositiveIntProperty(properties,
+				HTTP_KEEP_ALIVE_KEY, DEFAULT_HTTP_KEEP_ALIVE);
+		client.setKeepAliveStrategy(new DefaultConnectionKeepAliveStrategy() {
+			@Override
+			public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+				long duration = super.getKeepAliveDuration(response, context);
+				// server did not specify how long the connection may be kept
+				return duration > 0 ? duration : keepAlive;
+			}
+		});
+		this.httpClient = client;
+
+		final long idleTimeout = PropertiesUtils.getPositiveIntProperty(properties,
+				HTTP_IDLE_TIMEOUT_KEY, DEFAULT_HTTP_IDLE_TIMEOUT);
+		idleConnectionEvictor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(
+				"fogbow-idle-connection-evictor"));
+		idleConnectionEvictor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				connectionManager.closeExpiredConnections();
+				connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+			}
+		}, idleTimeout, idleTimeout, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Releases the pooled http connections. The provider must not be used
+	 * after this call.
+	 */
+	public void shutdown() {
+		LOGGER.info("Shutting down fogbow infrastructure provider. Resource info cache: "
+				+ resourceInfoCache + ". Coalesced requests: " + requestCoalescer);
+		tokenManager.shutdown();
+		asyncExecutor.shutdownNow();
+		idleConnectionEvictor.shutdownNow();
+		connectionManager.shutdown();
 	}
 
 	@Override
@@ -74,12 +224,21 @@ public class FogbowInfrastructureProvider implements InfrastructureProvider {
 			throw new InfrastructureException("Plugin type was not specified.");
 		}
 
-		IdentityPlugin identityPlugin = createIdentityPlugin(
-				credentials.remove(FogbowContants.PLUGIN_TYPE_KEY), credentials);
+		// a routine renewal only renews the token, the endpoint was already checked
+		if (credentials.equals(configuredCredentials) && tokenManager.getAccessId() != null) {
+			try {
+				return tokenManager.renew();
+			} catch (Exception e) {
+				LOGGER.warn("Exception while renewing token. Configuring it again.", e);
+			}
+		}
+
+		Map<String, String> pluginCredentials = new HashMap<String, String>(credentials);
+		IdentityPlugin identityPlugin = IdentityPluginRegistry.getInstance().createPlugin(
+				pluginCredentials.remove(FogbowContants.PLUGIN_TYPE_KEY));
+		String authToken;
 		try {
-			Token token = identityPlugin.createToken(credentials);
-			this.authToken = token.getAccessId();
-			LOGGER.info("Auth-token updated to " + authToken);
+			authToken = tokenManager.createToken(identityPlugin, pluginCredentials);
 		} catch (Exception e) {
 			LOGGER.error("Exception while creating token.", e);
 			throw new InfrastructureException(e.getMessage() + "\n"
@@ -88,47 +247,19 @@ public class FogbowInfrastructureProvider implements InfrastructureProvider {
 
 		// getting fogbow resources to check if fogbowEndpoint is valid
 		try {
-			doRequest("get", fogbowEndpoint + "/-/", authToken, new HashSet<Header>());
+			doRequest("get", fogbowEndpoint + "/-/", new HashSet<Header>());
 		} catch (URISyntaxException | HttpException | IOException e) {
 			LOGGER.error("Exception while chechking fogbow endpoint.", e);
 			throw new InfrastructureException("The fogbowEndpoint " + fogbowEndpoint
 					+ " is invalid or the service is down.");
 		}
 
-		return authToken;
-	}
-
-	private IdentityPlugin createIdentityPlugin(String pluginType, Map<String, String> credentials)
-			throws InfrastructureException {
-		Reflections reflections = new Reflections(ClasspathHelper.forPackage(PLUGIN_PACKAGE),
-				new SubTypesScanner());
-
-		Set<Class<? extends IdentityPlugin>> allClasses = reflections
-				.getSubTypesOf(IdentityPlugin.class);
-		Class<?> pluginClass = null;
-		List<String> possibleTypes = new LinkedList<String>();
-		for (Class<? extends IdentityPlugin> eachClass : allClasses) {
-			String[] packageName = eachClass.getName().split("\\.");
-			String type = packageName[packageName.length - 2];
-			possibleTypes.add(type);
-			if (type.equals(pluginType)) {
-				pluginClass = eachClass;
-			}
+		if (!credentials.equals(configuredCredentials)) {
+			// the cached requests may belong to other user
+			resourceInfoCache.clear();
 		}
-		IdentityPlugin identityPlugin;
-		try {
-			identityPlugin = (IdentityPlugin) createInstance(pluginClass, new Properties());
-			return identityPlugin;
-		} catch (Exception e) {
-			LOGGER.error("Exception while creating instance of IdentityPlugin.", e);
-			throw new InfrastructureException("Token type [" + pluginType + "] is not valid. "
-					+ "Possible types: " + possibleTypes + ".");
-		}
-	}
-
-	private static Object createInstance(Class<?> pluginClass, Properties properties)
-			throws Exception {
-		return pluginClass.getConstructor(Properties.class).newInstance(properties);
+		configuredCredentials = new HashMap<String, String>(credentials);
+		return authToken;
 	}
 
 	private static String getPluginCredentialsInformation(IdentityPlugin identityPlugin) {
@@ -195,25 +326,21 @@ public class FogbowInfrastructureProvider implements InfrastructureProvider {
 					.getValue() + "=" + properties.get(ResourcePropertiesConstants.PUBLICKEY_KEY)));
 		}
 
-		String responseStr;
 		try {
-			responseStr = doRequest("post", fogbowEndpoint + "/" + RequestConstants.TERM,
-					authToken, headers);
-			LOGGER.debug("post response=" + responseStr);
-			return getRequestIds(responseStr);
+			OCCIMessage response = doRequest("post", fogbowEndpoint + "/" + RequestConstants.TERM,
+					headers);
+			LOGGER.debug("post response=" + response);
+			return getRequestIds(response);
 		} catch (URISyntaxException | HttpException | IOException e) {
 			LOGGER.error("Exception while doing post on fogbowEndpoint.", e);
 			throw new InfrastructureException(e.getMessage());
 		}
 	}
 
-	private List<String> getRequestIds(String responseStr) {
+	private List<String> getRequestIds(OCCIMessage response) {
 		List<String> requestIds = new ArrayList<String>();
-		String[] requestLocations = responseStr.split("\n");
-		for (String reqLocation : requestLocations) {
-			if (!reqLocation.isEmpty()) {
-				requestIds.add(normalizeRequestId(reqLocation));
-			}
+		for (String reqLocation : response.getLocations()) {
+			requestIds.add(normalizeRequestId(reqLocation));
 		}
 		return requestIds;
 	}
@@ -224,7 +351,7 @@ public class FogbowInfrastructureProvider implements InfrastructureProvider {
 	}
 
 	private void checkConfigured() throws InfrastructureException {
-		if (authToken == null || fogbowEndpoint == null) {
+		if (tokenManager.getAccessId() == null || fogbowEndpoint == null) {
 			throw new InfrastructureException(
 					"You must previously configure the infrastructure with a valid user and endpoint service.");
 		}
@@ -249,128 +376,247 @@ public class FogbowInfrastructureProvider implements InfrastructureProvider {
 		checkConfigured();
 		checkValidId(id);
 
+		Map<String, String> cachedResourceInfo = resourceInfoCache.get(id);
+		if (cachedResourceInfo != null) {
+			LOGGER.debug("Resource info of id=" + id + " found in cache.");
+			return cachedResourceInfo;
+		}
+
 		try {
-			String requestResponseStr = doRequest("get", fogbowEndpoint + "/"
-					+ RequestConstants.TERM + "/" + id, authToken, new HashSet<Header>());
-			Map<String, String> resourcesInfo = new HashMap<String, String>();
-			LOGGER.debug("get request response=" + requestResponseStr);
-
-			Map<String, String> requestAtt = getAttributes(requestResponseStr);
-			resourcesInfo.putAll(requestAtt);
-
-			List<Category> requestCategories = getCategories(requestResponseStr);
-			// getting flavor info
-			resourcesInfo.put(ResourcePropertiesConstants.FLAVOR_KEY,
-					getCategoryTerm(requestCategories, RequestConstants.TEMPLATE_RESOURCE_SCHEME));
-			// getting image info
-			resourcesInfo.put(ResourcePropertiesConstants.IMAGE_KEY,
-					getCategoryTerm(requestCategories, RequestConstants.TEMPLATE_OS_SCHEME));
-
-			// if request is fulfilled we must add instance attributes in
-			// response
-			if (requestAtt.get(RequestAttribute.STATE.getValue()).equals(
-					RequestState.FULFILLED.getValue())) {
-				String instanceId = requestAtt.get(RequestAttribute.INSTANCE_ID.getValue());
-
-				// getting the instance
-				if (instanceId != null && !"null".equals(instanceId) && !instanceId.isEmpty()) {
-					try {
-						String instanceResponseStr = doRequest("get", fogbowEndpoint + "/compute/"
-								+ instanceId, authToken, new HashSet<Header>());
-						LOGGER.debug("get instance response=" + instanceResponseStr);
-						Map<String, String> instanceAtt = getAttributes(instanceResponseStr);
-
-						// removing "occi.core.id" attributes from instance
-						// because ti is using request id as unique request
-						instanceAtt.remove(FogbowContants.OCCI_CORE_ID);
-						resourcesInfo.putAll(instanceAtt);
-
-						return resourcesInfo;
-					} catch (URISyntaxException | HttpException | IOException e) {
-						LOGGER.warn("Exception while getting the instance " + instanceId + ".", e);
-					}
-				} else {
-					LOGGER.warn("The request is FULFILLED but there is not instance. "
-							+ "This is not expected behaviour, report fogbow team.");
-				}
+			OCCIMessage requestResponse = doRequest("get", fogbowEndpoint + "/"
+					+ RequestConstants.TERM + "/" + id, new HashSet<Header>());
+			LOGGER.debug("get request response=" + requestResponse);
 
-			}
-			return resourcesInfo;
+			Map<String, String> resourceInfo = toResourceInfo(requestResponse);
+			addInstanceInfo(resourceInfo);
+			resourceInfoCache.put(id, resourceInfo);
+			return resourceInfo;
 		} catch (URISyntaxException | HttpException | IOException e) {
 			LOGGER.error("Exception while getting requestId " + id + ".", e);
 			throw new InfrastructureException(e.getMessage());
 		}
 	}
 
-	private String getCategoryTerm(List<Category> categories, String scheme) {
-		for (Category category : categories) {
-			if (category.getScheme().equals(scheme)) {
-				return category.getTerm();
+	@Override
+	public Map<String, Map<String, String>> getResourcesInfo(Collection<String> resourceIds)
+			throws InfrastructureException {
+		LOGGER.info("Getting resources info from ids=" + resourceIds);
+		checkConfigured();
+
+		if (resourceIds == null || resourceIds.isEmpty()) {
+			return new HashMap<String, Map<String, String>>();
+		}
+		if (!Boolean.FALSE.equals(verboseListingSupported)) {
+			Map<String, Map<String, String>> resourcesInfo = getResourcesInfoByListing(resourceIds);
+			if (resourcesInfo != null) {
+				return resourcesInfo;
 			}
 		}
-		return null;
+		return getResourcesInfoInParallel(resourceIds);
 	}
 
-	private void checkValidId(String id) throws InfrastructureException {
-		if (id == null || id.isEmpty()) {
-			throw new InfrastructureException("The resource id " + id
-					+ " is invalid. It must not be null or empty.");
+	@Override
+	public boolean isBulkQuerySupported() {
+		// the requests are queried one by one until a listing succeeds
+		return Boolean.TRUE.equals(verboseListingSupported);
+	}
+
+	/**
+	 * Gets the info of all requests with a single verbose listing of the
+	 * request collection. Each request in the listing starts at its
+	 * X-OCCI-Location line, followed by its categories and attributes (see
+	 * {@link OCCIParser#parseListing(Reader)}).
+	 * 
+	 * @return The resources info or null if the listing could not be used
+	 */
+	private Map<String, Map<String, String>> getResourcesInfoByListing(
+			Collection<String> resourceIds) {
+		List<OCCIMessage> requests;
+		try {
+			requests = doListingRequest(fogbowEndpoint + "/" + RequestConstants.TERM + "/"
+					+ VERBOSE_LISTING_QUERY);
+			LOGGER.debug("get verbose listing response=" + requests);
+		} catch (URISyntaxException | HttpException | IOException | InfrastructureException e) {
+			// a failed listing says nothing about the support, it is tried
+			// again on the next query
+			LOGGER.warn("Exception while listing requests. Falling back to per request queries.",
+					e);
+			return null;
 		}
+
+		if (requests.isEmpty() || !hasStates(requests)) {
+			if (!requests.isEmpty()) {
+				LOGGER.info("The fogbow endpoint does not support verbose listing. "
+						+ "Falling back to per request queries.");
+				verboseListingSupported = Boolean.FALSE;
+				return null;
+			}
+			// no requests at all, nothing can be concluded about the support
+			return verboseListingSupported == null ? null
+					: new HashMap<String, Map<String, String>>();
+		}
+		verboseListingSupported = Boolean.TRUE;
+
+		Set<String> wantedIds = new HashSet<String>(resourceIds);
+		Set<String> listedIds = new HashSet<String>();
+		Map<String, Map<String, String>> resourcesInfo = new HashMap<String, Map<String, String>>();
+		List<Map<String, String>> fulfilledResources = new ArrayList<Map<String, String>>();
+		for (OCCIMessage request : requests) {
+			Map<String, String> resourceInfo = toResourceInfo(request);
+			String resourceId = resourceInfo.get(FogbowContants.OCCI_CORE_ID);
+			if (resourceId == null && !request.getLocations().isEmpty()) {
+				resourceId = normalizeRequestId(request.getLocations().get(0));
+				resourceInfo.put(FogbowContants.OCCI_CORE_ID, resourceId);
+			}
+			listedIds.add(resourceId);
+			if (resourceId != null && wantedIds.contains(resourceId)) {
+				resourcesInfo.put(resourceId, resourceInfo);
+				if (isAvailable(resourceInfo)) {
+					fulfilledResources.add(resourceInfo);
+				}
+			}
+		}
+		addInstancesInfoInParallel(fulfilledResources);
+		// the requests not listed are gone, even the closed ones
+		resourceInfoCache.retainAll(listedIds);
+		for (String resourceId : resourcesInfo.keySet()) {
+			resourceInfoCache.put(resourceId, resourcesInfo.get(resourceId));
+		}
+		LOGGER.debug("Resource info cache: " + resourceInfoCache);
+		return resourcesInfo;
 	}
 
-	private List<Category> getCategories(String resourceStr) {
-		List<Category> categories = new ArrayList<Category>();
-
-		String[] lines = resourceStr.split("\n");
-		for (String line : lines) {
-			if (line.contains(CATEGORY_PREFIX)) {
-				String[] blockLine = line.split(";");
-				String[] blockValues;
-				String term = "";
-				String scheme = "";
-				String catClass = "";
-				List<String> attributesResource = new ArrayList<String>();
-				List<String> actionsResource = new ArrayList<String>();
-
-				for (String block : blockLine) {
-					if (block.contains(CATEGORY_PREFIX)) {
-						blockValues = block.split(":");
-						term = blockValues[1].trim();
-					} else {
-						blockValues = block.split("=");
-						if (blockValues[0].contains("scheme")) {
-							scheme = blockValues[1].replace("\"", "").trim();
-						} else if (blockValues[0].contains("class")) {
-							catClass = blockValues[1].replace("\"", "").trim();
-						} else if (blockValues[0].contains("attributes")) {
-							String[] attributesValues = blockValues[1].replace("\"", "").split(" ");
-							for (String attribute : attributesValues) {
-								attributesResource.add(attribute);
-							}
-						} else if (blockValues[0].contains("actions")) {
-							String[] actionsValues = blockValues[1].replace("\"", "").split(" ");
-							for (String action : actionsValues) {
-								actionsResource.add(action);
-							}
-						}
-					}
+	/**
+	 * A listing with other attributes but not the states can not be used, the
+	 * requests would all look not fulfilled.
+	 */
+	private static boolean hasStates(List<OCCIMessage> requests) {
+		for (OCCIMessage request : requests) {
+			if (request.getAttributes().get(RequestAttribute.STATE.getValue()) == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Map<String, Map<String, String>> getResourcesInfoInParallel(
+			Collection<String> resourceIds) {
+		Map<String, Future<Map<String, String>>> futures = new HashMap<String, Future<Map<String, String>>>();
+		for (String resourceId : resourceIds) {
+			futures.put(resourceId, getResourceInfoAsync(resourceId, null));
+		}
+
+		Map<String, Map<String, String>> resourcesInfo = new HashMap<String, Map<String, String>>();
+		for (String resourceId : futures.keySet()) {
+			try {
+				resourcesInfo.put(resourceId, futures.get(resourceId).get());
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof NotFoundException) {
+					LOGGER.debug("The requestId " + resourceId + " was not found.");
+					resourceInfoCache.invalidate(resourceId);
+					continue;
 				}
-				categories.add(new Category(term, scheme, catClass));
+				LOGGER.error("Exception while getting resource info from resourceId="
+						+ resourceId, e.getCause());
+				// unknown this time, the resource keeps its state
+				resourcesInfo.put(resourceId, null);
+			} catch (InterruptedException e) {
+				LOGGER.error("Interrupted while getting resource info from resourceId="
+						+ resourceId, e);
+				Thread.currentThread().interrupt();
+				break;
 			}
 		}
-		return categories;
+		return resourcesInfo;
 	}
 
-	private Map<String, String> getAttributes(String resourceStr) {
-		Map<String, String> attributes = new HashMap<String, String>();
-		String[] lines = resourceStr.split("\n");
-		for (String line : lines) {
-			if (line.contains(X_OCCI_ATTRIBUTE_PREFIX)) {
-				String[] lineTokens = line.replace(X_OCCI_ATTRIBUTE_PREFIX, "").trim().split("=");
-				attributes.put(lineTokens[0], lineTokens[1].replace("\"", "").trim());
+	private void addInstancesInfoInParallel(List<Map<String, String>> resourcesInfo) {
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (final Map<String, String> resourceInfo : resourcesInfo) {
+			futures.add(asyncExecutor.submit(new Runnable() {
+				@Override
+				public void run() {
+					addInstanceInfo(resourceInfo);
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				LOGGER.error("Exception while getting instance info.", e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
 			}
 		}
-		return attributes;
+	}
+
+	/**
+	 * Converts a request in text/occi format to the resource info, including
+	 * the flavor and image terms of the request.
+	 */
+	private Map<String, String> toResourceInfo(OCCIMessage request) {
+		Map<String, String> resourceInfo = new HashMap<String, String>();
+		resourceInfo.putAll(request.getAttributes());
+
+		// getting flavor info
+		resourceInfo.put(ResourcePropertiesConstants.FLAVOR_KEY,
+				request.getCategoryTerm(RequestConstants.TEMPLATE_RESOURCE_SCHEME));
+		// getting image info
+		resourceInfo.put(ResourcePropertiesConstants.IMAGE_KEY,
+				request.getCategoryTerm(RequestConstants.TEMPLATE_OS_SCHEME));
+		return resourceInfo;
+	}
+
+	/**
+	 * If the request is fulfilled, adds the attributes of its instance to the
+	 * resource info. The instance attributes do not change, so they are fetched
+	 * once and pinned in the cache.
+	 */
+	private void addInstanceInfo(Map<String, String> resourceInfo) {
+		if (!isAvailable(resourceInfo)) {
+			return;
+		}
+		String instanceId = resourceInfo.get(RequestAttribute.INSTANCE_ID.getValue());
+
+		// getting the instance
+		if (instanceId != null && !"null".equals(instanceId) && !instanceId.isEmpty()) {
+			String requestId = resourceInfo.get(FogbowContants.OCCI_CORE_ID);
+			Map<String, String> pinnedInstanceAtt = requestId == null ? null
+					: resourceInfoCache.getInstance(requestId, instanceId);
+			if (pinnedInstanceAtt != null) {
+				resourceInfo.putAll(pinnedInstanceAtt);
+				return;
+			}
+			try {
+				OCCIMessage instanceResponse = doRequest("get", fogbowEndpoint + "/compute/"
+						+ instanceId, new HashSet<Header>());
+				LOGGER.debug("get instance response=" + instanceResponse);
+				Map<String, String> instanceAtt = new HashMap<String, String>(
+						instanceResponse.getAttributes());
+
+				// removing "occi.core.id" attributes from instance
+				// because ti is using request id as unique request
+				instanceAtt.remove(FogbowContants.OCCI_CORE_ID);
+				resourceInfo.putAll(instanceAtt);
+				if (requestId != null) {
+					resourceInfoCache.pinInstance(requestId, instanceId, instanceAtt);
+				}
+			} catch (URISyntaxException | HttpException | IOException | InfrastructureException e) {
+				LOGGER.warn("Exception while getting the instance " + instanceId + ".", e);
+			}
+		} else {
+			LOGGER.warn("The request is FULFILLED but there is not instance. "
+					+ "This is not expected behaviour, report fogbow team.");
+		}
+	}
+
+	private void checkValidId(String id) throws InfrastructureException {
+		if (id == null || id.isEmpty()) {
+			throw new InfrastructureException("The resource id " + id
+					+ " is invalid. It must not be null or empty.");
+		}
 	}
 
 	@Override
@@ -379,56 +625,218 @@ public class FogbowInfrastructureProvider implements InfrastructureProvider {
 			throw new IllegalArgumentException("The resourceId must not be null or empty.");
 		}
 
-		Map<String, String> resourceInfo;
 		try {
-			resourceInfo = getResourceInfo(resourceId);
-			if (resourceInfo.get(RequestAttribute.STATE.getValue()) != null
-					&& resourceInfo.get(RequestAttribute.STATE.getValue()).equals(
-							RequestState.FULFILLED.getValue())) {
-				return true;
-			}
+			return isAvailable(getResourceInfo(resourceId));
 		} catch (InfrastructureException e) {
 			LOGGER.error("Exception while getting resource info from resourceId=" + resourceId, e);
 		}
 		return false;
 	}
 
+	@Override
+	public boolean isAvailable(Map<String, String> resourceInfo) {
+		return resourceInfo != null
+				&& RequestState.FULFILLED.getValue().equals(
+						resourceInfo.get(RequestAttribute.STATE.getValue()));
+	}
+
+	/**
+	 * The instance of a request is deleted first because deleting the request
+	 * does not delete its instance. The instance id pinned in the cache is
+	 * reused, so the request and its instance are not fetched again.
+	 */
 	@Override
 	public void deleteResource(String id) throws InfrastructureException {
 		LOGGER.info("Deleting resource id=" + id);
 		checkConfigured();
 		checkValidId(id);
 
-		Map<String, String> requestInfo = getResourceInfo(id);
-
-		if (requestInfo.get(RequestAttribute.STATE.getValue()).equals(
-				RequestState.FULFILLED.getValue())) {
-			String instanceId = requestInfo.get(RequestAttribute.INSTANCE_ID.getValue());
+		String instanceId = resourceInfoCache.getInstanceId(id);
+		if (instanceId == null) {
+			Map<String, String> requestInfo = getResourceInfo(id);
+			if (isAvailable(requestInfo)) {
+				instanceId = requestInfo.get(RequestAttribute.INSTANCE_ID.getValue());
+			}
+		} else {
+			LOGGER.debug("Instance id of resource id=" + id + " found in cache.");
+		}
 
-			// delete the instance
-			if (instanceId != null && !"null".equals(instanceId) && !instanceId.isEmpty()) {
-				try {
-					doRequest("delete", fogbowEndpoint + "/compute/" + instanceId, authToken,
-							new HashSet<Header>());
-				} catch (URISyntaxException | HttpException | IOException e) {
-					LOGGER.warn("Exception while deleting the instance " + instanceId + ".", e);
-				}
+		// delete the instance
+		if (instanceId != null && !"null".equals(instanceId) && !instanceId.isEmpty()) {
+			try {
+				doRequest("delete", fogbowEndpoint + "/compute/" + instanceId,
+						new HashSet<Header>());
+			} catch (URISyntaxException | HttpException | IOException e) {
+				LOGGER.warn("Exception while deleting the instance " + instanceId + ".", e);
 			}
 		}
 
 		// delete the request permanently
 		try {
-			doRequest("delete", fogbowEndpoint + "/" + RequestConstants.TERM + "/" + id, authToken,
+			doRequest("delete", fogbowEndpoint + "/" + RequestConstants.TERM + "/" + id,
 					new HashSet<Header>());
 		} catch (URISyntaxException | HttpException | IOException e) {
 			LOGGER.error("Exception while deleting the requestId " + id + ".", e);
 			throw new InfrastructureException(e.getMessage());
+		} finally {
+			resourceInfoCache.invalidate(id);
 		}
 	}
 
-	private String doRequest(String method, String endpoint, String authToken,
-			Set<Header> additionalHeaders) throws URISyntaxException, HttpException, IOException,
-			InfrastructureException {
+	/**
+	 * The resources are deleted concurrently by the async executor, so the
+	 * deletions in flight are bounded by its size.
+	 */
+	@Override
+	public BatchResult deleteResources(Collection<String> resourceIds) {
+		LOGGER.info("Deleting resources ids=" + resourceIds);
+		Map<String, Future<Void>> futures = new LinkedHashMap<String, Future<Void>>();
+		for (String resourceId : resourceIds) {
+			futures.put(resourceId, deleteResourceAsync(resourceId, null));
+		}
+
+		BatchResult result = new BatchResult();
+		boolean interrupted = false;
+		for (String resourceId : futures.keySet()) {
+			if (interrupted) {
+				futures.get(resourceId).cancel(true);
+				result.addFailed(resourceId, new InfrastructureException(
+						"Interrupted while deleting resources."));
+				continue;
+			}
+			try {
+				futures.get(resourceId).get();
+				result.addSucceeded(resourceId);
+			} catch (ExecutionException e) {
+				result.addFailed(resourceId, e.getCause() instanceof InfrastructureException
+						? (InfrastructureException) e.getCause()
+						: new InfrastructureException(e.getCause().getMessage()));
+			} catch (InterruptedException e) {
+				LOGGER.warn("Interrupted while deleting resources.", e);
+				Thread.currentThread().interrupt();
+				interrupted = true;
+				futures.get(resourceId).cancel(true);
+				result.addFailed(resourceId, new InfrastructureException(
+						"Interrupted while deleting resources."));
+			}
+		}
+		LOGGER.debug("delete resources result: " + result);
+		return result;
+	}
+
+	@Override
+	public Future<List<String>> createResourceAsync(int numberOfInstances,
+			Map<String, String> properties, InfrastructureCallback<List<String>> callback) {
+		return asyncProvider.createResourceAsync(numberOfInstances, properties, callback);
+	}
+
+	@Override
+	public Future<Map<String, String>> getResourceInfoAsync(String resourceId,
+			InfrastructureCallback<Map<String, String>> callback) {
+		return asyncProvider.getResourceInfoAsync(resourceId, callback);
+	}
+
+	@Override
+	public Future<Void> deleteResourceAsync(String resourceId, InfrastructureCallback<Void> callback) {
+		return asyncProvider.deleteResourceAsync(resourceId, callback);
+	}
+
+	private OCCIMessage doRequest(String method, String endpoint, Set<Header> additionalHeaders)
+			throws URISyntaxException, HttpException, IOException, InfrastructureException {
+		return doRequest(method, endpoint, additionalHeaders,
+				new OCCIResponseReader<OCCIMessage>() {
+					@Override
+					public OCCIMessage read(Reader reader) throws IOException {
+						return OCCIParser.parse(reader);
+					}
+				});
+	}
+
+	private List<OCCIMessage> doListingRequest(String endpoint) throws URISyntaxException,
+			HttpException, IOException, InfrastructureException {
+		return doRequest("get", endpoint, new HashSet<Header>(),
+				new OCCIResponseReader<List<OCCIMessage>>() {
+					@Override
+					public List<OCCIMessage> read(Reader reader) throws IOException {
+						// the listing may be shared by coalesced requests
+						return Collections.unmodifiableList(OCCIParser.parseListing(reader));
+					}
+				});
+	}
+
+	/**
+	 * Identical concurrent GETs share a single http exchange and all of them
+	 * receive its response, which must not be mutated.
+	 */
+	private <T> T doRequest(final String method, final String endpoint,
+			final Set<Header> additionalHeaders, final OCCIResponseReader<T> responseReader)
+			throws URISyntaxException, HttpException, IOException, InfrastructureException {
+		if (!method.equals("get") || !additionalHeaders.isEmpty()) {
+			return doAuthenticatedRequest(method, endpoint, additionalHeaders, responseReader);
+		}
+
+		// the reader is part of the key because it defines the response type
+		String requestKey = method + " " + endpoint + " " + responseReader.getClass().getName();
+		try {
+			return requestCoalescer.execute(requestKey, new Callable<T>() {
+				@Override
+				public T call() throws Exception {
+					return doAuthenticatedRequest(method, endpoint, additionalHeaders,
+							responseReader);
+				}
+			});
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof InfrastructureException) {
+				throw (InfrastructureException) cause;
+			} else if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof HttpException) {
+				throw (HttpException) cause;
+			} else if (cause instanceof URISyntaxException) {
+				throw (URISyntaxException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new InfrastructureException(String.valueOf(cause));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InfrastructureException("Interrupted while waiting the request to "
+					+ endpoint + ".");
+		}
+	}
+
+	/**
+	 * Does the request with the current auth token. If the token is rejected,
+	 * it is renewed and the request is retried once.
+	 */
+	private <T> T doAuthenticatedRequest(String method, String endpoint,
+			Set<Header> additionalHeaders, OCCIResponseReader<T> responseReader)
+			throws URISyntaxException, HttpException, IOException, InfrastructureException {
+		String authToken = tokenManager.getAccessId();
+		try {
+			return executeRequest(method, endpoint, authToken, additionalHeaders, responseReader);
+		} catch (UnauthorizedException e) {
+			String renewedAuthToken;
+			try {
+				renewedAuthToken = tokenManager.renewRejected(authToken);
+			} catch (Exception renewException) {
+				LOGGER.error("Exception while renewing rejected auth-token.", renewException);
+				throw e;
+			}
+			if (renewedAuthToken == null) {
+				throw e;
+			}
+			return executeRequest(method, endpoint, renewedAuthToken, additionalHeaders,
+					responseReader);
+		}
+	}
+
+	private <T> T executeRequest(String method, String endpoint, String authToken,
+			Set<Header> additionalHeaders, OCCIResponseReader<T> responseReader)
+			throws URISyntaxException, HttpException, IOException, InfrastructureException {
 		HttpUriRequest request = null;
 		if (method.equals("get")) {
 			request = new HttpGet(endpoint);
@@ -445,28 +853,47 @@ public class FogbowInfrastructureProvider implements InfrastructureProvider {
 			request.addHeader(header);
 		}
 
-		HttpClient client = new DefaultHttpClient();
-		HttpParams params = new BasicHttpParams();
-		params.setParameter(CoreProtocolPNames.PROTOCOL_VERSION, HttpVersion.HTTP_1_1);
-		client = new DefaultHttpClient(new ThreadSafeClientConnManager(params, client
-				.getConnectionManager().getSchemeRegistry()), params);
-
 		LOGGER.debug("requesting method=" + method + ", endpoint=" + endpoint + ", authToken="
 				+ authToken + ", additionalHeaderSize=" + additionalHeaders.size());
-		HttpResponse response = client.execute(request);
+		HttpResponse response;
+		try {
+			response = httpClient.execute(request);
+		} catch (IOException e) {
+			// releasing the connection back to the pool
+			request.abort();
+			throw e;
+		}
 		LOGGER.debug("After request responseStatusCode=" + response.getStatusLine().getStatusCode());
 
-		if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK
-				|| response.getStatusLine().getStatusCode() == HttpStatus.SC_CREATED) {
+		HttpEntity entity = response.getEntity();
+		try {
+			if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK
+					|| response.getStatusLine().getStatusCode() == HttpStatus.SC_CREATED) {
 
-			Header locationHeader = getLocationHeader(response.getAllHeaders());
-			if (locationHeader != null && locationHeader.getValue().contains(RequestConstants.TERM)) {
-				return generateLocationHeaderResponse(locationHeader);
+				Header locationHeader = getLocationHeader(response.getAllHeaders());
+				if (locationHeader != null
+						&& locationHeader.getValue().contains(RequestConstants.TERM)) {
+					return responseReader.read(new StringReader(
+							generateLocationHeaderResponse(locationHeader)));
+				} else if (entity == null) {
+					return responseReader.read(new StringReader(""));
+				} else {
+					String charset = EntityUtils.getContentCharSet(entity);
+					return responseReader.read(new InputStreamReader(entity.getContent(),
+							charset == null ? HTTP.DEFAULT_CONTENT_CHARSET : charset));
+				}
+			} else if (response.getStatusLine().getStatusCode() == HttpStatus.SC_UNAUTHORIZED) {
+				throw new UnauthorizedException(response.getStatusLine().toString());
+			} else if (response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+				throw new NotFoundException(response.getStatusLine().toString());
 			} else {
-				return EntityUtils.toString(response.getEntity());
+				throw new InfrastructureException(response.getStatusLine().toString());
+			}
+		} finally {
+			// the entity must be fully consumed to keep the connection alive
+			if (entity != null) {
+				entity.consumeContent();
 			}
-		} else {
-			throw new InfrastructureException(response.getStatusLine().toString());
 		}
 	}
 
@@ -504,28 +931,96 @@ public class FogbowInfrastructureProvider implements InfrastructureProvider {
 	 * @param authToken
 	 */
 	protected void setAuthToken(String authToken) {
-		this.authToken = authToken;
+		tokenManager.setAccessId(authToken);
+	}
+
+	/**
+	 * This method was created to be used just for testing
+	 */
+	protected ResourceInfoCache getResourceInfoCache() {
+		return resourceInfoCache;
+	}
+
+	private interface OCCIResponseReader<T> {
+		public T read(Reader reader) throws IOException;
+	}
+
+	private static class UnauthorizedException extends InfrastructureException {
+
+		private static final long serialVersionUID = -3470514733926331217L;
+
+		public UnauthorizedException(String message) {
+			super(message);
+		}
+	}
+
+	private static class NotFoundException extends InfrastructureException {
+
+		private static final long serialVersionUID = 6126587950283436314L;
+
+		public NotFoundException(String message) {
+			super(message);
+		}
 	}
 
 	@Override
-	public CommandResult executeCommand(Map<String, String> resourceInfo,
-			Map<String, String> resourceCredentials, String command) throws InfrastructureException {
+	public InetSocketAddress getSSHAddress(Map<String, String> resourceInfo) {
+		try {
+			return parseSSHAddress(resourceInfo);
+		} catch (InfrastructureException e) {
+			return null;
+		}
+	}
+
+	private InetSocketAddress parseSSHAddress(Map<String, String> resourceInfo)
+			throws InfrastructureException {
 		if (resourceInfo == null || resourceInfo.get(Instance.SSH_PUBLIC_ADDRESS_ATT) == null) {
 			throw new InfrastructureException(
 					"The resource does not have available public address to be accessed.");
 		}
 		String publicAddress = resourceInfo.get(Instance.SSH_PUBLIC_ADDRESS_ATT);
 		String[] tokens = publicAddress.split(":");
-		String address;
-		int port;
 		try {
-			address = tokens[tokens.length - 2];
-			port = Integer.parseInt(tokens[tokens.length - 1]);
+			return InetSocketAddress.createUnresolved(tokens[tokens.length - 2],
+					Integer.parseInt(tokens[tokens.length - 1]));
 		} catch (Exception e) {
 			LOGGER.error("Exceprion while getting the address and port of resource.", e);
 			throw new InfrastructureException("The public address " + publicAddress
 					+ " provided by resource is invalid.");
 		}
+	}
+
+	@Override
+	public CommandResult executeCommand(Map<String, String> resourceInfo,
+			Map<String, String> resourceCredentials, String command) throws InfrastructureException {
+		return executeCommand(resourceInfo, resourceCredentials, command, null, null);
+	}
+
+	@Override
+	public CommandResult executeCommand(Map<String, String> resourceInfo,
+			Map<String, String> resourceCredentials, String command, long timeout)
+			throws InfrastructureException {
+		return executeCommand(resourceInfo, resourceCredentials, command, null, null, timeout);
+	}
+
+	/**
+	 * If the sinks are null, the last bytes of the stdout and stderr are kept
+	 * in the command result.
+	 */
+	@Override
+	public CommandResult executeCommand(Map<String, String> resourceInfo,
+			Map<String, String> resourceCredentials, String command, OutputStream outputSink,
+			OutputStream errorSink) throws InfrastructureException {
+		return executeCommand(resourceInfo, resourceCredentials, command, outputSink, errorSink,
+				SSHUtils.getCommandTimeout());
+	}
+
+	private CommandResult executeCommand(Map<String, String> resourceInfo,
+			Map<String, String> resourceCredentials, String command, OutputStream outputSink,
+			OutputStream errorSink, long timeout) throws InfrastructureException {
+		InetSocketAddress sshAddress = parseSSHAddress(resourceInfo);
+		String address = sshAddress.getHostString();
+		int port = sshAddress.getPort();
 
 		if (resourceCredentials == null) {
 			throw new InfrastructureException("Invalid resouce credentials.");
@@ -539,9 +1034,10 @@ public class FogbowInfrastructureProvider implements InfrastructureProvider {
 		}
 		if (privateKeyFilePath != null) {
 			return SSHUtils.doSshWithPrivateKey(address, port, command, username,
-					privateKeyFilePath);
+					privateKeyFilePath, outputSink, errorSink, timeout);
 		}
-		return SSHUtils.doSshWithPassword(address, port, command, username, userPassword);
+		return SSHUtils.doSshWithPassword(address, port, command, username, userPassword,
+				outputSink, errorSink, timeout);
 	}
 
 }
@@ -0,0 +1,162 @@
+package org.fogbowcloud.infrastructure.fogbow;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.fogbowcloud.infrastructure.core.DaemonThreadFactory;
+import org.fogbowcloud.manager.core.plugins.IdentityPlugin;
+import org.fogbowcloud.manager.occi.core.Token;
+
+/**
+ * Keeps the fogbow auth token valid. The token is renewed in background some
+ * time before it expires and, when a request is rejected as unauthorized, it
+ * is renewed on demand. Concurrent renewals of the same rejected token are
+ * merged: only the first caller asks the identity service, the others wait and
+ * get the new token.
+ */
+public class FogbowTokenManager {
+
+	public static final long DEFAULT_REFRESH_MARGIN = 5 * 60 * 1000; // in milliseconds
+	public static final long RETRY_INTERVAL = 30 * 1000; // in milliseconds
+
+	private final long refreshMargin;
+	private final ScheduledExecutorService refreshScheduler;
+	private IdentityPlugin identityPlugin;
+	private Map<String, String> credentials;
+	private volatile String accessId;
+	private Date expirationDate;
+	private ScheduledFuture<?> refreshHandle;
+
+	private static final Logger LOGGER = Logger.getLogger(FogbowTokenManager.class);
+
+	public FogbowTokenManager() {
+		this(DEFAULT_REFRESH_MARGIN);
+	}
+
+	public FogbowTokenManager(long refreshMargin) {
+		if (refreshMargin < 0) {
+			throw new IllegalArgumentException("Refresh margin must not be negative.");
+		}
+		this.refreshMargin = refreshMargin;
+		this.refreshScheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(
+				"fogbow-token-refresh"));
+	}
+
+	/**
+	 * Creates a token with the given plugin and credentials, which are kept to
+	 * renew it later.
+	 */
+	public synchronized String createToken(IdentityPlugin identityPlugin,
+			Map<String, String> credentials) throws Exception {
+		Token token = identityPlugin.createToken(credentials);
+		this.identityPlugin = identityPlugin;
+		this.credentials = new HashMap<String, String>(credentials);
+		update(token);
+		return accessId;
+	}
+
+	/**
+	 * Renews the token with the plugin and credentials used to create it.
+	 */
+	public synchronized String renew() throws Exception {
+		if (identityPlugin == null) {
+			throw new IllegalStateException("There is no identity plugin to renew the token.");
+		}
+		update(identityPlugin.createToken(credentials));
+		return accessId;
+	}
+
+	/**
+	 * Renews the token after it was rejected. If the rejected token was
+	 * already replaced by a concurrent caller, the current token is returned
+	 * without asking the identity service again.
+	 * 
+	 * @return The new token or null if the token can not be renewed
+	 */
+	public synchronized String renewRejected(String rejectedAccessId) throws Exception {
+		if (identityPlugin == null) {
+			return null;
+		}
+		if (accessId != null && !accessId.equals(rejectedAccessId)) {
+			return accessId;
+		}
+		LOGGER.info("Auth-token was rejected, renewing it.");
+		return renew();
+	}
+
+	public String getAccessId() {
+		return accessId;
+	}
+
+	public synchronized Date getExpirationDate() {
+		return expirationDate;
+	}
+
+	/**
+	 * Uses a token created elsewhere. It can not be renewed.
+	 */
+	public synchronized void setAccessId(String accessId) {
+		cancelRefresh();
+		this.identityPlugin = null;
+		this.credentials = null;
+		this.expirationDate = null;
+		this.accessId = accessId;
+	}
+
+	public synchronized void shutdown() {
+		cancelRefresh();
+		refreshScheduler.shutdownNow();
+	}
+
+	private void update(Token token) {
+		this.accessId = token.getAccessId();
+		this.expirationDate = token.getExpirationDate();
+		LOGGER.info("Auth-token updated to " + accessId + " expiring at " + expirationDate);
+
+		cancelRefresh();
+		if (expirationDate != null) {
+			long delay = expirationDate.getTime() - refreshMargin - System.currentTimeMillis();
+			// never refreshing in a tight loop, even if the token is short-lived
+			scheduleRefresh(Math.max(delay, RETRY_INTERVAL));
+		}
+	}
+
+	private void scheduleRefresh(long delay) {
+		if (refreshScheduler.isShutdown()) {
+			return;
+		}
+		LOGGER.debug("Scheduling auth-token refresh in " + delay + " ms.");
+		refreshHandle = refreshScheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				refresh();
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private synchronized void refresh() {
+		if (identityPlugin == null) {
+			return;
+		}
+		try {
+			renew();
+		} catch (Exception e) {
+			LOGGER.error("Exception while refreshing auth-token. Retrying in " + RETRY_INTERVAL
+					+ " ms.", e);
+			scheduleRefresh(RETRY_INTERVAL);
+		}
+	}
+
+	private void cancelRefresh() {
+		if (refreshHandle != null) {
+			refreshHandle.cancel(false);
+			refreshHandle = null;
+		}
+	}
+}
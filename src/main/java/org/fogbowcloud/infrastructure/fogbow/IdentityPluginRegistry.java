@@ -0,0 +1,141 @@
+package org.fogbowcloud.infrastructure.fogbow;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.fogbowcloud.infrastructure.core.InfrastructureException;
+import org.fogbowcloud.manager.core.plugins.IdentityPlugin;
+import org.reflections.Reflections;
+import org.reflections.scanners.SubTypesScanner;
+import org.reflections.util.ClasspathHelper;
+
+/**
+ * Maps identity plugin types (e.g. "openstack") to their classes. The registry
+ * is built once per process: from the index file {@value #INDEX_RESOURCE} when
+ * it is on the classpath, otherwise from a single classpath scan of
+ * {@value #PLUGIN_PACKAGE}. Resolving a type afterwards is a map lookup.
+ * 
+ * The index file is a properties file from type to plugin class name, e.g.
+ * <code>openstack=org.fogbowcloud.manager.core.plugins.openstack.OpenStackIdentityPlugin</code>.
+ * No index is shipped, so each process still scans the classpath once, which
+ * is every run of the infrastructure CLI.
+ */
+public class IdentityPluginRegistry {
+
+	public static final String PLUGIN_PACKAGE = "org.fogbowcloud.manager.core.plugins";
+	public static final String INDEX_RESOURCE = "fogbow-identity-plugins.properties";
+
+	private static volatile IdentityPluginRegistry instance;
+
+	private final Map<String, Class<? extends IdentityPlugin>> typeToClass;
+
+	private static final Logger LOGGER = Logger.getLogger(IdentityPluginRegistry.class);
+
+	protected IdentityPluginRegistry(Map<String, Class<? extends IdentityPlugin>> typeToClass) {
+		this.typeToClass = new HashMap<String, Class<? extends IdentityPlugin>>(typeToClass);
+	}
+
+	public static IdentityPluginRegistry getInstance() {
+		IdentityPluginRegistry registry = instance;
+		if (registry == null) {
+			synchronized (IdentityPluginRegistry.class) {
+				registry = instance;
+				if (registry == null) {
+					long start = System.currentTimeMillis();
+					Map<String, Class<? extends IdentityPlugin>> typeToClass = loadIndex();
+					if (typeToClass == null) {
+						typeToClass = scanClasspath();
+					}
+					registry = new IdentityPluginRegistry(typeToClass);
+					instance = registry;
+					LOGGER.info("Identity plugin registry with types=" + typeToClass.keySet()
+							+ " built in " + (System.currentTimeMillis() - start) + " ms.");
+				}
+			}
+		}
+		return registry;
+	}
+
+	public Set<String> getTypes() {
+		return Collections.unmodifiableSet(typeToClass.keySet());
+	}
+
+	public IdentityPlugin createPlugin(String pluginType) throws InfrastructureException {
+		Class<? extends IdentityPlugin> pluginClass = typeToClass.get(pluginType);
+		if (pluginClass == null) {
+			List<String> possibleTypes = new ArrayList<String>(typeToClass.keySet());
+			throw new InfrastructureException("Token type [" + pluginType + "] is not valid. "
+					+ "Possible types: " + possibleTypes + ".");
+		}
+		try {
+			return pluginClass.getConstructor(Properties.class).newInstance(new Properties());
+		} catch (Exception e) {
+			LOGGER.error("Exception while creating instance of IdentityPlugin.", e);
+			throw new InfrastructureException("The identity plugin " + pluginClass.getName()
+					+ " of token type [" + pluginType + "] could not be created: " + e);
+		}
+	}
+
+	/**
+	 * The plugin type is the name of the package where the plugin is, e.g.
+	 * org.fogbowcloud.manager.core.plugins.openstack.OpenStackIdentityPlugin
+	 * has "openstack" type.
+	 */
+	protected static String getPluginType(Class<?> pluginClass) {
+		String[] packageName = pluginClass.getName().split("\\.");
+		return packageName[packageName.length - 2];
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Class<? extends IdentityPlugin>> loadIndex() {
+		InputStream input = IdentityPluginRegistry.class.getClassLoader().getResourceAsStream(
+				INDEX_RESOURCE);
+		if (input == null) {
+			return null;
+		}
+		Map<String, Class<? extends IdentityPlugin>> typeToClass = new HashMap<String, Class<? extends IdentityPlugin>>();
+		try {
+			Properties index = new Properties();
+			index.load(input);
+			for (String type : index.stringPropertyNames()) {
+				Class<?> pluginClass = Class.forName(index.getProperty(type).trim());
+				if (!IdentityPlugin.class.isAssignableFrom(pluginClass)) {
+					LOGGER.warn("Ignoring " + pluginClass + " from " + INDEX_RESOURCE
+							+ " because it is not an IdentityPlugin.");
+					continue;
+				}
+				typeToClass.put(type, (Class<? extends IdentityPlugin>) pluginClass);
+			}
+			return typeToClass;
+		} catch (IOException | ClassNotFoundException e) {
+			LOGGER.warn("Exception while loading " + INDEX_RESOURCE
+					+ ". Scanning the classpath instead.", e);
+			return null;
+		} finally {
+			try {
+				input.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	private static Map<String, Class<? extends IdentityPlugin>> scanClasspath() {
+		Reflections reflections = new Reflections(ClasspathHelper.forPackage(PLUGIN_PACKAGE),
+				new SubTypesScanner());
+
+		Map<String, Class<? extends IdentityPlugin>> typeToClass = new HashMap<String, Class<? extends IdentityPlugin>>();
+		for (Class<? extends IdentityPlugin> eachClass : reflections
+				.getSubTypesOf(IdentityPlugin.class)) {
+			typeToClass.put(getPluginType(eachClass), eachClass);
+		}
+		return typeToClass;
+	}
+}
@@ -0,0 +1,61 @@
+package org.fogbowcloud.infrastructure.fogbow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fogbowcloud.manager.occi.core.Category;
+
+/**
+ * A message in text/occi format already parsed by {@link OCCIParser}. It is
+ * not modifiable after parsing, so it can be safely shared between threads.
+ */
+public class OCCIMessage {
+
+	private final Map<String, String> attributes = new HashMap<String, String>();
+	private final List<Category> categories = new ArrayList<Category>();
+	private final List<String> locations = new ArrayList<String>();
+
+	OCCIMessage() {
+	}
+
+	void addAttribute(String name, String value) {
+		attributes.put(name, value);
+	}
+
+	void addCategory(Category category) {
+		categories.add(category);
+	}
+
+	void addLocation(String location) {
+		locations.add(location);
+	}
+
+	public Map<String, String> getAttributes() {
+		return Collections.unmodifiableMap(attributes);
+	}
+
+	public List<Category> getCategories() {
+		return Collections.unmodifiableList(categories);
+	}
+
+	public List<String> getLocations() {
+		return Collections.unmodifiableList(locations);
+	}
+
+	public String getCategoryTerm(String scheme) {
+		for (Category category : categories) {
+			if (category.getScheme().equals(scheme)) {
+				return category.getTerm();
+			}
+		}
+		return null;
+	}
+
+	public String toString() {
+		return "locations=" + locations + ", categories=" + categories + ", attributes="
+				+ attributes;
+	}
+}
@@ -0,0 +1,262 @@
+package org.fogbowcloud.infrastructure.fogbow;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fogbowcloud.manager.occi.core.Category;
+
+/**
+ * Parses text/occi content in a single pass over the stream. Each line is read
+ * into a reusable buffer and scanned in place, so strings are only created for
+ * the final names and values. Quoted values may contain '=', ';' and ','
+ * characters, and a backslash escapes the next character.
+ */
+public class OCCIParser {
+
+	private static final char[] CATEGORY_PREFIX = "Category:".toCharArray();
+	private static final char[] ATTRIBUTE_PREFIX = "X-OCCI-Attribute:".toCharArray();
+	private static final char[] LOCATION_PREFIX = "X-OCCI-Location:".toCharArray();
+	private static final String SCHEME_PARAM = "scheme";
+	private static final String CLASS_PARAM = "class";
+	private static final int BUFFER_SIZE = 4096;
+
+	private final Reader reader;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int bufferPosition = 0;
+	private int bufferLimit = 0;
+	private char[] line = new char[256];
+	private int lineLength = 0;
+	// position of the next character to be scanned in the current line
+	private int position = 0;
+	private final StringBuilder valueBuilder = new StringBuilder();
+
+	private OCCIParser(Reader reader) {
+		this.reader = reader;
+	}
+
+	public static OCCIMessage parse(String content) {
+		try {
+			return parse(new StringReader(content));
+		} catch (IOException e) {
+			// StringReader does not throw IOException
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Parses the content as a single message.
+	 */
+	public static OCCIMessage parse(Reader reader) throws IOException {
+		return new OCCIParser(reader).parseMessages(false).get(0);
+	}
+
+	/**
+	 * Parses the content as a listing, where each X-OCCI-Location line starts a
+	 * new message. Parameters after the location, as in
+	 * <code>X-OCCI-Location: url; name="value"</code>, are attributes of the
+	 * new message. Content before the first location is ignored.
+	 */
+	public static List<OCCIMessage> parseListing(Reader reader) throws IOException {
+		return new OCCIParser(reader).parseMessages(true);
+	}
+
+	private List<OCCIMessage> parseMessages(boolean listing) throws IOException {
+		List<OCCIMessage> messages = new ArrayList<OCCIMessage>();
+		OCCIMessage current = listing ? null : new OCCIMessage();
+		if (current != null) {
+			messages.add(current);
+		}
+
+		while (readLine()) {
+			position = 0;
+			skipWhitespaces();
+			if (consumePrefix(LOCATION_PREFIX)) {
+				if (listing) {
+					current = new OCCIMessage();
+					messages.add(current);
+				}
+				parseLocation(current);
+			} else if (current == null) {
+				continue;
+			} else if (consumePrefix(ATTRIBUTE_PREFIX)) {
+				parseAttributes(current);
+			} else if (consumePrefix(CATEGORY_PREFIX)) {
+				parseCategory(current);
+			}
+		}
+		return messages;
+	}
+
+	private void parseLocation(OCCIMessage message) {
+		skipWhitespaces();
+		String location = readToken(';');
+		if (!location.isEmpty()) {
+			message.addLocation(location);
+		}
+		// inline attributes
+		while (position < lineLength && line[position] == ';') {
+			position++;
+			parseAttribute(message, ';');
+		}
+	}
+
+	private void parseAttributes(OCCIMessage message) {
+		parseAttribute(message, ',');
+		while (position < lineLength && line[position] == ',') {
+			position++;
+			parseAttribute(message, ',');
+		}
+	}
+
+	/**
+	 * Parses one name=value pair. A quoted value ends at its closing quote and
+	 * an unquoted one at the end of the line, or at the separator when it is
+	 * ';'.
+	 */
+	private void parseAttribute(OCCIMessage message, char separator) {
+		skipWhitespaces();
+		String name = readToken('=');
+		if (position >= lineLength || name.isEmpty()) {
+			return;
+		}
+		position++; // skipping '='
+		skipWhitespaces();
+		String value;
+		if (position < lineLength && line[position] == '"') {
+			value = readQuoted();
+			skipTo(separator);
+		} else {
+			value = readToken(separator == ';' ? ';' : '\n');
+		}
+		message.addAttribute(name, value);
+	}
+
+	private void parseCategory(OCCIMessage message) {
+		skipWhitespaces();
+		String term = readToken(';');
+		String scheme = "";
+		String catClass = "";
+		while (position < lineLength && line[position] == ';') {
+			position++;
+			skipWhitespaces();
+			String paramName = readToken('=');
+			if (position >= lineLength) {
+				break;
+			}
+			position++; // skipping '='
+			skipWhitespaces();
+			String paramValue;
+			if (position < lineLength && line[position] == '"') {
+				paramValue = readQuoted();
+				skipTo(';');
+			} else {
+				paramValue = readToken(';');
+			}
+			if (SCHEME_PARAM.equals(paramName)) {
+				scheme = paramValue;
+			} else if (CLASS_PARAM.equals(paramName)) {
+				catClass = paramValue;
+			}
+		}
+		message.addCategory(new Category(term, scheme, catClass));
+	}
+
+	/**
+	 * Reads until the delimiter or the end of line, leaving the position at
+	 * the delimiter. The token is trimmed.
+	 */
+	private String readToken(char delimiter) {
+		int start = position;
+		while (position < lineLength && line[position] != delimiter) {
+			position++;
+		}
+		int end = position;
+		while (end > start && Character.isWhitespace(line[end - 1])) {
+			end--;
+		}
+		return new String(line, start, end - start);
+	}
+
+	/**
+	 * Reads a quoted value starting at the opening quote, leaving the position
+	 * after the closing quote. The value is trimmed, as done for unquoted
+	 * values.
+	 */
+	private String readQuoted() {
+		position++; // skipping opening quote
+		valueBuilder.setLength(0);
+		while (position < lineLength) {
+			char c = line[position++];
+			if (c == '\\' && position < lineLength) {
+				valueBuilder.append(line[position++]);
+			} else if (c == '"') {
+				break;
+			} else {
+				valueBuilder.append(c);
+			}
+		}
+		return valueBuilder.toString().trim();
+	}
+
+	private void skipTo(char delimiter) {
+		while (position < lineLength && line[position] != delimiter) {
+			position++;
+		}
+	}
+
+	private void skipWhitespaces() {
+		while (position < lineLength && Character.isWhitespace(line[position])) {
+			position++;
+		}
+	}
+
+	private boolean consumePrefix(char[] prefix) {
+		if (lineLength - position < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (Character.toLowerCase(line[position + i]) != Character.toLowerCase(prefix[i])) {
+				return false;
+			}
+		}
+		position += prefix.length;
+		return true;
+	}
+
+	/**
+	 * Reads the next line into the line buffer, without the line terminator.
+	 * 
+	 * @return false if the end of the stream was reached before any character
+	 */
+	private boolean readLine() throws IOException {
+		lineLength = 0;
+		boolean readAny = false;
+		while (true) {
+			if (bufferPosition >= bufferLimit) {
+				bufferLimit = reader.read(buffer, 0, buffer.length);
+				bufferPosition = 0;
+				if (bufferLimit <= 0) {
+					bufferLimit = 0;
+					return readAny;
+				}
+			}
+			readAny = true;
+			char c = buffer[bufferPosition++];
+			if (c == '\n') {
+				if (lineLength > 0 && line[lineLength - 1] == '\r') {
+					lineLength--;
+				}
+				return true;
+			}
+			if (lineLength == line.length) {
+				char[] newLine = new char[line.length * 2];
+				System.arraycopy(line, 0, newLine, 0, lineLength);
+				line = newLine;
+			}
+			line[lineLength++] = c;
+		}
+	}
+}
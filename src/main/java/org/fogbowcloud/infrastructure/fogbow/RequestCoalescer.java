@@ -0,0 +1,59 @@
+package org.fogbowcloud.infrastructure.fogbow;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces identical concurrent requests. The first caller of a key executes
+ * the request in its own thread and the callers arriving while it is in flight
+ * wait for it and receive the same result or exception. Nothing is kept after
+ * the request completes, so the results must not be mutated by the callers.
+ */
+public class RequestCoalescer {
+
+	private final ConcurrentMap<String, FutureTask<?>> inFlightRequests = new ConcurrentHashMap<String, FutureTask<?>>();
+	private final AtomicLong executedRequests = new AtomicLong();
+	private final AtomicLong coalescedRequests = new AtomicLong();
+
+	/**
+	 * @throws ExecutionException
+	 *             wrapping the exception thrown by the request
+	 * @throws InterruptedException
+	 *             if the caller was interrupted while waiting for the request
+	 *             of other caller
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T execute(String key, Callable<T> request) throws ExecutionException,
+			InterruptedException {
+		FutureTask<T> task = new FutureTask<T>(request);
+		FutureTask<?> inFlightRequest = inFlightRequests.putIfAbsent(key, task);
+		if (inFlightRequest == null) {
+			executedRequests.incrementAndGet();
+			try {
+				task.run();
+			} finally {
+				inFlightRequests.remove(key, task);
+			}
+			return task.get();
+		}
+		coalescedRequests.incrementAndGet();
+		// callers of a key always request the same type
+		return (T) inFlightRequest.get();
+	}
+
+	public long getExecutedRequests() {
+		return executedRequests.get();
+	}
+
+	public long getCoalescedRequests() {
+		return coalescedRequests.get();
+	}
+
+	public String toString() {
+		return "executed=" + executedRequests + ", coalesced=" + coalescedRequests;
+	}
+}
@@ -0,0 +1,187 @@
+package org.fogbowcloud.infrastructure.fogbow;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.fogbowcloud.infrastructure.core.Clock;
+import org.fogbowcloud.infrastructure.core.SystemClock;
+import org.fogbowcloud.manager.occi.request.RequestAttribute;
+import org.fogbowcloud.manager.occi.request.RequestState;
+
+/**
+ * Caches the resource info by request id. Request attributes are kept for a
+ * short time to live, except for closed and deleted requests, whose state does
+ * not change anymore. Once a request is fulfilled, the attributes of its
+ * instance (ssh address, flavor, image, ...) are pinned until the request
+ * points to another instance, so they are not fetched again. The cache is
+ * bounded and evicts the least recently used requests, and the requests the
+ * server does not have anymore once they are known.
+ */
+public class ResourceInfoCache {
+
+	private final Clock clock;
+	private final long timeToLive;
+	private final Map<String, CacheEntry> entries;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong instanceHits = new AtomicLong();
+	private final AtomicLong instanceMisses = new AtomicLong();
+
+	/**
+	 * @param maxSize
+	 *            Maximum number of cached requests
+	 * @param timeToLive
+	 *            Time to live of request attributes in milliseconds
+	 */
+	public ResourceInfoCache(int maxSize, long timeToLive) {
+		this(maxSize, timeToLive, new SystemClock());
+	}
+
+	public ResourceInfoCache(final int maxSize, long timeToLive, Clock clock) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Cache size must be a positive integer.");
+		}
+		this.clock = clock;
+		this.timeToLive = timeToLive;
+		this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 2389134507218733254L;
+
+			@Override
+			protected boolean removeEldestEntry(Entry<String, CacheEntry> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * @return A copy of the cached resource info or null if there is no fresh
+	 *         info about the request
+	 */
+	public synchronized Map<String, String> get(String requestId) {
+		CacheEntry entry = entries.get(requestId);
+		if (entry == null || entry.resourceInfo == null || !isFresh(entry)) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return new HashMap<String, String>(entry.resourceInfo);
+	}
+
+	public synchronized void put(String requestId, Map<String, String> resourceInfo) {
+		CacheEntry entry = entries.get(requestId);
+		if (entry == null) {
+			entry = new CacheEntry();
+			entries.put(requestId, entry);
+		}
+		entry.resourceInfo = new HashMap<String, String>(resourceInfo);
+		entry.fetchedAt = clock.currentTimeMillis();
+
+		String instanceId = resourceInfo.get(RequestAttribute.INSTANCE_ID.getValue());
+		if (entry.instanceId != null && !entry.instanceId.equals(instanceId)) {
+			// the request was fulfilled again by other instance
+			entry.instanceId = null;
+			entry.instanceAttributes = null;
+		}
+	}
+
+	/**
+	 * @return The pinned attributes of the instance or null if they are not
+	 *         known
+	 */
+	public synchronized Map<String, String> getInstance(String requestId, String instanceId) {
+		CacheEntry entry = entries.get(requestId);
+		if (entry == null || entry.instanceAttributes == null
+				|| !entry.instanceId.equals(instanceId)) {
+			instanceMisses.incrementAndGet();
+			return null;
+		}
+		instanceHits.incrementAndGet();
+		return new HashMap<String, String>(entry.instanceAttributes);
+	}
+
+	/**
+	 * @return The id of the pinned instance, even if the request attributes
+	 *         are not fresh anymore, or null if it is not known
+	 */
+	public synchronized String getInstanceId(String requestId) {
+		CacheEntry entry = entries.get(requestId);
+		if (entry == null || entry.instanceAttributes == null) {
+			return null;
+		}
+		return entry.instanceId;
+	}
+
+	public synchronized void pinInstance(String requestId, String instanceId,
+			Map<String, String> instanceAttributes) {
+		CacheEntry entry = entries.get(requestId);
+		if (entry == null) {
+			entry = new CacheEntry();
+			entries.put(requestId, entry);
+		}
+		entry.instanceId = instanceId;
+		entry.instanceAttributes = new HashMap<String, String>(instanceAttributes);
+	}
+
+	public synchronized void invalidate(String requestId) {
+		entries.remove(requestId);
+	}
+
+	/**
+	 * Evicts the requests not in the given ones, e.g. the requests missing from
+	 * a listing of the server.
+	 */
+	public synchronized void retainAll(Collection<String> requestIds) {
+		entries.keySet().retainAll(new HashSet<String>(requestIds));
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getInstanceHits() {
+		return instanceHits.get();
+	}
+
+	public long getInstanceMisses() {
+		return instanceMisses.get();
+	}
+
+	public String toString() {
+		return "size=" + size() + ", hits=" + hits + ", misses=" + misses + ", instanceHits="
+				+ instanceHits + ", instanceMisses=" + instanceMisses;
+	}
+
+	private boolean isFresh(CacheEntry entry) {
+		String state = entry.resourceInfo.get(RequestAttribute.STATE.getValue());
+		if (RequestState.CLOSED.getValue().equals(state)
+				|| RequestState.DELETED.getValue().equals(state)) {
+			return true;
+		}
+		return clock.currentTimeMillis() - entry.fetchedAt < timeToLive;
+	}
+
+	private static class CacheEntry {
+		Map<String, String> resourceInfo;
+		long fetchedAt;
+		String instanceId;
+		Map<String, String> instanceAttributes;
+	}
+}
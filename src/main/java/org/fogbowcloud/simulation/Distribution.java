@@ -0,0 +1,100 @@
+package org.fogbowcloud.simulation;
+
+import java.util.Random;
+
+/**
+ * Distribution of the durations of a simulation, configured in seconds as:
+ * <ul>
+ * <li>"90" or "const:90": always 90 seconds</li>
+ * <li>"uniform:30:120": uniformly between 30 and 120 seconds</li>
+ * <li>"exp:3600": exponentially with a mean of 3600 seconds</li>
+ * <li>"none": never happens</li>
+ * </ul>
+ */
+public abstract class Distribution {
+
+	/**
+	 * Duration of the events that never happen
+	 */
+	public static final long NEVER = Long.MAX_VALUE;
+
+	/**
+	 * @return A duration in milliseconds or {@link #NEVER}
+	 */
+	public abstract long sample(Random random);
+
+	public static Distribution parse(String specification) {
+		String[] parts = specification.trim().split(":");
+		try {
+			if (parts.length == 1 && "none".equals(parts[0])) {
+				return new Constant(NEVER);
+			} else if (parts.length == 1) {
+				return new Constant(toMillis(parts[0]));
+			} else if (parts.length == 2 && "const".equals(parts[0])) {
+				return new Constant(toMillis(parts[1]));
+			} else if (parts.length == 2 && "exp".equals(parts[0])) {
+				return new Exponential(toMillis(parts[1]));
+			} else if (parts.length == 3 && "uniform".equals(parts[0])) {
+				return new Uniform(toMillis(parts[1]), toMillis(parts[2]));
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		throw new IllegalArgumentException("Invalid distribution " + specification + ".");
+	}
+
+	private static long toMillis(String seconds) {
+		double value = Double.parseDouble(seconds.trim());
+		if (value < 0) {
+			throw new NumberFormatException();
+		}
+		return (long) (value * 1000);
+	}
+
+	private static class Constant extends Distribution {
+
+		private final long value;
+
+		Constant(long value) {
+			this.value = value;
+		}
+
+		@Override
+		public long sample(Random random) {
+			return value;
+		}
+	}
+
+	private static class Uniform extends Distribution {
+
+		private final long min;
+		private final long max;
+
+		Uniform(long min, long max) {
+			if (max < min) {
+				throw new NumberFormatException();
+			}
+			this.min = min;
+			this.max = max;
+		}
+
+		@Override
+		public long sample(Random random) {
+			return min + (long) (random.nextDouble() * (max - min));
+		}
+	}
+
+	private static class Exponential extends Distribution {
+
+		private final long mean;
+
+		Exponential(long mean) {
+			this.mean = mean;
+		}
+
+		@Override
+		public long sample(Random random) {
+			return (long) (-mean * Math.log(1 - random.nextDouble()));
+		}
+	}
+}
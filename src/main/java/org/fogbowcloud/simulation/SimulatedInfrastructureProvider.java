@@ -0,0 +1,285 @@
+package org.fogbowcloud.simulation;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+import org.fogbowcloud.infrastructure.core.BatchResult;
+import org.fogbowcloud.infrastructure.core.Clock;
+import org.fogbowcloud.infrastructure.core.CommandResult;
+import org.fogbowcloud.infrastructure.core.InfrastructureException;
+import org.fogbowcloud.infrastructure.core.InfrastructureProvider;
+
+/**
+ * Infrastructure of a simulation. Each requested VM is fulfilled after a
+ * fulfillment time, accepts commands after a boot time and fails after a
+ * failure time, all of them sampled from their distributions. The VMs are
+ * billed from their fulfillment to their deletion or failure.
+ */
+public class SimulatedInfrastructureProvider implements InfrastructureProvider {
+
+	public static final String FULFILLMENT_TIME_KEY = "simulation_fulfillment_time";
+	public static final String BOOT_TIME_KEY = "simulation_boot_time";
+	public static final String FAILURE_TIME_KEY = "simulation_failure_time";
+
+	public static final String DEFAULT_FULFILLMENT_TIME = "uniform:30:120";
+	public static final String DEFAULT_BOOT_TIME = "uniform:60:180";
+	public static final String DEFAULT_FAILURE_TIME = "none";
+
+	private static final String ID_KEY = "id";
+	private static final String STATE_KEY = "state";
+	private static final String REQUESTED = "requested";
+	private static final String BOOTING = "booting";
+	private static final String RUNNING = "running";
+	private static final String FAILED = "failed";
+
+	private final Clock clock;
+	private final Random random;
+	private final Distribution fulfillmentTime;
+	private final Distribution bootTime;
+	private final Distribution failureTime;
+
+	private final Map<String, VirtualMachine> machines = new LinkedHashMap<String, VirtualMachine>();
+	private int nextId = 0;
+	private long created = 0;
+	private long deleted = 0;
+	private long failed = 0;
+	private long billedMillis = 0;
+
+	public SimulatedInfrastructureProvider(Properties properties, Clock clock, Random random) {
+		this(clock, random, Distribution.parse(properties.getProperty(FULFILLMENT_TIME_KEY,
+				DEFAULT_FULFILLMENT_TIME)), Distribution.parse(properties.getProperty(
+				BOOT_TIME_KEY, DEFAULT_BOOT_TIME)), Distribution.parse(properties.getProperty(
+				FAILURE_TIME_KEY, DEFAULT_FAILURE_TIME)));
+	}
+
+	/**
+	 * @param bootTime
+	 *            Time from the fulfillment of a VM until it accepts commands
+	 * @param failureTime
+	 *            Time from the fulfillment of a VM until it fails
+	 */
+	public SimulatedInfrastructureProvider(Clock clock, Random random,
+			Distribution fulfillmentTime, Distribution bootTime, Distribution failureTime) {
+		this.clock = clock;
+		this.random = random;
+		this.fulfillmentTime = fulfillmentTime;
+		this.bootTime = bootTime;
+		this.failureTime = failureTime;
+	}
+
+	@Override
+	public String configure(Map<String, String> credentials) {
+		return null;
+	}
+
+	@Override
+	public synchronized List<String> createResource(int numberOfInstances,
+			Map<String, String> properties) {
+		long now = clock.currentTimeMillis();
+		List<String> resourceIds = new ArrayList<String>();
+		for (int i = 0; i < numberOfInstances; i++) {
+			VirtualMachine machine = new VirtualMachine("vm-" + nextId++, now);
+			machines.put(machine.id, machine);
+			resourceIds.add(machine.id);
+			created++;
+		}
+		return resourceIds;
+	}
+
+	@Override
+	public synchronized Map<String, String> getResourceInfo(String resourceId)
+			throws InfrastructureException {
+		VirtualMachine machine = machines.get(resourceId);
+		if (machine == null) {
+			throw new InfrastructureException("There is no resource " + resourceId + ".");
+		}
+		return machine.getInfo(clock.currentTimeMillis());
+	}
+
+	@Override
+	public synchronized Map<String, Map<String, String>> getResourcesInfo(
+			Collection<String> resourceIds) {
+		long now = clock.currentTimeMillis();
+		Map<String, Map<String, String>> resourcesInfo = new HashMap<String, Map<String, String>>();
+		for (String resourceId : resourceIds) {
+			VirtualMachine machine = machines.get(resourceId);
+			if (machine != null) {
+				resourcesInfo.put(resourceId, machine.getInfo(now));
+			}
+		}
+		return resourcesInfo;
+	}
+
+	@Override
+	public boolean isBulkQuerySupported() {
+		// charged as the queries one by one of the fogbow without listing
+		return false;
+	}
+
+	@Override
+	public synchronized void deleteResource(String resourceId) throws InfrastructureException {
+		VirtualMachine machine = machines.remove(resourceId);
+		if (machine == null) {
+			throw new InfrastructureException("There is no resource " + resourceId + ".");
+		}
+		long now = clock.currentTimeMillis();
+		billedMillis += machine.getBilledMillis(now);
+		if (machine.failureTime <= now) {
+			failed++;
+		}
+		deleted++;
+	}
+
+	@Override
+	public BatchResult deleteResources(Collection<String> resourceIds) {
+		BatchResult result = new BatchResult();
+		for (String resourceId : resourceIds) {
+			try {
+				deleteResource(resourceId);
+				result.addSucceeded(resourceId);
+			} catch (InfrastructureException e) {
+				result.addFailed(resourceId, e);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public CommandResult executeCommand(Map<String, String> resourceInfo,
+			Map<String, String> resourceCredentials, String command) {
+		if (!isRunning(resourceInfo.get(ID_KEY))) {
+			return null;
+		}
+		return new CommandResult(0, "", "");
+	}
+
+	@Override
+	public CommandResult executeCommand(Map<String, String> resourceInfo,
+			Map<String, String> resourceCredentials, String command, long timeout) {
+		return executeCommand(resourceInfo, resourceCredentials, command);
+	}
+
+	@Override
+	public CommandResult executeCommand(Map<String, String> resourceInfo,
+			Map<String, String> resourceCredentials, String command, OutputStream outputSink,
+			OutputStream errorSink) {
+		return executeCommand(resourceInfo, resourceCredentials, command);
+	}
+
+	@Override
+	public InetSocketAddress getSSHAddress(Map<String, String> resourceInfo) {
+		return null;
+	}
+
+	@Override
+	public synchronized boolean isResourceAvailable(String resourceId) {
+		VirtualMachine machine = machines.get(resourceId);
+		return machine != null && isAvailable(machine.getInfo(clock.currentTimeMillis()));
+	}
+
+	@Override
+	public boolean isAvailable(Map<String, String> resourceInfo) {
+		if (resourceInfo == null) {
+			return false;
+		}
+		String state = resourceInfo.get(STATE_KEY);
+		return BOOTING.equals(state) || RUNNING.equals(state);
+	}
+
+	/**
+	 * @return Whether the VM is booted and did not fail
+	 */
+	public synchronized boolean isRunning(String resourceId) {
+		VirtualMachine machine = machines.get(resourceId);
+		return machine != null && RUNNING.equals(machine.getState(clock.currentTimeMillis()));
+	}
+
+	public synchronized long getCreated() {
+		return created;
+	}
+
+	public synchronized long getDeleted() {
+		return deleted;
+	}
+
+	/**
+	 * @return The number of VMs failed until now
+	 */
+	public synchronized long getFailed() {
+		long now = clock.currentTimeMillis();
+		long failedMachines = failed;
+		for (VirtualMachine machine : machines.values()) {
+			if (machine.failureTime <= now) {
+				failedMachines++;
+			}
+		}
+		return failedMachines;
+	}
+
+	/**
+	 * @return The time billed for all VMs until now in milliseconds
+	 */
+	public synchronized long getBilledMillis() {
+		long now = clock.currentTimeMillis();
+		long billed = billedMillis;
+		for (VirtualMachine machine : machines.values()) {
+			billed += machine.getBilledMillis(now);
+		}
+		return billed;
+	}
+
+	private static long addTime(long time, long duration) {
+		if (time == Distribution.NEVER || duration == Distribution.NEVER) {
+			return Distribution.NEVER;
+		}
+		return time + duration;
+	}
+
+	private class VirtualMachine {
+
+		final String id;
+		final long fulfillmentTime;
+		final long bootTime;
+		final long failureTime;
+
+		VirtualMachine(String id, long requestTime) {
+			this.id = id;
+			this.fulfillmentTime = addTime(requestTime,
+					SimulatedInfrastructureProvider.this.fulfillmentTime.sample(random));
+			this.bootTime = addTime(fulfillmentTime,
+					SimulatedInfrastructureProvider.this.bootTime.sample(random));
+			this.failureTime = addTime(fulfillmentTime,
+					SimulatedInfrastructureProvider.this.failureTime.sample(random));
+		}
+
+		String getState(long now) {
+			if (now < fulfillmentTime) {
+				return REQUESTED;
+			} else if (now >= failureTime) {
+				return FAILED;
+			} else if (now < bootTime) {
+				return BOOTING;
+			}
+			return RUNNING;
+		}
+
+		Map<String, String> getInfo(long now) {
+			Map<String, String> info = new HashMap<String, String>();
+			info.put(ID_KEY, id);
+			info.put(STATE_KEY, getState(now));
+			return info;
+		}
+
+		long getBilledMillis(long now) {
+			return Math.max(0, Math.min(now, failureTime) - fulfillmentTime);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package org.fogbowcloud.simulation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Job of a simulation trace, which arrives at the queue at some time and runs
+ * for some time on an engine slot. A job whose engine is lost goes back to
+ * the head of the queue and runs again from the start.
+ */
+public class SimulatedJob {
+
+	private static final Comparator<SimulatedJob> ARRIVAL_ORDER = new Comparator<SimulatedJob>() {
+		@Override
+		public int compare(SimulatedJob job, SimulatedJob other) {
+			return Long.compare(job.arrivalTime, other.arrivalTime);
+		}
+	};
+
+	private final long arrivalTime;
+	private final long runtime;
+
+	private String engineId;
+	private int attempt = 0;
+
+	/**
+	 * @param arrivalTime
+	 *            Time of arrival in milliseconds since the trace start
+	 * @param runtime
+	 *            Running time in milliseconds
+	 */
+	public SimulatedJob(long arrivalTime, long runtime) {
+		if (arrivalTime < 0 || runtime < 0) {
+			throw new IllegalArgumentException("Job arrival time and runtime must not be negative.");
+		}
+		this.arrivalTime = arrivalTime;
+		this.runtime = runtime;
+	}
+
+	public long getArrivalTime() {
+		return arrivalTime;
+	}
+
+	public long getRuntime() {
+		return runtime;
+	}
+
+	/**
+	 * @return The engine running the job or null if it is not running
+	 */
+	public String getEngineId() {
+		return engineId;
+	}
+
+	/**
+	 * @return The number of times the job started
+	 */
+	public int getAttempt() {
+		return attempt;
+	}
+
+	void start(String engineId) {
+		this.engineId = engineId;
+		this.attempt++;
+	}
+
+	void stop() {
+		this.engineId = null;
+	}
+
+	/**
+	 * Reads a trace with one job per line, as its arrival time since the trace
+	 * start and its runtime, both in seconds and separated by blanks or a
+	 * comma. Empty lines and lines starting with # are skipped.
+	 *
+	 * @return The jobs in arrival order
+	 */
+	public static List<SimulatedJob> readTrace(Reader reader) throws IOException {
+		List<SimulatedJob> jobs = new ArrayList<SimulatedJob>();
+		BufferedReader lines = new BufferedReader(reader);
+		String line;
+		int lineNumber = 0;
+		while ((line = lines.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String[] fields = line.split("[\\s,]+");
+			try {
+				if (fields.length != 2) {
+					throw new NumberFormatException();
+				}
+				jobs.add(new SimulatedJob((long) (Double.parseDouble(fields[0]) * 1000),
+						(long) (Double.parseDouble(fields[1]) * 1000)));
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Invalid job at line " + lineNumber + " of trace: " + line);
+			}
+		}
+		Collections.sort(jobs, ARRIVAL_ORDER);
+		return jobs;
+	}
+}
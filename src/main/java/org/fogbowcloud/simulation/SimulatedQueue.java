@@ -0,0 +1,144 @@
+package org.fogbowcloud.simulation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.fogbowcloud.capacityplanner.queue.EScienceCentralQueue;
+
+/**
+ * Job queue of a simulation. The jobs wait in arrival order for a free slot
+ * of an engine, each engine runs a fixed number of jobs at the same time. The
+ * length of the queue counts the jobs waiting and running, as the engines
+ * running jobs are still needed.
+ */
+public class SimulatedQueue implements EScienceCentralQueue {
+
+	private final int slotsPerEngine;
+	private final Deque<SimulatedJob> waiting = new ArrayDeque<SimulatedJob>();
+	private final Map<String, List<SimulatedJob>> running = new HashMap<String, List<SimulatedJob>>();
+	private int runningJobs = 0;
+
+	private long[] waitTimes = new long[16];
+	private int completedJobs = 0;
+	private long restartedJobs = 0;
+
+	public SimulatedQueue(int slotsPerEngine) {
+		if (slotsPerEngine <= 0) {
+			throw new IllegalArgumentException("Engine slots must be a positive integer.");
+		}
+		this.slotsPerEngine = slotsPerEngine;
+	}
+
+	@Override
+	public synchronized int getLength() {
+		return waiting.size() + runningJobs;
+	}
+
+	public synchronized int getWaitingJobs() {
+		return waiting.size();
+	}
+
+	public synchronized void submit(SimulatedJob job) {
+		waiting.addLast(job);
+	}
+
+	/**
+	 * Puts the jobs of the engines not available anymore back at the head of
+	 * the queue.
+	 */
+	public synchronized void updateEngines(Set<String> engineIds) {
+		Iterator<Map.Entry<String, List<SimulatedJob>>> entries = running.entrySet().iterator();
+		while (entries.hasNext()) {
+			Map.Entry<String, List<SimulatedJob>> entry = entries.next();
+			if (engineIds.contains(entry.getKey())) {
+				continue;
+			}
+			List<SimulatedJob> jobs = entry.getValue();
+			for (int i = jobs.size() - 1; i >= 0; i--) {
+				jobs.get(i).stop();
+				waiting.addFirst(jobs.get(i));
+				restartedJobs++;
+			}
+			runningJobs -= jobs.size();
+			entries.remove();
+		}
+	}
+
+	/**
+	 * Starts the waiting jobs on the free slots of the engines, in order.
+	 *
+	 * @return The jobs started
+	 */
+	public synchronized List<SimulatedJob> dispatch(Collection<String> engineIds) {
+		List<SimulatedJob> startedJobs = new ArrayList<SimulatedJob>();
+		for (String engineId : engineIds) {
+			if (waiting.isEmpty()) {
+				break;
+			}
+			List<SimulatedJob> jobs = running.get(engineId);
+			if (jobs == null) {
+				jobs = new ArrayList<SimulatedJob>(slotsPerEngine);
+				running.put(engineId, jobs);
+			}
+			while (jobs.size() < slotsPerEngine && !waiting.isEmpty()) {
+				SimulatedJob job = waiting.pollFirst();
+				job.start(engineId);
+				jobs.add(job);
+				runningJobs++;
+				startedJobs.add(job);
+			}
+		}
+		return startedJobs;
+	}
+
+	/**
+	 * Completes the job, unless it was put back in the queue meanwhile.
+	 *
+	 * @param attempt
+	 *            The attempt of the job that completes
+	 * @return Whether the job completed
+	 */
+	public synchronized boolean complete(SimulatedJob job, int attempt, long now) {
+		if (job.getAttempt() != attempt || job.getEngineId() == null) {
+			return false;
+		}
+		running.get(job.getEngineId()).remove(job);
+		runningJobs--;
+		job.stop();
+		if (completedJobs == waitTimes.length) {
+			waitTimes = Arrays.copyOf(waitTimes, waitTimes.length * 2);
+		}
+		// the time the job was not running, including the runs lost
+		waitTimes[completedJobs++] = now - job.getArrivalTime() - job.getRuntime();
+		return true;
+	}
+
+	public synchronized int getCompletedJobs() {
+		return completedJobs;
+	}
+
+	/**
+	 * @return The number of times a job went back to the queue because its
+	 *         engine was lost
+	 */
+	public synchronized long getRestartedJobs() {
+		return restartedJobs;
+	}
+
+	/**
+	 * @return The wait times of the completed jobs in milliseconds, sorted
+	 */
+	public synchronized long[] getWaitTimes() {
+		long[] sortedWaitTimes = Arrays.copyOf(waitTimes, completedJobs);
+		Arrays.sort(sortedWaitTimes);
+		return sortedWaitTimes;
+	}
+}
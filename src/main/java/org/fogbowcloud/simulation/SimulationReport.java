@@ -0,0 +1,127 @@
+package org.fogbowcloud.simulation;
+
+/**
+ * Outcome of a simulation: the cost of the VMs, the wait of the jobs and the
+ * churn of the VMs requested and deleted.
+ */
+public class SimulationReport {
+
+	private static final double MILLIS_PER_HOUR = 60 * 60 * 1000d;
+
+	private final long simulatedTime;
+	private final long elapsedTime;
+	private final int jobs;
+	private final int completedJobs;
+	private final long restartedJobs;
+	private final long[] waitTimes;
+	private final long billedTime;
+	private final long createdMachines;
+	private final long deletedMachines;
+	private final long failedMachines;
+	private final int peakEngines;
+	private final long plannerExecutions;
+
+	public SimulationReport(long simulatedTime, long elapsedTime, int jobs, int completedJobs,
+			long restartedJobs, long[] waitTimes, long billedTime, long createdMachines,
+			long deletedMachines, long failedMachines, int peakEngines, long plannerExecutions) {
+		this.simulatedTime = simulatedTime;
+		this.elapsedTime = elapsedTime;
+		this.jobs = jobs;
+		this.completedJobs = completedJobs;
+		this.restartedJobs = restartedJobs;
+		this.waitTimes = waitTimes;
+		this.billedTime = billedTime;
+		this.createdMachines = createdMachines;
+		this.deletedMachines = deletedMachines;
+		this.failedMachines = failedMachines;
+		this.peakEngines = peakEngines;
+		this.plannerExecutions = plannerExecutions;
+	}
+
+	/**
+	 * @return The virtual time simulated in milliseconds
+	 */
+	public long getSimulatedTime() {
+		return simulatedTime;
+	}
+
+	/**
+	 * @return The real time the simulation took in milliseconds
+	 */
+	public long getElapsedTime() {
+		return elapsedTime;
+	}
+
+	public int getJobs() {
+		return jobs;
+	}
+
+	public int getCompletedJobs() {
+		return completedJobs;
+	}
+
+	public long getRestartedJobs() {
+		return restartedJobs;
+	}
+
+	/**
+	 * @param percentile
+	 *            Between 0 and 100
+	 * @return The wait time of the completed jobs at the percentile in
+	 *         milliseconds, by the nearest rank, or 0 if no job completed
+	 */
+	public long getWaitTimePercentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+		}
+		if (waitTimes.length == 0) {
+			return 0;
+		}
+		int rank = (int) Math.ceil(percentile / 100 * waitTimes.length);
+		return waitTimes[Math.max(0, rank - 1)];
+	}
+
+	public double getVirtualMachineHours() {
+		return billedTime / MILLIS_PER_HOUR;
+	}
+
+	public long getCreatedMachines() {
+		return createdMachines;
+	}
+
+	public long getDeletedMachines() {
+		return deletedMachines;
+	}
+
+	public long getFailedMachines() {
+		return failedMachines;
+	}
+
+	/**
+	 * @return The number of VMs created and deleted
+	 */
+	public long getChurn() {
+		return createdMachines + deletedMachines;
+	}
+
+	public int getPeakEngines() {
+		return peakEngines;
+	}
+
+	public long getPlannerExecutions() {
+		return plannerExecutions;
+	}
+
+	public String toString() {
+		return String.format("simulated %.1f hours in %d ms (%d planner executions)%n"
+				+ "jobs: %d, completed: %d, restarted: %d%n"
+				+ "wait (s): p50=%.1f p90=%.1f p99=%.1f max=%.1f%n"
+				+ "VM-hours: %.2f, peak engines: %d%n"
+				+ "churn: %d (created: %d, deleted: %d, failed: %d)",
+				simulatedTime / MILLIS_PER_HOUR, elapsedTime, plannerExecutions, jobs,
+				completedJobs, restartedJobs, getWaitTimePercentile(50) / 1000d,
+				getWaitTimePercentile(90) / 1000d, getWaitTimePercentile(99) / 1000d,
+				getWaitTimePercentile(100) / 1000d, getVirtualMachineHours(), peakEngines,
+				getChurn(), createdMachines, deletedMachines, failedMachines);
+	}
+}
@@ -0,0 +1,308 @@
+package org.fogbowcloud.simulation;
+
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.fogbowcloud.ConfigurationConstants;
+import org.fogbowcloud.PropertiesUtils;
+import org.fogbowcloud.capacityplanner.CapacityPlanner;
+import org.fogbowcloud.capacityplanner.resource.AllocationPolicy;
+import org.fogbowcloud.capacityplanner.resource.AllocationPolicyAdapter;
+import org.fogbowcloud.capacityplanner.resource.LinearAllocationPolicy;
+import org.fogbowcloud.capacityplanner.resource.SnapshotAllocationPolicy;
+import org.fogbowcloud.capacityplanner.resource.StabilizedAllocationPolicy;
+import org.fogbowcloud.infrastructure.core.Clock;
+import org.fogbowcloud.infrastructure.core.EngineBootstrapper;
+import org.fogbowcloud.infrastructure.core.InfrastructureManager;
+import org.fogbowcloud.infrastructure.core.MonitoringScheduler;
+import org.fogbowcloud.infrastructure.core.ResourcePropertiesConstants;
+
+/**
+ * Discrete-event simulation of the capacity planner. The real
+ * {@link CapacityPlanner}, {@link InfrastructureManager} and allocation policy
+ * run on a virtual clock against a {@link SimulatedInfrastructureProvider} and
+ * a {@link SimulatedQueue} fed by a job trace. The clock jumps from one event to
+ * the next one: the arrival or completion of a job, a monitoring tick or a
+ * planner execution, so days of trace are simulated in seconds.
+ *
+ * The planner and the monitoring use the intervals of the configuration. The
+ * engine bootstrap has no retries, a VM not booted yet is bootstrapped again on
+ * its next poll.
+ */
+public class Simulator {
+
+	public static final String SEED_KEY = "simulation_seed";
+	public static final String ENGINE_SLOTS_KEY = "simulation_engine_slots";
+	public static final String MAX_DRAIN_TIME_KEY = "simulation_max_drain_time";
+
+	public static final int DEFAULT_SEED = 1;
+	public static final int DEFAULT_ENGINE_SLOTS = 1;
+	public static final int DEFAULT_MAX_DRAIN_TIME = 24; // in hours
+
+	private static final Map<String, String> SIMULATED_PROPERTIES = Collections.singletonMap(
+			ResourcePropertiesConstants.IMAGE_KEY, "simulated");
+	private static final Map<String, String> SIMULATED_CREDENTIALS = Collections.singletonMap(
+			ResourcePropertiesConstants.USERNAME_KEY, "simulated");
+
+	private final Properties properties;
+	private final VirtualClock clock = new VirtualClock(0);
+
+	private static final Logger LOGGER = Logger.getLogger(Simulator.class);
+
+	public Simulator(Properties properties) {
+		this.properties = properties;
+	}
+
+	/**
+	 * @return The virtual clock, to be used by the allocation policy
+	 */
+	public Clock getClock() {
+		return clock;
+	}
+
+	/**
+	 * Simulates the jobs until all of them complete or the max drain time
+	 * after the last arrival. A simulator runs a single simulation.
+	 *
+	 * @param jobs
+	 *            The jobs in arrival order
+	 */
+	public SimulationReport run(AllocationPolicy allocationPolicy, List<SimulatedJob> jobs) {
+		return run(new AllocationPolicyAdapter(allocationPolicy), jobs);
+	}
+
+	/**
+	 * Simulates the jobs with a policy that takes the planner snapshot.
+	 *
+	 * @see #run(AllocationPolicy, List)
+	 */
+	public SimulationReport run(SnapshotAllocationPolicy allocationPolicy,
+			List<SimulatedJob> jobs) {
+		long startTime = System.currentTimeMillis();
+		SimulatedInfrastructureProvider infraProvider = new SimulatedInfrastructureProvider(
+				properties, clock, new Random(PropertiesUtils.getIntProperty(properties, SEED_KEY,
+						DEFAULT_SEED)));
+		SimulatedQueue queue = new SimulatedQueue(PropertiesUtils.getIntProperty(properties,
+				ENGINE_SLOTS_KEY, DEFAULT_ENGINE_SLOTS));
+		InfrastructureManager infraManager = createInfraManager(infraProvider);
+		long tickInterval = PropertiesUtils.getIntProperty(properties,
+				MonitoringScheduler.TICK_INTERVAL_KEY, MonitoringScheduler.DEFAULT_TICK_INTERVAL)
+				* 1000L;
+		int executionInterval = PropertiesUtils.getIntProperty(properties,
+				ConfigurationConstants.CAPACITY_EXECUTION_INTERVAL,
+				CapacityPlanner.DEFAULT_EXECUTION_PERIOD);
+		CapacityPlanner capacityPlanner = new CapacityPlanner(executionInterval, clock);
+		capacityPlanner.setInfraManager(infraManager);
+		capacityPlanner.setQueue(queue);
+		capacityPlanner.setSnapshotAllocationPolicy(allocationPolicy);
+
+		long endTime = clock.currentTimeMillis()
+				+ (jobs.isEmpty() ? 0 : jobs.get(jobs.size() - 1).getArrivalTime())
+				+ PropertiesUtils.getIntProperty(properties, MAX_DRAIN_TIME_KEY,
+						DEFAULT_MAX_DRAIN_TIME) * 60 * 60 * 1000L;
+		PriorityQueue<Completion> completions = new PriorityQueue<Completion>(16,
+				Completion.TIME_ORDER);
+		long nextTick = clock.currentTimeMillis();
+		long nextExecution = clock.currentTimeMillis();
+		long completionSeq = 0;
+		long plannerExecutions = 0;
+		int peakEngines = 0;
+		int nextJob = 0;
+
+		while (nextJob < jobs.size() || queue.getLength() > 0) {
+			long nextArrival = nextJob < jobs.size() ? jobs.get(nextJob).getArrivalTime()
+					: Long.MAX_VALUE;
+			long nextCompletion = completions.isEmpty() ? Long.MAX_VALUE : completions.peek().time;
+			long now = Math.min(Math.min(nextArrival, nextCompletion),
+					Math.min(nextTick, nextExecution));
+			if (now > endTime) {
+				break;
+			}
+			clock.advanceTo(now);
+
+			while (!completions.isEmpty() && completions.peek().time == now) {
+				Completion completion = completions.poll();
+				queue.complete(completion.job, completion.attempt, now);
+			}
+			while (nextJob < jobs.size() && jobs.get(nextJob).getArrivalTime() == now) {
+				queue.submit(jobs.get(nextJob++));
+			}
+			if (nextTick == now) {
+				infraManager.monitoringTick();
+				nextTick += tickInterval;
+			}
+			if (nextExecution == now) {
+				capacityPlanner.runCapacityPanner();
+				nextExecution += executionInterval * 60 * 1000L;
+				plannerExecutions++;
+			}
+
+			// only the engines in use whose VM is running take jobs
+			Set<String> engineIds = new LinkedHashSet<String>();
+			for (String resourceId : infraManager.getResourcesInUse()) {
+				if (infraProvider.isRunning(resourceId)) {
+					engineIds.add(resourceId);
+				}
+			}
+			peakEngines = Math.max(peakEngines, engineIds.size());
+			queue.updateEngines(engineIds);
+			for (SimulatedJob job : queue.dispatch(engineIds)) {
+				completions.add(new Completion(now + job.getRuntime(), completionSeq++, job,
+						job.getAttempt()));
+			}
+		}
+
+		SimulationReport report = new SimulationReport(clock.currentTimeMillis(),
+				System.currentTimeMillis() - startTime, jobs.size(), queue.getCompletedJobs(),
+				queue.getRestartedJobs(), queue.getWaitTimes(), infraProvider.getBilledMillis(),
+				infraProvider.getCreated(), infraProvider.getDeleted(), infraProvider.getFailed(),
+				peakEngines, plannerExecutions);
+		LOGGER.info("Simulation completed: " + report);
+		return report;
+	}
+
+	private InfrastructureManager createInfraManager(SimulatedInfrastructureProvider infraProvider) {
+		int monitoringInterval = PropertiesUtils.getIntProperty(properties,
+				ConfigurationConstants.MONITORING_INTERVAL,
+				MonitoringScheduler.DEFAULT_IN_USE_INTERVAL);
+		InfrastructureManager infraManager = new InfrastructureManager(SIMULATED_PROPERTIES,
+				SIMULATED_CREDENTIALS, monitoringInterval, clock);
+		infraManager.setAutoMonitoring(false);
+		infraManager.setMonitoringScheduler(new MonitoringScheduler(clock,
+				PropertiesUtils.getIntProperty(properties, MonitoringScheduler.TICK_INTERVAL_KEY,
+						MonitoringScheduler.DEFAULT_TICK_INTERVAL) * 1000L,
+				PropertiesUtils.getIntProperty(properties,
+						MonitoringScheduler.PENDING_INTERVAL_KEY,
+						MonitoringScheduler.DEFAULT_PENDING_INTERVAL) * 1000L,
+				PropertiesUtils.getIntProperty(properties,
+						MonitoringScheduler.PENDING_MAX_INTERVAL_KEY,
+						MonitoringScheduler.DEFAULT_PENDING_MAX_INTERVAL) * 1000L,
+				monitoringInterval * 60 * 1000L, PropertiesUtils.getIntProperty(properties,
+						MonitoringScheduler.MAX_POLLS_PER_SECOND_KEY,
+						MonitoringScheduler.DEFAULT_MAX_POLLS_PER_SECOND)));
+
+		Properties bootstrapProperties = new Properties();
+		bootstrapProperties.put(EngineBootstrapper.STAGE_RETRIES_KEY, "0");
+		bootstrapProperties.put(EngineBootstrapper.VERIFY_RETRIES_KEY, "0");
+		bootstrapProperties.put(EngineBootstrapper.RETRY_DELAY_KEY, "0");
+		infraManager.setEngineBootstrapper(new EngineBootstrapper(bootstrapProperties, clock));
+		// the bootstraps finish in the tick, before the virtual clock moves
+		infraManager.setBootstrapExecutor(new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				command.run();
+			}
+		});
+		infraManager.setInfraProvider(infraProvider);
+		return infraManager;
+	}
+
+	/**
+	 * Creates the policy of the property allocation_policy_class, by its
+	 * constructor taking the properties and a clock if there is one, or the
+	 * linear policy if the property is not set. The policy is stabilized if
+	 * the stabilization window is set, as the capacity planner does.
+	 */
+	public static SnapshotAllocationPolicy createAllocationPolicy(Properties properties,
+			Clock clock) throws Exception {
+		Object allocationPolicy;
+		String policyClassName = properties
+				.getProperty(ConfigurationConstants.ALLOCATION_POLICY_CLASS);
+		if (policyClassName == null) {
+			allocationPolicy = new LinearAllocationPolicy(properties);
+		} else {
+			Class<?> policyClass = Class.forName(policyClassName);
+			try {
+				allocationPolicy = policyClass.getConstructor(Properties.class, Clock.class)
+						.newInstance(properties, clock);
+			} catch (NoSuchMethodException e) {
+				allocationPolicy = policyClass.getConstructor(Properties.class).newInstance(
+						properties);
+			}
+		}
+		if (properties.getProperty(StabilizedAllocationPolicy.WINDOW_KEY) != null) {
+			if (allocationPolicy instanceof SnapshotAllocationPolicy) {
+				throw new IllegalArgumentException(
+						"The stabilization window only applies to an AllocationPolicy.");
+			}
+			allocationPolicy = new StabilizedAllocationPolicy((AllocationPolicy) allocationPolicy,
+					properties, clock);
+		}
+		return AllocationPolicyAdapter.adapt(allocationPolicy);
+	}
+
+	/**
+	 * Simulates the trace with the configuration of the capacity planner.
+	 *
+	 * @param args
+	 *            The configuration file and the trace file
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length != 2) {
+			System.err.println("Usage: Simulator <configuration file> <trace file>");
+			System.exit(1);
+		}
+		Properties properties = new Properties();
+		FileInputStream input = new FileInputStream(args[0]);
+		try {
+			properties.load(input);
+		} finally {
+			input.close();
+		}
+		List<SimulatedJob> jobs;
+		Reader trace = new FileReader(args[1]);
+		try {
+			jobs = SimulatedJob.readTrace(trace);
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+			return;
+		} finally {
+			trace.close();
+		}
+
+		// the planner logs each execution, which would flood the output
+		Logger.getLogger("org.fogbowcloud").setLevel(Level.WARN);
+		Simulator simulator = new Simulator(properties);
+		SimulationReport report = simulator.run(
+				createAllocationPolicy(properties, simulator.getClock()), jobs);
+		System.out.println(report);
+	}
+
+	private static class Completion {
+
+		static final Comparator<Completion> TIME_ORDER = new Comparator<Completion>() {
+			@Override
+			public int compare(Completion completion, Completion other) {
+				int comparison = Long.compare(completion.time, other.time);
+				return comparison != 0 ? comparison : Long.compare(completion.seq, other.seq);
+			}
+		};
+
+		final long time;
+		final long seq;
+		final SimulatedJob job;
+		final int attempt;
+
+		Completion(long time, long seq, SimulatedJob job, int attempt) {
+			this.time = time;
+			this.seq = seq;
+			this.job = job;
+			this.attempt = attempt;
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package org.fogbowcloud.simulation;
+
+import org.fogbowcloud.infrastructure.core.Clock;
+
+/**
+ * Clock of a simulation, which only moves forward when the simulator moves it
+ * to the time of the next event.
+ */
+public class VirtualClock implements Clock {
+
+	private volatile long time;
+
+	public VirtualClock(long startTime) {
+		this.time = startTime;
+	}
+
+	@Override
+	public long currentTimeMillis() {
+		return time;
+	}
+
+	public void advanceTo(long time) {
+		if (time < this.time) {
+			throw new IllegalArgumentException("The virtual clock can not move back from "
+					+ this.time + " to " + time + ".");
+		}
+		this.time = time;
+	}
+}
@@ -0,0 +1,50 @@
+package org.fogbowcloud;
+
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestPropertiesUtils {
+
+	private static final String KEY = "key";
+
+	@Test
+	public void testMissingOrBlankPropertyTakesDefault() {
+		Properties properties = new Properties();
+		Assert.assertEquals(5, PropertiesUtils.getIntProperty(properties, KEY, 5));
+		properties.setProperty(KEY, " ");
+		Assert.assertEquals(5, PropertiesUtils.getPositiveIntProperty(properties, KEY, 5));
+		Assert.assertEquals(0.5, PropertiesUtils.getDoubleProperty(properties, KEY, 0.5), 0);
+	}
+
+	@Test
+	public void testPropertyIsTrimmed() {
+		Properties properties = new Properties();
+		properties.setProperty(KEY, " -3 ");
+		Assert.assertEquals(-3, PropertiesUtils.getIntProperty(properties, KEY, 5));
+		properties.setProperty(KEY, " 0 ");
+		Assert.assertEquals(0, PropertiesUtils.getNonNegativeIntProperty(properties, KEY, 5));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidInteger() {
+		Properties properties = new Properties();
+		properties.setProperty(KEY, "ten");
+		PropertiesUtils.getIntProperty(properties, KEY, 5);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testZeroIsNotPositive() {
+		Properties properties = new Properties();
+		properties.setProperty(KEY, "0");
+		PropertiesUtils.getPositiveIntProperty(properties, KEY, 5);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeIsRejected() {
+		Properties properties = new Properties();
+		properties.setProperty(KEY, "-1");
+		PropertiesUtils.getNonNegativeIntProperty(properties, KEY, 5);
+	}
+}
@@ -1,10 +1,16 @@
 package org.fogbowcloud.capacityplanner;
 
+import java.util.Arrays;
+
+import org.fogbowcloud.capacityplanner.PlannerHistory.Metric;
 import org.fogbowcloud.capacityplanner.queue.EScienceCentralQueue;
 import org.fogbowcloud.capacityplanner.resource.AllocationPolicy;
+import org.fogbowcloud.capacityplanner.resource.SnapshotAllocationPolicy;
 import org.fogbowcloud.infrastructure.core.InfrastructureManager;
+import org.fogbowcloud.infrastructure.core.ManualClock;
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 public class TestCapacityPlanner {
@@ -40,4 +46,67 @@ public class TestCapacityPlanner {
 
 		Assert.assertTrue(capacity.isInitialized());
 	}
+
+	@Test
+	public void testRunRecordsHistory() {
+		CapacityPlanner capacity = new CapacityPlanner(CapacityPlanner.DEFAULT_EXECUTION_PERIOD);
+
+		InfrastructureManager infrastructure = Mockito.mock(InfrastructureManager.class);
+		Mockito.when(infrastructure.getNumberOfStartedEngines()).thenReturn(2);
+		Mockito.when(infrastructure.getNumberOfPendingEngines()).thenReturn(1);
+		EScienceCentralQueue queue = Mockito.mock(EScienceCentralQueue.class);
+		Mockito.when(queue.getLength()).thenReturn(8);
+		AllocationPolicy resourcePlanner = Mockito.mock(AllocationPolicy.class);
+		Mockito.when(resourcePlanner.calculateResourceNeeds(2, 8)).thenReturn(4);
+
+		capacity.setInfraManager(infrastructure);
+		capacity.setQueue(queue);
+		capacity.setAllocationPolicy(resourcePlanner);
+		capacity.runCapacityPanner();
+
+		PlannerHistory history = capacity.getHistory();
+		Assert.assertEquals(1, history.size());
+		Assert.assertEquals(8, history.getValue(Metric.QUEUE_LENGTH, 0));
+		Assert.assertEquals(2, history.getValue(Metric.IN_USE, 0));
+		Assert.assertEquals(1, history.getValue(Metric.PENDING, 0));
+		Assert.assertEquals(4, history.getValue(Metric.DECISION, 0));
+		Mockito.verify(infrastructure).updateCurrentNeeds(4);
+	}
+
+	@Test
+	public void testRunPassesSnapshot() {
+		ManualClock clock = new ManualClock();
+		clock.setTime(10 * 60 * 1000);
+		CapacityPlanner capacity = new CapacityPlanner(CapacityPlanner.DEFAULT_EXECUTION_PERIOD,
+				clock);
+
+		InfrastructureManager infrastructure = Mockito.mock(InfrastructureManager.class);
+		Mockito.when(infrastructure.getNumberOfStartedEngines()).thenReturn(2);
+		Mockito.when(infrastructure.getPendingAges()).thenReturn(Arrays.asList(120000L, 30000L));
+		Mockito.when(infrastructure.getRecentFulfillmentLatency()).thenReturn(45000L);
+		Mockito.when(infrastructure.getNumberOfLostResources()).thenReturn(1);
+		Mockito.when(infrastructure.getLastScaleTime()).thenReturn(8 * 60 * 1000L);
+		EScienceCentralQueue queue = Mockito.mock(EScienceCentralQueue.class);
+		Mockito.when(queue.getLength()).thenReturn(8);
+		SnapshotAllocationPolicy resourcePlanner = Mockito.mock(SnapshotAllocationPolicy.class);
+		Mockito.when(resourcePlanner.calculateResourceNeeds(Mockito.any(PlannerSnapshot.class)))
+				.thenReturn(4);
+
+		capacity.setInfraManager(infrastructure);
+		capacity.setQueue(queue);
+		capacity.setSnapshotAllocationPolicy(resourcePlanner);
+		capacity.runCapacityPanner();
+
+		ArgumentCaptor<PlannerSnapshot> snapshot = ArgumentCaptor.forClass(PlannerSnapshot.class);
+		Mockito.verify(resourcePlanner).calculateResourceNeeds(snapshot.capture());
+		Assert.assertEquals(8, snapshot.getValue().getQueueLength());
+		Assert.assertEquals(2, snapshot.getValue().getEnginesInUse());
+		Assert.assertEquals(2, snapshot.getValue().getPendingEngines());
+		Assert.assertEquals(1, snapshot.getValue().getPendingEngines(60000));
+		Assert.assertEquals(45000, snapshot.getValue().getFulfillmentLatency());
+		Assert.assertEquals(1, snapshot.getValue().getLostResources());
+		Assert.assertEquals(2 * 60 * 1000, snapshot.getValue().getTimeSinceLastScaleAction());
+		Assert.assertSame(capacity.getHistory(), snapshot.getValue().getHistory());
+		Mockito.verify(infrastructure).updateCurrentNeeds(4);
+	}
 }
@@ -0,0 +1,61 @@
+package org.fogbowcloud.capacityplanner;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestPlannerSnapshot {
+
+	private static final long ONE_MINUTE = 60 * 1000;
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullHistory() {
+		new PlannerSnapshot(0, 0, 0, null, -1, 0, 0, -1, null);
+	}
+
+	@Test
+	public void testPendingEnginesByAge() {
+		PlannerSnapshot snapshot = new PlannerSnapshot(10 * ONE_MINUTE, 4, 1, Arrays.asList(
+				5 * ONE_MINUTE, ONE_MINUTE, 2 * ONE_MINUTE, 2 * ONE_MINUTE), -1, 0, 0, -1,
+				new PlannerTimeSeries(10));
+
+		Assert.assertEquals(4, snapshot.getPendingEngines());
+		Assert.assertEquals(4, snapshot.getPendingEngines(0));
+		Assert.assertEquals(3, snapshot.getPendingEngines(2 * ONE_MINUTE));
+		Assert.assertEquals(1, snapshot.getPendingEngines(3 * ONE_MINUTE));
+		Assert.assertEquals(0, snapshot.getPendingEngines(6 * ONE_MINUTE));
+		Assert.assertEquals(ONE_MINUTE, snapshot.getPendingAges()[0]);
+	}
+
+	@Test
+	public void testPendingAgesAreCopied() {
+		PlannerSnapshot snapshot = new PlannerSnapshot(0, 0, 0, Arrays.asList(ONE_MINUTE), -1, 0,
+				0, -1, new PlannerTimeSeries(10));
+
+		snapshot.getPendingAges()[0] = 0;
+
+		Assert.assertEquals(ONE_MINUTE, snapshot.getPendingAges()[0]);
+	}
+
+	@Test
+	public void testTimeSinceLastScaleAction() {
+		PlannerTimeSeries history = new PlannerTimeSeries(10);
+
+		Assert.assertEquals(-1, new PlannerSnapshot(10 * ONE_MINUTE, 0, 0, null, -1, 0, 0, -1,
+				history).getTimeSinceLastScaleAction());
+		Assert.assertEquals(3 * ONE_MINUTE, new PlannerSnapshot(10 * ONE_MINUTE, 0, 0, null, -1,
+				0, 0, 7 * ONE_MINUTE, history).getTimeSinceLastScaleAction());
+	}
+
+	@Test
+	public void testQueueAndEnginesOnly() {
+		PlannerSnapshot snapshot = new PlannerSnapshot(ONE_MINUTE, 8, 2);
+
+		Assert.assertEquals(8, snapshot.getQueueLength());
+		Assert.assertEquals(2, snapshot.getEnginesInUse());
+		Assert.assertEquals(0, snapshot.getPendingEngines());
+		Assert.assertEquals(-1, snapshot.getFulfillmentLatency());
+		Assert.assertEquals(0, snapshot.getHistory().size());
+	}
+}
@@ -0,0 +1,137 @@
+package org.fogbowcloud.capacityplanner;
+
+import java.util.Random;
+
+import org.fogbowcloud.capacityplanner.PlannerHistory.Metric;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestPlannerTimeSeries {
+
+	private static final long ONE_MINUTE = 60 * 1000;
+	private static final double DELTA = 0.0001;
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCapacity() {
+		new PlannerTimeSeries(0);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testMinWithoutSamples() {
+		new PlannerTimeSeries(10).getMin(Metric.QUEUE_LENGTH, ONE_MINUTE);
+	}
+
+	@Test
+	public void testMeanAndSlopeWithoutSamples() {
+		PlannerTimeSeries timeSeries = new PlannerTimeSeries(10);
+
+		Assert.assertEquals(0, timeSeries.getMean(Metric.QUEUE_LENGTH, ONE_MINUTE), DELTA);
+		Assert.assertEquals(0, timeSeries.getSlope(Metric.QUEUE_LENGTH, ONE_MINUTE), DELTA);
+	}
+
+	@Test
+	public void testSamplesAreKept() {
+		PlannerTimeSeries timeSeries = new PlannerTimeSeries(10);
+		timeSeries.record(1000, 5, 1, 2, 3);
+		timeSeries.record(2000, 6, 2, 1, 3);
+
+		Assert.assertEquals(2, timeSeries.size());
+		Assert.assertEquals(1000, timeSeries.getTimestamp(0));
+		Assert.assertEquals(5, timeSeries.getValue(Metric.QUEUE_LENGTH, 0));
+		Assert.assertEquals(2, timeSeries.getValue(Metric.IN_USE, 1));
+		Assert.assertEquals(1, timeSeries.getValue(Metric.PENDING, 1));
+		Assert.assertEquals(3, timeSeries.getValue(Metric.DECISION, 1));
+	}
+
+	@Test
+	public void testOldestSamplesAreDiscarded() {
+		PlannerTimeSeries timeSeries = new PlannerTimeSeries(3);
+		for (int i = 0; i < 5; i++) {
+			timeSeries.record(i * ONE_MINUTE, i, 0, 0, 0);
+		}
+
+		Assert.assertEquals(3, timeSeries.size());
+		Assert.assertEquals(2 * ONE_MINUTE, timeSeries.getTimestamp(0));
+		Assert.assertEquals(4, timeSeries.getValue(Metric.QUEUE_LENGTH, 2));
+		// the window covers discarded samples
+		Assert.assertEquals(2, timeSeries.getMin(Metric.QUEUE_LENGTH, 10 * ONE_MINUTE));
+		Assert.assertEquals(3, timeSeries.getMean(Metric.QUEUE_LENGTH, 10 * ONE_MINUTE), DELTA);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testInvalidIndex() {
+		PlannerTimeSeries timeSeries = new PlannerTimeSeries(3);
+		timeSeries.record(0, 1, 0, 0, 0);
+		timeSeries.getValue(Metric.QUEUE_LENGTH, 1);
+	}
+
+	@Test
+	public void testLinearSlope() {
+		PlannerTimeSeries timeSeries = new PlannerTimeSeries(10);
+		for (int i = 0; i < 5; i++) {
+			timeSeries.record(i * ONE_MINUTE, 10 + 3 * i, 0, 0, 0);
+		}
+
+		Assert.assertEquals(3, timeSeries.getSlope(Metric.QUEUE_LENGTH, 10 * ONE_MINUTE), DELTA);
+		Assert.assertEquals(0, timeSeries.getSlope(Metric.IN_USE, 10 * ONE_MINUTE), DELTA);
+		// a single sample has no slope
+		Assert.assertEquals(0, timeSeries.getSlope(Metric.QUEUE_LENGTH, 0), DELTA);
+	}
+
+	@Test
+	public void testTimestampsAreNotDecreasing() {
+		PlannerTimeSeries timeSeries = new PlannerTimeSeries(10);
+		timeSeries.record(2000, 1, 0, 0, 0);
+		timeSeries.record(1000, 2, 0, 0, 0);
+
+		Assert.assertEquals(2000, timeSeries.getTimestamp(1));
+	}
+
+	@Test
+	public void testAggregatesMatchScanningTheWindow() {
+		int capacity = 50;
+		PlannerTimeSeries timeSeries = new PlannerTimeSeries(capacity);
+		Random random = new Random(42);
+		long timestamp = 1400000000000L;
+		for (int i = 0; i < 1000; i++) {
+			// irregular intervals between the samples
+			timestamp += ONE_MINUTE / 2 + random.nextInt((int) ONE_MINUTE);
+			timeSeries.record(timestamp, random.nextInt(100), random.nextInt(10),
+					random.nextInt(5), random.nextInt(20));
+
+			long window = random.nextInt(60) * ONE_MINUTE;
+			for (Metric metric : Metric.values()) {
+				checkAggregates(timeSeries, metric, window);
+			}
+		}
+	}
+
+	private static void checkAggregates(PlannerHistory history, Metric metric, long window) {
+		int last = history.size() - 1;
+		long startTime = history.getTimestamp(last) - window;
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		double t = 0;
+		double tt = 0;
+		double x = 0;
+		double tx = 0;
+		int n = 0;
+		for (int i = last; i >= 0 && history.getTimestamp(i) >= startTime; i--) {
+			int value = history.getValue(metric, i);
+			double minutes = (history.getTimestamp(i) - history.getTimestamp(last))
+					/ (double) ONE_MINUTE;
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+			t += minutes;
+			tt += minutes * minutes;
+			x += value;
+			tx += minutes * value;
+			n++;
+		}
+		Assert.assertEquals(min, history.getMin(metric, window));
+		Assert.assertEquals(max, history.getMax(metric, window));
+		Assert.assertEquals(x / n, history.getMean(metric, window), DELTA);
+		double slope = n < 2 ? 0 : (n * tx - t * x) / (n * tt - t * t);
+		Assert.assertEquals(slope, history.getSlope(metric, window), DELTA);
+	}
+}
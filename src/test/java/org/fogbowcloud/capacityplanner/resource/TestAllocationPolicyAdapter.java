@@ -0,0 +1,41 @@
+package org.fogbowcloud.capacityplanner.resource;
+
+import org.fogbowcloud.capacityplanner.PlannerSnapshot;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestAllocationPolicyAdapter {
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullPolicy() {
+		new AllocationPolicyAdapter(null);
+	}
+
+	@Test
+	public void testEnginesInUseAndQueueLengthArePassed() {
+		SnapshotAllocationPolicy policy = new AllocationPolicyAdapter(
+				new LinearAllocationPolicy(2));
+
+		Assert.assertEquals(5, policy.calculateResourceNeeds(new PlannerSnapshot(0, 10, 0)));
+		Assert.assertEquals(7, policy.calculateResourceNeeds(new PlannerSnapshot(0, 10, 7)));
+	}
+
+	@Test
+	public void testAdaptKeepsSnapshotPolicies() {
+		SnapshotAllocationPolicy policy = new SnapshotAllocationPolicy() {
+			@Override
+			public int calculateResourceNeeds(PlannerSnapshot snapshot) {
+				return snapshot.getPendingEngines();
+			}
+		};
+
+		Assert.assertSame(policy, AllocationPolicyAdapter.adapt(policy));
+		Assert.assertTrue(AllocationPolicyAdapter.adapt(new LinearAllocationPolicy(1))
+				instanceof AllocationPolicyAdapter);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAdaptOtherObject() {
+		AllocationPolicyAdapter.adapt("linear");
+	}
+}
@@ -0,0 +1,105 @@
+package org.fogbowcloud.capacityplanner.resource;
+
+import java.util.Properties;
+
+import org.fogbowcloud.infrastructure.core.ManualClock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestForecastingAllocationPolicy {
+
+	private static final long ONE_MINUTE = 60 * 1000;
+
+	private ManualClock clock;
+
+	@Before
+	public void setUp() {
+		clock = new ManualClock();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidLevelSmoothing() {
+		new ForecastingAllocationPolicy(2, 5, 0, 0.3);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidTrendSmoothing() {
+		new ForecastingAllocationPolicy(2, 5, 0.5, 1.5);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeHorizon() {
+		new ForecastingAllocationPolicy(2, -1, 0.5, 0.3);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testStringHorizonByProperties() {
+		Properties properties = new Properties();
+		properties.put(LinearAllocationPolicy.JOBS_PER_RESOURCE_KEY, "2");
+		properties.put(ForecastingAllocationPolicy.HORIZON_KEY, "five");
+		new ForecastingAllocationPolicy(properties);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoJobsPerResourceByProperties() {
+		new ForecastingAllocationPolicy(new Properties());
+	}
+
+	@Test
+	public void testStableQueueIsSizedLinearly() {
+		ForecastingAllocationPolicy policy = createPolicy();
+		LinearAllocationPolicy linearPolicy = new LinearAllocationPolicy(2);
+
+		for (int i = 0; i < 10; i++) {
+			Assert.assertEquals(linearPolicy.calculateResourceNeeds(3, 10),
+					policy.calculateResourceNeeds(3, 10));
+			clock.advance(ONE_MINUTE);
+		}
+		Assert.assertEquals(0, policy.getTrend(), 0.0001);
+	}
+
+	@Test
+	public void testGrowingQueueIsSizedAhead() {
+		ForecastingAllocationPolicy policy = createPolicy();
+
+		Assert.assertEquals(0, policy.calculateResourceNeeds(0, 0));
+		clock.advance(ONE_MINUTE);
+
+		// level = 5, trend = 1.5 per minute, forecast = 5 + 1.5 * 5 = 12.5
+		Assert.assertEquals(7, policy.calculateResourceNeeds(0, 10));
+		Assert.assertEquals(12.5, policy.getForecast(), 0.0001);
+		Assert.assertEquals(5, new LinearAllocationPolicy(2).calculateResourceNeeds(0, 10));
+	}
+
+	@Test
+	public void testTrendIsScaledByTheSampleInterval() {
+		ForecastingAllocationPolicy policy = createPolicy();
+
+		policy.calculateResourceNeeds(0, 0);
+		clock.advance(2 * ONE_MINUTE);
+		policy.calculateResourceNeeds(0, 10);
+
+		// level = 5 after two minutes, trend = 0.3 * 5 / 2
+		Assert.assertEquals(0.75, policy.getTrend(), 0.0001);
+	}
+
+	@Test
+	public void testFallingQueueIsNotSizedBelowCurrentQueue() {
+		ForecastingAllocationPolicy policy = createPolicy();
+		LinearAllocationPolicy linearPolicy = new LinearAllocationPolicy(2);
+
+		int numberOfEngines = 15;
+		for (int queueLength = 30; queueLength >= 0; queueLength -= 10) {
+			int neededResources = policy.calculateResourceNeeds(numberOfEngines, queueLength);
+			Assert.assertTrue(neededResources >= linearPolicy.calculateResourceNeeds(
+					numberOfEngines, queueLength));
+			clock.advance(ONE_MINUTE);
+		}
+		Assert.assertTrue(policy.getTrend() < 0);
+	}
+
+	private ForecastingAllocationPolicy createPolicy() {
+		return new ForecastingAllocationPolicy(clock, new LinearAllocationPolicy(2), 5, 0.5, 0.3);
+	}
+}
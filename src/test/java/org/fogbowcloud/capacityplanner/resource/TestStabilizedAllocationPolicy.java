@@ -0,0 +1,121 @@
+package org.fogbowcloud.capacityplanner.resource;
+
+import java.util.Properties;
+
+import org.fogbowcloud.infrastructure.core.ManualClock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestStabilizedAllocationPolicy {
+
+	private static final long ONE_MINUTE = 60 * 1000;
+
+	private ManualClock clock;
+	private RecommendingPolicy recommendingPolicy;
+
+	@Before
+	public void setUp() {
+		clock = new ManualClock();
+		recommendingPolicy = new RecommendingPolicy();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullPolicy() {
+		new StabilizedAllocationPolicy(null, clock, ONE_MINUTE, 0, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeWindow() {
+		new StabilizedAllocationPolicy(recommendingPolicy, clock, -1, 0, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testStringWindowByProperties() {
+		Properties properties = new Properties();
+		properties.put(StabilizedAllocationPolicy.WINDOW_KEY, "ten");
+		new StabilizedAllocationPolicy(recommendingPolicy, properties);
+	}
+
+	@Test
+	public void testScaleUpImmediately() {
+		StabilizedAllocationPolicy policy = new StabilizedAllocationPolicy(recommendingPolicy,
+				clock, 10 * ONE_MINUTE, 0, 5 * ONE_MINUTE);
+
+		Assert.assertEquals(2, recommend(policy, 2));
+		clock.advance(ONE_MINUTE);
+		Assert.assertEquals(6, recommend(policy, 6));
+		clock.advance(ONE_MINUTE);
+		Assert.assertEquals(8, recommend(policy, 8));
+	}
+
+	@Test
+	public void testScaleDownToMaximumOfWindow() {
+		StabilizedAllocationPolicy policy = new StabilizedAllocationPolicy(recommendingPolicy,
+				clock, 3 * ONE_MINUTE, 0, 0);
+
+		recommend(policy, 10);
+		clock.advance(ONE_MINUTE);
+		Assert.assertEquals(10, recommend(policy, 4));
+		clock.advance(ONE_MINUTE);
+		Assert.assertEquals(10, recommend(policy, 6));
+		clock.advance(ONE_MINUTE);
+		Assert.assertEquals(10, recommend(policy, 2));
+		// the recommendation of 10 left the window
+		clock.advance(ONE_MINUTE);
+		Assert.assertEquals(6, recommend(policy, 1));
+		clock.advance(2 * ONE_MINUTE);
+		Assert.assertEquals(2, recommend(policy, 1));
+		clock.advance(ONE_MINUTE);
+		Assert.assertEquals(1, recommend(policy, 1));
+	}
+
+	@Test
+	public void testUpCooldown() {
+		StabilizedAllocationPolicy policy = new StabilizedAllocationPolicy(recommendingPolicy,
+				clock, 0, 2 * ONE_MINUTE, 0);
+
+		recommend(policy, 2);
+		clock.advance(ONE_MINUTE);
+		Assert.assertEquals(2, recommend(policy, 5));
+		clock.advance(ONE_MINUTE);
+		Assert.assertEquals(5, recommend(policy, 5));
+	}
+
+	@Test
+	public void testDownCooldownAfterScaleUp() {
+		StabilizedAllocationPolicy policy = new StabilizedAllocationPolicy(recommendingPolicy,
+				clock, 0, 0, 3 * ONE_MINUTE);
+
+		recommend(policy, 2);
+		clock.advance(5 * ONE_MINUTE);
+		Assert.assertEquals(8, recommend(policy, 8));
+		clock.advance(ONE_MINUTE);
+		Assert.assertEquals(8, recommend(policy, 3));
+		clock.advance(2 * ONE_MINUTE);
+		Assert.assertEquals(3, recommend(policy, 3));
+	}
+
+	@Test
+	public void testPolicyArgumentsArePassedThrough() {
+		StabilizedAllocationPolicy policy = new StabilizedAllocationPolicy(
+				new LinearAllocationPolicy(2), clock, 0, 0, 0);
+
+		Assert.assertEquals(5, policy.calculateResourceNeeds(0, 10));
+	}
+
+	private int recommend(StabilizedAllocationPolicy policy, int resources) {
+		recommendingPolicy.resources = resources;
+		return policy.calculateResourceNeeds(0, 0);
+	}
+
+	private static class RecommendingPolicy implements AllocationPolicy {
+
+		int resources;
+
+		@Override
+		public int calculateResourceNeeds(int numberOfEngines, int currentQueueLength) {
+			return resources;
+		}
+	}
+}
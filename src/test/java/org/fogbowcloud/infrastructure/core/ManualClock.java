@@ -0,0 +1,19 @@
+package org.fogbowcloud.infrastructure.core;
+
+public class ManualClock implements Clock {
+
+	private long time = 0;
+
+	@Override
+	public long currentTimeMillis() {
+		return time;
+	}
+
+	public void setTime(long time) {
+		this.time = time;
+	}
+
+	public void advance(long millis) {
+		this.time += millis;
+	}
+}
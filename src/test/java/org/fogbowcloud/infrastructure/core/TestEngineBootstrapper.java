@@ -0,0 +1,166 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestEngineBootstrapper {
+
+	private static final String RESOURCE_ID = "resource";
+	private static final String SERVER_URL = "http://escserver:8080";
+
+	private Properties properties;
+	private Map<String, String> resourceInfo;
+	private Map<String, String> credentials;
+	private List<String> commands;
+
+	@Before
+	public void setUp() {
+		properties = new Properties();
+		properties.put(EngineBootstrapper.RETRY_DELAY_KEY, "0");
+		resourceInfo = new HashMap<String, String>();
+		credentials = new HashMap<String, String>();
+		credentials.put(ResourcePropertiesConstants.USERNAME_KEY, "user");
+		commands = new ArrayList<String>();
+	}
+
+	@Test
+	public void testStagesWithoutServerUrl() {
+		EngineBootstrapper bootstrapper = new EngineBootstrapper(properties);
+
+		Assert.assertEquals(Arrays.asList("start", "verify"), bootstrapper.getStageNames());
+	}
+
+	@Test
+	public void testStagesRunInOrder() throws Exception {
+		properties.put(EngineBootstrapper.SERVER_URL_KEY, SERVER_URL);
+		properties.put(EngineBootstrapper.STAGE_TIMEOUT_KEY, "30");
+		EngineBootstrapper bootstrapper = new EngineBootstrapper(properties);
+		InfrastructureProvider infrastructure = mockCommands(0, 0);
+
+		CommandResult result = bootstrapper.bootstrap(infrastructure, RESOURCE_ID, resourceInfo,
+				credentials);
+
+		Assert.assertEquals(0, result.getExitStatus());
+		Assert.assertEquals(4, commands.size());
+		for (String command : commands) {
+			Assert.assertTrue(command.startsWith("timeout 30 sh -c '"));
+		}
+		Assert.assertTrue(commands.get(0).contains("nc -z -w 3 '\\''escserver'\\'' 8080"));
+		Assert.assertTrue(commands.get(0).contains("61616"));
+		Assert.assertTrue(commands.get(1).contains("xmlstarlet ed -L"));
+		Assert.assertTrue(commands.get(1).contains(SERVER_URL));
+		Assert.assertTrue(commands.get(2).contains("service eSC-engine restart"));
+		Assert.assertTrue(commands.get(3).contains("ESTABLISHED"));
+	}
+
+	@Test
+	public void testServerUrlDefaultPort() {
+		properties.put(EngineBootstrapper.SERVER_URL_KEY, "https://escserver/");
+		EngineBootstrapper bootstrapper = new EngineBootstrapper(properties);
+
+		Assert.assertTrue(bootstrapper.getStageCommand("check-server").contains(
+				"'escserver' 443"));
+	}
+
+	@Test
+	public void testFailedStageIsRetried() throws Exception {
+		properties.put(EngineBootstrapper.VERIFY_RETRIES_KEY, "3");
+		EngineBootstrapper bootstrapper = new EngineBootstrapper(properties);
+		// the engine takes a while to connect to the server
+		InfrastructureProvider infrastructure = mockCommands(0, 2);
+
+		CommandResult result = bootstrapper.bootstrap(infrastructure, RESOURCE_ID, resourceInfo,
+				credentials);
+
+		Assert.assertEquals(0, result.getExitStatus());
+		Assert.assertEquals(4, commands.size());
+	}
+
+	@Test
+	public void testBootstrapStopsAtFailedStage() throws Exception {
+		properties.put(EngineBootstrapper.STAGE_RETRIES_KEY, "1");
+		EngineBootstrapper bootstrapper = new EngineBootstrapper(properties);
+		InfrastructureProvider infrastructure = mockCommands(Integer.MAX_VALUE, 0);
+
+		CommandResult result = bootstrapper.bootstrap(infrastructure, RESOURCE_ID, resourceInfo,
+				credentials);
+
+		Assert.assertEquals(1, result.getExitStatus());
+		// the start stage and its retry, the engine is not verified
+		Assert.assertEquals(2, commands.size());
+		Assert.assertTrue(commands.get(1).contains("service eSC-engine restart"));
+	}
+
+	@Test
+	public void testUnreachableResource() throws Exception {
+		properties.put(EngineBootstrapper.STAGE_RETRIES_KEY, "0");
+		EngineBootstrapper bootstrapper = new EngineBootstrapper(properties);
+		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
+		Mockito.when(
+				infrastructure.executeCommand(Mockito.anyMap(), Mockito.anyMap(),
+						Mockito.anyString())).thenReturn(null);
+
+		Assert.assertNull(bootstrapper.bootstrap(infrastructure, RESOURCE_ID, resourceInfo,
+				credentials));
+	}
+
+	@Test
+	public void testCustomVerifyCommand() {
+		properties.put(EngineBootstrapper.VERIFY_COMMAND_KEY, "test -f /tmp/engine.ready");
+		EngineBootstrapper bootstrapper = new EngineBootstrapper(properties);
+
+		Assert.assertEquals("test -f /tmp/engine.ready", bootstrapper.getStageCommand("verify"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidServerUrl() {
+		properties.put(EngineBootstrapper.SERVER_URL_KEY, "escserver:8080");
+		new EngineBootstrapper(properties);
+	}
+
+	@Test
+	public void testQuote() {
+		Assert.assertEquals("'it'\\''s'", EngineBootstrapper.quote("it's"));
+	}
+
+	/**
+	 * The start and verify stages fail the given number of times before they
+	 * succeed, the other stages always succeed.
+	 */
+	private InfrastructureProvider mockCommands(final int startFailures,
+			final int verifyFailures) throws InfrastructureException {
+		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
+		Mockito.when(
+				infrastructure.executeCommand(Mockito.anyMap(), Mockito.anyMap(),
+						Mockito.anyString())).thenAnswer(new Answer<CommandResult>() {
+
+			private int starts = 0;
+			private int verifies = 0;
+
+			@Override
+			public CommandResult answer(InvocationOnMock invocation) throws Throwable {
+				String command = (String) invocation.getArguments()[2];
+				commands.add(command);
+				if (command.contains("restart") && starts++ < startFailures) {
+					return new CommandResult(1, "", "error");
+				}
+				if (command.contains("ESTABLISHED") && verifies++ < verifyFailures) {
+					return new CommandResult(1, "", "");
+				}
+				return new CommandResult(0, "OK", "");
+			}
+		});
+		return infrastructure;
+	}
+}
@@ -1,9 +1,17 @@
 package org.fogbowcloud.infrastructure.core;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.fogbowcloud.capacityplanner.CapacityPlannerException;
 import org.fogbowcloud.infrastructure.fogbow.FogbowApplication;
@@ -13,7 +21,10 @@ import org.fogbowcloud.manager.occi.request.RequestType;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 public class TestInfrastructureManager {
 
@@ -25,6 +36,8 @@ public class TestInfrastructureManager {
 	private Map<String, String> defaultResourceProperties;	
 	private Map<String, String> defaultResourceCredentials;
 	
+	private static final String RESOURCE_ID_KEY = "resource_id";
+	
 	@Before
 	public void setUp(){
 		defaultResourceProperties = new HashMap<String, String>();
@@ -157,8 +170,11 @@ public class TestInfrastructureManager {
 				.when(infrastructure).deleteResource(FIRST_ID);
 		Mockito.doThrow(new InfrastructureException("Any exception on deallocating resource"))
 				.when(infrastructure).deleteResource(SECOND_ID);
-		Mockito.when(infrastructure.isResourceAvailable(FIRST_ID)).thenReturn(true);
-		Mockito.when(infrastructure.isResourceAvailable(SECOND_ID)).thenReturn(true);
+		mockDeleteResources(infrastructure);
+		Map<String, Boolean> availability = new HashMap<String, Boolean>();
+		availability.put(FIRST_ID, true);
+		availability.put(SECOND_ID, true);
+		mockResourcesAvailability(infrastructure, availability);
 		
 		infrastructureManager.setResourcesInUse(resourceInUse);
 		infrastructureManager.setInfraProvider(infrastructure);
@@ -175,6 +191,38 @@ public class TestInfrastructureManager {
 		Assert.assertEquals(2, infrastructureManager.getResourcesInUse().size());
 	}
 	
+	@Test
+	public void testDeallocateResourcesPartiallyFails() throws CapacityPlannerException,
+			InfrastructureException {
+		InfrastructureManager infrastructureManager = new InfrastructureManager(defaultResourceProperties, defaultResourceCredentials);
+
+		// mocking
+		List<String> resourceInUse = new ArrayList<String>();
+		resourceInUse.add(FIRST_ID);
+		resourceInUse.add(SECOND_ID);
+
+		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
+		Mockito.doThrow(new InfrastructureException("Any exception on deallocating resource"))
+				.when(infrastructure).deleteResource(FIRST_ID);
+		Mockito.doNothing().when(infrastructure).deleteResource(SECOND_ID);
+		mockDeleteResources(infrastructure);
+
+		infrastructureManager.setResourcesInUse(resourceInUse);
+		infrastructureManager.setInfraProvider(infrastructure);
+
+		infrastructureManager.updateCurrentNeeds(0);
+
+		// checking the resource not deleted is restored to be retried
+		Assert.assertEquals(1, infrastructureManager.getResourcesInUse().size());
+		Assert.assertEquals(FIRST_ID, infrastructureManager.getResourcesInUse().get(0));
+		Mockito.verify(infrastructure, Mockito.times(1)).deleteResources(Mockito.anyCollection());
+
+		// deletion succeeds on the next tick
+		Mockito.doNothing().when(infrastructure).deleteResource(FIRST_ID);
+		infrastructureManager.updateCurrentNeeds(0);
+		Assert.assertEquals(0, infrastructureManager.getResourcesInUse().size());
+	}
+
 	@Test
 	public void testExeQueueDellocateOneResource() throws CapacityPlannerException,
 			InfrastructureException {
@@ -186,6 +234,7 @@ public class TestInfrastructureManager {
 
 		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
 		Mockito.doNothing().when(infrastructure).deleteResource(FIRST_ID);
+		mockDeleteResources(infrastructure);
 
 		infrastructureManager.setResourcesNotAvailable(resourcesNotAvailable);
 		infrastructureManager.setInfraProvider(infrastructure);
@@ -214,6 +263,7 @@ public class TestInfrastructureManager {
 		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
 		Mockito.doNothing().when(infrastructure).deleteResource(FIRST_ID);
 		Mockito.doNothing().when(infrastructure).deleteResource(SECOND_ID);
+		mockDeleteResources(infrastructure);
 
 		infrastructureManager.setResourcesNotAvailable(resourcesNotAvailable);
 		infrastructureManager.setInfraProvider(infrastructure);
@@ -249,6 +299,7 @@ public class TestInfrastructureManager {
 
 		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
 		Mockito.doNothing().when(infrastructure).deleteResource(Mockito.anyString());
+		mockDeleteResources(infrastructure);
 
 		infrastructureManager.setResourcesInUse(resourcesInUse);
 		infrastructureManager.setResourcesNotAvailable(resourcesNotAvailable);
@@ -277,9 +328,11 @@ public class TestInfrastructureManager {
 		resourcesNotAvailable.add(THIRD_ID);
 
 		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
-		Mockito.when(infrastructure.isResourceAvailable(FIRST_ID)).thenReturn(true);
-		Mockito.when(infrastructure.isResourceAvailable(SECOND_ID)).thenReturn(false);
-		Mockito.when(infrastructure.isResourceAvailable(THIRD_ID)).thenReturn(false);
+		Map<String, Boolean> availability = new HashMap<String, Boolean>();
+		availability.put(FIRST_ID, true);
+		availability.put(SECOND_ID, false);
+		availability.put(THIRD_ID, false);
+		mockResourcesAvailability(infrastructure, availability);
 		Mockito.when(
 				infrastructure.executeCommand(Mockito.anyMap(), Mockito.anyMap(),
 						Mockito.anyString())).thenReturn(DEFAULT_COMMAND_RESULT);
@@ -292,6 +345,7 @@ public class TestInfrastructureManager {
 		Assert.assertEquals(0, infrastructureManager.getResourcesInUse().size());
 
 		infrastructureManager.monitoringResources();
+		waitForBootstraps(infrastructureManager);
 
 		// checking there resource lists were updated according resource status
 		Assert.assertEquals(2, infrastructureManager.getResourcesNotAvailable().size());
@@ -313,9 +367,11 @@ public class TestInfrastructureManager {
 		resourcesNotAvailable.add(THIRD_ID);
 
 		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
-		Mockito.when(infrastructure.isResourceAvailable(FIRST_ID)).thenReturn(true);
-		Mockito.when(infrastructure.isResourceAvailable(SECOND_ID)).thenReturn(true);
-		Mockito.when(infrastructure.isResourceAvailable(THIRD_ID)).thenReturn(true);
+		Map<String, Boolean> availability = new HashMap<String, Boolean>();
+		availability.put(FIRST_ID, true);
+		availability.put(SECOND_ID, true);
+		availability.put(THIRD_ID, true);
+		mockResourcesAvailability(infrastructure, availability);
 		Mockito.when(
 				infrastructure.executeCommand(Mockito.anyMap(), Mockito.anyMap(),
 						Mockito.anyString())).thenReturn(DEFAULT_COMMAND_RESULT);
@@ -328,6 +384,7 @@ public class TestInfrastructureManager {
 		Assert.assertEquals(0, infrastructureManager.getResourcesInUse().size());
 
 		infrastructureManager.monitoringResources();
+		waitForBootstraps(infrastructureManager);
 
 		// checking there resource lists were updated according resource status
 		Assert.assertEquals(0, infrastructureManager.getResourcesNotAvailable().size());
@@ -349,9 +406,11 @@ public class TestInfrastructureManager {
 		resourcesInUse.add(THIRD_ID);
 
 		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
-		Mockito.when(infrastructure.isResourceAvailable(FIRST_ID)).thenReturn(true);
-		Mockito.when(infrastructure.isResourceAvailable(SECOND_ID)).thenReturn(true);
-		Mockito.when(infrastructure.isResourceAvailable(THIRD_ID)).thenReturn(false);
+		Map<String, Boolean> availability = new HashMap<String, Boolean>();
+		availability.put(FIRST_ID, true);
+		availability.put(SECOND_ID, true);
+		availability.put(THIRD_ID, false);
+		mockResourcesAvailability(infrastructure, availability);
 		Mockito.when(
 				infrastructure.executeCommand(Mockito.anyMap(), Mockito.anyMap(),
 						Mockito.anyString())).thenReturn(DEFAULT_COMMAND_RESULT);
@@ -385,9 +444,11 @@ public class TestInfrastructureManager {
 		resourcesInUse.add(THIRD_ID);
 
 		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
-		Mockito.when(infrastructure.isResourceAvailable(FIRST_ID)).thenReturn(false);
-		Mockito.when(infrastructure.isResourceAvailable(SECOND_ID)).thenReturn(false);
-		Mockito.when(infrastructure.isResourceAvailable(THIRD_ID)).thenReturn(false);
+		Map<String, Boolean> availability = new HashMap<String, Boolean>();
+		availability.put(FIRST_ID, false);
+		availability.put(SECOND_ID, false);
+		availability.put(THIRD_ID, false);
+		mockResourcesAvailability(infrastructure, availability);
 		Mockito.when(
 				infrastructure.executeCommand(Mockito.anyMap(), Mockito.anyMap(),
 						Mockito.anyString())).thenReturn(DEFAULT_COMMAND_RESULT);
@@ -423,9 +484,11 @@ public class TestInfrastructureManager {
 		resourcesNotAvailable.add(THIRD_ID);
 
 		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
-		Mockito.when(infrastructure.isResourceAvailable(FIRST_ID)).thenReturn(false);
-		Mockito.when(infrastructure.isResourceAvailable(SECOND_ID)).thenReturn(false);
-		Mockito.when(infrastructure.isResourceAvailable(THIRD_ID)).thenReturn(true);
+		Map<String, Boolean> availability = new HashMap<String, Boolean>();
+		availability.put(FIRST_ID, false);
+		availability.put(SECOND_ID, false);
+		availability.put(THIRD_ID, true);
+		mockResourcesAvailability(infrastructure, availability);
 		Mockito.when(
 				infrastructure.executeCommand(Mockito.anyMap(), Mockito.anyMap(),
 						Mockito.anyString())).thenReturn(DEFAULT_COMMAND_RESULT);
@@ -439,6 +502,7 @@ public class TestInfrastructureManager {
 		Assert.assertEquals(2, infrastructureManager.getResourcesInUse().size());
 
 		infrastructureManager.monitoringResources();
+		waitForBootstraps(infrastructureManager);
 
 		// checking there resource lists were updated according resource status
 		Assert.assertEquals(2, infrastructureManager.getResourcesNotAvailable().size());
@@ -447,4 +511,484 @@ public class TestInfrastructureManager {
 		Assert.assertEquals(1, infrastructureManager.getResourcesInUse().size());
 		Assert.assertTrue(infrastructureManager.getResourcesInUse().contains(THIRD_ID));
 	}
+
+	@Test
+	public void testNotAvailableResourcesAreBootstrappedInParallel()
+			throws CapacityPlannerException, InfrastructureException {
+		InfrastructureManager infrastructureManager = new InfrastructureManager(defaultResourceProperties, defaultResourceCredentials);
+		infrastructureManager.setMonitoringParallelism(3);
+
+		// mocking
+		List<String> resourcesNotAvailable = new ArrayList<String>();
+		resourcesNotAvailable.add(FIRST_ID);
+		resourcesNotAvailable.add(SECOND_ID);
+		resourcesNotAvailable.add(THIRD_ID);
+
+		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
+		Map<String, Boolean> availability = new HashMap<String, Boolean>();
+		availability.put(FIRST_ID, true);
+		availability.put(SECOND_ID, true);
+		availability.put(THIRD_ID, true);
+		mockResourcesAvailability(infrastructure, availability);
+
+		// each command only succeeds if the three commands run at the same time
+		final CountDownLatch runningCommands = new CountDownLatch(3);
+		Mockito.when(
+				infrastructure.executeCommand(Mockito.anyMap(), Mockito.anyMap(),
+						Mockito.anyString())).thenAnswer(new Answer<CommandResult>() {
+			@Override
+			public CommandResult answer(InvocationOnMock invocation) throws Throwable {
+				runningCommands.countDown();
+				if (runningCommands.await(5, TimeUnit.SECONDS)) {
+					return DEFAULT_COMMAND_RESULT;
+				}
+				return new CommandResult(1, "", "timeout");
+			}
+		});
+
+		infrastructureManager.setResourcesNotAvailable(resourcesNotAvailable);
+		infrastructureManager.setInfraProvider(infrastructure);
+
+		infrastructureManager.monitoringResources();
+		waitForBootstraps(infrastructureManager);
+
+		// checking all resources were bootstrapped
+		Assert.assertEquals(0, infrastructureManager.getResourcesNotAvailable().size());
+		Assert.assertEquals(3, infrastructureManager.getResourcesInUse().size());
+	}
+
+	@Test
+	public void testMonitoringDoesNotWaitForBootstraps() throws InfrastructureException {
+		InfrastructureManager infrastructureManager = new InfrastructureManager(defaultResourceProperties, defaultResourceCredentials);
+
+		// mocking, the commands run until they are released
+		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
+		Map<String, Boolean> availability = new HashMap<String, Boolean>();
+		availability.put(FIRST_ID, true);
+		mockResourcesAvailability(infrastructure, availability);
+		final CountDownLatch released = new CountDownLatch(1);
+		Mockito.when(
+				infrastructure.executeCommand(Mockito.anyMap(), Mockito.anyMap(),
+						Mockito.anyString())).thenAnswer(new Answer<CommandResult>() {
+			@Override
+			public CommandResult answer(InvocationOnMock invocation) throws Throwable {
+				if (released.await(5, TimeUnit.SECONDS)) {
+					return DEFAULT_COMMAND_RESULT;
+				}
+				return new CommandResult(1, "", "timeout");
+			}
+		});
+
+		infrastructureManager.setResourcesNotAvailable(Arrays.asList(FIRST_ID));
+		infrastructureManager.setInfraProvider(infrastructure);
+
+		// checking the monitoring returns while the bootstrap runs and the
+		// next one does not start it again
+		infrastructureManager.monitoringResources();
+		infrastructureManager.monitoringResources();
+		Assert.assertEquals(Collections.singleton(FIRST_ID),
+				infrastructureManager.getBootstrapsInFlight());
+		Assert.assertEquals(ResourceState.FULFILLED, infrastructureManager
+				.getResourceRegistry().getState(FIRST_ID));
+
+		released.countDown();
+		waitForBootstraps(infrastructureManager);
+
+		// checking the bootstrap moved the resource when it finished, after
+		// running the start and verify stages once
+		Assert.assertEquals(ResourceState.IN_USE, infrastructureManager.getResourceRegistry()
+				.getState(FIRST_ID));
+		Mockito.verify(infrastructure, Mockito.times(2)).executeCommand(Mockito.anyMap(),
+				Mockito.anyMap(), Mockito.anyString());
+	}
+
+	@Test
+	public void testOnlyReachableResourcesAreBootstrapped() throws CapacityPlannerException,
+			InfrastructureException, IOException {
+		InfrastructureManager infrastructureManager = new InfrastructureManager(defaultResourceProperties, defaultResourceCredentials);
+		infrastructureManager.setReachabilityProber(new ReachabilityProber(2000));
+
+		// mocking
+		List<String> resourcesNotAvailable = new ArrayList<String>();
+		resourcesNotAvailable.add(FIRST_ID);
+		resourcesNotAvailable.add(SECOND_ID);
+
+		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
+		Map<String, Boolean> availability = new HashMap<String, Boolean>();
+		availability.put(FIRST_ID, true);
+		availability.put(SECOND_ID, true);
+		mockResourcesAvailability(infrastructure, availability);
+		Mockito.when(
+				infrastructure.executeCommand(Mockito.anyMap(), Mockito.anyMap(),
+						Mockito.anyString())).thenReturn(DEFAULT_COMMAND_RESULT);
+
+		// the first resource answers on its ssh port, the second is booting
+		ServerSocket sshServer = new ServerSocket(0);
+		ServerSocket closedServer = new ServerSocket(0);
+		int closedPort = closedServer.getLocalPort();
+		closedServer.close();
+		Map<String, String> firstResourceInfo = new HashMap<String, String>();
+		firstResourceInfo.put(RESOURCE_ID_KEY, FIRST_ID);
+		Mockito.when(infrastructure.getSSHAddress(firstResourceInfo)).thenReturn(
+				new InetSocketAddress("127.0.0.1", sshServer.getLocalPort()));
+		Map<String, String> secondResourceInfo = new HashMap<String, String>();
+		secondResourceInfo.put(RESOURCE_ID_KEY, SECOND_ID);
+		Mockito.when(infrastructure.getSSHAddress(secondResourceInfo)).thenReturn(
+				new InetSocketAddress("127.0.0.1", closedPort));
+
+		infrastructureManager.setResourcesNotAvailable(resourcesNotAvailable);
+		infrastructureManager.setInfraProvider(infrastructure);
+		Assert.assertEquals(-1, infrastructureManager.getRecentReachableLatency());
+
+		try {
+			infrastructureManager.monitoringResources();
+		waitForBootstraps(infrastructureManager);
+		} finally {
+			sshServer.close();
+		}
+
+		// checking only the reachable resource was bootstrapped
+		Assert.assertEquals(1, infrastructureManager.getResourcesInUse().size());
+		Assert.assertTrue(infrastructureManager.getResourcesInUse().contains(FIRST_ID));
+		Assert.assertEquals(ResourceState.FULFILLED, infrastructureManager
+				.getResourceRegistry().getState(SECOND_ID));
+		Mockito.verify(infrastructure, Mockito.never()).executeCommand(
+				Mockito.eq(secondResourceInfo), Mockito.anyMap(), Mockito.anyString());
+		// checking the boot-to-reachable time of the first resource was recorded
+		Assert.assertTrue(infrastructureManager.getRecentReachableLatency() >= 0);
+	}
+
+	@Test
+	public void testWarmPoolAllocatesIdleEngines() throws CapacityPlannerException,
+			InfrastructureException {
+		InfrastructureManager infrastructureManager = new InfrastructureManager(defaultResourceProperties, defaultResourceCredentials);
+		infrastructureManager.setWarmPool(new WarmPool(new ManualClock(), 2, 4, 60000));
+
+		// mocking
+		List<String> result = new ArrayList<String>();
+		result.add(FIRST_ID);
+		result.add(SECOND_ID);
+		result.add(THIRD_ID);
+		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
+		Mockito.when(infrastructure.createResource(3, defaultResourceProperties)).thenReturn(result);
+
+		infrastructureManager.setInfraProvider(infrastructure);
+
+		infrastructureManager.updateCurrentNeeds(1);
+
+		// checking the needed resource and the warm pool were allocated
+		Assert.assertEquals(3, infrastructureManager.getResourcesNotAvailable().size());
+
+		// checking the idle engines are not seen as started engines
+		List<String> resourcesInUse = new ArrayList<String>();
+		resourcesInUse.add(FIRST_ID);
+		resourcesInUse.add(SECOND_ID);
+		resourcesInUse.add(THIRD_ID);
+		infrastructureManager.setResourcesInUse(resourcesInUse);
+		Assert.assertEquals(1, infrastructureManager.getNumberOfStartedEngines());
+	}
+
+	@Test
+	public void testPendingAgesAndLastScaleTime() throws InfrastructureException {
+		ManualClock clock = new ManualClock();
+		InfrastructureManager infrastructureManager = new InfrastructureManager(
+				defaultResourceProperties, defaultResourceCredentials,
+				InfrastructureManager.DEFAULT_MONITORING_INTERVAL, clock);
+		infrastructureManager.setAutoMonitoring(false);
+
+		// mocking
+		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
+		Mockito.when(infrastructure.createResource(1, defaultResourceProperties)).thenReturn(
+				Collections.singletonList(FIRST_ID), Collections.singletonList(SECOND_ID));
+		infrastructureManager.setInfraProvider(infrastructure);
+
+		Assert.assertEquals(-1, infrastructureManager.getLastScaleTime());
+		Assert.assertEquals(-1, infrastructureManager.getRecentFulfillmentLatency());
+
+		clock.setTime(1000);
+		infrastructureManager.updateCurrentNeeds(1);
+		clock.advance(60000);
+		infrastructureManager.updateCurrentNeeds(2);
+		clock.advance(30000);
+
+		// checking the oldest request comes first
+		Assert.assertEquals(Arrays.asList(90000L, 30000L), infrastructureManager.getPendingAges());
+		Assert.assertEquals(61000, infrastructureManager.getLastScaleTime());
+	}
+
+	@Test
+	public void testPollingPendingResourceKeepsItsAge() throws InfrastructureException {
+		ManualClock clock = new ManualClock();
+		InfrastructureManager infrastructureManager = new InfrastructureManager(
+				defaultResourceProperties, defaultResourceCredentials,
+				InfrastructureManager.DEFAULT_MONITORING_INTERVAL, clock);
+		infrastructureManager.setAutoMonitoring(false);
+
+		// mocking, the request is not fulfilled
+		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
+		Mockito.when(infrastructure.createResource(1, defaultResourceProperties)).thenReturn(
+				Collections.singletonList(FIRST_ID));
+		Map<String, Boolean> availability = new HashMap<String, Boolean>();
+		availability.put(FIRST_ID, false);
+		mockResourcesAvailability(infrastructure, availability);
+		infrastructureManager.setInfraProvider(infrastructure);
+
+		infrastructureManager.updateCurrentNeeds(1);
+		clock.advance(5000);
+		infrastructureManager.monitoringResources();
+		clock.advance(5000);
+		infrastructureManager.monitoringResources();
+
+		// checking the polls did not restart the request
+		Assert.assertEquals(Arrays.asList(10000L), infrastructureManager.getPendingAges());
+		Assert.assertEquals(0, infrastructureManager.getNumberOfLostResources());
+	}
+
+	@Test
+	public void testSnapshotValuesOverSeveralTicks() throws InfrastructureException {
+		ManualClock clock = new ManualClock();
+		InfrastructureManager infrastructureManager = new InfrastructureManager(
+				defaultResourceProperties, defaultResourceCredentials,
+				InfrastructureManager.DEFAULT_MONITORING_INTERVAL, clock);
+		infrastructureManager.setAutoMonitoring(false);
+
+		// mocking, no request is fulfilled
+		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
+		Mockito.when(infrastructure.createResource(2, defaultResourceProperties)).thenReturn(
+				Arrays.asList(FIRST_ID, SECOND_ID));
+		Mockito.when(
+				infrastructure.executeCommand(Mockito.anyMap(), Mockito.anyMap(),
+						Mockito.anyString())).thenReturn(DEFAULT_COMMAND_RESULT);
+		Map<String, Boolean> availability = new HashMap<String, Boolean>();
+		availability.put(FIRST_ID, false);
+		availability.put(SECOND_ID, false);
+		mockResourcesAvailability(infrastructure, availability);
+		infrastructureManager.setInfraProvider(infrastructure);
+
+		infrastructureManager.updateCurrentNeeds(2);
+		clock.advance(5000);
+		infrastructureManager.monitoringResources();
+
+		Assert.assertEquals(Arrays.asList(5000L, 5000L), infrastructureManager.getPendingAges());
+		Assert.assertEquals(0, infrastructureManager.getNumberOfLostResources());
+		Assert.assertEquals(-1, infrastructureManager.getRecentFulfillmentLatency());
+
+		// the first request is fulfilled and its engine started
+		availability.put(FIRST_ID, true);
+		mockResourcesAvailability(infrastructure, availability);
+		clock.advance(5000);
+		infrastructureManager.monitoringResources();
+		waitForBootstraps(infrastructureManager);
+
+		Assert.assertEquals(1, infrastructureManager.getNumberOfStartedEngines());
+		Assert.assertEquals(Arrays.asList(10000L), infrastructureManager.getPendingAges());
+		Assert.assertEquals(0, infrastructureManager.getNumberOfLostResources());
+		Assert.assertEquals(10000, infrastructureManager.getRecentFulfillmentLatency());
+
+		// the first engine is lost, so it is requested again
+		availability.put(FIRST_ID, false);
+		mockResourcesAvailability(infrastructure, availability);
+		clock.advance(5000);
+		infrastructureManager.monitoringResources();
+
+		Assert.assertEquals(0, infrastructureManager.getNumberOfStartedEngines());
+		Assert.assertEquals(Arrays.asList(15000L, 0L), infrastructureManager.getPendingAges());
+		Assert.assertEquals(1, infrastructureManager.getNumberOfLostResources());
+		Assert.assertEquals(10000, infrastructureManager.getRecentFulfillmentLatency());
+
+		// checking the pending requests are not lost again on the next tick
+		clock.advance(5000);
+		infrastructureManager.monitoringResources();
+
+		Assert.assertEquals(Arrays.asList(20000L, 5000L), infrastructureManager.getPendingAges());
+		Assert.assertEquals(1, infrastructureManager.getNumberOfLostResources());
+		Assert.assertEquals(10000, infrastructureManager.getRecentFulfillmentLatency());
+	}
+
+	@Test
+	public void testFailedDeletionsAreCounted() throws InfrastructureException {
+		InfrastructureManager infrastructureManager = new InfrastructureManager(defaultResourceProperties, defaultResourceCredentials);
+		infrastructureManager.setAutoMonitoring(false);
+
+		// mocking
+		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
+		Mockito.doThrow(new InfrastructureException("Any exception on deallocating resource"))
+				.when(infrastructure).deleteResource(FIRST_ID);
+		mockDeleteResources(infrastructure);
+
+		infrastructureManager.setResourcesInUse(Collections.singletonList(FIRST_ID));
+		infrastructureManager.setInfraProvider(infrastructure);
+
+		infrastructureManager.updateCurrentNeeds(0);
+		infrastructureManager.updateCurrentNeeds(0);
+
+		Assert.assertEquals(2, infrastructureManager.getNumberOfFailedDeletions());
+		Assert.assertEquals(0, infrastructureManager.getNumberOfLostResources());
+	}
+
+	@Test
+	public void testWarmPoolHidesOnlyItsEnginesInUse() throws InfrastructureException {
+		InfrastructureManager infrastructureManager = new InfrastructureManager(defaultResourceProperties, defaultResourceCredentials);
+		infrastructureManager.setAutoMonitoring(false);
+		infrastructureManager.setWarmPool(new WarmPool(new ManualClock(), 2, 4, 60000));
+
+		// mocking
+		List<String> result = new ArrayList<String>();
+		result.add(FIRST_ID);
+		result.add(SECOND_ID);
+		result.add(THIRD_ID);
+		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
+		Mockito.when(infrastructure.createResource(3, defaultResourceProperties)).thenReturn(result);
+
+		infrastructureManager.setInfraProvider(infrastructure);
+
+		infrastructureManager.updateCurrentNeeds(1);
+
+		// checking the engines of the pool still booting do not hide the
+		// needed engine
+		infrastructureManager.setResourcesInUse(Collections.singletonList(FIRST_ID));
+		Assert.assertEquals(1, infrastructureManager.getNumberOfStartedEngines());
+
+		// checking only the engine of the pool in use is hidden
+		infrastructureManager.setResourcesInUse(Arrays.asList(FIRST_ID, SECOND_ID));
+		Assert.assertEquals(1, infrastructureManager.getNumberOfStartedEngines());
+	}
+
+	@Test
+	public void testResourcesWithUnknownInfoKeepTheirState() throws InfrastructureException {
+		InfrastructureManager infrastructureManager = new InfrastructureManager(defaultResourceProperties, defaultResourceCredentials);
+		infrastructureManager.setAutoMonitoring(false);
+
+		// mocking, the info of both resources could not be obtained
+		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
+		Map<String, Map<String, String>> resourcesInfo = new HashMap<String, Map<String, String>>();
+		resourcesInfo.put(FIRST_ID, null);
+		resourcesInfo.put(SECOND_ID, null);
+		Mockito.when(infrastructure.getResourcesInfo(Mockito.anyCollection())).thenReturn(
+				resourcesInfo);
+
+		infrastructureManager.setResourcesInUse(Arrays.asList(FIRST_ID));
+		infrastructureManager.setResourcesNotAvailable(Arrays.asList(SECOND_ID));
+		infrastructureManager.setInfraProvider(infrastructure);
+		infrastructureManager.monitoringResources();
+
+		// checking the in use engine was not taken as lost
+		ResourceRegistry registry = infrastructureManager.getResourceRegistry();
+		Assert.assertEquals(ResourceState.IN_USE, registry.getState(FIRST_ID));
+		Assert.assertEquals(ResourceState.REQUESTED, registry.getState(SECOND_ID));
+		Assert.assertEquals(0, infrastructureManager.getNumberOfLostResources());
+	}
+
+	@Test
+	public void testBulkQueryMonitorsAllDueResourcesAtOnce() throws InfrastructureException {
+		Assert.assertEquals(Arrays.asList(4), getQueriedResourcesPerTick(true));
+	}
+
+	@Test
+	public void testResourceQueriesAreLimitedByBudget() throws InfrastructureException {
+		Assert.assertEquals(Arrays.asList(2, 2), getQueriedResourcesPerTick(false));
+	}
+
+	/**
+	 * Runs the monitoring ticks of the first two seconds on four new
+	 * resources, with a budget of 2 polls per second.
+	 * 
+	 * @return The number of resources of each query to the infrastructure
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private List<Integer> getQueriedResourcesPerTick(boolean bulkQuery)
+			throws InfrastructureException {
+		ManualClock clock = new ManualClock();
+		InfrastructureManager infrastructureManager = new InfrastructureManager(
+				defaultResourceProperties, defaultResourceCredentials, 1, clock);
+		infrastructureManager.setAutoMonitoring(false);
+		infrastructureManager.setMonitoringScheduler(new MonitoringScheduler(clock, 1000, 5000,
+				60000, 60000, 2));
+
+		// mocking
+		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
+		Map<String, Boolean> availability = new HashMap<String, Boolean>();
+		for (String resourceId : Arrays.asList(FIRST_ID, SECOND_ID, THIRD_ID, "fourth")) {
+			availability.put(resourceId, false);
+		}
+		mockResourcesAvailability(infrastructure, availability);
+		Mockito.when(infrastructure.isBulkQuerySupported()).thenReturn(bulkQuery);
+
+		infrastructureManager.setResourcesNotAvailable(new ArrayList<String>(availability
+				.keySet()));
+		infrastructureManager.setInfraProvider(infrastructure);
+
+		infrastructureManager.monitoringTick();
+		clock.setTime(1000);
+		infrastructureManager.monitoringTick();
+
+		ArgumentCaptor<Collection> resourceIds = ArgumentCaptor.forClass(Collection.class);
+		Mockito.verify(infrastructure, Mockito.atLeastOnce()).getResourcesInfo(
+				resourceIds.capture());
+		List<Integer> queriedResources = new ArrayList<Integer>();
+		for (Collection<String> queriedIds : resourceIds.getAllValues()) {
+			queriedResources.add(queriedIds.size());
+		}
+		return queriedResources;
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMonitoringParallelism() {
+		InfrastructureManager infrastructureManager = new InfrastructureManager(defaultResourceProperties, defaultResourceCredentials);
+		infrastructureManager.setMonitoringParallelism(0);
+	}
+
+	/**
+	 * Batch deletions are delegated to the deleteResource stubs of the mock.
+	 */
+	private void mockDeleteResources(InfrastructureProvider infrastructure) {
+		Mockito.when(infrastructure.deleteResources(Mockito.anyCollection())).thenAnswer(
+				new Answer<BatchResult>() {
+					@Override
+					public BatchResult answer(InvocationOnMock invocation) throws Throwable {
+						InfrastructureProvider mock = (InfrastructureProvider) invocation.getMock();
+						BatchResult result = new BatchResult();
+						for (Object resourceId : (Collection<?>) invocation.getArguments()[0]) {
+							try {
+								mock.deleteResource((String) resourceId);
+								result.addSucceeded((String) resourceId);
+							} catch (InfrastructureException e) {
+								result.addFailed((String) resourceId, e);
+							}
+						}
+						return result;
+					}
+				});
+	}
+
+	/**
+	 * Waits for the bootstraps started by the monitoring, which run on the
+	 * monitoring threads.
+	 */
+	private void waitForBootstraps(InfrastructureManager infrastructureManager) {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!infrastructureManager.getBootstrapsInFlight().isEmpty()) {
+			Assert.assertTrue("Bootstraps did not finish.", System.currentTimeMillis() < deadline);
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				Assert.fail("Interrupted while waiting for the bootstraps.");
+			}
+		}
+	}
+
+	private void mockResourcesAvailability(InfrastructureProvider infrastructure,
+			Map<String, Boolean> availability) throws InfrastructureException {
+		Map<String, Map<String, String>> resourcesInfo = new HashMap<String, Map<String, String>>();
+		for (String resourceId : availability.keySet()) {
+			Map<String, String> resourceInfo = new HashMap<String, String>();
+			resourceInfo.put(RESOURCE_ID_KEY, resourceId);
+			resourcesInfo.put(resourceId, resourceInfo);
+			Mockito.when(infrastructure.isAvailable(resourceInfo)).thenReturn(
+					availability.get(resourceId));
+		}
+		Mockito.when(infrastructure.getResourcesInfo(Mockito.anyCollection())).thenReturn(
+				resourcesInfo);
+	}
 }
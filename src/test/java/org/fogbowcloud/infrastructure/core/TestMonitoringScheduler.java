@@ -0,0 +1,151 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestMonitoringScheduler {
+
+	private static final long TICK = 1000;
+	private static final long PENDING_INTERVAL = 2000;
+	private static final long PENDING_MAX_INTERVAL = 8000;
+	private static final long IN_USE_INTERVAL = 60000;
+
+	private ManualClock clock;
+	private MonitoringScheduler scheduler;
+
+	@Before
+	public void setUp() {
+		clock = new ManualClock();
+		scheduler = new MonitoringScheduler(clock, TICK, PENDING_INTERVAL, PENDING_MAX_INTERVAL,
+				IN_USE_INTERVAL, 100);
+	}
+
+	@Test
+	public void testNewResourcesAreDueImmediately() {
+		Map<ResourceState, List<String>> resources = createResources(
+				Arrays.asList("first", "second"), Arrays.asList("third"));
+		Assert.assertEquals(3, scheduler.getDueResources(resources).size());
+	}
+
+	@Test
+	public void testPendingResourceBacksOff() {
+		Map<ResourceState, List<String>> resources = createResources(Arrays.asList("first"),
+				new ArrayList<String>());
+
+		// polled at 0, 2s, 6s, 14s and then every 8s
+		List<Long> pollTimes = new ArrayList<Long>();
+		for (long time = 0; time <= 30000; time += TICK) {
+			clock.setTime(time);
+			List<String> dueResources = scheduler.getDueResources(resources);
+			if (!dueResources.isEmpty()) {
+				pollTimes.add(time);
+				scheduler.polled(dueResources);
+			}
+		}
+		Assert.assertEquals(Arrays.asList(0L, 2000L, 6000L, 14000L, 22000L, 30000L), pollTimes);
+	}
+
+	@Test
+	public void testStateChangeResetsCadence() {
+		Map<ResourceState, List<String>> resources = createResources(Arrays.asList("first"),
+				new ArrayList<String>());
+		scheduler.polled(scheduler.getDueResources(resources));
+		clock.setTime(2000);
+		scheduler.polled(scheduler.getDueResources(resources));
+
+		// the resource was fulfilled and is polled at the next tick
+		clock.setTime(3000);
+		resources.put(ResourceState.REQUESTED, new ArrayList<String>());
+		resources.put(ResourceState.FULFILLED, Arrays.asList("first"));
+		Assert.assertEquals(Arrays.asList("first"), scheduler.getDueResources(resources));
+	}
+
+	@Test
+	public void testInUseResourceIsPolledSlowly() {
+		Map<ResourceState, List<String>> resources = createResources(new ArrayList<String>(),
+				Arrays.asList("first"));
+		scheduler.polled(scheduler.getDueResources(resources));
+
+		clock.setTime(IN_USE_INTERVAL - TICK);
+		Assert.assertTrue(scheduler.getDueResources(resources).isEmpty());
+		clock.setTime(IN_USE_INTERVAL);
+		Assert.assertEquals(Arrays.asList("first"), scheduler.getDueResources(resources));
+	}
+
+	@Test
+	public void testPollsAreLimitedByBudget() {
+		// budget of 2 polls per second
+		scheduler = new MonitoringScheduler(clock, TICK, PENDING_INTERVAL, PENDING_MAX_INTERVAL,
+				IN_USE_INTERVAL, 2);
+		Map<ResourceState, List<String>> resources = createResources(
+				Arrays.asList("first", "second", "third", "fourth", "fifth"),
+				new ArrayList<String>());
+
+		List<String> dueResources = scheduler.getDueResources(resources);
+		Assert.assertEquals(2, dueResources.size());
+		scheduler.polled(dueResources);
+
+		// no token left in the same tick
+		Assert.assertTrue(scheduler.getDueResources(resources).isEmpty());
+
+		clock.setTime(TICK);
+		dueResources = scheduler.getDueResources(resources);
+		Assert.assertEquals(2, dueResources.size());
+		Assert.assertFalse(dueResources.contains("first"));
+		Assert.assertFalse(dueResources.contains("second"));
+		scheduler.polled(dueResources);
+		Assert.assertEquals(4, scheduler.getTotalPolls());
+	}
+
+	@Test
+	public void testBulkQueryIsChargedAsSinglePoll() {
+		// budget of 2 polls per second
+		scheduler = new MonitoringScheduler(clock, TICK, PENDING_INTERVAL, PENDING_MAX_INTERVAL,
+				IN_USE_INTERVAL, 2);
+		Map<ResourceState, List<String>> resources = createResources(
+				Arrays.asList("first", "second", "third", "fourth", "fifth"),
+				Arrays.asList("sixth"));
+
+		// all resources are polled by the same query
+		List<String> dueResources = scheduler.getDueResources(resources, true);
+		Assert.assertEquals(6, dueResources.size());
+		scheduler.polled(dueResources);
+
+		// one token left in the same tick, but nothing is due
+		Assert.assertTrue(scheduler.getDueResources(resources, true).isEmpty());
+		Assert.assertEquals(1, scheduler.getDueResources(
+				createResources(Arrays.asList("seventh"), new ArrayList<String>()), true).size());
+
+		// no token left
+		Assert.assertTrue(scheduler.getDueResources(
+				createResources(Arrays.asList("eighth"), new ArrayList<String>()), true).isEmpty());
+	}
+
+	@Test
+	public void testRemovingResourcesAreNotPolled() {
+		Map<ResourceState, List<String>> resources = createResources(new ArrayList<String>(),
+				new ArrayList<String>());
+		resources.put(ResourceState.DELETING, Arrays.asList("first"));
+		Assert.assertTrue(scheduler.getDueResources(resources).isEmpty());
+	}
+
+	private Map<ResourceState, List<String>> createResources(List<String> requested,
+			List<String> inUse) {
+		Map<ResourceState, List<String>> resources = new EnumMap<ResourceState, List<String>>(
+				ResourceState.class);
+		for (ResourceState state : ResourceState.values()) {
+			resources.put(state, Collections.<String> emptyList());
+		}
+		resources.put(ResourceState.REQUESTED, requested);
+		resources.put(ResourceState.IN_USE, inUse);
+		return resources;
+	}
+}
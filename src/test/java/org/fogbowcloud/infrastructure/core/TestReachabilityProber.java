@@ -0,0 +1,88 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestReachabilityProber {
+
+	private ServerSocket openServer;
+	private int closedPort;
+	private ReachabilityProber prober;
+
+	@Before
+	public void setUp() throws IOException {
+		openServer = new ServerSocket(0);
+		// a port that was just released is not listened by anyone
+		ServerSocket closedServer = new ServerSocket(0);
+		closedPort = closedServer.getLocalPort();
+		closedServer.close();
+		prober = new ReachabilityProber(2000);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		openServer.close();
+	}
+
+	@Test
+	public void testProbeOpenAndClosedPorts() {
+		Map<String, InetSocketAddress> addresses = new HashMap<String, InetSocketAddress>();
+		addresses.put("open", new InetSocketAddress("127.0.0.1", openServer.getLocalPort()));
+		addresses.put("closed", new InetSocketAddress("127.0.0.1", closedPort));
+
+		Map<String, Long> latencies = prober.probe(addresses);
+
+		Assert.assertEquals(1, latencies.size());
+		Assert.assertTrue(latencies.containsKey("open"));
+		Assert.assertTrue(latencies.get("open") >= 0);
+		Assert.assertEquals(2, prober.getProbes());
+		Assert.assertEquals(1, prober.getReachableProbes());
+	}
+
+	@Test
+	public void testProbeUnresolvedAddress() {
+		Map<String, InetSocketAddress> addresses = new HashMap<String, InetSocketAddress>();
+		addresses.put("open", InetSocketAddress.createUnresolved("127.0.0.1",
+				openServer.getLocalPort()));
+
+		Assert.assertTrue(prober.probe(addresses).containsKey("open"));
+	}
+
+	@Test
+	public void testProbeManyHostsAtOnce() {
+		Map<String, InetSocketAddress> addresses = new HashMap<String, InetSocketAddress>();
+		for (int i = 0; i < 20; i++) {
+			addresses.put("open" + i, new InetSocketAddress("127.0.0.1",
+					openServer.getLocalPort()));
+			addresses.put("closed" + i, new InetSocketAddress("127.0.0.1", closedPort));
+		}
+
+		long startTime = System.currentTimeMillis();
+		Map<String, Long> latencies = prober.probe(addresses);
+
+		// refused connections do not wait for the timeout
+		Assert.assertTrue(System.currentTimeMillis() - startTime < 2000);
+		Assert.assertEquals(20, latencies.size());
+		for (String resourceId : latencies.keySet()) {
+			Assert.assertTrue(resourceId.startsWith("open"));
+		}
+	}
+
+	@Test
+	public void testProbeNoAddresses() {
+		Assert.assertTrue(prober.probe(new HashMap<String, InetSocketAddress>()).isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidConnectTimeout() {
+		new ReachabilityProber(0);
+	}
+}
@@ -0,0 +1,180 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestResourceJournal {
+
+	private File directory;
+	private ResourceJournal journal;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = File.createTempFile("resource-journal", "");
+		directory.delete();
+		directory.mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		if (journal != null) {
+			journal.close();
+		}
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void testOpenEmptyJournal() throws IOException {
+		journal = new ResourceJournal(directory, 100, 1000);
+		Assert.assertEquals(0, journal.open(new ResourceRegistry()));
+	}
+
+	@Test
+	public void testRestoreResources() throws IOException {
+		ManualClock clock = new ManualClock();
+		ResourceRegistry registry = new ResourceRegistry(clock);
+		journal = new ResourceJournal(directory, 100, 1000);
+		journal.open(registry);
+
+		registry.addAll(Arrays.asList("first", "second", "third", "fourth"),
+				ResourceState.REQUESTED);
+		clock.setTime(5000);
+		registry.fire("first", ResourceEvent.FULFILLED);
+		registry.fire("first", ResourceEvent.REACHED);
+		registry.fire("first", ResourceEvent.ENGINE_STARTED);
+		registry.fire("second", ResourceEvent.FULFILLED);
+		registry.remove("third");
+		registry.fire("fourth", ResourceEvent.DELETE);
+		journal.close();
+
+		ResourceRegistry restoredRegistry = new ResourceRegistry();
+		journal = new ResourceJournal(directory, 100, 1000);
+		Assert.assertEquals(3, journal.open(restoredRegistry));
+
+		Assert.assertEquals(ResourceState.IN_USE, restoredRegistry.getState("first"));
+		Assert.assertEquals(Long.valueOf(5000),
+				restoredRegistry.getRecord("first").getEntryTime(ResourceState.IN_USE));
+		Assert.assertEquals(ResourceState.FULFILLED, restoredRegistry.getState("second"));
+		Assert.assertNull(restoredRegistry.getState("third"));
+		// interrupted deletions are monitored again
+		Assert.assertEquals(ResourceState.REQUESTED, restoredRegistry.getState("fourth"));
+		Assert.assertEquals(Arrays.asList("first", "second", "fourth"),
+				restoredRegistry.getResources(EnumSet.allOf(ResourceState.class)));
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+		ResourceRegistry registry = new ResourceRegistry();
+		journal = new ResourceJournal(directory, 100, 10);
+		journal.open(registry);
+
+		for (int i = 0; i < 100; i++) {
+			registry.add("resource" + i, ResourceState.REQUESTED);
+			registry.fire("resource" + i, ResourceEvent.FULFILLED);
+		}
+		for (int i = 0; i < 50; i++) {
+			registry.remove("resource" + i);
+		}
+		journal.close();
+
+		// compacted logs were deleted
+		Assert.assertTrue(new File(directory, ResourceJournal.SNAPSHOT_FILE).exists());
+		Assert.assertTrue(directory.list().length < 10);
+
+		ResourceRegistry restoredRegistry = new ResourceRegistry();
+		journal = new ResourceJournal(directory, 100, 10);
+		Assert.assertEquals(50, journal.open(restoredRegistry));
+		Assert.assertEquals(50, restoredRegistry.count(ResourceState.FULFILLED));
+		Assert.assertNull(restoredRegistry.getState("resource0"));
+	}
+
+	@Test
+	public void testIgnoreCorruptedEndOfLog() throws IOException {
+		ResourceRegistry registry = new ResourceRegistry();
+		journal = new ResourceJournal(directory, 100, 1000);
+		journal.open(registry);
+		registry.add("first", ResourceState.REQUESTED);
+		registry.add("second", ResourceState.REQUESTED);
+		journal.close();
+		journal = null;
+
+		// cutting the last record in the middle, as a crash while writing
+		File log = findLog();
+		RandomAccessFile logFile = new RandomAccessFile(log, "rw");
+		logFile.setLength(logFile.length() - 3);
+		logFile.close();
+		// and appending garbage
+		FileOutputStream output = new FileOutputStream(log, true);
+		output.write(new byte[] { 0, 0, 0, 4, 1, 2, 3, 4, 5, 6, 7, 8 });
+		output.close();
+
+		ResourceRegistry restoredRegistry = new ResourceRegistry();
+		journal = new ResourceJournal(directory, 100, 1000);
+		Assert.assertEquals(1, journal.open(restoredRegistry));
+		Assert.assertEquals(ResourceState.REQUESTED, restoredRegistry.getState("first"));
+	}
+
+	@Test
+	public void testUnchangedStateIsNotJournaled() throws IOException {
+		ManualClock clock = new ManualClock();
+		ResourceRegistry registry = new ResourceRegistry(clock);
+		journal = new ResourceJournal(directory, 100, 1000);
+		journal.open(registry);
+
+		registry.add("first", ResourceState.REQUESTED);
+		journal.sync();
+		long logLength = findLog().length();
+
+		// the same state and time notified again
+		journal.resourceStateChanged("first", ResourceState.REQUESTED, 0);
+		journal.sync();
+		Assert.assertEquals(logLength, findLog().length());
+
+		clock.setTime(5000);
+		registry.fire("first", ResourceEvent.FULFILLED);
+		journal.sync();
+		Assert.assertTrue(findLog().length() > logLength);
+	}
+
+	@Test
+	public void testRestoreThousandsOfResources() throws IOException {
+		ResourceRegistry registry = new ResourceRegistry();
+		journal = new ResourceJournal(directory, 100, 100000);
+		journal.open(registry);
+		for (int i = 0; i < 5000; i++) {
+			registry.add("resource" + i, ResourceState.REQUESTED);
+			registry.fire("resource" + i, ResourceEvent.FULFILLED);
+		}
+		journal.close();
+
+		ResourceRegistry restoredRegistry = new ResourceRegistry();
+		journal = new ResourceJournal(directory, 100, 100000);
+		Assert.assertEquals(5000, journal.open(restoredRegistry));
+		for (int i = 0; i < 5000; i++) {
+			Assert.assertEquals(ResourceState.FULFILLED, restoredRegistry.getState("resource" + i));
+		}
+		Assert.assertNull(restoredRegistry.getState("resource5000"));
+	}
+
+	private File findLog() {
+		for (File file : directory.listFiles()) {
+			if (file.getName().startsWith(ResourceJournal.LOG_FILE_PREFIX)
+					&& file.length() > 0) {
+				return file;
+			}
+		}
+		throw new IllegalStateException("There is not a journal log.");
+	}
+}
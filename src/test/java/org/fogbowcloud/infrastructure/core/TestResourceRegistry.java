@@ -0,0 +1,182 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestResourceRegistry {
+
+	@Test
+	public void testAddResource() {
+		ResourceRegistry registry = new ResourceRegistry();
+		Assert.assertTrue(registry.add("first", ResourceState.REQUESTED));
+		Assert.assertFalse(registry.add("first", ResourceState.IN_USE));
+
+		Assert.assertEquals(ResourceState.REQUESTED, registry.getState("first"));
+		Assert.assertEquals(1, registry.count(ResourceState.REQUESTED));
+		Assert.assertEquals(1, registry.count(ResourceState.NOT_AVAILABLE));
+		Assert.assertEquals(0, registry.count(ResourceState.IN_USE));
+	}
+
+	@Test
+	public void testLifecycle() {
+		ManualClock clock = new ManualClock();
+		ResourceRegistry registry = new ResourceRegistry(clock);
+		registry.add("first", ResourceState.REQUESTED);
+
+		// events not allowed from the current state are ignored
+		Assert.assertNull(registry.fire("first", ResourceEvent.ENGINE_STARTED));
+		Assert.assertNull(registry.fire("unknown", ResourceEvent.FULFILLED));
+
+		clock.setTime(1000);
+		Assert.assertEquals(ResourceState.FULFILLED, registry.fire("first", ResourceEvent.FULFILLED));
+		clock.setTime(3000);
+		Assert.assertEquals(ResourceState.REACHABLE, registry.fire("first", ResourceEvent.REACHED));
+		clock.setTime(3500);
+		Assert.assertEquals(ResourceState.IN_USE,
+				registry.fire("first", ResourceEvent.ENGINE_STARTED));
+
+		Assert.assertEquals(Arrays.asList("first"), registry.getResources(ResourceState.IN_USE));
+		Assert.assertTrue(registry.getResources(ResourceState.NOT_AVAILABLE).isEmpty());
+		Assert.assertEquals(1, registry.count(ResourceState.IN_USE));
+		Assert.assertEquals(0, registry.count(ResourceState.NOT_AVAILABLE));
+
+		// checking the time spent in each state
+		ResourceRecord record = registry.getRecord("first");
+		Assert.assertEquals(1000, record.getDuration(ResourceState.REQUESTED, ResourceState.FULFILLED));
+		Assert.assertEquals(2000, record.getDuration(ResourceState.FULFILLED, ResourceState.REACHABLE));
+		Assert.assertEquals(500, record.getDuration(ResourceState.REACHABLE, ResourceState.IN_USE));
+		Assert.assertEquals(-1, record.getDuration(ResourceState.IN_USE, ResourceState.DELETING));
+	}
+
+	@Test
+	public void testLostResourceIsRequestedAgain() {
+		ResourceRegistry registry = new ResourceRegistry();
+		registry.add("first", ResourceState.IN_USE);
+
+		Assert.assertEquals(ResourceState.REQUESTED, registry.fire("first", ResourceEvent.LOST));
+		Assert.assertNull(registry.fire("first", ResourceEvent.LOST));
+	}
+
+	@Test
+	public void testPendingResourceIsNotLost() {
+		ManualClock clock = new ManualClock();
+		ResourceRegistry registry = new ResourceRegistry(clock);
+		registry.add("first", ResourceState.REQUESTED);
+
+		clock.setTime(1000);
+		Assert.assertNull(registry.fire("first", ResourceEvent.LOST));
+		Assert.assertEquals(Long.valueOf(0),
+				registry.getRecord("first").getEntryTime(ResourceState.REQUESTED));
+	}
+
+	@Test
+	public void testFailedDeletionRestoresState() {
+		ResourceRegistry registry = new ResourceRegistry();
+		registry.add("first", ResourceState.IN_USE);
+
+		Assert.assertEquals(ResourceState.DRAINING, registry.fire("first", ResourceEvent.DRAIN));
+		Assert.assertEquals(ResourceState.DELETING, registry.fire("first", ResourceEvent.DELETE));
+		Assert.assertEquals(0, registry.count(ResourceState.IN_USE));
+		Assert.assertEquals(1, registry.count(ResourceState.REMOVING));
+
+		// a resource being deleted is not deleted twice
+		Assert.assertNull(registry.fire("first", ResourceEvent.DELETE));
+
+		Assert.assertEquals(ResourceState.IN_USE, registry.fire("first", ResourceEvent.DELETE_FAILED));
+		Assert.assertEquals(1, registry.count(ResourceState.IN_USE));
+	}
+
+	@Test
+	public void testRemove() {
+		ResourceRegistry registry = new ResourceRegistry();
+		registry.add("first", ResourceState.IN_USE);
+
+		Assert.assertTrue(registry.remove("first"));
+		Assert.assertFalse(registry.remove("first"));
+		Assert.assertNull(registry.getState("first"));
+		Assert.assertEquals(0, registry.count(ResourceState.IN_USE));
+		Assert.assertEquals(0, registry.size());
+	}
+
+	@Test
+	public void testResourcesKeepInsertionOrder() {
+		ResourceRegistry registry = new ResourceRegistry();
+		List<String> resourceIds = new ArrayList<String>();
+		for (int i = 0; i < 100; i++) {
+			resourceIds.add("resource" + i);
+		}
+		registry.addAll(resourceIds, ResourceState.REQUESTED);
+
+		Assert.assertEquals(resourceIds, registry.getResources(ResourceState.REQUESTED));
+	}
+
+	@Test
+	public void testConcurrentTransitions() throws Exception {
+		final ResourceRegistry registry = new ResourceRegistry();
+		final int numberOfResources = 1000;
+		for (int i = 0; i < numberOfResources; i++) {
+			registry.add("resource" + i, ResourceState.REACHABLE);
+		}
+
+		// several threads competing to move the same resources back and forth
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int t = 0; t < 8; t++) {
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int round = 0; round < 10; round++) {
+						for (int i = 0; i < numberOfResources; i++) {
+							String resourceId = "resource" + i;
+							// lost resources are fulfilled and reached again
+							if (registry.fire(resourceId, ResourceEvent.ENGINE_STARTED) == null) {
+								registry.fire(resourceId, ResourceEvent.LOST);
+								registry.fire(resourceId, ResourceEvent.FULFILLED);
+								registry.fire(resourceId, ResourceEvent.REACHED);
+							}
+						}
+					}
+					return null;
+				}
+			}));
+		}
+
+		// snapshots taken meanwhile must always contain every resource once
+		while (!allDone(futures)) {
+			Map<ResourceState, List<String>> snapshot = registry.snapshot();
+			Assert.assertEquals(numberOfResources, snapshot.get(ResourceState.IN_USE).size()
+					+ ResourceRegistry.getResources(snapshot, ResourceState.NOT_AVAILABLE).size());
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+		Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+		Assert.assertEquals(numberOfResources, registry.count(ResourceState.IN_USE)
+				+ registry.count(ResourceState.NOT_AVAILABLE));
+		Assert.assertEquals(registry.count(ResourceState.NOT_AVAILABLE),
+				registry.getResources(ResourceState.NOT_AVAILABLE).size());
+		Assert.assertEquals(registry.count(ResourceState.IN_USE),
+				registry.getResources(ResourceState.IN_USE).size());
+	}
+
+	private static boolean allDone(List<Future<?>> futures) {
+		for (Future<?> future : futures) {
+			if (!future.isDone()) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
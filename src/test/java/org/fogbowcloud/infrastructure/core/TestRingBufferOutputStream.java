@@ -0,0 +1,68 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestRingBufferOutputStream {
+
+	@Test
+	public void testKeepsAllBytesBelowCapacity() throws IOException {
+		RingBufferOutputStream buffer = new RingBufferOutputStream(10);
+		buffer.write("hello".getBytes());
+		buffer.write(' ');
+		buffer.write("you".getBytes());
+
+		Assert.assertEquals("hello you", buffer.toString());
+		Assert.assertEquals(9, buffer.getTotalBytes());
+		Assert.assertFalse(buffer.isTruncated());
+	}
+
+	@Test
+	public void testKeepsLastBytesAboveCapacity() throws IOException {
+		RingBufferOutputStream buffer = new RingBufferOutputStream(5);
+		buffer.write("abcd".getBytes());
+		buffer.write("efg".getBytes());
+
+		Assert.assertEquals("cdefg", buffer.toString());
+		Assert.assertEquals(7, buffer.getTotalBytes());
+		Assert.assertTrue(buffer.isTruncated());
+
+		buffer.write('h');
+		Assert.assertEquals("defgh", buffer.toString());
+	}
+
+	@Test
+	public void testChunkLargerThanCapacity() throws IOException {
+		RingBufferOutputStream buffer = new RingBufferOutputStream(4);
+		buffer.write("ab".getBytes());
+		buffer.write("0123456789".getBytes(), 2, 7);
+
+		Assert.assertEquals("5678", buffer.toString());
+		Assert.assertEquals(9, buffer.getTotalBytes());
+		Assert.assertTrue(buffer.isTruncated());
+	}
+
+	@Test
+	public void testExactCapacityIsNotTruncated() throws IOException {
+		RingBufferOutputStream buffer = new RingBufferOutputStream(4);
+		buffer.write("abcd".getBytes());
+
+		Assert.assertEquals("abcd", buffer.toString());
+		Assert.assertFalse(buffer.isTruncated());
+	}
+
+	@Test
+	public void testCommandResultCountsBytes() {
+		CommandResult result = new CommandResult(0, "out\u00e7", null);
+		Assert.assertEquals(5, result.getOutputBytes());
+		Assert.assertEquals(0, result.getErrorBytes());
+		Assert.assertFalse(result.isOutputTruncated());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCapacity() {
+		new RingBufferOutputStream(0);
+	}
+}
@@ -0,0 +1,203 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fogbowcloud.infrastructure.core.FanOutResult.Status;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestSSHFanOutExecutor {
+
+	private static final String COMMAND = "uptime";
+	private static final String HOST_KEY = "host";
+
+	private Map<String, String> credentials;
+	private SSHFanOutExecutor fanOutExecutor;
+
+	@Before
+	public void setUp() {
+		credentials = new HashMap<String, String>();
+		credentials.put(ResourcePropertiesConstants.USERNAME_KEY, "user");
+	}
+
+	@After
+	public void tearDown() {
+		if (fanOutExecutor != null) {
+			fanOutExecutor.shutdown();
+		}
+	}
+
+	@Test
+	public void testResultsOfAllHosts() throws Exception {
+		fanOutExecutor = new SSHFanOutExecutor(2, 10000);
+		InfrastructureProvider infrastructure = mockCommands(new HashMap<String, Long>());
+		Map<String, Map<String, String>> resourcesInfo = createResourcesInfo("ok", "fail",
+				"unreachable");
+		resourcesInfo.put("no_info", null);
+
+		FanOutSummary summary = fanOutExecutor.execute(infrastructure, resourcesInfo,
+				credentials, COMMAND, null);
+
+		Assert.assertEquals(4, summary.getTotal());
+		Assert.assertEquals(1, summary.count(Status.SUCCEEDED));
+		Assert.assertEquals(1, summary.count(Status.FAILED));
+		Assert.assertEquals(2, summary.count(Status.UNREACHABLE));
+		Assert.assertEquals(0, summary.count(Status.TIMED_OUT));
+		Assert.assertEquals("ok", summary.getResults(Status.SUCCEEDED).get(0).getResourceId());
+		Assert.assertEquals("fail", summary.getResults(Status.FAILED).get(0).getResourceId());
+	}
+
+	@Test
+	public void testResultsStreamedAsHostsComplete() throws Exception {
+		fanOutExecutor = new SSHFanOutExecutor(3, 10000);
+		Map<String, Long> delays = new HashMap<String, Long>();
+		delays.put("slow", 300L);
+		delays.put("medium", 150L);
+		InfrastructureProvider infrastructure = mockCommands(delays);
+
+		final List<String> completionOrder = new ArrayList<String>();
+		final List<Integer> progress = new ArrayList<Integer>();
+		FanOutSummary summary = fanOutExecutor.execute(infrastructure,
+				createResourcesInfo("slow", "medium", "ok"), credentials, COMMAND,
+				new FanOutListener() {
+					@Override
+					public void resultAvailable(FanOutResult result, int completed, int total) {
+						completionOrder.add(result.getResourceId());
+						progress.add(completed);
+						Assert.assertEquals(3, total);
+					}
+				});
+
+		Assert.assertEquals(3, summary.count(Status.SUCCEEDED));
+		Assert.assertEquals("ok", completionOrder.get(0));
+		Assert.assertEquals("medium", completionOrder.get(1));
+		Assert.assertEquals("slow", completionOrder.get(2));
+		Assert.assertEquals(3, progress.get(2).intValue());
+	}
+
+	@Test
+	public void testHostTimesOut() throws Exception {
+		fanOutExecutor = new SSHFanOutExecutor(2, 200);
+		Map<String, Long> delays = new HashMap<String, Long>();
+		delays.put("hanging", 10000L);
+		InfrastructureProvider infrastructure = mockCommands(delays);
+
+		long startTime = System.currentTimeMillis();
+		FanOutSummary summary = fanOutExecutor.execute(infrastructure,
+				createResourcesInfo("hanging", "ok"), credentials, COMMAND, null);
+
+		Assert.assertTrue(System.currentTimeMillis() - startTime < 5000);
+		Assert.assertEquals(1, summary.count(Status.SUCCEEDED));
+		Assert.assertEquals(1, summary.count(Status.TIMED_OUT));
+		FanOutResult timedOut = summary.getResults(Status.TIMED_OUT).get(0);
+		Assert.assertEquals("hanging", timedOut.getResourceId());
+		Assert.assertNull(timedOut.getCommandResult());
+	}
+
+	@Test
+	public void testTimedOutHostFreesItsWorker() throws Exception {
+		fanOutExecutor = new SSHFanOutExecutor(1, 200);
+		Map<String, Long> delays = new HashMap<String, Long>();
+		delays.put("hanging", 10000L);
+		InfrastructureProvider infrastructure = mockCommands(delays);
+		Map<String, Map<String, String>> resourcesInfo = createResourcesInfo("hanging", "ok");
+
+		long startTime = System.currentTimeMillis();
+		FanOutSummary summary = fanOutExecutor.execute(infrastructure, resourcesInfo,
+				credentials, COMMAND, null);
+
+		// checking the only worker ran the next host after the timeout
+		Assert.assertTrue(System.currentTimeMillis() - startTime < 5000);
+		Assert.assertEquals(1, summary.count(Status.TIMED_OUT));
+		Assert.assertEquals(1, summary.count(Status.SUCCEEDED));
+		// checking the ssh command was given the timeout of the host
+		Mockito.verify(infrastructure).executeCommand(resourcesInfo.get("hanging"), credentials,
+				COMMAND, 200L);
+	}
+
+	@Test
+	public void testConcurrencyIsBounded() throws Exception {
+		fanOutExecutor = new SSHFanOutExecutor(3, 10000);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
+		Mockito.when(
+				infrastructure.executeCommand(Mockito.anyMap(), Mockito.anyMap(),
+						Mockito.anyString(), Mockito.anyLong())).thenAnswer(new Answer<CommandResult>() {
+			@Override
+			public CommandResult answer(InvocationOnMock invocation) throws Throwable {
+				int current = running.incrementAndGet();
+				synchronized (maxRunning) {
+					maxRunning.set(Math.max(maxRunning.get(), current));
+				}
+				Thread.sleep(20);
+				running.decrementAndGet();
+				return new CommandResult(0, "OK", "");
+			}
+		});
+
+		List<String> resourceIds = new ArrayList<String>();
+		for (int i = 0; i < 30; i++) {
+			resourceIds.add("resource" + i);
+		}
+		FanOutSummary summary = fanOutExecutor.execute(infrastructure,
+				createResourcesInfo(resourceIds.toArray(new String[resourceIds.size()])),
+				credentials, COMMAND, null);
+
+		Assert.assertEquals(30, summary.count(Status.SUCCEEDED));
+		Assert.assertTrue(maxRunning.get() <= 3);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidParallelism() {
+		new SSHFanOutExecutor(0, 1000);
+	}
+
+	/**
+	 * Hosts named "fail" exit with error, hosts named "unreachable" return no
+	 * result and the other ones succeed after their delay.
+	 */
+	private InfrastructureProvider mockCommands(final Map<String, Long> delays)
+			throws InfrastructureException {
+		InfrastructureProvider infrastructure = Mockito.mock(InfrastructureProvider.class);
+		Mockito.when(
+				infrastructure.executeCommand(Mockito.anyMap(), Mockito.anyMap(),
+						Mockito.anyString(), Mockito.anyLong())).thenAnswer(new Answer<CommandResult>() {
+			@Override
+			public CommandResult answer(InvocationOnMock invocation) throws Throwable {
+				@SuppressWarnings("unchecked")
+				String host = ((Map<String, String>) invocation.getArguments()[0]).get(HOST_KEY);
+				if (delays.containsKey(host)) {
+					Thread.sleep(delays.get(host));
+				}
+				if ("fail".equals(host)) {
+					return new CommandResult(1, "", "error");
+				} else if ("unreachable".equals(host)) {
+					return null;
+				}
+				return new CommandResult(0, "OK", "");
+			}
+		});
+		return infrastructure;
+	}
+
+	private Map<String, Map<String, String>> createResourcesInfo(String... resourceIds) {
+		Map<String, Map<String, String>> resourcesInfo = new LinkedHashMap<String, Map<String, String>>();
+		for (String resourceId : resourceIds) {
+			Map<String, String> resourceInfo = new HashMap<String, String>();
+			resourceInfo.put(HOST_KEY, resourceId);
+			resourcesInfo.put(resourceId, resourceInfo);
+		}
+		return resourcesInfo;
+	}
+}
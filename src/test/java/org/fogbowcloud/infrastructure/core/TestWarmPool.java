@@ -0,0 +1,135 @@
+package org.fogbowcloud.infrastructure.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestWarmPool {
+
+	private static final long IDLE_TIMEOUT = 60000;
+
+	private ManualClock clock;
+	private WarmPool warmPool;
+
+	@Before
+	public void setUp() {
+		clock = new ManualClock();
+		warmPool = new WarmPool(clock, 1, 4, IDLE_TIMEOUT);
+	}
+
+	@Test
+	public void testPoolStartsWithMinSize() {
+		Assert.assertEquals(1, warmPool.getSize());
+		Assert.assertEquals(3, warmPool.getTargetResources(2));
+		Assert.assertEquals(1, warmPool.getSize());
+	}
+
+	@Test
+	public void testPoolGrowsOnSpike() {
+		Assert.assertEquals(2, warmPool.getTargetResources(1));
+
+		// the spike takes the idle engine and the pool grows by the spike size
+		Assert.assertEquals(6, warmPool.getTargetResources(3));
+		Assert.assertEquals(3, warmPool.getSize());
+
+		// the pool does not grow above its max size
+		Assert.assertEquals(10, warmPool.getTargetResources(6));
+		Assert.assertEquals(4, warmPool.getSize());
+	}
+
+	@Test
+	public void testPoolDoesNotChangeWhenNeedsDecrease() {
+		warmPool.getTargetResources(1);
+		warmPool.getTargetResources(3);
+		Assert.assertEquals(3, warmPool.getSize());
+
+		Assert.assertEquals(4, warmPool.getTargetResources(1));
+		Assert.assertEquals(3, warmPool.getSize());
+	}
+
+	@Test
+	public void testPoolShrinksAfterIdleTimeout() {
+		warmPool.getTargetResources(0);
+		warmPool.getTargetResources(3);
+		Assert.assertEquals(4, warmPool.getSize());
+
+		clock.advance(IDLE_TIMEOUT - 1);
+		warmPool.getTargetResources(3);
+		Assert.assertEquals(4, warmPool.getSize());
+
+		// shrinks by one engine each idle timeout
+		clock.advance(1);
+		Assert.assertEquals(6, warmPool.getTargetResources(3));
+		warmPool.getTargetResources(3);
+		Assert.assertEquals(3, warmPool.getSize());
+
+		for (int i = 0; i < 5; i++) {
+			clock.advance(IDLE_TIMEOUT);
+			warmPool.getTargetResources(3);
+		}
+		Assert.assertEquals(1, warmPool.getSize());
+	}
+
+	@Test
+	public void testSpikeRestartsIdleTimeout() {
+		warmPool.getTargetResources(0);
+		warmPool.getTargetResources(2);
+		Assert.assertEquals(3, warmPool.getSize());
+
+		clock.advance(IDLE_TIMEOUT - 1);
+		warmPool.getTargetResources(3);
+		Assert.assertEquals(4, warmPool.getSize());
+
+		clock.advance(IDLE_TIMEOUT - 1);
+		warmPool.getTargetResources(3);
+		Assert.assertEquals(4, warmPool.getSize());
+	}
+
+	@Test
+	public void testPoolTracksItsResources() {
+		Assert.assertEquals(2, warmPool.getTargetResources(1));
+		warmPool.addResources(Arrays.asList("first", "second"));
+
+		// the last new resource fills the pool
+		Assert.assertEquals(1, warmPool.getIdleEngines(Arrays.asList("first", "second")));
+		Assert.assertEquals(0, warmPool.getIdleEngines(Collections.singletonList("first")));
+
+		// the spike takes the engine of the pool
+		warmPool.getTargetResources(2);
+		Assert.assertEquals(0, warmPool.getIdleEngines(Arrays.asList("first", "second")));
+		warmPool.addResources(Arrays.asList("third", "fourth", "fifth"));
+		Assert.assertEquals(2, warmPool.getIdleEngines(Arrays.asList("third", "fourth",
+				"fifth")));
+
+		// lost resources leave the pool
+		warmPool.retainResources(Arrays.asList("first", "second", "fifth"));
+		Assert.assertEquals(1, warmPool.getIdleEngines(Arrays.asList("fourth", "fifth")));
+	}
+
+	@Test
+	public void testPoolFromProperties() {
+		Properties properties = new Properties();
+		properties.put(WarmPool.MIN_SIZE_KEY, "2");
+		WarmPool warmPool = new WarmPool(properties);
+		Assert.assertEquals(2, warmPool.getSize());
+
+		// max size defaults to the min size
+		warmPool.getTargetResources(0);
+		warmPool.getTargetResources(5);
+		Assert.assertEquals(2, warmPool.getSize());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMaxSizeLowerThanMinSize() {
+		new WarmPool(clock, 2, 1, IDLE_TIMEOUT);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidIdleTimeout() {
+		new WarmPool(clock, 1, 2, 0);
+	}
+}
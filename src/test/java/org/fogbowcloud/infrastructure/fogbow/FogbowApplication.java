@@ -2,10 +2,13 @@ package org.fogbowcloud.infrastructure.fogbow;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.apache.http.HttpStatus;
 import org.apache.log4j.Logger;
@@ -59,6 +62,12 @@ public class FogbowApplication extends Application {
 	private String[] expectedIds;
 	private int numberOfRequests;
 	private String fogbowEndpoint;
+	private boolean verboseListing = false;
+	private int failingListings = 0;
+	private int requestGets = 0;
+	private int verboseListings = 0;
+	private boolean listingWithoutStates = false;
+	private Set<String> failingRequestGets = new HashSet<String>();
 
 	private static final Logger LOGGER = Logger.getLogger(FogbowApplication.class);
 	public static final String DEFAULT_SSH_PORT = "40000";
@@ -227,6 +236,61 @@ public class FogbowApplication extends Application {
 		return fogbowEndpoint;
 	}
 
+	/**
+	 * Serves the listing of requests with their attributes on
+	 * <code>?verbose=true</code>, which older fogbow versions ignore.
+	 */
+	public void setVerboseListing(boolean verboseListing) {
+		this.verboseListing = verboseListing;
+	}
+
+	public boolean isVerboseListing() {
+		return verboseListing;
+	}
+
+	/**
+	 * The verbose listings leave out the state of the requests, keeping their
+	 * other attributes.
+	 */
+	public void setListingWithoutStates(boolean listingWithoutStates) {
+		this.listingWithoutStates = listingWithoutStates;
+	}
+
+	/**
+	 * The GETs of the request fail with an internal server error.
+	 */
+	public void addFailingRequestGet(String requestId) {
+		failingRequestGets.add(requestId);
+	}
+
+	/**
+	 * The next verbose listings fail with an internal server error.
+	 */
+	public void setFailingListings(int failingListings) {
+		this.failingListings = failingListings;
+	}
+
+	private void checkListingFailure() {
+		if (failingListings > 0) {
+			failingListings--;
+			throw new ResourceException(HttpStatus.SC_INTERNAL_SERVER_ERROR);
+		}
+	}
+
+	/**
+	 * @return The number of verbose listings served
+	 */
+	public int getVerboseListings() {
+		return verboseListings;
+	}
+
+	/**
+	 * @return The number of GETs of a single request
+	 */
+	public int getRequestGets() {
+		return requestGets;
+	}
+
 	public static class FakeQueryServerResource extends ServerResource {
 
 		private static final Logger LOGGER = Logger.getLogger(FakeQueryServerResource.class);
@@ -299,10 +363,20 @@ public class FogbowApplication extends Application {
 
 			String requestId = (String) getRequestAttributes().get("requestid");
 			if (requestId == null) {
+				if (fogbowApp.isVerboseListing() && "true".equals(getQueryValue("verbose"))) {
+					LOGGER.debug("Listing all requests verbosely using auth token: " + authToken);
+					fogbowApp.checkListingFailure();
+					fogbowApp.verboseListings++;
+					return generateVerboseListingResponse(fogbowApp.getAllRequests(authToken));
+				}
 				LOGGER.debug("Getting all requests using auth token: " + authToken);
 				return generateTextPlainResponse(fogbowApp.getAllRequests(authToken), req);
 			}
 			LOGGER.debug("Getting request " + requestId + " using auth token: " + authToken);
+			if (fogbowApp.failingRequestGets.contains(requestId)) {
+				throw new ResourceException(HttpStatus.SC_INTERNAL_SERVER_ERROR);
+			}
+			fogbowApp.requestGets++;
 
 			return generateOneRequestResponse(fogbowApp.getRequest(authToken, requestId));
 		}
@@ -346,6 +420,23 @@ public class FogbowApplication extends Application {
 			return "\n" + requestOCCIFormat.trim();
 		}
 
+		private String generateVerboseListingResponse(List<Request> requests) {
+			FogbowApplication fogbowApp = (FogbowApplication) getApplication();
+			String response = "";
+			for (Request request : requests) {
+				String requestResponse = generateOneRequestResponse(request).trim();
+				if (fogbowApp.listingWithoutStates) {
+					requestResponse = requestResponse.replaceAll(".*"
+							+ Pattern.quote(RequestAttribute.STATE.getValue() + "=") + ".*\n?",
+							"");
+				}
+				response += HeaderUtils.X_OCCI_LOCATION_PREFIX + fogbowApp.getEndpoint() + "/"
+						+ RequestConstants.TERM + "/" + request.getId() + "\n"
+						+ requestResponse.trim() + "\n";
+			}
+			return "\n" + response.trim();
+		}
+
 		@Post
 		public String post() {
 			FogbowApplication fogbowApp = (FogbowApplication) getApplication();
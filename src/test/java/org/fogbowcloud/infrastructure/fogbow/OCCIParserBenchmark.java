@@ -0,0 +1,159 @@
+package org.fogbowcloud.infrastructure.fogbow;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.fogbowcloud.manager.occi.core.Category;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares {@link OCCIParser} with the split based parsing previously done by
+ * FogbowInfrastructureProvider, using request and compute payloads as returned
+ * by the fogbow manager. It is not a unit test; run it with:
+ * 
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.fogbowcloud.infrastructure.fogbow.OCCIParserBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class OCCIParserBenchmark {
+
+	private static final String CATEGORY_PREFIX = "Category:";
+	private static final String X_OCCI_ATTRIBUTE_PREFIX = "X-OCCI-Attribute: ";
+
+	static final String REQUEST_PAYLOAD = "\n"
+			+ "Category: fogbow_request; scheme=\"http://schemas.fogbowcloud.org/request#\"; class=\"kind\"; title=\"Request new Instances\"; rel=\"http://schemas.ogf.org/occi/core#resource\"; location=\"http://localhost:8182/fogbow_request/\"; attributes=\"org.fogbowcloud.request.instance-count org.fogbowcloud.request.type org.fogbowcloud.request.valid-until org.fogbowcloud.request.valid-from org.fogbowcloud.request.state org.fogbowcloud.request.instance-id org.fogbowcloud.request.data-public-key\"\n"
+			+ "Category: fogbow_small; scheme=\"http://schemas.fogbowcloud.org/template/resource#\"; class=\"mixin\"; title=\"Small Flavor\"; rel=\"http://schemas.ogf.org/occi/infrastructure#resource_tpl\"; location=\"http://localhost:8182/fogbow_small/\"\n"
+			+ "Category: fogbow-linux-x86; scheme=\"http://schemas.fogbowcloud.org/template/os#\"; class=\"mixin\"; title=\"fogbow-linux-x86 image\"; rel=\"http://schemas.ogf.org/occi/infrastructure#os_tpl\"; location=\"http://localhost:8182/fogbow-linux-x86/\"\n"
+			+ "Category: fogbow_public_key; scheme=\"http://schemas.fogbowcloud/credentials#\"; class=\"mixin\"; title=\"Public Key\"; location=\"http://localhost:8182/fogbow_public_key/\"\n"
+			+ "X-OCCI-Attribute: occi.core.id=\"ac5d5a7b-2b5c-4cd1-9e0d-3a0c6d2f0f18\"\n"
+			+ "X-OCCI-Attribute: org.fogbowcloud.request.instance-count=\"1\"\n"
+			+ "X-OCCI-Attribute: org.fogbowcloud.request.type=\"persistent\"\n"
+			+ "X-OCCI-Attribute: org.fogbowcloud.request.valid-until=\"Not defined\"\n"
+			+ "X-OCCI-Attribute: org.fogbowcloud.request.valid-from=\"Not defined\"\n"
+			+ "X-OCCI-Attribute: org.fogbowcloud.request.state=\"fulfilled\"\n"
+			+ "X-OCCI-Attribute: org.fogbowcloud.request.instance-id=\"2a40a9b1-0c17-4b7b-8d2f-5a3f0b7de1c4@manager.lsd.ufcg.edu.br\"\n"
+			+ "X-OCCI-Attribute: org.fogbowcloud.request.data-public-key=\"ssh-rsa AAAAB3NzaC1yc2EAAAADAQABAAABAQDb0dNMP4QGm0r9Wn8E4Y8y6xw0jU2Ymx2a3cE5w3dY1Pj9q5uN8uW2KXbKq8jv7T0Vz8w9Wb8j3d6Q4qK6qXz5t0g== fogbow@engine\"\n";
+
+	static final String COMPUTE_PAYLOAD = "\n"
+			+ "Category: compute; scheme=\"http://schemas.ogf.org/occi/infrastructure#\"; class=\"kind\"; title=\"Compute Resource\"; rel=\"http://schemas.ogf.org/occi/core#resource\"; location=\"http://localhost:8182/compute/\"; attributes=\"occi.compute.architecture occi.compute.state{immutable} occi.compute.speed occi.compute.memory occi.compute.cores occi.compute.hostname\"; actions=\"http://schemas.ogf.org/occi/infrastructure/compute/action#start http://schemas.ogf.org/occi/infrastructure/compute/action#stop http://schemas.ogf.org/occi/infrastructure/compute/action#restart http://schemas.ogf.org/occi/infrastructure/compute/action#suspend\"\n"
+			+ "Category: os_tpl; scheme=\"http://schemas.ogf.org/occi/infrastructure#\"; class=\"mixin\"; location=\"http://localhost:8182/os_tpl/\"\n"
+			+ "Category: fogbow_small; scheme=\"http://schemas.fogbowcloud.org/template/resource#\"; class=\"mixin\"; title=\"Small Flavor\"; rel=\"http://schemas.ogf.org/occi/infrastructure#resource_tpl\"; location=\"http://localhost:8182/fogbow_small/\"\n"
+			+ "Category: fogbow-linux-x86; scheme=\"http://schemas.fogbowcloud.org/template/os#\"; class=\"mixin\"; title=\"fogbow-linux-x86 image\"; rel=\"http://schemas.ogf.org/occi/infrastructure#os_tpl\"; location=\"http://localhost:8182/fogbow-linux-x86/\"\n"
+			+ "X-OCCI-Attribute: occi.core.id=\"2a40a9b1-0c17-4b7b-8d2f-5a3f0b7de1c4\"\n"
+			+ "X-OCCI-Attribute: occi.compute.architecture=\"x86\"\n"
+			+ "X-OCCI-Attribute: occi.compute.state=\"active\"\n"
+			+ "X-OCCI-Attribute: occi.compute.speed=\"1.0\"\n"
+			+ "X-OCCI-Attribute: occi.compute.memory=\"1024\"\n"
+			+ "X-OCCI-Attribute: occi.compute.cores=\"1\"\n"
+			+ "X-OCCI-Attribute: occi.compute.hostname=\"server-2a40a9b1-0c17-4b7b-8d2f-5a3f0b7de1c4\"\n"
+			+ "X-OCCI-Attribute: org.fogbowcloud.request.ssh-public-address=\"150.165.15.81:20004\"\n";
+
+	@Benchmark
+	public void legacyRequest(Blackhole blackhole) {
+		blackhole.consume(getAttributes(REQUEST_PAYLOAD));
+		blackhole.consume(getCategories(REQUEST_PAYLOAD));
+	}
+
+	@Benchmark
+	public void parserRequest(Blackhole blackhole) throws IOException {
+		blackhole.consume(OCCIParser.parse(new StringReader(REQUEST_PAYLOAD)));
+	}
+
+	@Benchmark
+	public void legacyCompute(Blackhole blackhole) {
+		blackhole.consume(getAttributes(COMPUTE_PAYLOAD));
+	}
+
+	@Benchmark
+	public void parserCompute(Blackhole blackhole) throws IOException {
+		blackhole.consume(OCCIParser.parse(new StringReader(COMPUTE_PAYLOAD)));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(OCCIParserBenchmark.class.getSimpleName())
+				.addProfiler("gc").build();
+		new Runner(options).run();
+	}
+
+	// parsing as done before OCCIParser, kept here as baseline
+
+	static List<Category> getCategories(String resourceStr) {
+		List<Category> categories = new ArrayList<Category>();
+
+		String[] lines = resourceStr.split("\n");
+		for (String line : lines) {
+			if (line.contains(CATEGORY_PREFIX)) {
+				String[] blockLine = line.split(";");
+				String[] blockValues;
+				String term = "";
+				String scheme = "";
+				String catClass = "";
+				List<String> attributesResource = new ArrayList<String>();
+				List<String> actionsResource = new ArrayList<String>();
+
+				for (String block : blockLine) {
+					if (block.contains(CATEGORY_PREFIX)) {
+						blockValues = block.split(":");
+						term = blockValues[1].trim();
+					} else {
+						blockValues = block.split("=");
+						if (blockValues[0].contains("scheme")) {
+							scheme = blockValues[1].replace("\"", "").trim();
+						} else if (blockValues[0].contains("class")) {
+							catClass = blockValues[1].replace("\"", "").trim();
+						} else if (blockValues[0].contains("attributes")) {
+							String[] attributesValues = blockValues[1].replace("\"", "").split(" ");
+							for (String attribute : attributesValues) {
+								attributesResource.add(attribute);
+							}
+						} else if (blockValues[0].contains("actions")) {
+							String[] actionsValues = blockValues[1].replace("\"", "").split(" ");
+							for (String action : actionsValues) {
+								actionsResource.add(action);
+							}
+						}
+					}
+				}
+				categories.add(new Category(term, scheme, catClass));
+			}
+		}
+		return categories;
+	}
+
+	static Map<String, String> getAttributes(String resourceStr) {
+		Map<String, String> attributes = new HashMap<String, String>();
+		String[] lines = resourceStr.split("\n");
+		for (String line : lines) {
+			if (line.contains(X_OCCI_ATTRIBUTE_PREFIX)) {
+				String[] lineTokens = line.replace(X_OCCI_ATTRIBUTE_PREFIX, "").trim().split("=");
+				attributes.put(lineTokens[0], lineTokens[1].replace("\"", "").trim());
+			}
+		}
+		return attributes;
+	}
+}
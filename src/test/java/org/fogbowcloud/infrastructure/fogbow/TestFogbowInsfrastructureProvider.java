@@ -1,11 +1,17 @@
 package org.fogbowcloud.infrastructure.fogbow;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.fogbowcloud.ConfigurationConstants;
+import org.fogbowcloud.infrastructure.core.BatchResult;
+import org.fogbowcloud.infrastructure.core.InfrastructureCallback;
 import org.fogbowcloud.infrastructure.core.InfrastructureException;
 import org.fogbowcloud.infrastructure.core.ResourcePropertiesConstants;
 import org.fogbowcloud.manager.occi.instance.Instance;
@@ -57,6 +63,7 @@ public class TestFogbowInsfrastructureProvider {
 
 	@After
 	public void tearDown() throws Exception {
+		infra.shutdown();
 		helper.disconnectFogbowComponent();
 	}
 
@@ -487,4 +494,255 @@ public class TestFogbowInsfrastructureProvider {
 		}
 	}
 
+	@Test
+	public void testDeleteResources() throws InfrastructureException {
+		// creating resources
+		List<String> requestIds = infra.createResource(3, defaultProperties);
+		Assert.assertEquals(3, requestIds.size());
+
+		// changing request state
+		helper.getFogbowApplication().changeRequestState(SECOND_ID, RequestState.FULFILLED);
+		infra.getResourcesInfo(requestIds);
+
+		// deleting resources at once
+		List<String> resourceIds = new ArrayList<String>();
+		resourceIds.add(FIRST_ID);
+		resourceIds.add(SECOND_ID);
+		resourceIds.add("invalid_id");
+		BatchResult result = infra.deleteResources(resourceIds);
+
+		// checking the invalid resource is reported as failed
+		Assert.assertEquals(2, result.getSucceeded().size());
+		Assert.assertTrue(result.getSucceeded().contains(FIRST_ID));
+		Assert.assertTrue(result.getSucceeded().contains(SECOND_ID));
+		Assert.assertEquals(1, result.getFailed().size());
+		Assert.assertTrue(result.getFailed().containsKey("invalid_id"));
+		Assert.assertFalse(result.isSuccessful());
+
+		// checking only the requested resources were deleted
+		try {
+			infra.getResourceInfo(SECOND_ID);
+			Assert.fail("There was exception in getResourcesInfo after deletion");
+		} catch (Exception e) {
+			Assert.assertTrue(e.getMessage().contains("Not Found"));
+		}
+		Assert.assertEquals(THIRD_ID, infra.getResourceInfo(THIRD_ID).get(
+				FogbowContants.OCCI_CORE_ID));
+	}
+
+	@Test
+	public void testGetResourceInfoAsync() throws Exception {
+		// creating resources
+		Future<List<String>> requestIdsFuture = infra.createResourceAsync(2, defaultProperties,
+				null);
+		List<String> requestIds = requestIdsFuture.get();
+		Assert.assertEquals(2, requestIds.size());
+
+		// getting resources info concurrently
+		final AtomicReference<Map<String, String>> callbackResult = new AtomicReference<Map<String, String>>();
+		Future<Map<String, String>> firstInfo = infra.getResourceInfoAsync(FIRST_ID,
+				new InfrastructureCallback<Map<String, String>>() {
+					@Override
+					public void completed(Map<String, String> result) {
+						callbackResult.set(result);
+					}
+
+					@Override
+					public void failed(InfrastructureException exception) {
+						Assert.fail("The callback must not be notified of a failure.");
+					}
+				});
+		Future<Map<String, String>> secondInfo = infra.getResourceInfoAsync(SECOND_ID, null);
+
+		// checking
+		Assert.assertEquals(FIRST_ID, firstInfo.get().get(FogbowContants.OCCI_CORE_ID));
+		Assert.assertEquals(SECOND_ID, secondInfo.get().get(FogbowContants.OCCI_CORE_ID));
+		Assert.assertEquals(firstInfo.get(), callbackResult.get());
+	}
+
+	@Test
+	public void testGetResourceInfoAsyncInvalidId() throws Exception {
+		final AtomicReference<InfrastructureException> callbackException = new AtomicReference<InfrastructureException>();
+		Future<Map<String, String>> info = infra.getResourceInfoAsync("invalid_id",
+				new InfrastructureCallback<Map<String, String>>() {
+					@Override
+					public void completed(Map<String, String> result) {
+						Assert.fail("The callback must not be notified of a success.");
+					}
+
+					@Override
+					public void failed(InfrastructureException exception) {
+						callbackException.set(exception);
+					}
+				});
+
+		// checking
+		try {
+			info.get();
+			Assert.fail("The future must fail for an invalid id.");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof InfrastructureException);
+			Assert.assertTrue(e.getCause().getMessage().contains("Not Found"));
+		}
+		Assert.assertNotNull(callbackException.get());
+	}
+
+	@Test
+	public void testDeleteResourceAsync() throws Exception {
+		// creating resources
+		List<String> requestIds = infra.createResource(1, defaultProperties);
+		Assert.assertEquals(FIRST_ID, requestIds.get(0));
+
+		// deleting resource
+		infra.deleteResourceAsync(FIRST_ID, null).get();
+
+		// checking resource was deleted
+		try {
+			infra.getResourceInfo(FIRST_ID);
+			Assert.fail("There was exception in getResourcesInfo after deletion");
+		} catch (Exception e) {
+			Assert.assertTrue(e.getMessage().contains("Not Found"));
+		}
+	}
+
+	@Test
+	public void testGetResourcesInfo() throws InfrastructureException {
+		// creating resources
+		List<String> requestIds = infra.createResource(3, defaultProperties);
+		Assert.assertEquals(3, requestIds.size());
+
+		// changing request state
+		helper.getFogbowApplication().changeRequestState(SECOND_ID, RequestState.FULFILLED);
+
+		// checking getting resources info at once
+		List<String> resourceIds = new ArrayList<String>(requestIds);
+		resourceIds.add("invalid_id");
+		Map<String, Map<String, String>> resourcesInfo = infra.getResourcesInfo(resourceIds);
+		Assert.assertEquals(3, resourcesInfo.size());
+		Assert.assertFalse(resourcesInfo.containsKey("invalid_id"));
+		Assert.assertEquals(FIRST_ID, resourcesInfo.get(FIRST_ID).get(FogbowContants.OCCI_CORE_ID));
+		Assert.assertFalse(infra.isAvailable(resourcesInfo.get(FIRST_ID)));
+		Assert.assertTrue(infra.isAvailable(resourcesInfo.get(SECOND_ID)));
+		Assert.assertEquals(FogbowTestHelper.FOGBOW_ADDRESS + ":" + FogbowApplication.DEFAULT_SSH_PORT,
+				resourcesInfo.get(SECOND_ID).get(Instance.SSH_PUBLIC_ADDRESS_ATT));
+		Assert.assertFalse(infra.isAvailable(resourcesInfo.get(THIRD_ID)));
+	}
+
+	@Test
+	public void testGetResourcesInfoByVerboseListing() throws InfrastructureException {
+		FogbowApplication fogbowApplication = helper.getFogbowApplication();
+		fogbowApplication.setVerboseListing(true);
+
+		// creating resources
+		List<String> requestIds = infra.createResource(3, defaultProperties);
+		Assert.assertEquals(3, requestIds.size());
+
+		// changing request state
+		fogbowApplication.changeRequestState(SECOND_ID, RequestState.FULFILLED);
+
+		// checking only the wanted resources are taken from a single listing
+		List<String> resourceIds = new ArrayList<String>();
+		resourceIds.add(FIRST_ID);
+		resourceIds.add(SECOND_ID);
+		resourceIds.add("invalid_id");
+		Map<String, Map<String, String>> resourcesInfo = infra.getResourcesInfo(resourceIds);
+		Assert.assertEquals(1, fogbowApplication.getVerboseListings());
+		Assert.assertEquals(0, fogbowApplication.getRequestGets());
+		Assert.assertEquals(2, resourcesInfo.size());
+		Assert.assertFalse(resourcesInfo.containsKey(THIRD_ID));
+		Assert.assertFalse(resourcesInfo.containsKey("invalid_id"));
+		Assert.assertEquals(FIRST_ID, resourcesInfo.get(FIRST_ID).get(FogbowContants.OCCI_CORE_ID));
+		Assert.assertFalse(infra.isAvailable(resourcesInfo.get(FIRST_ID)));
+		Assert.assertTrue(infra.isAvailable(resourcesInfo.get(SECOND_ID)));
+		Assert.assertEquals(FogbowTestHelper.FOGBOW_ADDRESS + ":" + FogbowApplication.DEFAULT_SSH_PORT,
+				resourcesInfo.get(SECOND_ID).get(Instance.SSH_PUBLIC_ADDRESS_ATT));
+	}
+
+	@Test
+	public void testVerboseListingIsRetriedAfterFailure() throws InfrastructureException {
+		FogbowApplication fogbowApplication = helper.getFogbowApplication();
+		fogbowApplication.setVerboseListing(true);
+		fogbowApplication.setFailingListings(1);
+
+		// creating resources
+		List<String> requestIds = infra.createResource(2, defaultProperties);
+
+		// checking the failed listing falls back to per request queries
+		Assert.assertEquals(2, infra.getResourcesInfo(requestIds).size());
+		Assert.assertEquals(0, fogbowApplication.getVerboseListings());
+
+		// checking the listing is used once the endpoint recovers
+		Assert.assertEquals(2, infra.getResourcesInfo(requestIds).size());
+		Assert.assertEquals(1, fogbowApplication.getVerboseListings());
+	}
+
+	@Test
+	public void testVerboseListingWithoutStatesIsNotUsed() throws InfrastructureException {
+		FogbowApplication fogbowApplication = helper.getFogbowApplication();
+		fogbowApplication.setVerboseListing(true);
+		fogbowApplication.setListingWithoutStates(true);
+
+		// creating resources
+		List<String> requestIds = infra.createResource(2, defaultProperties);
+		fogbowApplication.changeRequestState(FIRST_ID, RequestState.FULFILLED);
+
+		// checking the requests are queried one by one
+		Map<String, Map<String, String>> resourcesInfo = infra.getResourcesInfo(requestIds);
+		Assert.assertEquals(2, fogbowApplication.getRequestGets());
+		Assert.assertTrue(infra.isAvailable(resourcesInfo.get(FIRST_ID)));
+		Assert.assertFalse(infra.isAvailable(resourcesInfo.get(SECOND_ID)));
+		Assert.assertFalse(infra.isBulkQuerySupported());
+	}
+
+	@Test
+	public void testFailedRequestGetIsUnknown() throws InfrastructureException {
+		FogbowApplication fogbowApplication = helper.getFogbowApplication();
+		fogbowApplication.addFailingRequestGet(SECOND_ID);
+
+		// creating resources
+		List<String> resourceIds = new ArrayList<String>(infra.createResource(2,
+				defaultProperties));
+		resourceIds.add("invalid_id");
+
+		// checking the failed request is unknown and the missing one is absent
+		Map<String, Map<String, String>> resourcesInfo = infra.getResourcesInfo(resourceIds);
+		Assert.assertEquals(2, resourcesInfo.size());
+		Assert.assertEquals(FIRST_ID, resourcesInfo.get(FIRST_ID).get(FogbowContants.OCCI_CORE_ID));
+		Assert.assertTrue(resourcesInfo.containsKey(SECOND_ID));
+		Assert.assertNull(resourcesInfo.get(SECOND_ID));
+		Assert.assertFalse(resourcesInfo.containsKey("invalid_id"));
+	}
+
+	@Test
+	public void testGetResourcesInfoEmptyIds() throws InfrastructureException {
+		Assert.assertTrue(infra.getResourcesInfo(new ArrayList<String>()).isEmpty());
+	}
+
+	@Test
+	public void testGetResourceInfoFromCache() throws InfrastructureException {
+		// creating resources
+		List<String> requestIds = infra.createResource(1, defaultProperties);
+		Assert.assertEquals(1, requestIds.size());
+
+		// changing request state
+		helper.getFogbowApplication().changeRequestState(FIRST_ID, RequestState.FULFILLED);
+
+		ResourceInfoCache cache = infra.getResourceInfoCache();
+		Map<String, String> resourceInfo = infra.getResourceInfo(FIRST_ID);
+		Assert.assertEquals(0, cache.getHits());
+		Assert.assertEquals(1, cache.getInstanceMisses());
+
+		// second query is answered by the cache
+		Assert.assertEquals(resourceInfo, infra.getResourceInfo(FIRST_ID));
+		Assert.assertEquals(1, cache.getHits());
+
+		// changing the returned info does not change the cached one
+		resourceInfo.put(RequestAttribute.STATE.getValue(), RequestState.OPEN.getValue());
+		Assert.assertTrue(infra.isResourceAvailable(FIRST_ID));
+
+		// deletion invalidates the cached info
+		infra.deleteResource(FIRST_ID);
+		Assert.assertEquals(0, cache.size());
+	}
+
 }
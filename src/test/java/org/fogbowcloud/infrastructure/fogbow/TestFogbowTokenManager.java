@@ -0,0 +1,76 @@
+package org.fogbowcloud.infrastructure.fogbow;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.fogbowcloud.manager.core.plugins.IdentityPlugin;
+import org.fogbowcloud.manager.occi.core.Token;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestFogbowTokenManager {
+
+	private FogbowTokenManager tokenManager;
+	private IdentityPlugin identityPlugin;
+	private Map<String, String> credentials;
+
+	@Before
+	public void setUp() {
+		tokenManager = new FogbowTokenManager();
+		identityPlugin = Mockito.mock(IdentityPlugin.class);
+		credentials = new HashMap<String, String>();
+		credentials.put("username", "fogbow");
+	}
+
+	@After
+	public void tearDown() {
+		tokenManager.shutdown();
+	}
+
+	@Test
+	public void testCreateToken() throws Exception {
+		Date expirationDate = new Date(System.currentTimeMillis() + 60 * 60 * 1000);
+		Mockito.when(identityPlugin.createToken(credentials)).thenReturn(
+				new Token("first", "fogbow", expirationDate, new HashMap<String, String>()));
+
+		Assert.assertEquals("first", tokenManager.createToken(identityPlugin, credentials));
+		Assert.assertEquals("first", tokenManager.getAccessId());
+		Assert.assertEquals(expirationDate, tokenManager.getExpirationDate());
+	}
+
+	@Test
+	public void testRenewRejectedToken() throws Exception {
+		Mockito.when(identityPlugin.createToken(credentials)).thenReturn(
+				new Token("first", "fogbow", null, new HashMap<String, String>()),
+				new Token("second", "fogbow", null, new HashMap<String, String>()));
+		tokenManager.createToken(identityPlugin, credentials);
+
+		Assert.assertEquals("second", tokenManager.renewRejected("first"));
+		Assert.assertEquals("second", tokenManager.getAccessId());
+	}
+
+	@Test
+	public void testRenewAlreadyRenewedToken() throws Exception {
+		Mockito.when(identityPlugin.createToken(credentials)).thenReturn(
+				new Token("first", "fogbow", null, new HashMap<String, String>()),
+				new Token("second", "fogbow", null, new HashMap<String, String>()));
+		tokenManager.createToken(identityPlugin, credentials);
+		tokenManager.renewRejected("first");
+
+		// a concurrent caller also had "first" rejected
+		Assert.assertEquals("second", tokenManager.renewRejected("first"));
+		Mockito.verify(identityPlugin, Mockito.times(2)).createToken(credentials);
+	}
+
+	@Test
+	public void testRenewRejectedTokenWithoutPlugin() throws Exception {
+		tokenManager.setAccessId("first");
+
+		Assert.assertNull(tokenManager.renewRejected("first"));
+		Assert.assertEquals("first", tokenManager.getAccessId());
+	}
+}
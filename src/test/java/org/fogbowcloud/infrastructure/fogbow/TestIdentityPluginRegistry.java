@@ -0,0 +1,35 @@
+package org.fogbowcloud.infrastructure.fogbow;
+
+import java.util.HashMap;
+
+import org.fogbowcloud.infrastructure.core.InfrastructureException;
+import org.fogbowcloud.manager.core.plugins.IdentityPlugin;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestIdentityPluginRegistry {
+
+	@Test
+	public void testGetInstanceIsBuiltOnce() {
+		Assert.assertSame(IdentityPluginRegistry.getInstance(),
+				IdentityPluginRegistry.getInstance());
+	}
+
+	@Test
+	public void testGetPluginType() {
+		Assert.assertEquals("fogbow",
+				IdentityPluginRegistry.getPluginType(FogbowInfrastructureProvider.class));
+	}
+
+	@Test
+	public void testCreateInvalidPluginType() {
+		IdentityPluginRegistry registry = new IdentityPluginRegistry(
+				new HashMap<String, Class<? extends IdentityPlugin>>());
+		try {
+			registry.createPlugin("invalid");
+			Assert.fail("An invalid plugin type must not be created.");
+		} catch (InfrastructureException e) {
+			Assert.assertTrue(e.getMessage().contains("Token type [invalid] is not valid."));
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package org.fogbowcloud.infrastructure.fogbow;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.fogbowcloud.manager.occi.core.Category;
+import org.fogbowcloud.manager.occi.request.RequestConstants;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestOCCIParser {
+
+	@Test
+	public void testParseAttributes() {
+		OCCIMessage message = OCCIParser.parse("\nX-OCCI-Attribute: occi.core.id=\"first\"\n"
+				+ "X-OCCI-Attribute: occi.request.instance-count=\"1\"\n"
+				+ "X-OCCI-Attribute: occi.compute.memory=1024\n");
+
+		Assert.assertEquals(3, message.getAttributes().size());
+		Assert.assertEquals("first", message.getAttributes().get("occi.core.id"));
+		Assert.assertEquals("1", message.getAttributes().get("occi.request.instance-count"));
+		Assert.assertEquals("1024", message.getAttributes().get("occi.compute.memory"));
+	}
+
+	@Test
+	public void testParseAttributeValueWithSeparators() {
+		OCCIMessage message = OCCIParser
+				.parse("X-OCCI-Attribute: org.fogbowcloud.request.data-public-key=\"ssh-rsa AAAB3Nz==; user@host, x\"\r\n"
+						+ "X-OCCI-Attribute: occi.core.title=\"a \\\"quoted\\\" title\"\r\n");
+
+		Assert.assertEquals("ssh-rsa AAAB3Nz==; user@host, x",
+				message.getAttributes().get("org.fogbowcloud.request.data-public-key"));
+		Assert.assertEquals("a \"quoted\" title", message.getAttributes().get("occi.core.title"));
+	}
+
+	@Test
+	public void testParseSeveralAttributesInOneLine() {
+		OCCIMessage message = OCCIParser
+				.parse("X-OCCI-Attribute: occi.core.id=\"first\", occi.request.state=\"open\"");
+
+		Assert.assertEquals("first", message.getAttributes().get("occi.core.id"));
+		Assert.assertEquals("open", message.getAttributes().get("occi.request.state"));
+	}
+
+	@Test
+	public void testParseCategories() {
+		OCCIMessage message = OCCIParser.parse("Category: fogbow_request; scheme=\""
+				+ RequestConstants.SCHEME + "\"; class=\"kind\"; title=\"Request; new\"\n"
+				+ "Category: fogbow_small; scheme=\"" + RequestConstants.TEMPLATE_RESOURCE_SCHEME
+				+ "\"; class=\"mixin\"; attributes=\"a b\"; actions=\"c\"\n");
+
+		List<Category> categories = message.getCategories();
+		Assert.assertEquals(2, categories.size());
+		Assert.assertEquals("fogbow_request", categories.get(0).getTerm());
+		Assert.assertEquals(RequestConstants.SCHEME, categories.get(0).getScheme());
+		Assert.assertEquals("kind", categories.get(0).getCatClass());
+		Assert.assertEquals("fogbow_small",
+				message.getCategoryTerm(RequestConstants.TEMPLATE_RESOURCE_SCHEME));
+		Assert.assertNull(message.getCategoryTerm(RequestConstants.TEMPLATE_OS_SCHEME));
+	}
+
+	@Test
+	public void testParseLocations() {
+		OCCIMessage message = OCCIParser
+				.parse("X-OCCI-Location: http://localhost:8182/fogbow_request/first\n"
+						+ "X-OCCI-Location: http://localhost:8182/fogbow_request/second");
+
+		Assert.assertEquals(2, message.getLocations().size());
+		Assert.assertEquals("http://localhost:8182/fogbow_request/first", message.getLocations()
+				.get(0));
+		Assert.assertEquals("http://localhost:8182/fogbow_request/second", message.getLocations()
+				.get(1));
+	}
+
+	@Test
+	public void testParseEmptyContent() {
+		OCCIMessage message = OCCIParser.parse("");
+
+		Assert.assertTrue(message.getAttributes().isEmpty());
+		Assert.assertTrue(message.getCategories().isEmpty());
+		Assert.assertTrue(message.getLocations().isEmpty());
+	}
+
+	@Test
+	public void testParseListing() throws IOException {
+		List<OCCIMessage> messages = OCCIParser.parseListing(new StringReader(
+				"X-OCCI-Location: http://localhost:8182/fogbow_request/first; occi.request.state=\"open\"\n"
+						+ "X-OCCI-Location: http://localhost:8182/fogbow_request/second\n"
+						+ "Category: fogbow_small; scheme=\""
+						+ RequestConstants.TEMPLATE_RESOURCE_SCHEME + "\"; class=\"mixin\"\n"
+						+ "X-OCCI-Attribute: occi.request.state=\"fulfilled\"\n"));
+
+		Assert.assertEquals(2, messages.size());
+		Assert.assertEquals("open", messages.get(0).getAttributes().get("occi.request.state"));
+		Assert.assertTrue(messages.get(0).getCategories().isEmpty());
+		Assert.assertEquals("fulfilled", messages.get(1).getAttributes().get("occi.request.state"));
+		Assert.assertEquals("fogbow_small",
+				messages.get(1).getCategoryTerm(RequestConstants.TEMPLATE_RESOURCE_SCHEME));
+	}
+
+	@Test
+	public void testParseLongLine() {
+		StringBuilder longValue = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			longValue.append('a');
+		}
+		OCCIMessage message = OCCIParser.parse("X-OCCI-Attribute: key=\"" + longValue + "\"");
+
+		Assert.assertEquals(longValue.toString(), message.getAttributes().get("key"));
+	}
+}
@@ -0,0 +1,104 @@
+package org.fogbowcloud.infrastructure.fogbow;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fogbowcloud.infrastructure.core.InfrastructureException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestRequestCoalescer {
+
+	private static final String KEY = "get http://localhost/fogbow_request/first";
+
+	private RequestCoalescer coalescer;
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() {
+		coalescer = new RequestCoalescer();
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testConcurrentRequestsShareExecution() throws Exception {
+		final CountDownLatch requestStarted = new CountDownLatch(1);
+		final CountDownLatch releaseRequest = new CountDownLatch(1);
+		final AtomicInteger executions = new AtomicInteger();
+		final Callable<String> request = new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				executions.incrementAndGet();
+				requestStarted.countDown();
+				releaseRequest.await();
+				return "response";
+			}
+		};
+
+		Future<String> first = executor.submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return coalescer.execute(KEY, request);
+			}
+		});
+		Assert.assertTrue(requestStarted.await(5, TimeUnit.SECONDS));
+		Future<String> second = executor.submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return coalescer.execute(KEY, request);
+			}
+		});
+		while (coalescer.getCoalescedRequests() == 0) {
+			Thread.sleep(10);
+		}
+		releaseRequest.countDown();
+
+		Assert.assertEquals("response", first.get(5, TimeUnit.SECONDS));
+		Assert.assertEquals("response", second.get(5, TimeUnit.SECONDS));
+		Assert.assertEquals(1, executions.get());
+		Assert.assertEquals(1, coalescer.getExecutedRequests());
+	}
+
+	@Test
+	public void testSequentialRequestsAreNotCoalesced() throws Exception {
+		final AtomicInteger executions = new AtomicInteger();
+		Callable<Integer> request = new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				return executions.incrementAndGet();
+			}
+		};
+
+		Assert.assertEquals(Integer.valueOf(1), coalescer.execute(KEY, request));
+		Assert.assertEquals(Integer.valueOf(2), coalescer.execute(KEY, request));
+		Assert.assertEquals(0, coalescer.getCoalescedRequests());
+	}
+
+	@Test
+	public void testExceptionIsPropagated() throws Exception {
+		try {
+			coalescer.execute(KEY, new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					throw new InfrastructureException("Not Found");
+				}
+			});
+			Assert.fail("The exception of the request was not propagated.");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof InfrastructureException);
+		}
+	}
+}
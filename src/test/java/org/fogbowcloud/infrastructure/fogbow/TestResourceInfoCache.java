@@ -0,0 +1,132 @@
+package org.fogbowcloud.infrastructure.fogbow;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.fogbowcloud.infrastructure.core.ManualClock;
+import org.fogbowcloud.manager.occi.request.RequestAttribute;
+import org.fogbowcloud.manager.occi.request.RequestState;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestResourceInfoCache {
+
+	private static final String REQUEST_ID = "request";
+	private static final String INSTANCE_ID = "instance";
+
+	@Test
+	public void testGetMissingRequest() {
+		ResourceInfoCache cache = new ResourceInfoCache(10, 10000);
+		Assert.assertNull(cache.get(REQUEST_ID));
+		Assert.assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testGetExpiredRequest() {
+		ManualClock clock = new ManualClock();
+		ResourceInfoCache cache = new ResourceInfoCache(10, 10, clock);
+		cache.put(REQUEST_ID, createResourceInfo(RequestState.OPEN, null));
+		clock.advance(9);
+		Assert.assertNotNull(cache.get(REQUEST_ID));
+		clock.advance(1);
+		Assert.assertNull(cache.get(REQUEST_ID));
+	}
+
+	@Test
+	public void testGetTerminalRequestDoesNotExpire() {
+		ManualClock clock = new ManualClock();
+		ResourceInfoCache cache = new ResourceInfoCache(10, 10, clock);
+		cache.put(REQUEST_ID, createResourceInfo(RequestState.CLOSED, null));
+		clock.advance(50);
+		Assert.assertEquals(RequestState.CLOSED.getValue(),
+				cache.get(REQUEST_ID).get(RequestAttribute.STATE.getValue()));
+		Assert.assertEquals(1, cache.getHits());
+	}
+
+	@Test
+	public void testRetainAllEvictsTerminalRequests() {
+		ResourceInfoCache cache = new ResourceInfoCache(10, 10000);
+		cache.put("first", createResourceInfo(RequestState.CLOSED, null));
+		cache.put("second", createResourceInfo(RequestState.OPEN, null));
+		cache.retainAll(Arrays.asList("second"));
+
+		Assert.assertEquals(1, cache.size());
+		Assert.assertNull(cache.get("first"));
+		Assert.assertNotNull(cache.get("second"));
+	}
+
+	@Test
+	public void testEvictLeastRecentlyUsed() {
+		ResourceInfoCache cache = new ResourceInfoCache(2, 10000);
+		cache.put("first", createResourceInfo(RequestState.OPEN, null));
+		cache.put("second", createResourceInfo(RequestState.OPEN, null));
+		cache.get("first");
+		cache.put("third", createResourceInfo(RequestState.OPEN, null));
+
+		Assert.assertEquals(2, cache.size());
+		Assert.assertNotNull(cache.get("first"));
+		Assert.assertNull(cache.get("second"));
+		Assert.assertNotNull(cache.get("third"));
+	}
+
+	@Test
+	public void testPinnedInstanceSurvivesRequestRefresh() {
+		ResourceInfoCache cache = new ResourceInfoCache(10, 10000);
+		cache.put(REQUEST_ID, createResourceInfo(RequestState.FULFILLED, INSTANCE_ID));
+		cache.pinInstance(REQUEST_ID, INSTANCE_ID, createInstanceAttributes());
+
+		cache.put(REQUEST_ID, createResourceInfo(RequestState.FULFILLED, INSTANCE_ID));
+		Assert.assertEquals(createInstanceAttributes(), cache.getInstance(REQUEST_ID, INSTANCE_ID));
+		Assert.assertEquals(1, cache.getInstanceHits());
+	}
+
+	@Test
+	public void testPinnedInstanceDroppedWhenInstanceChanges() {
+		ResourceInfoCache cache = new ResourceInfoCache(10, 10000);
+		cache.put(REQUEST_ID, createResourceInfo(RequestState.FULFILLED, INSTANCE_ID));
+		cache.pinInstance(REQUEST_ID, INSTANCE_ID, createInstanceAttributes());
+
+		cache.put(REQUEST_ID, createResourceInfo(RequestState.FULFILLED, "other_instance"));
+		Assert.assertNull(cache.getInstance(REQUEST_ID, INSTANCE_ID));
+		Assert.assertNull(cache.getInstance(REQUEST_ID, "other_instance"));
+	}
+
+	@Test
+	public void testInstanceIdKnownAfterExpiration() {
+		ManualClock clock = new ManualClock();
+		ResourceInfoCache cache = new ResourceInfoCache(10, 10, clock);
+		cache.put(REQUEST_ID, createResourceInfo(RequestState.FULFILLED, INSTANCE_ID));
+		Assert.assertNull(cache.getInstanceId(REQUEST_ID));
+
+		cache.pinInstance(REQUEST_ID, INSTANCE_ID, createInstanceAttributes());
+		clock.advance(50);
+		Assert.assertNull(cache.get(REQUEST_ID));
+		Assert.assertEquals(INSTANCE_ID, cache.getInstanceId(REQUEST_ID));
+	}
+
+	@Test
+	public void testInvalidate() {
+		ResourceInfoCache cache = new ResourceInfoCache(10, 10000);
+		cache.put(REQUEST_ID, createResourceInfo(RequestState.FULFILLED, INSTANCE_ID));
+		cache.pinInstance(REQUEST_ID, INSTANCE_ID, createInstanceAttributes());
+
+		cache.invalidate(REQUEST_ID);
+		Assert.assertNull(cache.get(REQUEST_ID));
+		Assert.assertNull(cache.getInstance(REQUEST_ID, INSTANCE_ID));
+	}
+
+	private Map<String, String> createResourceInfo(RequestState state, String instanceId) {
+		Map<String, String> resourceInfo = new HashMap<String, String>();
+		resourceInfo.put(FogbowContants.OCCI_CORE_ID, REQUEST_ID);
+		resourceInfo.put(RequestAttribute.STATE.getValue(), state.getValue());
+		resourceInfo.put(RequestAttribute.INSTANCE_ID.getValue(), String.valueOf(instanceId));
+		return resourceInfo;
+	}
+
+	private Map<String, String> createInstanceAttributes() {
+		Map<String, String> instanceAttributes = new HashMap<String, String>();
+		instanceAttributes.put("occi.compute.hostname", "host");
+		return instanceAttributes;
+	}
+}
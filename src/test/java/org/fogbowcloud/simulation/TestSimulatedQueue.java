@@ -0,0 +1,67 @@
+package org.fogbowcloud.simulation;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSimulatedQueue {
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidEngineSlots() {
+		new SimulatedQueue(0);
+	}
+
+	@Test
+	public void testJobsFillEngineSlots() {
+		SimulatedQueue queue = new SimulatedQueue(2);
+		for (int i = 0; i < 5; i++) {
+			queue.submit(new SimulatedJob(0, 1000));
+		}
+
+		List<SimulatedJob> startedJobs = queue.dispatch(Arrays.asList("engine1", "engine2"));
+
+		Assert.assertEquals(4, startedJobs.size());
+		Assert.assertEquals("engine1", startedJobs.get(1).getEngineId());
+		Assert.assertEquals("engine2", startedJobs.get(2).getEngineId());
+		Assert.assertEquals(1, queue.getWaitingJobs());
+		Assert.assertEquals(5, queue.getLength());
+	}
+
+	@Test
+	public void testCompletedJobWaitTime() {
+		SimulatedQueue queue = new SimulatedQueue(1);
+		SimulatedJob job = new SimulatedJob(1000, 5000);
+		queue.submit(job);
+		queue.dispatch(Collections.singletonList("engine"));
+
+		Assert.assertTrue(queue.complete(job, job.getAttempt(), 9000));
+
+		Assert.assertEquals(0, queue.getLength());
+		Assert.assertEquals(1, queue.getCompletedJobs());
+		Assert.assertEquals(3000, queue.getWaitTimes()[0]);
+	}
+
+	@Test
+	public void testJobsOfLostEngineAreRestarted() {
+		SimulatedQueue queue = new SimulatedQueue(1);
+		SimulatedJob job = new SimulatedJob(0, 5000);
+		SimulatedJob otherJob = new SimulatedJob(0, 5000);
+		queue.submit(job);
+		queue.submit(otherJob);
+		queue.dispatch(Collections.singletonList("engine"));
+		int lostAttempt = job.getAttempt();
+
+		queue.updateEngines(new HashSet<String>(Arrays.asList("other")));
+		List<SimulatedJob> startedJobs = queue.dispatch(Collections.singletonList("other"));
+
+		// the restarted job goes to the head of the queue
+		Assert.assertEquals(job, startedJobs.get(0));
+		Assert.assertEquals(1, queue.getRestartedJobs());
+		Assert.assertFalse(queue.complete(job, lostAttempt, 5000));
+		Assert.assertTrue(queue.complete(job, job.getAttempt(), 10000));
+	}
+}
@@ -0,0 +1,123 @@
+package org.fogbowcloud.simulation;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import org.fogbowcloud.capacityplanner.resource.LinearAllocationPolicy;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSimulator {
+
+	private static final long ONE_MINUTE = 60 * 1000;
+
+	private Properties properties;
+
+	@Before
+	public void setUp() {
+		properties = new Properties();
+		properties.put(LinearAllocationPolicy.JOBS_PER_RESOURCE_KEY, "1");
+		properties.put(SimulatedInfrastructureProvider.FULFILLMENT_TIME_KEY, "60");
+		properties.put(SimulatedInfrastructureProvider.BOOT_TIME_KEY, "60");
+	}
+
+	@Test
+	public void testSingleJob() {
+		List<SimulatedJob> jobs = new ArrayList<SimulatedJob>();
+		jobs.add(new SimulatedJob(0, 10 * ONE_MINUTE));
+
+		SimulationReport report = new Simulator(properties).run(new LinearAllocationPolicy(
+				properties), jobs);
+
+		Assert.assertEquals(1, report.getCompletedJobs());
+		Assert.assertEquals(0, report.getRestartedJobs());
+		// the VM takes 2 minutes to boot and is polled with backoff
+		Assert.assertTrue(report.getWaitTimePercentile(100) >= 2 * ONE_MINUTE);
+		Assert.assertTrue(report.getWaitTimePercentile(100) <= 4 * ONE_MINUTE);
+		Assert.assertEquals(1, report.getCreatedMachines());
+		Assert.assertEquals(1, report.getPeakEngines());
+		Assert.assertTrue(report.getVirtualMachineHours() >= 11 / 60d);
+	}
+
+	@Test
+	public void testAllJobsCompleteAndEnginesAreReleased() {
+		properties.put(Simulator.MAX_DRAIN_TIME_KEY, "1");
+		List<SimulatedJob> jobs = new ArrayList<SimulatedJob>();
+		for (int i = 0; i < 20; i++) {
+			jobs.add(new SimulatedJob(i * 30 * 1000, 5 * ONE_MINUTE));
+		}
+
+		SimulationReport report = new Simulator(properties).run(new LinearAllocationPolicy(
+				properties), jobs);
+
+		Assert.assertEquals(20, report.getCompletedJobs());
+		Assert.assertTrue(report.getPeakEngines() > 1);
+		Assert.assertTrue(report.getDeletedMachines() > 0);
+		Assert.assertEquals(report.getCreatedMachines() + report.getDeletedMachines(),
+				report.getChurn());
+	}
+
+	@Test
+	public void testSimulationIsReproducible() {
+		properties.put(SimulatedInfrastructureProvider.FULFILLMENT_TIME_KEY, "uniform:30:120");
+		properties.put(SimulatedInfrastructureProvider.BOOT_TIME_KEY, "exp:90");
+		properties.put(SimulatedInfrastructureProvider.FAILURE_TIME_KEY, "exp:3600");
+		List<SimulatedJob> jobs = new ArrayList<SimulatedJob>();
+		Random random = new Random(7);
+		for (int i = 0; i < 200; i++) {
+			jobs.add(new SimulatedJob(i * ONE_MINUTE, random.nextInt(20) * ONE_MINUTE));
+		}
+
+		SimulationReport report = new Simulator(properties).run(new LinearAllocationPolicy(
+				properties), jobs);
+		SimulationReport otherReport = new Simulator(properties).run(new LinearAllocationPolicy(
+				properties), jobs);
+
+		Assert.assertEquals(200, report.getCompletedJobs());
+		Assert.assertEquals(report.getVirtualMachineHours(),
+				otherReport.getVirtualMachineHours(), 0.0001);
+		Assert.assertEquals(report.getWaitTimePercentile(90),
+				otherReport.getWaitTimePercentile(90));
+		Assert.assertEquals(report.getChurn(), otherReport.getChurn());
+	}
+
+	@Test
+	public void testReadTrace() throws IOException {
+		List<SimulatedJob> jobs = SimulatedJob.readTrace(new StringReader(
+				"# arrival runtime\n120 30\n\n60,45.5\n"));
+
+		Assert.assertEquals(2, jobs.size());
+		Assert.assertEquals(60 * 1000, jobs.get(0).getArrivalTime());
+		Assert.assertEquals(45500, jobs.get(0).getRuntime());
+		Assert.assertEquals(120 * 1000, jobs.get(1).getArrivalTime());
+	}
+
+	@Test(expected = IOException.class)
+	public void testReadInvalidTrace() throws IOException {
+		SimulatedJob.readTrace(new StringReader("60 thirty\n"));
+	}
+
+	@Test
+	public void testDistributions() {
+		Random random = new Random(1);
+
+		Assert.assertEquals(90000, Distribution.parse("90").sample(random));
+		Assert.assertEquals(90000, Distribution.parse("const:90").sample(random));
+		Assert.assertEquals(Distribution.NEVER, Distribution.parse("none").sample(random));
+		for (int i = 0; i < 100; i++) {
+			long sample = Distribution.parse("uniform:30:120").sample(random);
+			Assert.assertTrue(sample >= 30000 && sample <= 120000);
+			Assert.assertTrue(Distribution.parse("exp:60").sample(random) >= 0);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidDistribution() {
+		Distribution.parse("uniform:120:30");
+	}
+}